@@ -1,8 +1,14 @@
 package com.example.demo;
 
 import com.example.demo.database.DatabaseConnection;
+import com.example.demo.database.DuplicatePatientDetector;
+import com.example.demo.database.LabValueBackfill;
+import com.example.demo.database.NameResolver;
+import com.example.demo.database.PatientSearchIndex;
+import com.example.demo.database.RecordArchiver;
 import com.example.demo.auth.AuthService;
 import com.example.demo.model.User;
+import com.example.demo.service.DatabaseExecutor;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -38,6 +44,18 @@ public class HelloApplication extends Application {
                 // Initialize database schema if needed
                 dbConnection.initializeDatabase();
                 
+                // Move old medical records to the archive in the background
+                RecordArchiver.getInstance().start();
+                
+                // Parse the numbers of lab results saved before they were stored as numbers
+                LabValueBackfill.getInstance().start();
+                
+                // Build the patient search and duplicate indexes before the first search or registration
+                DatabaseExecutor.getInstance().submit(() -> PatientSearchIndex.getInstance().ensureLoaded());
+                DatabaseExecutor.getInstance().submit(() -> DuplicatePatientDetector.getInstance().ensureLoaded());
+                // Read patient and doctor names so records saved by name never scan the tables
+                DatabaseExecutor.getInstance().submit(() -> NameResolver.getInstance().ensureLoaded());
+                
                 // Check if test data should be inserted (will only insert if no data exists)
                 dbConnection.insertTestDataIfNeeded();
                 
@@ -105,6 +123,15 @@ public class HelloApplication extends Application {
         stage.show();
     }
     
+    @Override
+    public void stop() {
+        // Stop background database work, then release pooled connections on exit
+        RecordArchiver.shutdown();
+        LabValueBackfill.shutdown();
+        DatabaseExecutor.shutdown();
+        DatabaseConnection.getInstance().shutdown();
+    }
+    
     /**
      * Load an FXML file
      * 
@@ -31,6 +31,9 @@ import java.time.format.DateTimeFormatter;
 
 public class DashboardController {
 
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("h:mm a");
+
     @FXML
     private ListView<String> sidebarMenu;
     
@@ -187,7 +190,7 @@ public class DashboardController {
                 if (item == null || empty) {
                     setText(null);
                 } else {
-                    setText(item.format(DateTimeFormatter.ofPattern("MM/dd/yyyy")));
+                    setText(item.format(DATE_FORMATTER));
                 }
             }
         });
@@ -199,7 +202,7 @@ public class DashboardController {
                 if (item == null || empty) {
                     setText(null);
                 } else {
-                    setText(item.format(DateTimeFormatter.ofPattern("h:mm a")));
+                    setText(item.format(TIME_FORMATTER));
                 }
             }
         });
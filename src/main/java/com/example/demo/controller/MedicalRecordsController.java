@@ -3,11 +3,13 @@ package com.example.demo.controller;
 import com.example.demo.HelloApplication;
 import com.example.demo.auth.AuthService;
 import com.example.demo.database.MedicalRecordDAO;
+import com.example.demo.database.Page;
 import com.example.demo.database.PatientDAO;
 import com.example.demo.database.UserDAO;
 import com.example.demo.model.Patient;
 import com.example.demo.model.User;
 import com.example.demo.model.UserRole;
+import com.example.demo.service.MedicalRecordService;
 import com.example.demo.utils.NavigationUtil;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
@@ -50,7 +52,6 @@ import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -58,6 +59,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.example.demo.util.RecordLinkApiClient;
@@ -183,6 +186,25 @@ public class MedicalRecordsController {
     private MedicalRecordDAO medicalRecordDAO = new MedicalRecordDAO();
     private PatientDAO patientDAO = PatientDAO.getInstance();
     private UserDAO userDAO = new UserDAO();
+    private MedicalRecordService medicalRecordService = new MedicalRecordService(medicalRecordDAO);
+    
+    // Incremented on every refresh so results of superseded queries are dropped
+    private int recordsRequest;
+    private int statsRequest;
+    
+    private static final int RECORDS_PER_PAGE = 100;
+    
+    // Token for each page reached so far under the current filters; page 0 has none
+    private final List<String> pageTokens = new ArrayList<>();
+    
+    // Set while the pagination control is adjusted from code, so its listener does not reload
+    private boolean updatingPagination;
+    
+    // Searches once typing pauses rather than on every keystroke
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(300));
+    
+    // Name of the patient whose records are shown, set by filterByPatient; null for every patient
+    private String patientFilter;
     
     // Observable lists for patients and doctors
     private ObservableList<PatientItem> patientsList = FXCollections.observableArrayList();
@@ -194,6 +216,9 @@ public class MedicalRecordsController {
     private boolean showMyPatientsOnly = false;
     private int currentDoctorId = -1;
     
+    // When selected, the search box searches symptoms, diagnosis, treatment and notes instead of names and IDs
+    private ToggleButton clinicalSearchButton;
+    
     /**
      * Verify database connection and display status
      * Called during initialization
@@ -321,6 +346,26 @@ public class MedicalRecordsController {
                 filterBox.getChildren().add(showMyPatientsOnlyButton);
             }
         }
+        
+        // Create "Search Clinical Notes" toggle button
+        if (clinicalSearchButton == null) {
+            clinicalSearchButton = new ToggleButton("Search Clinical Notes");
+            clinicalSearchButton.setTooltip(new Tooltip(
+                "Search symptoms, diagnoses, treatments and notes instead of names and record IDs"));
+            clinicalSearchButton.setOnAction(e -> {
+                searchField.setPromptText(clinicalSearchButton.isSelected()
+                    ? "Search symptoms, diagnoses, treatments, notes..."
+                    : "Search medical records...");
+                if (!searchField.getText().trim().isEmpty()) {
+                    refreshRecords();
+                }
+            });
+            
+            if (clearFiltersButton != null && clearFiltersButton.getParent() instanceof HBox) {
+                HBox filterBox = (HBox) clearFiltersButton.getParent();
+                filterBox.getChildren().add(clinicalSearchButton);
+            }
+        }
     }
     
     /**
@@ -342,21 +387,21 @@ public class MedicalRecordsController {
      * Set up search field and filter listeners
      */
     private void setupSearchAndFilters() {
-        // Search field listener
+        // Search field listener; the search runs in the database
+        searchDelay.setOnFinished(e -> refreshRecords());
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            applyFiltersToUI();
+            searchDelay.playFromStart();
         });
         
-        // Filter ComboBox listeners
+        // Filter listeners; the filters are applied in the database
         recordTypeFilter.getSelectionModel().selectedItemProperty().addListener(
-            (observable, oldValue, newValue) -> applyFiltersToUI());
+            (observable, oldValue, newValue) -> refreshRecords());
         
         statusFilter.getSelectionModel().selectedItemProperty().addListener(
-            (observable, oldValue, newValue) -> applyFiltersToUI());
+            (observable, oldValue, newValue) -> refreshRecords());
         
-        // Date filter listener
         dateFilter.valueProperty().addListener(
-            (observable, oldValue, newValue) -> applyFiltersToUI());
+            (observable, oldValue, newValue) -> refreshRecords());
         
         // Set up clear filters button
         clearFiltersButton.setOnAction(e -> handleClearFilters());
@@ -368,10 +413,18 @@ public class MedicalRecordsController {
     @FXML
     private void handleClearFilters() {
         searchField.clear();
+        searchDelay.stop();
+        patientFilter = null;
         recordTypeFilter.getSelectionModel().selectFirst();
         statusFilter.getSelectionModel().selectFirst();
         dateFilter.setValue(null);
         
+        // Back to searching names and record IDs
+        if (clinicalSearchButton != null) {
+            clinicalSearchButton.setSelected(false);
+            searchField.setPromptText("Search medical records...");
+        }
+        
         // Reset "Show My Patients Only" button if it exists
         if (showMyPatientsOnlyButton != null) {
             showMyPatientsOnlyButton.setSelected(false);
@@ -383,65 +436,108 @@ public class MedicalRecordsController {
     }
     
     /**
-     * Refresh records from the database with current filters
+     * Refresh records from the database with current filters, starting again
+     * from the first page. The query runs in the background; the tables update
+     * when it completes.
      */
     private void refreshRecords() {
-            // Clear existing records
-            allRecordsList.clear();
-            for (Map.Entry<String, ObservableList<MedicalRecord>> entry : recordsByType.entrySet()) {
-                entry.getValue().clear();
-            }
-            
+        pageTokens.clear();
+        pageTokens.add(null);
+        setPagination(0, 1);
+        loadRecordsPage(0);
+    }
+    
+    /**
+     * Load one page of records with the current filters, newest first. Search
+     * text matches a record ID or the start of a patient or doctor name; with
+     * "Search Clinical Notes" selected it is searched for in the clinical text
+     * instead and the best matches come first.
+     * 
+     * @param pageIndex The page to load; its token must already be known
+     */
+    private void loadRecordsPage(int pageIndex) {
         // Set up filtering parameters
-        String patientNameFilter = searchField.getText();
+        String searchText = searchField.getText().trim();
         String typeFilter = getSelectedRecordType();
         String statusFilter = getSelectedStatus();
         java.sql.Date dateFilterValue = getSelectedDateSql();
         Integer doctorIdFilter = showMyPatientsOnly ? currentDoctorId : null;
-        
-        System.out.println("Refreshing records with filters:");
-        System.out.println("- Patient name: " + (patientNameFilter == null || patientNameFilter.isEmpty() ? "None" : patientNameFilter));
-        System.out.println("- Type: " + (typeFilter == null ? "None" : typeFilter));
-        System.out.println("- Status: " + (statusFilter == null ? "None" : statusFilter));
-        System.out.println("- Date: " + (dateFilterValue == null ? "None" : dateFilterValue));
-        System.out.println("- Doctor ID: " + (doctorIdFilter == null ? "None" : doctorIdFilter));
-        
-        try {
-            // Load records from database with filtering
-            java.util.List<com.example.demo.model.MedicalRecord> dbRecords = 
-                medicalRecordDAO.getFilteredMedicalRecords(
-                    patientNameFilter, typeFilter, statusFilter, 
-                    dateFilterValue, null, doctorIdFilter, 0, 100);
-            
-            System.out.println("Loaded " + dbRecords.size() + " records from database");
-            
-            // Convert to controller's MedicalRecord format
-            for (com.example.demo.model.MedicalRecord dbRecord : dbRecords) {
-                MedicalRecord controllerRecord = medicalRecordDAO.convertToControllerFormat(dbRecord);
-                allRecordsList.add(controllerRecord);
+        String pageToken = pageTokens.get(pageIndex);
+        
+        int request = ++recordsRequest;
+        CompletableFuture<Page<com.example.demo.model.MedicalRecord>> query;
+        if (searchText.isEmpty()) {
+            query = medicalRecordService.getFilteredMedicalRecordSummaries(patientFilter, typeFilter, statusFilter,
+                    dateFilterValue, null, doctorIdFilter, pageToken, RECORDS_PER_PAGE);
+        } else if (clinicalSearchButton != null && clinicalSearchButton.isSelected()) {
+            query = medicalRecordService.searchMedicalRecordSummaries(searchText, patientFilter, typeFilter,
+                    statusFilter, dateFilterValue, null, doctorIdFilter, pageToken, RECORDS_PER_PAGE);
+        } else {
+            query = medicalRecordService.findMedicalRecordSummaries(searchText, patientFilter, typeFilter,
+                    statusFilter, dateFilterValue, null, doctorIdFilter, pageToken, RECORDS_PER_PAGE);
+        }
+        query
+            .whenCompleteAsync((page, error) -> {
+                // A newer refresh was started while this one was running
+                if (request != recordsRequest) {
+                    return;
+                }
                 
-                // Also add to type-specific collections
-                String type = controllerRecord.getType();
-                if (recordsByType.containsKey(type)) {
-                    recordsByType.get(type).add(controllerRecord);
+                // Clear existing records
+                allRecordsList.clear();
+                for (Map.Entry<String, ObservableList<MedicalRecord>> entry : recordsByType.entrySet()) {
+                    entry.getValue().clear();
                 }
-            }
-            
-            // Apply UI-level filtering (for any additional filtering needs)
-            applyFiltersToUI();
-            
-            // Update stats and counts
-            updateTotalRecordsLabel();
-            updateStatsDashboard();
-            
-        } catch (Exception e) {
-            System.err.println("Error refreshing records: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Fallback to sample data in case of database error
-            if (allRecordsList.isEmpty()) {
-            loadSampleRecords();
-            }
+                
+                if (error != null) {
+                    System.err.println("Error refreshing records: " + error.getMessage());
+                    error.printStackTrace();
+                    
+                    // Fallback to sample data in case of database error
+                    loadSampleRecords();
+                    return;
+                }
+                
+                // Remember how to reach the following page
+                if (page.hasNextPage() && pageTokens.size() == pageIndex + 1) {
+                    pageTokens.add(page.getNextPageToken());
+                }
+                setPagination(pageIndex, pageTokens.size());
+                
+                // Convert to controller's MedicalRecord format
+                for (com.example.demo.model.MedicalRecord dbRecord : page.getItems()) {
+                    MedicalRecord controllerRecord = medicalRecordDAO.convertToControllerSummary(dbRecord);
+                    allRecordsList.add(controllerRecord);
+                    
+                    // Also add to type-specific collections
+                    String type = controllerRecord.getType();
+                    if (recordsByType.containsKey(type)) {
+                        recordsByType.get(type).add(controllerRecord);
+                    }
+                }
+                
+                // Apply UI-level filtering (for any additional filtering needs)
+                applyFiltersToUI();
+                
+                // Update stats and counts
+                updateTotalRecordsLabel();
+                updateStatsDashboard();
+            }, Platform::runLater);
+    }
+    
+    /**
+     * Update the pagination control without triggering a page load.
+     */
+    private void setPagination(int pageIndex, int pageCount) {
+        if (recordsPagination == null) {
+            return;
+        }
+        updatingPagination = true;
+        try {
+            recordsPagination.setPageCount(pageCount);
+            recordsPagination.setCurrentPageIndex(pageIndex);
+        } finally {
+            updatingPagination = false;
         }
     }
     
@@ -489,91 +585,11 @@ public class MedicalRecordsController {
     }
     
     /**
-     * Apply filters to the UI-level filtered list
-     * This is for additional filtering beyond what the database query provides
+     * Show the loaded records. The search text and filters are applied in the
+     * database, so the loaded page already holds only matching records.
      */
     private void applyFiltersToUI() {
-        String searchText = searchField.getText().toLowerCase();
-        String selectedType = recordTypeFilter.getValue();
-        String selectedStatus = statusFilter.getValue();
-        LocalDate selectedDate = dateFilter.getValue();
-        
-        System.out.println("Applying UI filters:");
-        System.out.println("- Search text: " + (searchText.isEmpty() ? "None" : searchText));
-        System.out.println("- Type filter: " + selectedType);
-        System.out.println("- Status filter: " + selectedStatus);
-        System.out.println("- Date filter: " + selectedDate);
-        System.out.println("- Show my patients only: " + showMyPatientsOnly);
-        
-        int beforeFilterCount = 0;
-        for (MedicalRecord record : allRecordsList) {
-            beforeFilterCount++;
-        }
-        
-        filteredRecords.setPredicate(record -> {
-            // Search text filter
-            boolean matchesSearch = searchText == null || searchText.isEmpty() || 
-                record.getPatient().toLowerCase().contains(searchText) ||
-                record.getDoctor().toLowerCase().contains(searchText) ||
-                record.getType().toLowerCase().contains(searchText) ||
-                record.getStatus().toLowerCase().contains(searchText) ||
-                (record.getNotes() != null && record.getNotes().toLowerCase().contains(searchText)) ||
-                record.getId().toLowerCase().contains(searchText);
-            
-            // Type filter
-            boolean matchesType = true;
-            if (selectedType != null && !selectedType.equals("All Records")) {
-                if (selectedType.equals("Recent Records")) {
-                    // Recent records are within last 7 days
-                    try {
-                        LocalDate recordDate = LocalDate.parse(record.getDate(), DATE_FORMATTER);
-                        matchesType = ChronoUnit.DAYS.between(recordDate, LocalDate.now()) <= 7;
-                    } catch (Exception e) {
-                        System.err.println("Error parsing date for recent records: " + record.getDate());
-                        matchesType = false;
-                    }
-                } else {
-                    matchesType = record.getType().equals(selectedType);
-                }
-            }
-            
-            // Status filter
-            boolean matchesStatus = selectedStatus == null || 
-                selectedStatus.equals("All Statuses") || 
-                record.getStatus().equals(selectedStatus);
-            
-            // Date filter
-            boolean matchesDate = selectedDate == null;
-            if (!matchesDate && record.getDate() != null) {
-                try {
-                    LocalDate recordDate = LocalDate.parse(record.getDate(), DATE_FORMATTER);
-                    matchesDate = recordDate.equals(selectedDate);
-                } catch (Exception e) {
-                    System.err.println("Error parsing date: " + record.getDate());
-                    matchesDate = false;
-                }
-            }
-            
-            boolean result = matchesSearch && matchesType && matchesStatus && matchesDate;
-            
-            // Debug any filtering issues for specific records - useful for troubleshooting
-            if (!result && record.getId().equals("MR-1")) {
-                System.out.println("Debug filter for " + record.getId() + " - " + record.getPatient() + ":");
-                System.out.println("  Search match: " + matchesSearch);
-                System.out.println("  Type match: " + matchesType + " (Record type: " + record.getType() + ", Filter: " + selectedType + ")");
-                System.out.println("  Status match: " + matchesStatus + " (Record status: " + record.getStatus() + ", Filter: " + selectedStatus + ")");
-                System.out.println("  Date match: " + matchesDate + " (Record date: " + record.getDate() + ", Filter: " + selectedDate + ")");
-            }
-            
-            return result;
-        });
-        
-        int afterFilterCount = 0;
-        for (MedicalRecord record : filteredRecords) {
-            afterFilterCount++;
-        }
-        
-        System.out.println("Filter results: " + afterFilterCount + " of " + beforeFilterCount + " records match filters");
+        filteredRecords.setPredicate(null);
         
         // Update labels and stats
         updateTotalRecordsLabel();
@@ -637,6 +653,7 @@ public class MedicalRecordsController {
                         setText(null);
                         setGraphic(null);
                         setStyle("");
+                        setContextMenu(null);
                     } else {
                         // Create label with status badge style
                         Label statusLabel = new Label(item);
@@ -662,6 +679,7 @@ public class MedicalRecordsController {
                         setGraphic(statusLabel);
                         setText(null);
                         setStyle("");
+                        setContextMenu(createStatusMenu(getTableRow().getItem()));
                     }
                 }
             };
@@ -870,24 +888,24 @@ public class MedicalRecordsController {
      * Update the stats dashboard with current counts
      */
     private void updateStatsDashboard() {
-        // Total records
-        totalRecordsCount.setText(String.valueOf(allRecordsList.size()));
-        
-        // Count pending records
-        long pendingCount = allRecordsList.stream()
-            .filter(record -> "Pending".equals(record.getStatus()))
-            .count();
-        pendingRecordsCount.setText(String.valueOf(pendingCount));
-        
-        // Count recent records (last 7 days)
+        // Totals come from the maintained counters, not from the loaded page
         LocalDate oneWeekAgo = LocalDate.now().minusDays(7);
-        long recentCount = allRecordsList.stream()
-            .filter(record -> {
-                LocalDate recordDate = LocalDate.parse(record.getDate());
-                return recordDate.isAfter(oneWeekAgo) || recordDate.isEqual(oneWeekAgo);
-            })
-            .count();
-        recentRecordsCount.setText(String.valueOf(recentCount));
+        int request = ++statsRequest;
+        medicalRecordService.getRecordStats(oneWeekAgo)
+            .whenCompleteAsync((stats, error) -> {
+                if (request != statsRequest) {
+                    return;
+                }
+                if (error != null) {
+                    System.err.println("Error loading record stats: " + error.getMessage());
+                    return;
+                }
+                
+                totalRecordsCount.setText(String.valueOf(stats.getTotal()));
+                pendingRecordsCount.setText(String.valueOf(stats.getCountByStatus("Pending")));
+                // Records from the last 7 days
+                recentRecordsCount.setText(String.valueOf(stats.getCountFromDay(oneWeekAgo)));
+            }, Platform::runLater);
     }
     
     /**
@@ -1075,15 +1093,15 @@ public class MedicalRecordsController {
      */
     private void handleViewRecord(MedicalRecord record) {
         // Show a detailed view of the record
-        showRecordDialog(record, "View Medical Record");
+        withFullRecords(List.of(record), records -> showRecordDialog(records.get(0), "View Medical Record"));
     }
     
     /**
      * Handle editing a specific medical record
      */
     private void handleEditRecord(MedicalRecord record) {
-        // Show an edit dialog for the record
-        showRecordDialog(record, "Edit Medical Record");
+        // Show an edit dialog for the record; saving a summary would blank its detail fields
+        withFullRecords(List.of(record), records -> showRecordDialog(records.get(0), "Edit Medical Record"));
     }
     
     /**
@@ -1091,7 +1109,50 @@ public class MedicalRecordsController {
      */
     private void handleExportSingleRecord(MedicalRecord record) {
         // Use the new exportRecord method that includes web link functionality
-        exportRecord(record);
+        withFullRecords(List.of(record), records -> exportRecord(records.get(0)));
+    }
+    
+    /**
+     * Run an action with the full versions of the given records. Rows in the
+     * records table are summaries, so their details are loaded in the background
+     * first, in one query.
+     * 
+     * @param records The records to act on
+     * @param action Receives the full records, in the same order, on the JavaFX thread
+     */
+    private void withFullRecords(List<MedicalRecord> records, Consumer<List<MedicalRecord>> action) {
+        List<Integer> summaryIds = new ArrayList<>();
+        for (MedicalRecord record : records) {
+            if (record.isSummary()) {
+                summaryIds.add(Integer.parseInt(record.getId().replace("MR-", "")));
+            }
+        }
+        
+        if (summaryIds.isEmpty()) {
+            action.accept(records);
+            return;
+        }
+        
+        medicalRecordService.getMedicalRecordsByIds(summaryIds)
+            .whenCompleteAsync((dbRecords, error) -> {
+                if (error != null) {
+                    System.err.println("Error loading medical record details: " + error.getMessage());
+                    showErrorMessage("Error", "Could not load the medical record details.");
+                    return;
+                }
+                
+                Map<String, MedicalRecord> fullRecords = new HashMap<>();
+                for (com.example.demo.model.MedicalRecord dbRecord : dbRecords) {
+                    MedicalRecord fullRecord = medicalRecordDAO.convertToControllerFormat(dbRecord);
+                    fullRecords.put(fullRecord.getId(), fullRecord);
+                }
+                
+                List<MedicalRecord> result = new ArrayList<>();
+                for (MedicalRecord record : records) {
+                    result.add(fullRecords.getOrDefault(record.getId(), record));
+                }
+                action.accept(result);
+            }, Platform::runLater);
     }
     
     /**
@@ -1670,7 +1731,10 @@ public class MedicalRecordsController {
             boolean saveSuccess = false;
             try {
                 // Convert UI record to database model
-                com.example.demo.model.MedicalRecord dbRecord = medicalRecordDAO.convertToDbFormat(newRecord);
+                // An edit sends only the changed fields, checked against the version that was loaded
+                com.example.demo.model.MedicalRecord dbRecord = record == null
+                        ? medicalRecordDAO.convertToDbFormat(newRecord)
+                        : medicalRecordDAO.convertToDbChanges(record, newRecord);
                 
                 System.out.println("Saving medical record to database:");
                 System.out.println("- Record ID: " + dbRecord.getRecordId());
@@ -1715,10 +1779,12 @@ public class MedicalRecordsController {
                     // This is an update to an existing record
                     saveSuccess = medicalRecordDAO.updateMedicalRecord(dbRecord);
                     System.out.println("Record updated in database: " + saveSuccess);
+                    newRecord.setVersion(dbRecord.getVersion());
                 }
                 
                 if (!saveSuccess) {
-                    showErrorAlert("Database Error", "Failed to save the medical record to the database.");
+                    showErrorAlert("Database Error", "Failed to save the medical record to the database. " +
+                            "If someone else changed it in the meantime, reopen it and try again.");
                     return; // Don't update UI if database save failed
                 }
             } catch (Exception e) {
@@ -1872,6 +1938,8 @@ public class MedicalRecordsController {
         private Date visitDate;
         private Date followUpDate;
         private String recordType;
+        private boolean summary;
+        private int version;
         
         public MedicalRecord(String id, String patient, String date, String type, String doctor, String status) {
             this(id, patient, date, type, doctor, status, "", "", "", "", "", "");
@@ -1920,6 +1988,33 @@ public class MedicalRecordsController {
         public Date getFollowUpDate() { return followUpDate; }
         public String getRecordType() { return recordType; }
         
+        // True when only the list columns were loaded and the detail fields are empty
+        public boolean isSummary() { return summary; }
+        public void setSummary(boolean summary) { this.summary = summary; }
+        
+        // The stored version this record was loaded at; saves fail if it has moved on
+        public int getVersion() { return version; }
+        public void setVersion(int version) { this.version = version; }
+        
+        /**
+         * @return A copy of this record with another status, as stored at the given version
+         */
+        public MedicalRecord withStatus(String newStatus, int newVersion) {
+            MedicalRecord copy = new MedicalRecord(id, patient, date, type, doctor, newStatus,
+                    notes, diagnosisCodes, attachments, symptoms, diagnosis, treatment);
+            copy.patientId = patientId;
+            copy.patientName = patientName;
+            copy.doctorId = doctorId;
+            copy.doctorName = doctorName;
+            copy.visitType = visitType;
+            copy.visitDate = visitDate;
+            copy.followUpDate = followUpDate;
+            copy.recordType = recordType;
+            copy.summary = summary;
+            copy.version = newVersion;
+            return copy;
+        }
+        
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -1934,6 +2029,49 @@ public class MedicalRecordsController {
         }
     }
     
+    /**
+     * Build the right-click menu of a status cell, for changing the status
+     * without opening the record
+     */
+    private ContextMenu createStatusMenu(MedicalRecord record) {
+        if (record == null) {
+            return null;
+        }
+        ContextMenu menu = new ContextMenu();
+        for (String status : List.of("Completed", "Pending", "Expired", "Cancelled")) {
+            MenuItem item = new MenuItem("Mark as " + status);
+            item.setDisable(status.equals(record.getStatus()));
+            item.setOnAction(e -> handleChangeStatus(record, status));
+            menu.getItems().add(item);
+        }
+        return menu;
+    }
+    
+    /**
+     * Change the status of a record. Only the status and version are sent,
+     * so this works on list summaries without loading the full record.
+     */
+    private void handleChangeStatus(MedicalRecord record, String status) {
+        int recordId;
+        try {
+            recordId = Integer.parseInt(record.getId().replace("MR-", ""));
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot change status of record with invalid ID: " + record.getId());
+            return;
+        }
+        
+        medicalRecordService.updateMedicalRecordStatus(recordId, record.getVersion(), status)
+            .whenCompleteAsync((updated, error) -> {
+                if (error != null || !updated) {
+                    showErrorAlert("Status Not Changed", "The record could not be updated. " +
+                            "It may have been changed by someone else; the list has been refreshed.");
+                    refreshRecords();
+                    return;
+                }
+                updateRecord(record, record.withStatus(status, record.getVersion() + 1));
+            }, Platform::runLater);
+    }
+    
     /**
      * Handle export records functionality (for multiple records)
      */
@@ -2105,20 +2243,20 @@ public class MedicalRecordsController {
             }
             
             File file = fileChooser.showSaveDialog(dialog.getOwner());
-            if (file != null) {
-                boolean success = false;
-                if (csvOption.isSelected()) {
-                    success = exportToCsv(file, allRecordsList, includeHeadersOption.isSelected(), includeMetadataOption.isSelected(), includeNotesOption.isSelected());
-                } else {
-                    success = exportToPdf(file, allRecordsList, includeHeadersOption.isSelected(), includeMetadataOption.isSelected(), includeNotesOption.isSelected());
-                }
-                
-                if (success) {
-                    showSuccessMessage("Export Complete", "Records Exported", 
-                        allRecordsList.size() + " records have been exported to " + file.getName());
-                } else {
-                    showErrorMessage("Export Failed", "Failed to export records to " + file.getName());
-                }
+            if (file != null && csvOption.isSelected()) {
+                streamRecordsToCsv(file, currentFilterOption.isSelected(), typeFilterCombo.getValue(),
+                        includeHeadersOption.isSelected(), includeMetadataOption.isSelected(), includeNotesOption.isSelected());
+            } else if (file != null) {
+                withFullRecords(new ArrayList<>(allRecordsList), records -> {
+                    boolean success = exportToPdf(file, records, includeHeadersOption.isSelected(), includeMetadataOption.isSelected(), includeNotesOption.isSelected());
+                    
+                    if (success) {
+                        showSuccessMessage("Export Complete", "Records Exported", 
+                            records.size() + " records have been exported to " + file.getName());
+                    } else {
+                        showErrorMessage("Export Failed", "Failed to export records to " + file.getName());
+                    }
+                });
             }
         });
         
@@ -2163,14 +2301,13 @@ public class MedicalRecordsController {
             
             // Get export options
             boolean isCsvFormat = csvOption.isSelected();
-            boolean useCurrentFilters = currentFilterOption.isSelected();
             String typeFilter = typeFilterCombo.getValue();
             boolean includeHeaders = includeHeadersOption.isSelected();
             boolean includeMetadata = includeMetadataOption.isSelected();
             boolean includeNotes = includeNotesOption.isSelected();
             
             // Get records to export based on filters
-            List<MedicalRecord> recordsToExport = getRecordsForExport(useCurrentFilters, typeFilter);
+            List<MedicalRecord> recordsToExport = getRecordsForExport(typeFilter);
             
             if (recordsToExport.isEmpty()) {
                 progressIndicator.setVisible(false);
@@ -2178,12 +2315,14 @@ public class MedicalRecordsController {
                 return;
             }
             
-            // Show preview dialog
-            showPreviewDialog(recordsToExport, isCsvFormat, includeHeaders, includeMetadata, includeNotes);
-            
-            // Hide progress indicator
-            progressIndicator.setVisible(false);
-            statusLabel.setVisible(false);
+            // Show preview dialog once the full records are loaded
+            withFullRecords(recordsToExport, records -> {
+                // Hide progress indicator
+                progressIndicator.setVisible(false);
+                statusLabel.setVisible(false);
+                
+                showPreviewDialog(records, isCsvFormat, includeHeaders, includeMetadata, includeNotes);
+            });
         });
         
         // Create scene and set it on the dialog
@@ -2196,91 +2335,15 @@ public class MedicalRecordsController {
     }
     
     /**
-     * Get records for export based on current filters
+     * Get the loaded records for export. The search text and filters are
+     * applied in the database, so these already match the current filters.
      * 
-     * @param useCurrentFilters Whether to apply current UI filters
      * @param typeFilter Optional additional type filter
      * @return List of records for export
      */
-    private List<MedicalRecord> getRecordsForExport(boolean useCurrentFilters, String typeFilter) {
-        // Start with all records
+    private List<MedicalRecord> getRecordsForExport(String typeFilter) {
         List<MedicalRecord> records = new ArrayList<>(allRecordsList);
         
-        // Apply current filters if requested
-        if (useCurrentFilters) {
-            String searchText = searchField.getText().toLowerCase();
-            String selectedType = recordTypeFilter.getValue();
-            String selectedStatus = statusFilter.getValue();
-            LocalDate selectedDate = dateFilter.getValue();
-            
-            // Apply search filter
-            if (searchText != null && !searchText.isEmpty()) {
-                records = records.stream()
-                    .filter(record -> 
-                        record.getPatient().toLowerCase().contains(searchText) ||
-                        record.getDoctor().toLowerCase().contains(searchText) ||
-                        record.getType().toLowerCase().contains(searchText) ||
-                        record.getStatus().toLowerCase().contains(searchText) ||
-                        (record.getNotes() != null && record.getNotes().toLowerCase().contains(searchText)) ||
-                        record.getId().toLowerCase().contains(searchText))
-                    .collect(Collectors.toList());
-            }
-            
-            // Apply type filter
-            if (selectedType != null && !selectedType.equals("All Records")) {
-                if (selectedType.equals("Recent Records")) {
-                    // Handle recent records (last 7 days)
-                    final LocalDate now = LocalDate.now();
-                records = records.stream()
-                        .filter(record -> {
-                            try {
-                                LocalDate recordDate = LocalDate.parse(record.getDate(), DATE_FORMATTER);
-                                return ChronoUnit.DAYS.between(recordDate, now) <= 7;
-                            } catch (Exception e) {
-                                return false;
-                            }
-                        })
-                        .collect(Collectors.toList());
-                } else {
-                    // Normal type filter
-                    records = records.stream()
-                        .filter(record -> selectedType.equals(record.getType()))
-                    .collect(Collectors.toList());
-            }
-        }
-        
-            // Apply status filter
-            if (selectedStatus != null && !selectedStatus.equals("All Statuses")) {
-                records = records.stream()
-                    .filter(record -> selectedStatus.equals(record.getStatus()))
-                    .collect(Collectors.toList());
-            }
-            
-            // Apply date filter
-            if (selectedDate != null) {
-                records = records.stream()
-                    .filter(record -> {
-                        try {
-                            LocalDate recordDate = LocalDate.parse(record.getDate(), DATE_FORMATTER);
-                            return recordDate.equals(selectedDate);
-                        } catch (Exception e) {
-                            return false;
-                        }
-                    })
-                    .collect(Collectors.toList());
-            }
-            
-            // Apply doctor filter if "Show My Patients Only" is enabled
-            if (showMyPatientsOnly && currentDoctorId > 0) {
-                records = records.stream()
-                    .filter(record -> {
-                        Integer recordDoctorId = record.getDoctorId();
-                        return recordDoctorId != null && recordDoctorId == currentDoctorId;
-                    })
-                    .collect(Collectors.toList());
-            }
-        }
-        
         // Apply additional type filter if provided and not "All Records"
         if (typeFilter != null && !typeFilter.equals("All Records")) {
             records = records.stream()
@@ -2297,56 +2360,139 @@ public class MedicalRecordsController {
     private boolean exportToCsv(File file, List<MedicalRecord> records, boolean includeHeaders, 
                                boolean includeMetadata, boolean includeNotes) {
         try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
-            // Add metadata if requested
-            if (includeMetadata) {
-                writer.println("# Medical Records Export");
-                writer.println("# Date: " + LocalDate.now().format(DATE_FORMATTER));
-                writer.println("# Total Records: " + records.size());
-                writer.println("# ");
-                writer.println();
-            }
-            
-            // Add headers if requested
-            if (includeHeaders) {
-                StringBuilder header = new StringBuilder();
-                header.append("Record ID,Patient,Date,Type,Doctor,Status");
-                
-                if (includeNotes) {
-                    header.append(",Notes,Diagnosis Codes,Attachments");
-                }
-                
-                writer.println(header.toString());
-            }
+            writeCsvPreamble(writer, records.size(), includeHeaders, includeMetadata, includeNotes);
             
             // Add record data
             for (MedicalRecord record : records) {
-                StringBuilder line = new StringBuilder();
-                
-                // Add basic fields
-                line.append(csvEscape(record.getId())).append(",");
-                line.append(csvEscape(record.getPatient())).append(",");
-                line.append(csvEscape(record.getDate())).append(",");
-                line.append(csvEscape(record.getType())).append(",");
-                line.append(csvEscape(record.getDoctor())).append(",");
-                line.append(csvEscape(record.getStatus()));
-                
-                // Add optional fields if requested
-                if (includeNotes) {
-                    line.append(",").append(csvEscape(record.getNotes()));
-                    line.append(",").append(csvEscape(record.getDiagnosisCodes()));
-                    line.append(",").append(csvEscape(record.getAttachments()));
-                }
-                
-                writer.println(line.toString());
+                writer.println(csvLine(record, includeNotes));
             }
             
-            return true;
+            return !writer.checkError();
         } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
     }
     
+    /**
+     * Write the CSV metadata and header lines
+     * 
+     * @param totalRecords The number of records that follow, or -1 if not known in advance
+     */
+    private void writeCsvPreamble(PrintWriter writer, long totalRecords, boolean includeHeaders,
+                                  boolean includeMetadata, boolean includeNotes) {
+        // Add metadata if requested
+        if (includeMetadata) {
+            writer.println("# Medical Records Export");
+            writer.println("# Date: " + LocalDate.now().format(DATE_FORMATTER));
+            if (totalRecords >= 0) {
+                writer.println("# Total Records: " + totalRecords);
+            }
+            writer.println("# ");
+            writer.println();
+        }
+        
+        // Add headers if requested
+        if (includeHeaders) {
+            StringBuilder header = new StringBuilder();
+            header.append("Record ID,Patient,Date,Type,Doctor,Status");
+            
+            if (includeNotes) {
+                header.append(",Notes,Diagnosis Codes,Attachments");
+            }
+            
+            writer.println(header.toString());
+        }
+    }
+    
+    /**
+     * Format one record as a CSV line
+     */
+    private String csvLine(MedicalRecord record, boolean includeNotes) {
+        StringBuilder line = new StringBuilder();
+        
+        // Add basic fields
+        line.append(csvEscape(record.getId())).append(",");
+        line.append(csvEscape(record.getPatient())).append(",");
+        line.append(csvEscape(record.getDate())).append(",");
+        line.append(csvEscape(record.getType())).append(",");
+        line.append(csvEscape(record.getDoctor())).append(",");
+        line.append(csvEscape(record.getStatus()));
+        
+        // Add optional fields if requested
+        if (includeNotes) {
+            line.append(",").append(csvEscape(record.getNotes()));
+            line.append(",").append(csvEscape(record.getDiagnosisCodes()));
+            line.append(",").append(csvEscape(record.getAttachments()));
+        }
+        
+        return line.toString();
+    }
+    
+    /**
+     * Stream every record matching the export filters from the database into
+     * a CSV file. Rows are written as they are read, so the whole table can be
+     * exported without loading it into memory.
+     */
+    private void streamRecordsToCsv(File file, boolean useCurrentFilters, String typeFilter,
+                                    boolean includeHeaders, boolean includeMetadata, boolean includeNotes) {
+        if (useCurrentFilters && !searchField.getText().trim().isEmpty()) {
+            // A search has no end to stream to, so export the matches loaded for it
+            withFullRecords(getRecordsForExport(typeFilter), records -> {
+                if (exportToCsv(file, records, includeHeaders, includeMetadata, includeNotes)) {
+                    showSuccessMessage("Export Complete", "Records Exported", 
+                        records.size() + " records have been exported to " + file.getName());
+                } else {
+                    showErrorMessage("Export Failed", "Failed to export records to " + file.getName());
+                }
+            });
+            return;
+        }
+        
+        String patientNameFilter = null;
+        String recordType = null;
+        String status = null;
+        java.sql.Date date = null;
+        Integer doctorIdFilter = null;
+        if (useCurrentFilters) {
+            patientNameFilter = patientFilter;
+            recordType = getSelectedRecordType();
+            status = getSelectedStatus();
+            date = getSelectedDateSql();
+            doctorIdFilter = showMyPatientsOnly ? currentDoctorId : null;
+            
+            // The type chosen in the export dialog narrows the current filters
+            if (typeFilter != null && !typeFilter.equals("All Types")) {
+                recordType = typeFilter;
+            }
+        }
+        
+        PrintWriter writer;
+        try {
+            writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            showErrorMessage("Export Failed", "Failed to export records to " + file.getName());
+            return;
+        }
+        writeCsvPreamble(writer, -1, includeHeaders, includeMetadata, includeNotes);
+        
+        medicalRecordService.forEachMedicalRecord(patientNameFilter, recordType, status, date, null, doctorIdFilter,
+                dbRecord -> writer.println(csvLine(medicalRecordDAO.convertToControllerFormat(dbRecord), includeNotes)))
+            .whenCompleteAsync((count, error) -> {
+                writer.close();
+                if (error != null || count < 0 || writer.checkError()) {
+                    if (error != null) {
+                        error.printStackTrace();
+                    }
+                    showErrorMessage("Export Failed", "Failed to export records to " + file.getName());
+                } else {
+                    showSuccessMessage("Export Complete", "Records Exported", 
+                        count + " records have been exported to " + file.getName());
+                }
+            }, Platform::runLater);
+    }
+    
     /**
      * Escape a string for CSV output
      */
@@ -3374,11 +3520,13 @@ public class MedicalRecordsController {
      */
     private void initializePagination() {
         // Set up pagination
-        recordsPagination.setPageCount(1);
+        // Pages are fetched by continuation token, so only pages already reached
+        // plus the next one are offered; each costs the same as the first
         recordsPagination.currentPageIndexProperty().addListener((obs, oldIndex, newIndex) -> {
-            // Handle pagination changes here
-            System.out.println("Page changed to: " + newIndex);
-            // In a real implementation, this would load a new page of records
+            int pageIndex = newIndex.intValue();
+            if (!updatingPagination && pageIndex < pageTokens.size()) {
+                loadRecordsPage(pageIndex);
+            }
         });
     }
     
@@ -3402,9 +3550,6 @@ public class MedicalRecordsController {
             return;
         }
         
-        // Set patient name in search field to filter records
-        searchField.setText(patient.getFullName());
-        
         // Apply filters to show only this patient's records
         Platform.runLater(() -> {
             // Focus on the patient's records
@@ -3423,19 +3568,10 @@ public class MedicalRecordsController {
      * @param patient The patient to filter for
      */
     private void filterRecordsByPatient(Patient patient) {
-        // This implementation assumes your records filtering logic is elsewhere
-        // If needed, call your existing filtering methods here
-        
-        // For example, you might have a method like:
-        // applyFilters(patient.getPatientId(), null, null, null, null);
-        
-        // For demonstration, we'll just use the search field filter which should be
-        // handled by your existing filtering logic
-        
-        // Ensure your search field handler is triggered
-        if (searchField.getOnKeyPressed() != null) {
-            // Simulate a search action if there's a handler attached
-            searchField.fireEvent(new ActionEvent());
-        }
+        // The patient is filtered on by full name, leaving the search box free
+        patientFilter = patient.getFullName();
+        searchField.clear();
+        searchDelay.stop();
+        refreshRecords();
     }
 } 
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.demo.controller;
 
+import com.example.demo.database.DuplicateMatch;
 import com.example.demo.database.PatientDAO;
 import com.example.demo.model.Patient;
 
@@ -16,6 +17,8 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 /**
@@ -193,6 +196,11 @@ public class PatientFormController {
             Patient newPatient = createPatientFromForm();
             System.out.println("Created patient object: " + newPatient);
             
+            if (mode == FormMode.ADD && !confirmNotDuplicate(newPatient)) {
+                System.out.println("Registration cancelled: possible duplicate patient");
+                return;
+            }
+            
             boolean success;
             
             if (mode == FormMode.ADD) {
@@ -340,6 +348,34 @@ public class PatientFormController {
         return true;
     }
     
+    /**
+     * Warn when a new patient looks like someone who is already registered.
+     * @param newPatient The patient entered on the form
+     * @return true to go ahead with the registration
+     */
+    private boolean confirmNotDuplicate(Patient newPatient) {
+        List<DuplicateMatch> matches = patientDAO.findPossibleDuplicates(newPatient);
+        if (matches.isEmpty()) {
+            return true;
+        }
+        
+        StringBuilder content = new StringBuilder("These registered patients look similar:\n\n");
+        for (DuplicateMatch match : matches) {
+            Patient existing = match.getPatient();
+            content.append(String.format("%s, born %s, phone %s (%d%% match)%n", existing.getFullName(),
+                    existing.getDateOfBirth(), existing.getPhoneNumber(), Math.round(match.getScore() * 100)));
+        }
+        content.append("\nRegister the new patient anyway?");
+        
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Possible Duplicate");
+        alert.setHeaderText("This patient may already be registered");
+        alert.setContentText(content.toString());
+        
+        Optional<ButtonType> result = alert.showAndWait();
+        return result.isPresent() && result.get() == ButtonType.OK;
+    }
+    
     /**
      * Add a new patient.
      */
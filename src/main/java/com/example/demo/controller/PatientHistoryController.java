@@ -3,6 +3,8 @@ package com.example.demo.controller;
 import com.example.demo.model.*;
 import com.example.demo.database.*;
 import com.example.demo.auth.AuthService;
+import com.example.demo.service.MedicalRecordService;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -43,11 +45,13 @@ public class PatientHistoryController implements Initializable {
     private final MedicationDAO medicationDAO = new MedicationDAO();
     private final LabResultDAO labResultDAO = new LabResultDAO();
     private final NoteDAO noteDAO = new NoteDAO();
+    private final MedicalRecordService medicalRecordService = new MedicalRecordService(medicalRecordDAO);
     private final AuthService authService = AuthService.getInstance();
     
     // Currently selected patient and tab
     private Patient selectedPatient;
     private int currentTab = 0; // 0 = Medical Records, 1 = Medications, 2 = Lab Results, 3 = Notes
+    private int medicalRecordsRequest; // Drops results of superseded record loads
     
     // Flag to indicate if we're in reports mode
     private boolean reportsMode = false;
@@ -381,12 +385,24 @@ public class PatientHistoryController implements Initializable {
     }
     
     /**
-     * Refresh the medical records tab
+     * Refresh the medical records tab.
+     * The records load in the background and fill the table when they arrive.
      */
     private void refreshMedicalRecordsTab() {
+        int request = ++medicalRecordsRequest;
         if (selectedPatient != null) {
-            List<MedicalRecord> records = medicalRecordDAO.getMedicalRecordsByPatientId(selectedPatient.getPatientId());
-            medicalRecordsTable.setItems(FXCollections.observableArrayList(records));
+            medicalRecordService.getMedicalRecordsByPatientId(selectedPatient.getPatientId())
+                .whenCompleteAsync((records, error) -> {
+                    // Another patient was selected, or the tab refreshed again, while loading
+                    if (request != medicalRecordsRequest) {
+                        return;
+                    }
+                    if (error != null) {
+                        System.err.println("Error loading medical records: " + error.getMessage());
+                        return;
+                    }
+                    medicalRecordsTable.setItems(FXCollections.observableArrayList(records));
+                }, Platform::runLater);
         } else {
             medicalRecordsTable.getItems().clear();
         }
@@ -1,7 +1,10 @@
 package com.example.demo.controller;
 
 import com.example.demo.database.PatientDAO;
+import com.example.demo.database.PatientQuery;
 import com.example.demo.model.Patient;
+import com.example.demo.service.PatientService;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -21,6 +24,7 @@ import javafx.util.Callback;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -47,8 +51,16 @@ public class PatientListController {
     @FXML private Pagination patientsPagination;
     
     private final PatientDAO patientDAO = PatientDAO.getInstance();
+    private final PatientService patientService = new PatientService(patientDAO);
+    // Incremented on every refresh so results of superseded queries are dropped
+    private int patientsRequest;
     private ObservableList<Patient> patientsList = FXCollections.observableArrayList();
+    // Tokens of the pages reached so far, plus the next page; null for the first page
+    private final List<String> pageTokens = new ArrayList<>();
+    // Set while the pagination control is updated from code, so it doesn't load a page
+    private boolean updatingPagination;
     private static final int ITEMS_PER_PAGE = 10;
+    private static final DateTimeFormatter DISPLAY_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private String currentSearchTerm = "";
     private String currentFilterValue = "All";
     private String currentSortValue = "Name (A-Z)";
@@ -96,7 +108,7 @@ public class PatientListController {
             // For now, displaying registration date instead
             LocalDate date = cellData.getValue().getRegistrationDate();
             if (date != null) {
-                return new SimpleStringProperty(date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+                return new SimpleStringProperty(date.format(DISPLAY_DATE_FORMATTER));
             }
             return new SimpleStringProperty("N/A");
         });
@@ -162,32 +174,30 @@ public class PatientListController {
         });
         
         // Set up pagination
+        // Pages are fetched by continuation token, so only pages already reached
+        // plus the next one are offered; each costs the same as the first
         patientsPagination.setPageFactory(this::createPage);
+        patientsPagination.currentPageIndexProperty().addListener((obs, oldIndex, newIndex) -> {
+            int pageIndex = newIndex.intValue();
+            if (!updatingPagination && pageIndex < pageTokens.size()) {
+                loadPatientsPage(pageIndex);
+            }
+        });
         
         // Load initial data
         refreshPatientList();
     }
     
     /**
-     * Creates a page for the pagination control
+     * Creates a page for the pagination control; the table holds the loaded page
      */
     private TableView<Patient> createPage(int pageIndex) {
-        int fromIndex = pageIndex * ITEMS_PER_PAGE;
-        int toIndex = Math.min(fromIndex + ITEMS_PER_PAGE, patientsList.size());
-        
-        if (fromIndex >= patientsList.size()) {
-            return new TableView<>();
-        }
-        
-        patientsTable.setItems(FXCollections.observableArrayList(
-            patientsList.subList(fromIndex, toIndex)
-        ));
-        
         return patientsTable;
     }
     
     /**
-     * Refreshes the patient list based on current search, filter, and sort settings
+     * Refreshes the patient list based on current search, filter, and sort settings,
+     * starting again from the first page.
      */
     private void refreshPatientList() {
         // Get current values
@@ -195,56 +205,70 @@ public class PatientListController {
         currentFilterValue = filterComboBox.getValue();
         currentSortValue = sortComboBox.getValue();
         
-        // Load patients
-        List<Patient> patients;
-        
-        if (!currentSearchTerm.isEmpty()) {
-            // Search based on the search term
-            patients = patientDAO.searchPatients(currentSearchTerm);
-        } else {
-            // Get all patients
-            patients = patientDAO.getAllPatients();
-        }
-        
-        // Filter patients
-        if (!"All".equals(currentFilterValue)) {
-            boolean activeFilter = "Active".equals(currentFilterValue);
-            patients.removeIf(patient -> patient.isActive() != activeFilter);
+        pageTokens.clear();
+        pageTokens.add(null);
+        setPagination(0, 1);
+        loadPatientsPage(0);
+    }
+    
+    /**
+     * Load one page of patients. Sorting, filtering and counting run in the
+     * database in the background; the table updates when that completes.
+     * 
+     * @param pageIndex The page to load; its token must already be known
+     */
+    private void loadPatientsPage(int pageIndex) {
+        PatientQuery query = new PatientQuery()
+                .search(currentSearchTerm)
+                .active("All".equals(currentFilterValue) ? null : "Active".equals(currentFilterValue))
+                .pageSize(ITEMS_PER_PAGE);
+        switch (currentSortValue) {
+            case "Name (Z-A)" -> query.sortBy(PatientQuery.SortKey.NAME, false);
+            case "ID (Asc)" -> query.sortBy(PatientQuery.SortKey.ID, true);
+            case "ID (Desc)" -> query.sortBy(PatientQuery.SortKey.ID, false);
+            case "Most Recent" -> query.sortBy(PatientQuery.SortKey.REGISTRATION_DATE, false);
+            case "Oldest" -> query.sortBy(PatientQuery.SortKey.REGISTRATION_DATE, true);
+            default -> query.sortBy(PatientQuery.SortKey.NAME, true);
         }
         
-        // Sort patients based on selected option
-        patients.sort((p1, p2) -> {
-            switch (currentSortValue) {
-                case "Name (A-Z)":
-                    return p1.getLastName().compareToIgnoreCase(p2.getLastName());
-                case "Name (Z-A)":
-                    return p2.getLastName().compareToIgnoreCase(p1.getLastName());
-                case "ID (Asc)":
-                    return Integer.compare(p1.getPatientId(), p2.getPatientId());
-                case "ID (Desc)":
-                    return Integer.compare(p2.getPatientId(), p1.getPatientId());
-                case "Most Recent":
-                    return p2.getRegistrationDate().compareTo(p1.getRegistrationDate());
-                case "Oldest":
-                    return p1.getRegistrationDate().compareTo(p2.getRegistrationDate());
-                default:
-                    return 0;
+        int request = ++patientsRequest;
+        patientService.queryPatients(query, pageTokens.get(pageIndex)).whenCompleteAsync((page, error) -> {
+            // A newer refresh was started while this one was running
+            if (request != patientsRequest) {
+                return;
             }
-        });
-        
-        // Update observable list
-        patientsList.setAll(patients);
-        
-        // Update pagination
-        int pageCount = (int) Math.ceil((double) patientsList.size() / ITEMS_PER_PAGE);
-        patientsPagination.setPageCount(Math.max(1, pageCount));
-        patientsPagination.setCurrentPageIndex(0);
-        
-        // Update total patients label
-        totalPatientsLabel.setText(String.valueOf(patientsList.size()));
-        
-        // Set first page
-        createPage(0);
+            if (error != null) {
+                System.err.println("Error loading patients: " + error.getMessage());
+                error.printStackTrace();
+                return;
+            }
+            
+            // Remember how to reach the following page
+            if (page.hasNextPage() && pageTokens.size() == pageIndex + 1) {
+                pageTokens.add(page.getNextPageToken());
+            }
+            setPagination(pageIndex, pageTokens.size());
+            
+            // Update observable list
+            patientsList.setAll(page.getItems());
+            patientsTable.setItems(patientsList);
+            
+            // Update total patients label
+            totalPatientsLabel.setText(String.valueOf(page.getTotalCount()));
+        }, Platform::runLater);
+    }
+    
+    /**
+     * Update the pagination control without triggering a page load.
+     */
+    private void setPagination(int pageIndex, int pageCount) {
+        updatingPagination = true;
+        try {
+            patientsPagination.setPageCount(pageCount);
+            patientsPagination.setCurrentPageIndex(pageIndex);
+        } finally {
+            updatingPagination = false;
+        }
     }
     
     /**
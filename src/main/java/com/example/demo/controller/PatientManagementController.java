@@ -1,8 +1,12 @@
 package com.example.demo.controller;
 
+import com.example.demo.database.Page;
 import com.example.demo.database.PatientDAO;
+import com.example.demo.database.PatientQuery;
+import com.example.demo.database.PatientStats;
 import com.example.demo.database.DatabaseConnection;
 import com.example.demo.model.Patient;
+import com.example.demo.service.PatientService;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -28,12 +32,14 @@ import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.Period;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 import javafx.application.Platform;
 
@@ -72,9 +78,20 @@ public class PatientManagementController {
     @FXML private StackPane chartContainer;
 
     private final PatientDAO patientDAO = PatientDAO.getInstance();
+    private final PatientService patientService = new PatientService(patientDAO);
     private ObservableList<Patient> patientsList = FXCollections.observableArrayList();
-    private ObservableList<Patient> filteredPatientsList = FXCollections.observableArrayList();
+    // Counted in the database in the background; statistics and charts cover every patient
+    private PatientStats patientStats;
+    // Incremented on every count so results of superseded counts are dropped
+    private int statsRequest;
+    // The number of patients matching the current search and filter
+    private long resultsCount;
+    // Tokens of the pages reached so far, plus the next page; null for the first page
+    private final List<String> pageTokens = new ArrayList<>();
+    // Set while the pagination control is updated from code, so it doesn't load a page
+    private boolean updatingPagination;
     private static final int ITEMS_PER_PAGE = 10;
+    private static final DateTimeFormatter DISPLAY_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private String currentSearchTerm = "";
     private String currentFilterValue = "All";
     private String currentSortValue = "Name (A-Z)";
@@ -93,6 +110,7 @@ public class PatientManagementController {
         
         // Load initial data and statistics
         refreshData();
+        refreshStatistics();
         
         // Initialize charts
         initializeCharts();
@@ -160,7 +178,7 @@ public class PatientManagementController {
         lastVisitColumn.setCellValueFactory(cellData -> {
             LocalDate date = cellData.getValue().getRegistrationDate();
             if (date != null) {
-                return new SimpleStringProperty(date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+                return new SimpleStringProperty(date.format(DISPLAY_DATE_FORMATTER));
             }
             return new SimpleStringProperty("N/A");
         });
@@ -238,7 +256,15 @@ public class PatientManagementController {
         });
         
         // Set up pagination
+        // Pages are fetched by continuation token, so only pages already reached
+        // plus the next one are offered; each costs the same as the first
         patientsPagination.setPageFactory(this::createPage);
+        patientsPagination.currentPageIndexProperty().addListener((obs, oldIndex, newIndex) -> {
+            int pageIndex = newIndex.intValue();
+            if (!updatingPagination && pageIndex < pageTokens.size()) {
+                loadPatientsPage(pageIndex);
+            }
+        });
     }
     
     /**
@@ -254,6 +280,10 @@ public class PatientManagementController {
      */
     private void updateChart() {
         demographicsChart.getData().clear();
+        // Drawn once the statistics have been counted
+        if (patientStats == null) {
+            return;
+        }
         
         switch (currentChartType) {
             case "Age Groups":
@@ -278,15 +308,24 @@ public class PatientManagementController {
      * Create age group distribution chart
      */
     private void createAgeGroupChart() {
-        Map<String, Long> ageGroups = patientsList.stream()
-            .collect(Collectors.groupingBy(patient -> {
-                int age = patient.getAge();
-                if (age < 18) return "Under 18";
-                else if (age < 30) return "18-29";
-                else if (age < 45) return "30-44";
-                else if (age < 60) return "45-59";
-                else return "60+";
-            }, Collectors.counting()));
+        Map<String, Long> ageGroups = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now();
+        long withBirthDate = 0;
+        for (Map.Entry<LocalDate, Long> entry : patientStats.getCountsByBirthDate().entrySet()) {
+            int age = Period.between(entry.getKey(), today).getYears();
+            String group;
+            if (age < 18) group = "Under 18";
+            else if (age < 30) group = "18-29";
+            else if (age < 45) group = "30-44";
+            else if (age < 60) group = "45-59";
+            else group = "60+";
+            ageGroups.merge(group, entry.getValue(), Long::sum);
+            withBirthDate += entry.getValue();
+        }
+        // Patients without a date of birth have age 0
+        if (patientStats.getTotal() > withBirthDate) {
+            ageGroups.merge("Under 18", patientStats.getTotal() - withBirthDate, Long::sum);
+        }
         
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
         ageGroups.forEach((group, count) -> 
@@ -300,15 +339,11 @@ public class PatientManagementController {
      * Create gender distribution chart
      */
     private void createGenderDistributionChart() {
-        Map<String, Long> genderCounts = patientsList.stream()
-            .collect(Collectors.groupingBy(
-                patient -> patient.getGender() != null ? patient.getGender() : "Unknown", 
-                Collectors.counting()
-            ));
-        
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
-        genderCounts.forEach((gender, count) -> 
-            pieChartData.add(new PieChart.Data(gender + " (" + count + ")", count)));
+        patientStats.getCountsByGender().forEach((gender, count) -> {
+            String label = gender.isEmpty() ? "Unknown" : gender;
+            pieChartData.add(new PieChart.Data(label + " (" + count + ")", count));
+        });
         
         demographicsChart.setData(pieChartData);
         demographicsChart.setTitle("Patient Gender Distribution");
@@ -318,15 +353,11 @@ public class PatientManagementController {
      * Create blood type distribution chart
      */
     private void createBloodTypeChart() {
-        Map<String, Long> bloodTypes = patientsList.stream()
-            .collect(Collectors.groupingBy(
-                patient -> patient.getBloodType() != null ? patient.getBloodType() : "Unknown", 
-                Collectors.counting()
-            ));
-        
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
-        bloodTypes.forEach((type, count) -> 
-            pieChartData.add(new PieChart.Data(type + " (" + count + ")", count)));
+        patientStats.getCountsByBloodType().forEach((type, count) -> {
+            String label = type.isEmpty() ? "Unknown" : type;
+            pieChartData.add(new PieChart.Data(label + " (" + count + ")", count));
+        });
         
         demographicsChart.setData(pieChartData);
         demographicsChart.setTitle("Patient Blood Type Distribution");
@@ -336,12 +367,7 @@ public class PatientManagementController {
      * Create registration by month chart
      */
     private void createRegistrationByMonthChart() {
-        Map<Month, Long> registrationByMonth = patientsList.stream()
-            .filter(patient -> patient.getRegistrationDate() != null)
-            .collect(Collectors.groupingBy(
-                patient -> patient.getRegistrationDate().getMonth(), 
-                Collectors.counting()
-            ));
+        Map<Month, Long> registrationByMonth = patientStats.getCountsByRegistrationMonth();
         
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
         registrationByMonth.forEach((month, count) -> 
@@ -352,25 +378,15 @@ public class PatientManagementController {
     }
     
     /**
-     * Creates a page for the pagination control
+     * Creates a page for the pagination control; the table holds the loaded page
      */
     private TableView<Patient> createPage(int pageIndex) {
-        int fromIndex = pageIndex * ITEMS_PER_PAGE;
-        int toIndex = Math.min(fromIndex + ITEMS_PER_PAGE, filteredPatientsList.size());
-        
-        if (fromIndex >= filteredPatientsList.size()) {
-            return new TableView<>();
-        }
-        
-        patientsTable.setItems(FXCollections.observableArrayList(
-            filteredPatientsList.subList(fromIndex, toIndex)
-        ));
-        
         return patientsTable;
     }
     
     /**
-     * Refresh data based on search, filter, and sort criteria
+     * Refresh data based on search, filter, and sort criteria, starting again
+     * from the first page
      */
     private void refreshData() {
         // Get current values
@@ -378,98 +394,85 @@ public class PatientManagementController {
         currentFilterValue = filterComboBox.getValue();
         currentSortValue = sortComboBox.getValue();
         
-        // Load all patients
-        loadPatientsData();
-        
-        // Apply filters
-        applyFilters();
-        
-        // Update pagination and stats
-        updatePaginationAndStats();
-        
-        // Update chart
-        updateChart();
+        // Load the first page
+        pageTokens.clear();
+        pageTokens.add(null);
+        setPagination(0, 1);
+        loadPatientsPage(0);
     }
     
     /**
-     * Load patients data from database
+     * Count patients for the statistics and charts in the background. They
+     * cover every patient, so they are only counted again after patients
+     * were added, changed or removed, not when the list is searched or sorted.
      */
-    private void loadPatientsData() {
-        List<Patient> patients;
-        
-        if (!currentSearchTerm.isEmpty()) {
-            // Search based on the search term
-            patients = patientDAO.searchPatients(currentSearchTerm);
-        } else {
-            // Get all patients
-            patients = patientDAO.getAllPatients();
-        }
-        
-        patientsList.setAll(patients);
+    private void refreshStatistics() {
+        int request = ++statsRequest;
+        patientService.getPatientStats().whenCompleteAsync((stats, error) -> {
+            // Patients were changed again while this count was running
+            if (request != statsRequest) {
+                return;
+            }
+            if (error != null) {
+                System.err.println("Error counting patients: " + error.getMessage());
+                error.printStackTrace();
+                return;
+            }
+            
+            patientStats = stats;
+            updateStatistics();
+            updateChart();
+        }, Platform::runLater);
     }
     
     /**
-     * Apply filters and sorting to the patient list
+     * Load one page of patients, sorted, filtered and counted in the database
+     * 
+     * @param pageIndex The page to load; its token must already be known
      */
-    private void applyFilters() {
-        // Start with all patients
-        List<Patient> filtered = patientsList;
-        
-        // Apply status filter
-        if (!"All".equals(currentFilterValue)) {
-            boolean activeFilter = "Active".equals(currentFilterValue);
-            filtered = filtered.stream()
-                .filter(patient -> patient.isActive() == activeFilter)
-                .collect(Collectors.toList());
+    private void loadPatientsPage(int pageIndex) {
+        PatientQuery query = new PatientQuery()
+                .search(currentSearchTerm)
+                .active("All".equals(currentFilterValue) ? null : "Active".equals(currentFilterValue))
+                .pageSize(ITEMS_PER_PAGE);
+        switch (currentSortValue) {
+            case "Name (Z-A)" -> query.sortBy(PatientQuery.SortKey.NAME, false);
+            case "ID (Asc)" -> query.sortBy(PatientQuery.SortKey.ID, true);
+            case "ID (Desc)" -> query.sortBy(PatientQuery.SortKey.ID, false);
+            // Oldest patients have the earliest date of birth
+            case "Age (Oldest)" -> query.sortBy(PatientQuery.SortKey.DATE_OF_BIRTH, true);
+            case "Age (Youngest)" -> query.sortBy(PatientQuery.SortKey.DATE_OF_BIRTH, false);
+            case "Recent Patients" -> query.sortBy(PatientQuery.SortKey.REGISTRATION_DATE, false);
+            default -> query.sortBy(PatientQuery.SortKey.NAME, true);
         }
         
-        // Apply sorting
-        filtered.sort((p1, p2) -> {
-            switch (currentSortValue) {
-                case "Name (A-Z)":
-                    return (p1.getLastName() + p1.getFirstName())
-                        .compareToIgnoreCase(p2.getLastName() + p2.getFirstName());
-                case "Name (Z-A)":
-                    return (p2.getLastName() + p2.getFirstName())
-                        .compareToIgnoreCase(p1.getLastName() + p1.getFirstName());
-                case "ID (Asc)":
-                    return Integer.compare(p1.getPatientId(), p2.getPatientId());
-                case "ID (Desc)":
-                    return Integer.compare(p2.getPatientId(), p1.getPatientId());
-                case "Age (Oldest)":
-                    return Integer.compare(p2.getAge(), p1.getAge());
-                case "Age (Youngest)":
-                    return Integer.compare(p1.getAge(), p2.getAge());
-                case "Recent Patients":
-                    if (p1.getRegistrationDate() == null) return 1;
-                    if (p2.getRegistrationDate() == null) return -1;
-                    return p2.getRegistrationDate().compareTo(p1.getRegistrationDate());
-                default:
-                    return 0;
-            }
-        });
+        Page<Patient> page = patientDAO.queryPatients(query, pageTokens.get(pageIndex));
+        
+        // Remember how to reach the following page
+        if (page.hasNextPage() && pageTokens.size() == pageIndex + 1) {
+            pageTokens.add(page.getNextPageToken());
+        }
+        setPagination(pageIndex, pageTokens.size());
         
-        // Update filtered list
-        filteredPatientsList.setAll(filtered);
+        patientsList.setAll(page.getItems());
+        patientsTable.setItems(patientsList);
+        
+        // Update result count label
+        resultsCount = page.getTotalCount();
+        resultsCountLabel.setText("(" + resultsCount + " results)");
     }
     
     /**
-     * Update pagination and stats after data refresh
+     * Update the pagination control without triggering a page load.
      */
-    private void updatePaginationAndStats() {
-        // Update pagination
-        int pageCount = (int) Math.ceil((double) filteredPatientsList.size() / ITEMS_PER_PAGE);
-        patientsPagination.setPageCount(Math.max(1, pageCount));
-        patientsPagination.setCurrentPageIndex(0);
-        
-        // Show first page
-        createPage(0);
-        
-        // Update result count label
-        resultsCountLabel.setText("(" + filteredPatientsList.size() + " results)");
-        
-        // Update stats
-        updateStatistics();
+    private void setPagination(int pageIndex, int pageCount) {
+        updatingPagination = true;
+        try {
+            patientsPagination.setPageCount(pageCount);
+            patientsPagination.setCurrentPageIndex(pageIndex);
+        } finally {
+            updatingPagination = false;
+        }
     }
     
     /**
@@ -477,29 +480,18 @@ public class PatientManagementController {
      */
     private void updateStatistics() {
         // Total patients
-        totalPatientsCountLabel.setText(String.valueOf(patientsList.size()));
+        totalPatientsCountLabel.setText(String.valueOf(patientStats.getTotal()));
         
         // Active patients
-        long activeCount = patientsList.stream().filter(Patient::isActive).count();
-        activePatientsCountLabel.setText(String.valueOf(activeCount));
+        activePatientsCountLabel.setText(String.valueOf(patientStats.getActiveCount()));
         
         // New patients this month
         LocalDate firstDayOfMonth = LocalDate.now().withDayOfMonth(1);
-        long newPatientsThisMonth = patientsList.stream()
-            .filter(p -> p.getRegistrationDate() != null && p.getRegistrationDate().isAfter(firstDayOfMonth))
-            .count();
-        newPatientsCountLabel.setText(String.valueOf(newPatientsThisMonth));
+        newPatientsCountLabel.setText(String.valueOf(patientStats.getCountRegisteredSince(firstDayOfMonth)));
         
         // Gender counts
-        long maleCount = patientsList.stream()
-            .filter(p -> p.getGender() != null && p.getGender().equalsIgnoreCase("Male"))
-            .count();
-        long femaleCount = patientsList.stream()
-            .filter(p -> p.getGender() != null && p.getGender().equalsIgnoreCase("Female"))
-            .count();
-        
-        maleCountLabel.setText("M: " + maleCount);
-        femaleCountLabel.setText("F: " + femaleCount);
+        maleCountLabel.setText("M: " + patientStats.getCountByGender("Male"));
+        femaleCountLabel.setText("F: " + patientStats.getCountByGender("Female"));
     }
     
     /**
@@ -526,14 +518,20 @@ public class PatientManagementController {
      */
     @FXML
     private void handleAddPatient() {
-        openPatientForm(null, PatientFormController.FormMode.ADD, patient -> refreshData());
+        openPatientForm(null, PatientFormController.FormMode.ADD, patient -> {
+            refreshData();
+            refreshStatistics();
+        });
     }
     
     /**
      * Handle edit patient
      */
     private void handleEditPatient(Patient patient) {
-        openPatientForm(patient, PatientFormController.FormMode.EDIT, p -> refreshData());
+        openPatientForm(patient, PatientFormController.FormMode.EDIT, p -> {
+            refreshData();
+            refreshStatistics();
+        });
     }
     
     /**
@@ -604,6 +602,7 @@ public class PatientManagementController {
             boolean success = patientDAO.deletePatient(patient.getPatientId());
             if (success) {
                 refreshData();
+                refreshStatistics();
                 showSuccessAlert("Success", "Patient deleted successfully");
             } else {
                 showErrorAlert("Error", "Failed to delete patient");
@@ -633,6 +632,7 @@ public class PatientManagementController {
             // Refresh after a short delay to simulate completion
             // In a real implementation, this would be called after the import completes
             refreshData();
+            refreshStatistics();
         }
     }
     
@@ -654,7 +654,7 @@ public class PatientManagementController {
             // This would normally call a service to export the data
             // For now, just show a success message
             showSuccessAlert("Export Started", 
-                "Export of " + filteredPatientsList.size() + " patient records to " + 
+                "Export of " + resultsCount + " patient records to " + 
                 selectedFile.getName() + " has been initiated.");
         }
     }
@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.database.DatabaseConnection;
+import com.example.demo.database.UserDAO;
 import com.example.demo.model.SidebarModel;
 
 import javafx.fxml.FXML;
@@ -242,6 +243,8 @@ public class SidebarController {
 
                 int rowsInserted = statement.executeUpdate();
                 if (rowsInserted > 0) {
+                    // Written without UserDAO, so cached user lookups must be dropped here
+                    UserDAO.invalidateCache();
                     System.out.println("User registered successfully!");
                     showLoginForm(); // Switch back to the login form
                 }
@@ -4,7 +4,9 @@ import com.example.demo.database.MedicalRecordDAO;
 import com.example.demo.database.PatientDAO;
 import com.example.demo.model.MedicalRecord;
 import com.example.demo.model.Patient;
+import com.example.demo.service.MedicalRecordService;
 
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -53,6 +55,8 @@ public class SimplePatientDetailsController {
     private Patient patient;
     private final PatientDAO patientDAO = PatientDAO.getInstance();
     private final MedicalRecordDAO medicalRecordDAO = new MedicalRecordDAO();
+    private final MedicalRecordService medicalRecordService = new MedicalRecordService(medicalRecordDAO);
+    private int recordsRequest; // Drops results of superseded record loads
     
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
     private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
@@ -160,8 +164,28 @@ public class SimplePatientDetailsController {
     private void loadMedicalRecords() {
         if (patient == null) return;
         
-        // Load records from DAO
-        List<MedicalRecord> records = medicalRecordDAO.getMedicalRecordsByPatientId(patient.getPatientId());
+        // Load records in the background, then update the view on the FX thread
+        int request = ++recordsRequest;
+        medicalRecordService.getMedicalRecordsByPatientId(patient.getPatientId())
+            .whenCompleteAsync((records, error) -> {
+                // A newer load was started while this one was running
+                if (request != recordsRequest) {
+                    return;
+                }
+                if (error != null) {
+                    System.err.println("Error loading medical records: " + error.getMessage());
+                    return;
+                }
+                showMedicalRecords(records);
+            }, Platform::runLater);
+    }
+    
+    /**
+     * Show loaded medical records in the table and summary fields
+     * 
+     * @param records The patient's medical records
+     */
+    private void showMedicalRecords(List<MedicalRecord> records) {
         ObservableList<MedicalRecord> observableRecords = FXCollections.observableArrayList(records);
         
         // Update the table
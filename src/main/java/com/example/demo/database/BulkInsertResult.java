@@ -0,0 +1,67 @@
+package com.example.demo.database;
+
+/**
+ * Outcome of a bulk insert: how many rows were committed, how fast, and
+ * whether the input was consumed to the end.
+ */
+public class BulkInsertResult {
+
+    private final long rowsInserted;
+    private final long elapsedMillis;
+    private final String error;
+
+    /**
+     * @param rowsInserted The number of rows committed
+     * @param elapsedMillis The wall-clock time taken
+     * @param error The reason the insert stopped early, or null if it completed
+     */
+    public BulkInsertResult(long rowsInserted, long elapsedMillis, String error) {
+        this.rowsInserted = rowsInserted;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    /**
+     * Get the number of rows committed. When the insert stopped early this is
+     * where a retry should resume from.
+     *
+     * @return The number of rows committed
+     */
+    public long getRowsInserted() {
+        return rowsInserted;
+    }
+
+    /**
+     * @return The wall-clock time taken, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return The average throughput, in rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis > 0 ? rowsInserted * 1000.0 / elapsedMillis : rowsInserted;
+    }
+
+    /**
+     * @return True if every input row was inserted
+     */
+    public boolean isComplete() {
+        return error == null;
+    }
+
+    /**
+     * @return The reason the insert stopped early, or null if it completed
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows in %.1f s (%.0f rows/s)%s", rowsInserted, elapsedMillis / 1000.0,
+                getRowsPerSecond(), error != null ? ", stopped: " + error : "");
+    }
+}
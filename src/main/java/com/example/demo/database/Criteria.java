@@ -0,0 +1,323 @@
+package com.example.demo.database;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the WHERE clause of a DAO query from typed, optional filters.
+ * <p>
+ * Every predicate compares a bare column with bound parameters, so it can use
+ * an index: days become half-open ranges instead of DATE(column) = ?, and text
+ * search is a prefix LIKE. Filters given a null or blank value are left out,
+ * which lets callers pass their optional arguments straight through.
+ * <p>
+ * The generated SQL depends only on which filters are present, never on their
+ * values, and IN lists are padded to a few fixed sizes, so repeated searches
+ * reuse the same cached prepared statements.
+ * <pre>
+ * Criteria criteria = new Criteria()
+ *         .eq("status", status)
+ *         .startsWith("patient_name", name)
+ *         .onDay("visit_date", day);
+ * String sql = "SELECT * FROM medical_records" + criteria.toWhereClause() + " ORDER BY visit_date DESC";
+ * </pre>
+ * Column names are written into the SQL and must come from code, never from user input.
+ */
+public class Criteria {
+
+    private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private final List<String> predicates = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+
+    /**
+     * Match a column exactly.
+     *
+     * @param column The column name
+     * @param value The value to match; skipped if null or a blank string
+     * @return This criteria
+     */
+    public Criteria eq(String column, Object value) {
+        if (isAbsent(value)) {
+            return this;
+        }
+        return add(checkColumn(column) + " = ?", value);
+    }
+
+    /**
+     * Match a column against any of a set of values.
+     *
+     * @param column The column name
+     * @param values The values to match; skipped if null or empty
+     * @return This criteria
+     */
+    public Criteria in(String column, Collection<?> values) {
+        if (values == null || values.isEmpty()) {
+            return this;
+        }
+
+        // Pad with the last value to the next power of two so only a handful of IN shapes exist
+        List<Object> padded = new ArrayList<>(values);
+        int size = Integer.highestOneBit(padded.size());
+        if (size < padded.size()) {
+            size <<= 1;
+        }
+        Object last = padded.get(padded.size() - 1);
+        while (padded.size() < size) {
+            padded.add(last);
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(size, "?"));
+        return add(checkColumn(column) + " IN (" + placeholders + ")", padded.toArray());
+    }
+
+    /**
+     * Match text columns that start with a prefix. LIKE wildcards in the
+     * prefix are matched literally.
+     *
+     * @param column The column name
+     * @param prefix The prefix to match; skipped if null or blank
+     * @return This criteria
+     */
+    public Criteria startsWith(String column, String prefix) {
+        if (isAbsent(prefix)) {
+            return this;
+        }
+        return add(checkColumn(column) + " LIKE ? ESCAPE '!'", escapeLike(prefix.trim()) + "%");
+    }
+
+    /**
+     * Match rows where any of several text columns starts with a prefix, for
+     * example one word of a name typed into a search box. LIKE wildcards in
+     * the prefix are matched literally.
+     *
+     * @param prefix The prefix to match; skipped if null or blank
+     * @param columns The column names
+     * @return This criteria
+     */
+    public Criteria startsWithAny(String prefix, String... columns) {
+        if (isAbsent(prefix)) {
+            return this;
+        }
+        String pattern = escapeLike(prefix.trim()) + "%";
+        List<String> alternatives = new ArrayList<>();
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            alternatives.add(checkColumn(columns[i]) + " LIKE ? ESCAPE '!'");
+            values[i] = pattern;
+        }
+        return add("(" + String.join(" OR ", alternatives) + ")", values);
+    }
+
+    /**
+     * Match rows where a word anywhere in one of several text columns starts
+     * with a prefix, for example a last name typed against a full name. Unlike
+     * {@link #startsWithAny} this cannot use an index on the columns.
+     *
+     * @param prefix The prefix to match; skipped if null or blank
+     * @param columns The column names
+     * @return This criteria
+     */
+    public Criteria wordStartsWithAny(String prefix, String... columns) {
+        if (isAbsent(prefix)) {
+            return this;
+        }
+        String escaped = escapeLike(prefix.trim());
+        List<String> alternatives = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (String column : columns) {
+            alternatives.add(checkColumn(column) + " LIKE ? ESCAPE '!'");
+            alternatives.add(column + " LIKE ? ESCAPE '!'");
+            values.add(escaped + "%");
+            values.add("% " + escaped + "%");
+        }
+        return add("(" + String.join(" OR ", alternatives) + ")", values.toArray());
+    }
+
+    /**
+     * Match values at or after a point in time.
+     *
+     * @param column The column name
+     * @param from The inclusive lower bound; skipped if null
+     * @return This criteria
+     */
+    public Criteria atLeast(String column, LocalDateTime from) {
+        if (from == null) {
+            return this;
+        }
+        return add(checkColumn(column) + " >= ?", from);
+    }
+
+    /**
+     * Match values strictly before a point in time.
+     *
+     * @param column The column name
+     * @param to The exclusive upper bound; skipped if null
+     * @return This criteria
+     */
+    public Criteria before(String column, LocalDateTime to) {
+        if (to == null) {
+            return this;
+        }
+        return add(checkColumn(column) + " < ?", to);
+    }
+
+    /**
+     * Match timestamps falling on a calendar day.
+     *
+     * @param column The column name
+     * @param day The day to match; skipped if null
+     * @return This criteria
+     */
+    public Criteria onDay(String column, LocalDate day) {
+        return betweenDays(column, day, day);
+    }
+
+    /**
+     * Match timestamps falling on any day in a range. Either bound may be
+     * null to leave that side open.
+     *
+     * @param column The column name
+     * @param firstDay The first day to include
+     * @param lastDay The last day to include, in full
+     * @return This criteria
+     */
+    public Criteria betweenDays(String column, LocalDate firstDay, LocalDate lastDay) {
+        atLeast(column, firstDay != null ? firstDay.atStartOfDay() : null);
+        return before(column, lastDay != null ? lastDay.plusDays(1).atStartOfDay() : null);
+    }
+
+    /**
+     * Add a predicate written by hand, for conditions the typed methods do not
+     * cover. It is combined with the others using AND.
+     *
+     * @param predicate The SQL condition, with ? placeholders
+     * @param values The values for the placeholders, in order
+     * @return This criteria
+     */
+    public Criteria where(String predicate, Object... values) {
+        return add("(" + predicate + ")", values);
+    }
+
+    /**
+     * Add every predicate of another criteria, for example filters built
+     * elsewhere for the same columns. They are combined with the others using AND.
+     *
+     * @param other The criteria whose predicates to add; skipped if null
+     * @return This criteria
+     */
+    public Criteria and(Criteria other) {
+        if (other != null) {
+            predicates.addAll(other.predicates);
+            parameters.addAll(other.parameters);
+        }
+        return this;
+    }
+
+    /**
+     * @return True if no predicates have been added
+     */
+    public boolean isEmpty() {
+        return predicates.isEmpty();
+    }
+
+    /**
+     * Get the WHERE clause for the predicates added so far.
+     *
+     * @return " WHERE ..." with a leading space, or an empty string if there are no predicates
+     */
+    public String toWhereClause() {
+        if (predicates.isEmpty()) {
+            return "";
+        }
+        return " WHERE " + String.join(" AND ", predicates);
+    }
+
+    /**
+     * Get the parameter values, in placeholder order.
+     *
+     * @return The parameters
+     */
+    public List<Object> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Bind the parameters to a statement built from {@link #toWhereClause()}.
+     *
+     * @param stmt The statement to bind
+     * @param firstIndex The index of the first placeholder of the WHERE clause
+     * @return The index of the next placeholder after the WHERE clause
+     * @throws SQLException If a parameter cannot be bound
+     */
+    public int bind(PreparedStatement stmt, int firstIndex) throws SQLException {
+        int index = firstIndex;
+        for (Object parameter : parameters) {
+            bindValue(stmt, index++, parameter);
+        }
+        return index;
+    }
+
+    /**
+     * Bind one value using the setter that matches its type.
+     *
+     * @param stmt The statement to bind
+     * @param index The placeholder index
+     * @param value The value; may be null
+     * @throws SQLException If the value cannot be bound
+     */
+    public static void bindValue(PreparedStatement stmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, Types.NULL);
+        } else if (value instanceof String) {
+            stmt.setString(index, (String) value);
+        } else if (value instanceof Integer) {
+            stmt.setInt(index, (Integer) value);
+        } else if (value instanceof Long) {
+            stmt.setLong(index, (Long) value);
+        } else if (value instanceof Boolean) {
+            stmt.setBoolean(index, (Boolean) value);
+        } else if (value instanceof LocalDateTime) {
+            stmt.setTimestamp(index, Timestamp.valueOf((LocalDateTime) value));
+        } else if (value instanceof LocalDate) {
+            stmt.setDate(index, Date.valueOf((LocalDate) value));
+        } else if (value instanceof Timestamp) {
+            stmt.setTimestamp(index, (Timestamp) value);
+        } else if (value instanceof Date) {
+            stmt.setDate(index, (Date) value);
+        } else {
+            stmt.setObject(index, value);
+        }
+    }
+
+    private Criteria add(String predicate, Object... values) {
+        predicates.add(predicate);
+        Collections.addAll(parameters, values);
+        return this;
+    }
+
+    private static boolean isAbsent(Object value) {
+        return value == null || (value instanceof String && ((String) value).trim().isEmpty());
+    }
+
+    private static String checkColumn(String column) {
+        if (column == null || !COLUMN.matcher(column).matches()) {
+            throw new IllegalArgumentException("Invalid column name: " + column);
+        }
+        return column;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
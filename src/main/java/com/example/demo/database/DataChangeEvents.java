@@ -0,0 +1,85 @@
+package com.example.demo.database;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells in-memory caches and indexes which rows the DAOs have written, so
+ * they can refresh those rows instead of reloading whole tables.
+ * <p>
+ * Events are published only once a change is committed: directly after an
+ * auto-commit write, or through {@link Transaction#afterCommit} for writes
+ * made in a transaction. Listeners run on the thread that made the change
+ * and must be quick; typically they just note the ID for later.
+ */
+public final class DataChangeEvents {
+
+    /**
+     * The kind of row that changed.
+     */
+    public enum Entity {
+        PATIENT,
+        USER,
+        MEDICAL_RECORD,
+        NOTE
+    }
+
+    /**
+     * Receives change events.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param entity The kind of row that changed
+         * @param id The primary key of the row that was created, updated or deleted
+         */
+        void changed(Entity entity, int id);
+    }
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private DataChangeEvents() {
+    }
+
+    /**
+     * @param listener The listener to notify of every committed change
+     */
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener A listener added with {@link #addListener}
+     */
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Notify the listeners of a committed change.
+     *
+     * @param entity The kind of row that changed
+     * @param id The primary key of the row
+     */
+    public static void publish(Entity entity, int id) {
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.changed(entity, id);
+            } catch (RuntimeException e) {
+                System.err.println("Error handling change of " + entity + " " + id + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Notify the listeners of a change once the transaction that made it commits.
+     *
+     * @param tx The transaction making the change
+     * @param entity The kind of row that changed
+     * @param id The primary key of the row
+     */
+    public static void publishAfterCommit(Transaction tx, Entity entity, int id) {
+        tx.afterCommit(() -> publish(entity, id));
+    }
+}
@@ -1,21 +1,41 @@
 package com.example.demo.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
 import java.io.InputStream;
 import java.io.IOException;
 
 /**
  * Singleton class to manage database connections.
+ * Connections are served from a {@link PooledDataSource} configured from the
+ * db.pool.* settings in database.properties.
+ * <p>
+ * When db.read.url is set, a second read-only pool points at a replica and
+ * {@link #getReadConnection()} routes reads to it. Reads fall back to the
+ * primary for db.read.consistencyWindow milliseconds after any write, so the
+ * application always sees its own changes despite replication lag.
  */
 public class DatabaseConnection {
+    // Rows per round trip for streaming queries on drivers other than MySQL
+    private static final int STREAMING_FETCH_SIZE = 1000;
+    
     private static DatabaseConnection instance;
     private String url;
     private String username;
     private String password;
     private Properties properties;
+    private PooledDataSource dataSource;
+    private PooledDataSource readDataSource;
+    private long consistencyWindowMillis;
+    private volatile long lastWriteMillis;
+    private final List<UnaryOperator<Connection>> connectionDecorators = new CopyOnWriteArrayList<>();
+    private QueryMetrics queryMetrics;
     
     /**
      * Private constructor to prevent direct instantiation.
@@ -54,6 +74,132 @@ public class DatabaseConnection {
             System.err.println("MySQL JDBC Driver not found: " + e.getMessage());
             System.err.println("Database connections will fail!");
         }
+        
+        dataSource = createDataSource();
+        readDataSource = createReadDataSource();
+        queryMetrics = createQueryMetrics();
+    }
+    
+    /**
+     * Create the statement metrics collector unless db.metrics.enabled is false.
+     * @return The metrics collector, or null if metrics are disabled.
+     */
+    private QueryMetrics createQueryMetrics() {
+        if (!Boolean.parseBoolean(properties.getProperty("db.metrics.enabled", "true").trim())) {
+            return null;
+        }
+        long threshold;
+        try {
+            threshold = Long.parseLong(properties.getProperty("db.metrics.slowQueryThreshold", "500").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid db.metrics.slowQueryThreshold, using 500 ms");
+            threshold = 500;
+        }
+        return new QueryMetrics(threshold);
+    }
+    
+    /**
+     * Create the connection pool for the current connection settings.
+     * @return A new pooled data source.
+     */
+    private PooledDataSource createDataSource() {
+        PooledDataSource pool = new PooledDataSource(tuneUrl(url), username, password, properties, "db.pool.");
+        pool.setWriteListener(() -> lastWriteMillis = System.currentTimeMillis());
+        return pool;
+    }
+    
+    /**
+     * Create the replica pool if db.read.url is configured.
+     * Credentials and db.read.pool.* settings default to the primary's values.
+     * @return The replica data source, or null if no replica is configured.
+     */
+    private PooledDataSource createReadDataSource() {
+        String readUrl = properties.getProperty("db.read.url");
+        if (readUrl == null || readUrl.trim().isEmpty()) {
+            return null;
+        }
+        
+        String readUsername = properties.getProperty("db.read.username", username);
+        String readPassword = properties.getProperty("db.read.password", password);
+        
+        try {
+            consistencyWindowMillis = Long.parseLong(properties.getProperty("db.read.consistencyWindow", "5000").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid db.read.consistencyWindow, using 5000 ms");
+            consistencyWindowMillis = 5000;
+        }
+        
+        // Pool settings not overridden under db.read.pool.* are inherited from db.pool.*
+        Properties readPoolProperties = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("db.pool.")) {
+                readPoolProperties.setProperty("db.read.pool." + key.substring("db.pool.".length()),
+                        properties.getProperty(key));
+            }
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("db.read.pool.")) {
+                readPoolProperties.setProperty(key, properties.getProperty(key));
+            }
+        }
+        
+        System.out.println("Routing reads to replica: " + readUrl);
+        return new PooledDataSource(tuneUrl(readUrl.trim()), readUsername, readPassword,
+                readPoolProperties, "db.read.pool.");
+    }
+    
+    /**
+     * Add driver settings that make the pool's statement cache effective.
+     * MySQL gets server-side prepared statements, so a cached statement is parsed
+     * by the server only once, and batch rewriting, so an INSERT batch is sent as
+     * multi-row statements; H2 gets a per-session query cache sized to match.
+     * Settings already present in the configured URL are left untouched.
+     * @param jdbcUrl The configured JDBC URL.
+     * @return The URL used to open pooled connections.
+     */
+    static String tuneUrl(String jdbcUrl) {
+        if (jdbcUrl == null) {
+            return null;
+        }
+        if (jdbcUrl.startsWith("jdbc:mysql:")) {
+            String tuned = appendUrlParameter(jdbcUrl, "useServerPrepStmts", "true");
+            return appendUrlParameter(tuned, "rewriteBatchedStatements", "true");
+        }
+        if (jdbcUrl.startsWith("jdbc:h2:") && !jdbcUrl.toUpperCase().contains("QUERY_CACHE_SIZE=")) {
+            return jdbcUrl + ";QUERY_CACHE_SIZE=64";
+        }
+        return jdbcUrl;
+    }
+    
+    /**
+     * Prepare a read-only, forward-only statement whose results are fetched
+     * from the server as they are read instead of all at once, for queries
+     * over whole tables. It bypasses the pool's statement cache. On MySQL the
+     * connection can run nothing else until the result set is closed.
+     * @param conn The connection to prepare on.
+     * @param sql The query.
+     * @return The prepared statement.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    public static PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // Connector/J streams row by row only for this exact fetch size; other drivers take it as a batch size
+        if ("mysql".equals(SchemaMigrator.dialectOf(conn.getMetaData().getURL()))) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            stmt.setFetchSize(STREAMING_FETCH_SIZE);
+        }
+        return stmt;
+    }
+    
+    /**
+     * Append a query parameter to a MySQL-style JDBC URL unless it is already set.
+     */
+    private static String appendUrlParameter(String jdbcUrl, String name, String value) {
+        if (jdbcUrl.contains("?" + name + "=") || jdbcUrl.contains("&" + name + "=")) {
+            return jdbcUrl;
+        }
+        return jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + name + "=" + value;
     }
     
     /**
@@ -68,32 +214,96 @@ public class DatabaseConnection {
     }
     
     /**
-     * Get a database connection.
-     * @return A new database connection.
+     * Get a database connection from the pool.
+     * Closing the returned connection hands it back to the pool.
+     * @return A pooled database connection.
      * @throws SQLException If a database access error occurs.
      */
     public static Connection getConnection() throws SQLException {
-        return getInstance().createConnection();
+        DatabaseConnection db = getInstance();
+        long start = System.nanoTime();
+        Connection conn = db.createConnection();
+        return db.decorate(conn, System.nanoTime() - start);
+    }
+    
+    /**
+     * Get a connection for queries that only read data.
+     * Uses the read replica when one is configured and no write has happened
+     * within the consistency window; otherwise uses the primary.
+     * @return A pooled database connection.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        DatabaseConnection db = getInstance();
+        long start = System.nanoTime();
+        Connection conn = db.createReadConnection();
+        return db.decorate(conn, System.nanoTime() - start);
+    }
+    
+    /**
+     * Register a decorator applied to every connection handed out by
+     * {@link #getConnection()} and {@link #getReadConnection()}, e.g. to capture
+     * or measure the SQL the DAOs issue. Decorators are applied in registration order.
+     * @param decorator Wraps a connection; closing the wrapper must close the original.
+     */
+    public void addConnectionDecorator(UnaryOperator<Connection> decorator) {
+        connectionDecorators.add(decorator);
+    }
+    
+    /**
+     * Remove a decorator registered with {@link #addConnectionDecorator}.
+     * @param decorator The decorator to remove.
+     */
+    public void removeConnectionDecorator(UnaryOperator<Connection> decorator) {
+        connectionDecorators.remove(decorator);
+    }
+    
+    private Connection decorate(Connection conn, long waitNanos) {
+        if (queryMetrics != null) {
+            conn = queryMetrics.instrument(conn, waitNanos);
+        }
+        for (UnaryOperator<Connection> decorator : connectionDecorators) {
+            conn = decorator.apply(conn);
+        }
+        return conn;
+    }
+    
+    /**
+     * Borrows a connection for a read, preferring the replica.
+     * @return A pooled database connection.
+     * @throws SQLException If a database access error occurs.
+     */
+    private Connection createReadConnection() throws SQLException {
+        PooledDataSource replica;
+        synchronized (this) {
+            replica = readDataSource;
+        }
+        
+        boolean recentWrite = System.currentTimeMillis() - lastWriteMillis < consistencyWindowMillis;
+        if (replica == null || recentWrite) {
+            return createConnection();
+        }
+        
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            System.err.println("Read replica unavailable, using primary: " + e.getMessage());
+            return createConnection();
+        }
     }
     
     /**
-     * Creates a database connection.
-     * @return A new database connection.
+     * Borrows a connection from the pool.
+     * @return A pooled database connection.
      * @throws SQLException If a database access error occurs.
      */
     private Connection createConnection() throws SQLException {
-        System.out.println("Attempting to connect to database: " + url);
+        PooledDataSource pool;
+        synchronized (this) {
+            pool = dataSource;
+        }
         try {
-            Connection conn = DriverManager.getConnection(url, username, password);
-            System.out.println("Database connection successful");
-            
-            // Test if the connection is actually working by executing a simple query
-            try (java.sql.Statement stmt = conn.createStatement()) {
-                stmt.execute("SELECT 1");
-                System.out.println("Database connection verified with test query");
-            }
-            
-            return conn;
+            return pool.getConnection();
         } catch (SQLException e) {
             System.err.println("Database connection error: " + e.getMessage());
             System.err.println("Connection URL: " + url);
@@ -118,10 +328,84 @@ public class DatabaseConnection {
      * @param username The database username.
      * @param password The database password.
      */
-    public void updateConnectionProperties(String url, String username, String password) {
+    public synchronized void updateConnectionProperties(String url, String username, String password) {
         this.url = url;
         this.username = username;
         this.password = password;
+        
+        // Connections in the old pool point at the old database, so replace it
+        PooledDataSource oldDataSource = dataSource;
+        dataSource = createDataSource();
+        oldDataSource.close();
+    }
+    
+    /**
+     * Get the per-statement latency metrics.
+     * @return The metrics collector, or null if db.metrics.enabled is false.
+     */
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+    
+    /**
+     * Check whether reads are being routed to a replica.
+     * @return true if a read replica is configured.
+     */
+    public synchronized boolean hasReadReplica() {
+        return readDataSource != null;
+    }
+    
+    /**
+     * Get the pooled data source backing this connection manager.
+     * @return The pooled data source.
+     */
+    public synchronized PooledDataSource getDataSource() {
+        return dataSource;
+    }
+    
+    /**
+     * Shut down the connection pool, closing idle connections.
+     * Should be called when the application exits.
+     */
+    public synchronized void shutdown() {
+        if (queryMetrics != null && !queryMetrics.getQueryStats().isEmpty()) {
+            System.out.println("Query statistics for this session:");
+            System.out.print(queryMetrics.report(15));
+        }
+        String userCacheReport = UserCache.report();
+        if (userCacheReport != null) {
+            System.out.println(userCacheReport);
+        }
+        dataSource.close();
+        if (readDataSource != null) {
+            readDataSource.close();
+        }
+    }
+    
+    /**
+     * Get a setting from database.properties.
+     * @param key The property name.
+     * @param defaultValue The value to use if the property is not set.
+     * @return The trimmed value, or defaultValue.
+     */
+    public String getProperty(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+    
+    /**
+     * Get a whole-number setting from database.properties.
+     * @param key The property name.
+     * @param defaultValue The value to use if the property is not set or not a number.
+     * @return The setting, or defaultValue.
+     */
+    public int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
     }
     
     /**
@@ -147,152 +431,15 @@ public class DatabaseConnection {
     }
     
     /**
-     * Initialize the database schema if it doesn't exist.
-     * This method creates tables necessary for the application.
+     * Bring the database schema up to date by applying pending migrations.
+     * When the schema is already current this costs a single version query.
      */
     public void initializeDatabase() {
-        // Example schema initialization (simplified)
-        String[] createTableSQL = {
-            // Users table
-            "CREATE TABLE IF NOT EXISTS users (" +
-            "user_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "username VARCHAR(50) NOT NULL UNIQUE," +
-            "email VARCHAR(100) NOT NULL UNIQUE," +
-            "password VARCHAR(100) NOT NULL," +
-            "salt VARCHAR(100) NOT NULL," +
-            "role VARCHAR(20) NOT NULL," +
-            "full_name VARCHAR(100)," +
-            "phone VARCHAR(20)," +
-            "address VARCHAR(255)," +
-            "city VARCHAR(100)," +
-            "active BOOLEAN DEFAULT TRUE," +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "last_login TIMESTAMP NULL DEFAULT NULL" +
-            ")",
-            
-            // Patients table
-            "CREATE TABLE IF NOT EXISTS patients (" +
-            "patient_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "full_name VARCHAR(100) NOT NULL," +
-            "date_of_birth DATE," +
-            "gender VARCHAR(20)," +
-            "phone VARCHAR(20)," +
-            "email VARCHAR(100)," +
-            "address VARCHAR(255)," +
-            "city VARCHAR(100)," +
-            "blood_type VARCHAR(10)," +
-            "insurance_provider VARCHAR(100)," +
-            "insurance_number VARCHAR(50)," +
-            "emergency_contact VARCHAR(100)," +
-            "emergency_phone VARCHAR(20)," +
-            "registration_date DATE DEFAULT CURRENT_DATE," +
-            "last_visit_date DATE," +
-            "status VARCHAR(20) DEFAULT 'Active'" +
-            ")",
-            
-            // Medical records table
-            "CREATE TABLE IF NOT EXISTS medical_records (" +
-            "record_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "patient_id INT NOT NULL," +
-            "doctor_id INT NOT NULL," +
-            "visit_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "diagnosis VARCHAR(255)," +
-            "symptoms TEXT," +
-            "treatment TEXT," +
-            "notes TEXT," +
-            "follow_up_date DATE," +
-            "record_type VARCHAR(50)," +
-            "FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE," +
-            "FOREIGN KEY (doctor_id) REFERENCES users(user_id)" +
-            ")",
-            
-            // Medications table
-            "CREATE TABLE IF NOT EXISTS medications (" +
-            "medication_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "patient_id INT NOT NULL," +
-            "doctor_id INT NOT NULL," +
-            "name VARCHAR(100) NOT NULL," +
-            "dosage VARCHAR(50)," +
-            "frequency VARCHAR(50)," +
-            "instructions TEXT," +
-            "purpose VARCHAR(255)," +
-            "start_date DATE," +
-            "end_date DATE," +
-            "is_current BOOLEAN DEFAULT TRUE," +
-            "side_effects TEXT," +
-            "notes TEXT," +
-            "FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE," +
-            "FOREIGN KEY (doctor_id) REFERENCES users(user_id)" +
-            ")",
-            
-            // Lab results table
-            "CREATE TABLE IF NOT EXISTS lab_results (" +
-            "result_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "patient_id INT NOT NULL," +
-            "doctor_id INT," +
-            "lab_tech_id INT," +
-            "test_name VARCHAR(100) NOT NULL," +
-            "test_type VARCHAR(50)," +
-            "result TEXT," +
-            "normal_range VARCHAR(100)," +
-            "unit VARCHAR(20)," +
-            "is_abnormal BOOLEAN DEFAULT FALSE," +
-            "test_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "result_date TIMESTAMP NULL DEFAULT NULL," +
-            "notes TEXT," +
-            "status VARCHAR(20) DEFAULT 'Pending'," +
-            "is_urgent BOOLEAN DEFAULT FALSE," +
-            "FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE," +
-            "FOREIGN KEY (doctor_id) REFERENCES users(user_id)," +
-            "FOREIGN KEY (lab_tech_id) REFERENCES users(user_id)" +
-            ")",
-            
-            // Notes table
-            "CREATE TABLE IF NOT EXISTS notes (" +
-            "note_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "patient_id INT NOT NULL," +
-            "author_id INT NOT NULL," +
-            "title VARCHAR(100)," +
-            "content TEXT," +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
-            "note_type VARCHAR(50) DEFAULT 'General'," +
-            "is_private BOOLEAN DEFAULT FALSE," +
-            "FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE," +
-            "FOREIGN KEY (author_id) REFERENCES users(user_id)" +
-            ")",
-            
-            // Sessions table - H2 compatible version
-            "CREATE TABLE IF NOT EXISTS sessions (" +
-            "session_id VARCHAR(100) PRIMARY KEY," +
-            "user_id INT NOT NULL," +
-            "ip_address VARCHAR(50)," +
-            "device_info VARCHAR(255)," +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "expires_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
-            "FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE" +
-            ")",
-            
-            // Login attempts table for security auditing
-            "CREATE TABLE IF NOT EXISTS login_attempts (" +
-            "attempt_id INT AUTO_INCREMENT PRIMARY KEY," +
-            "username VARCHAR(50) NOT NULL," +
-            "success BOOLEAN NOT NULL," +
-            "attempt_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "ip_address VARCHAR(50)" +
-            ")"
-        };
-        
         try (Connection conn = createConnection()) {
-            // Enable H2 compatibility mode for MySQL syntax if using H2
-            if (url.contains("h2")) {
-                conn.createStatement().execute("SET MODE MySQL");
-            }
-            
-            for (String sql : createTableSQL) {
-                conn.createStatement().execute(sql);
+            int applied = new SchemaMigrator(SchemaMigrator.dialectOf(url)).migrate(conn);
+            if (applied > 0) {
+                System.out.println("Database schema migrated to version " + SchemaMigrator.getLatestVersion());
             }
-            System.out.println("Database initialization completed successfully");
         } catch (SQLException e) {
             System.err.println("Error initializing database schema: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,38 @@
+package com.example.demo.database;
+
+import com.example.demo.model.Patient;
+
+/**
+ * An existing patient who is probably the same person as a patient being
+ * registered, with how closely the two match.
+ */
+public class DuplicateMatch {
+
+    private final Patient patient;
+    private final double score;
+
+    /**
+     * @param patient The existing patient
+     * @param score How closely the patients match, from 0 to 1
+     */
+    public DuplicateMatch(Patient patient, double score) {
+        this.patient = patient;
+        this.score = score;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    /**
+     * @return How closely the patients match, from 0 to 1
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "DuplicateMatch{patientId=" + patient.getPatientId() + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.demo.database;
+
+import com.example.demo.model.Patient;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds existing patients who are probably the same person as a patient about
+ * to be registered, despite typos, alternative spellings, swapped names or a
+ * new phone number.
+ * <p>
+ * Patients are kept in memory in blocks that share a key: the sound of the
+ * last name and the birth year, the sound of the first name and the birth
+ * date, the birth date and the last name's initial, the sound of the whole
+ * name, or the phone number. A check only scores the patients in the new
+ * patient's blocks, by edit distance between the names and by how closely
+ * the birth dates and phone numbers agree. Blocks shared by too many patients
+ * to say anything, such as a placeholder phone number, are skipped.
+ * <p>
+ * The table is read once, on first use. Patients written through
+ * {@link PatientDAO} are reported through {@link DataChangeEvents} and
+ * reloaded by primary key on the next check.
+ */
+public class DuplicatePatientDetector {
+
+    private static final String SELECT_SQL =
+            "SELECT patient_id, first_name, last_name, date_of_birth, phone_number FROM patients";
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final int MAX_BLOCK_SIZE = 500;
+    private static final int MAX_MATCHES = 5;
+    // Phone numbers are compared on their last digits, so prefixes don't matter
+    private static final int PHONE_DIGITS = 7;
+
+    private static final double NAME_WEIGHT = 0.5;
+    private static final double BIRTH_DATE_WEIGHT = 0.3;
+    private static final double PHONE_WEIGHT = 0.2;
+    // For example the same name and birth date, or a misspelled name with the same birth date and phone
+    private static final double MIN_SCORE = 0.7;
+
+    private static DuplicatePatientDetector instance;
+
+    private final Map<Integer, Person> people = new HashMap<>();
+    private final Map<String, int[]> blocks = new HashMap<>();
+    private final Set<Integer> changedIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    private DuplicatePatientDetector() {
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The duplicate patient detector
+     */
+    public static synchronized DuplicatePatientDetector getInstance() {
+        if (instance == null) {
+            instance = new DuplicatePatientDetector();
+            DataChangeEvents.addListener(instance::dataChanged);
+        }
+        return instance;
+    }
+
+    /**
+     * Read the patients table now rather than on the first check, for
+     * example in the background at startup.
+     *
+     * @return true if the detector is ready
+     */
+    public synchronized boolean ensureLoaded() {
+        try {
+            refresh();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error loading patients for duplicate detection: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Find existing patients who are probably the same person as a patient.
+     * The patient itself, if it has an ID, is not reported.
+     *
+     * @param patient The patient, e.g. as entered on the registration form
+     * @return Scores from 0 to 1 by patient ID, best match first; empty if
+     *         none is likely or the patients could not be loaded
+     */
+    public synchronized Map<Integer, Double> findDuplicates(Patient patient) {
+        Map<Integer, Double> duplicates = new LinkedHashMap<>();
+        try {
+            refresh();
+        } catch (SQLException e) {
+            System.err.println("Error loading patients for duplicate detection: " + e.getMessage());
+            e.printStackTrace();
+            return duplicates;
+        }
+
+        Person probe = new Person(patient.getPatientId(), patient.getFirstName(), patient.getLastName(),
+                patient.getDateOfBirth(), patient.getPhoneNumber());
+        Set<Integer> candidates = new HashSet<>();
+        for (String key : probe.keys(true)) {
+            int[] block = blocks.get(key);
+            if (block != null && block.length <= MAX_BLOCK_SIZE) {
+                for (int id : block) {
+                    candidates.add(id);
+                }
+            }
+        }
+        candidates.remove(probe.id);
+
+        List<Map.Entry<Integer, Double>> scored = new ArrayList<>();
+        for (Integer id : candidates) {
+            double score = probe.score(people.get(id));
+            if (score >= MIN_SCORE) {
+                scored.add(Map.entry(id, score));
+            }
+        }
+        scored.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        for (Map.Entry<Integer, Double> entry : scored.subList(0, Math.min(MAX_MATCHES, scored.size()))) {
+            duplicates.put(entry.getKey(), entry.getValue());
+        }
+        return duplicates;
+    }
+
+    /**
+     * Drop everything loaded, for example after patients were changed
+     * outside the DAOs. The table is read again on the next check.
+     */
+    public synchronized void invalidateAll() {
+        loaded = false;
+        changedIds.clear();
+        people.clear();
+        blocks.clear();
+    }
+
+    private void dataChanged(DataChangeEvents.Entity entity, int id) {
+        // Before the first load there is nothing to refresh
+        if (entity == DataChangeEvents.Entity.PATIENT && loaded) {
+            changedIds.add(id);
+        }
+    }
+
+    private void refresh() throws SQLException {
+        if (!loaded) {
+            load();
+        } else if (!changedIds.isEmpty()) {
+            reload();
+        }
+    }
+
+    private void load() throws SQLException {
+        long start = System.currentTimeMillis();
+        people.clear();
+        blocks.clear();
+        // Changes committed while the table is read are applied on the next check
+        loaded = true;
+        changedIds.clear();
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = DatabaseConnection.prepareStreamingStatement(conn, SELECT_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                add(rs);
+            }
+        } catch (SQLException e) {
+            loaded = false;
+            throw e;
+        }
+        System.out.println("Loaded " + people.size() + " patients into " + blocks.size() +
+                " duplicate detection blocks in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void reload() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (Iterator<Integer> iterator = changedIds.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                for (Integer id : chunk) {
+                    remove(id);
+                }
+
+                // Deleted patients stay removed
+                Criteria criteria = new Criteria().in("patient_id", chunk);
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_SQL + criteria.toWhereClause())) {
+                    criteria.bind(stmt, 1);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            add(rs);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // Try again on the next check
+            changedIds.addAll(ids);
+            throw e;
+        }
+    }
+
+    private void add(ResultSet rs) throws SQLException {
+        Date dateOfBirth = rs.getDate("date_of_birth");
+        Person person = new Person(rs.getInt("patient_id"), rs.getString("first_name"), rs.getString("last_name"),
+                dateOfBirth != null ? dateOfBirth.toLocalDate() : null, rs.getString("phone_number"));
+        people.put(person.id, person);
+        // Most blocks hold one or two patients, so plain arrays keep them small
+        for (String key : person.keys(false)) {
+            int[] block = blocks.get(key);
+            if (block == null) {
+                blocks.put(key, new int[] {person.id});
+            } else {
+                block = Arrays.copyOf(block, block.length + 1);
+                block[block.length - 1] = person.id;
+                blocks.put(key, block);
+            }
+        }
+    }
+
+    private void remove(int id) {
+        Person person = people.remove(id);
+        if (person == null) {
+            return;
+        }
+        for (String key : person.keys(false)) {
+            int[] block = blocks.get(key);
+            if (block != null) {
+                int[] rest = Arrays.stream(block).filter(blockId -> blockId != id).toArray();
+                if (rest.length == 0) {
+                    blocks.remove(key);
+                } else {
+                    blocks.put(key, rest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Edit distance between two strings: the number of single-character
+     * insertions, deletions and substitutions that turn one into the other.
+     */
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * The matching fields of one patient, normalized once.
+     */
+    private static final class Person {
+        private final int id;
+        private final String firstName;
+        private final String lastName;
+        private final String firstCode;
+        private final String lastCode;
+        private final LocalDate dateOfBirth;
+        private final String phone;
+
+        Person(int id, String firstName, String lastName, LocalDate dateOfBirth, String phone) {
+            this.id = id;
+            this.firstName = firstName != null ? NameResolver.normalize(firstName, false) : "";
+            this.lastName = lastName != null ? NameResolver.normalize(lastName, false) : "";
+            this.firstCode = Metaphone.encode(this.firstName);
+            this.lastCode = Metaphone.encode(this.lastName);
+            this.dateOfBirth = dateOfBirth;
+            String digits = phone != null ? phone.replaceAll("[^0-9]", "") : "";
+            this.phone = digits.length() >= PHONE_DIGITS ? digits.substring(digits.length() - PHONE_DIGITS) : "";
+        }
+
+        /**
+         * @param probe Whether the keys are for a check rather than for
+         *        storing; a check also looks under the swapped name
+         */
+        List<String> keys(boolean probe) {
+            List<String> keys = new ArrayList<>(6);
+            if (dateOfBirth != null) {
+                if (!lastCode.isEmpty()) {
+                    keys.add("L" + lastCode + "|" + dateOfBirth.getYear());
+                }
+                if (!firstCode.isEmpty()) {
+                    keys.add("F" + firstCode + "|" + dateOfBirth);
+                }
+                if (!lastName.isEmpty()) {
+                    keys.add("D" + dateOfBirth + "|" + lastName.charAt(0));
+                }
+            }
+            if (!firstCode.isEmpty() && !lastCode.isEmpty()) {
+                keys.add("N" + lastCode + "|" + firstCode);
+                if (probe) {
+                    keys.add("N" + firstCode + "|" + lastCode);
+                }
+            }
+            if (!phone.isEmpty()) {
+                keys.add("P" + phone);
+            }
+            return keys;
+        }
+
+        /**
+         * Weigh how closely the names, birth dates and phone numbers agree.
+         * Fields missing on either side are left out of the score.
+         */
+        double score(Person other) {
+            double total = NAME_WEIGHT * nameSimilarity(other);
+            double weights = NAME_WEIGHT;
+            if (dateOfBirth != null && other.dateOfBirth != null) {
+                total += BIRTH_DATE_WEIGHT * birthDateSimilarity(other.dateOfBirth);
+                weights += BIRTH_DATE_WEIGHT;
+            }
+            if (!phone.isEmpty() && !other.phone.isEmpty()) {
+                total += PHONE_WEIGHT * (phone.equals(other.phone) ? 1.0 :
+                        levenshtein(phone, other.phone) == 1 ? 0.5 : 0.0);
+                weights += PHONE_WEIGHT;
+            }
+            return total / weights;
+        }
+
+        private double nameSimilarity(Person other) {
+            double straight = (similarity(firstName, firstCode, other.firstName, other.firstCode) +
+                    similarity(lastName, lastCode, other.lastName, other.lastCode)) / 2;
+            double swapped = (similarity(firstName, firstCode, other.lastName, other.lastCode) +
+                    similarity(lastName, lastCode, other.firstName, other.firstCode)) / 2;
+            // The same name split differently, e.g. "Mary Ann" "Smith" and "Mary" "Ann Smith"
+            String joined = (firstName + lastName).replace(" ", "");
+            String otherJoined = (other.firstName + other.lastName).replace(" ", "");
+            double whole = similarity(joined, "", otherJoined, "");
+            return Math.max(straight, Math.max(swapped, whole));
+        }
+
+        private double birthDateSimilarity(LocalDate other) {
+            if (dateOfBirth.equals(other)) {
+                return 1.0;
+            }
+            // Day and month entered the wrong way round
+            if (dateOfBirth.getYear() == other.getYear() &&
+                    dateOfBirth.getMonthValue() == other.getDayOfMonth() &&
+                    dateOfBirth.getDayOfMonth() == other.getMonthValue()) {
+                return 0.8;
+            }
+            // One mistyped digit
+            return levenshtein(dateOfBirth.toString(), other.toString()) == 1 ? 0.6 : 0.0;
+        }
+
+        private static double similarity(String a, String aCode, String b, String bCode) {
+            if (a.isEmpty() || b.isEmpty()) {
+                return 0.0;
+            }
+            if (a.equals(b)) {
+                return 1.0;
+            }
+            double spelling = 1.0 - (double) levenshtein(a, b) / Math.max(a.length(), b.length());
+            // Spelled differently but pronounced the same, e.g. "Catherine" and "Kathryn"
+            return !aCode.isEmpty() && aCode.equals(bCode) ? Math.max(spelling, 0.85) : spelling;
+        }
+    }
+}
@@ -0,0 +1,603 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Ranked full-text search over the clinical text of medical records
+ * (symptoms, diagnosis, treatment, notes) and notes (title, content).
+ * Archived medical records are searched along with the others.
+ * <p>
+ * On MySQL the search runs against the FULLTEXT indexes created by migrations
+ * V4 and V10, in natural language mode. Elsewhere, or if those indexes are missing,
+ * it falls back to an inverted index held in memory and scored with BM25. The
+ * memory index is built on the first search and kept current from
+ * {@link DataChangeEvents}: rows the DAOs report as changed are reloaded
+ * before the next search.
+ * <p>
+ * Either way a search returns the same shape: hits from both tables ranked
+ * together, most relevant first, in pages.
+ */
+public class FullTextSearch {
+
+    private static final String RECORD_TEXT_COLUMNS = "symptoms, diagnosis, treatment, notes";
+    private static final String NOTE_TEXT_COLUMNS = "title, content";
+
+    // Medical records live in the hot table or, once old enough, the archive
+    private static final List<String> RECORD_TABLES = List.of("medical_records", "medical_records_archive");
+
+    private static final String RECORD_MATCH =
+            "MATCH(" + RECORD_TEXT_COLUMNS + ") AGAINST (? IN NATURAL LANGUAGE MODE)";
+    private static final String NOTE_MATCH =
+            "MATCH(" + NOTE_TEXT_COLUMNS + ") AGAINST (? IN NATURAL LANGUAGE MODE)";
+
+    // Every table's search selects the same columns, so the hits map the same way; %s is the record table.
+    // The WHERE clause, with the match and any filters, is added per search.
+    private static final String RECORD_SEARCH_SQL =
+            "SELECT 'R' AS source, record_id AS id, patient_id, patient_name, " +
+            "COALESCE(diagnosis, visit_type) AS title, visit_date AS item_date, " + RECORD_MATCH + " AS score FROM %s";
+    private static final String NOTE_SEARCH_SQL =
+            "SELECT 'N' AS source, note_id AS id, patient_id, NULL AS patient_name, title, created_date AS item_date, " +
+            NOTE_MATCH + " AS score FROM notes";
+
+    // %s is the record table
+    private static final String RECORD_INDEX_SQL =
+            "SELECT record_id, patient_id, patient_name, visit_type, visit_date, " + RECORD_TEXT_COLUMNS + " FROM %s";
+    private static final String NOTE_INDEX_SQL =
+            "SELECT note_id, patient_id, created_date, " + NOTE_TEXT_COLUMNS + " FROM notes";
+
+    // MySQL: no FULLTEXT index matches the MATCH column list
+    private static final int FULLTEXT_INDEX_MISSING = 1191;
+
+    // Standard BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "in", "is",
+            "it", "of", "on", "or", "the", "to", "was", "were", "with");
+
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final Comparator<Map.Entry<Long, Double>> BEST_FIRST =
+            Map.Entry.<Long, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+
+    private static FullTextSearch instance;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private long totalTerms;
+
+    // Null until the first search has looked at the database dialect
+    private volatile Boolean useServerIndex;
+    private volatile boolean indexBuilt;
+    private volatile boolean trackingChanges;
+    private final Set<Integer> changedRecords = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> changedNotes = ConcurrentHashMap.newKeySet();
+
+    private FullTextSearch() {
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The full-text search
+     */
+    public static synchronized FullTextSearch getInstance() {
+        if (instance == null) {
+            instance = new FullTextSearch();
+            DataChangeEvents.addListener(instance::dataChanged);
+        }
+        return instance;
+    }
+
+    /**
+     * Search medical records and notes for any of the words in a query.
+     * Rows containing more of the words, and rarer words, rank higher.
+     *
+     * @param query The words to search for, e.g. "chest pain metformin"
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of hits to return
+     * @return The page of hits, most relevant first; empty if the query has no searchable words or there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     */
+    public Page<SearchHit> search(String query, String pageToken, int limit) {
+        return search(query, null, null, pageToken, limit);
+    }
+
+    /**
+     * Search medical records or notes, optionally of one patient, for any of
+     * the words in a query.
+     *
+     * @param query The words to search for, e.g. "chest pain metformin"
+     * @param source The table to search, or null for both
+     * @param patientId The patient whose records or notes to search, or null for every patient
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of hits to return
+     * @return The page of hits, most relevant first; empty if the query has no searchable words or there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     * @see #search(String, String, int)
+     */
+    public Page<SearchHit> search(String query, SearchHit.Source source, Integer patientId, String pageToken,
+                                  int limit) {
+        return search(query, source, patientId, null, pageToken, limit);
+    }
+
+    /**
+     * Search medical records or notes for any of the words in a query,
+     * keeping only the medical records that match a filter. The filter is
+     * applied before paging, so every page but the last holds limit hits.
+     *
+     * @param query The words to search for, e.g. "chest pain metformin"
+     * @param source The table to search, or null for both
+     * @param patientId The patient whose records or notes to search, or null for every patient
+     * @param recordFilter Conditions on medical_records columns, such as status or visit_date; null for none.
+     *                     Notes are not filtered.
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of hits to return
+     * @return The page of hits, most relevant first; empty if the query has no searchable words or there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     */
+    public Page<SearchHit> search(String query, SearchHit.Source source, Integer patientId, Criteria recordFilter,
+                                  String pageToken, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        int offset = 0;
+        if (pageToken != null) {
+            offset = Integer.parseInt(PageToken.decode(pageToken, 1)[0]);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+        }
+
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty()) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+
+        try {
+            // One extra hit tells us whether there is a next page
+            List<SearchHit> hits = search(query, terms, source, patientId, recordFilter, offset, limit + 1);
+            String nextPageToken = null;
+            if (hits.size() > limit) {
+                hits = hits.subList(0, limit);
+                nextPageToken = PageToken.encode(String.valueOf(offset + limit));
+            }
+            return new Page<>(new ArrayList<>(hits), nextPageToken);
+        } catch (SQLException e) {
+            System.err.println("Error searching for \"" + query + "\": " + e.getMessage());
+            e.printStackTrace();
+            return new Page<>(new ArrayList<>(), null);
+        }
+    }
+
+    private void dataChanged(DataChangeEvents.Entity entity, int id) {
+        if (!trackingChanges) {
+            return;
+        }
+        if (entity == DataChangeEvents.Entity.MEDICAL_RECORD) {
+            changedRecords.add(id);
+        } else if (entity == DataChangeEvents.Entity.NOTE) {
+            changedNotes.add(id);
+        }
+    }
+
+    private List<SearchHit> search(String query, List<String> terms, SearchHit.Source source, Integer patientId,
+                                   Criteria recordFilter, int offset, int count) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            if (useServerIndex == null) {
+                useServerIndex = "mysql".equals(SchemaMigrator.dialectOf(conn.getMetaData().getURL()));
+            }
+            if (useServerIndex) {
+                try {
+                    return searchServerIndex(conn, query, source, patientId, recordFilter, offset, count);
+                } catch (SQLException e) {
+                    if (e.getErrorCode() != FULLTEXT_INDEX_MISSING) {
+                        throw e;
+                    }
+                    System.err.println("FULLTEXT indexes are missing, using the in-memory search index: " +
+                            e.getMessage());
+                    useServerIndex = false;
+                }
+            }
+        }
+        if (recordFilter == null || recordFilter.isEmpty()) {
+            return searchMemoryIndex(terms, source, patientId, offset, count);
+        }
+        return filterHits(searchMemoryIndex(terms, source, patientId, 0, Integer.MAX_VALUE), recordFilter,
+                offset, count);
+    }
+
+    private List<SearchHit> searchServerIndex(Connection conn, String query, SearchHit.Source source,
+                                              Integer patientId, Criteria recordFilter, int offset, int count)
+            throws SQLException {
+        List<String> parts = new ArrayList<>();
+        List<Criteria> conditions = new ArrayList<>();
+        if (source != SearchHit.Source.NOTE) {
+            for (String table : RECORD_TABLES) {
+                Criteria criteria = new Criteria().where(RECORD_MATCH, query).eq("patient_id", patientId)
+                        .and(recordFilter);
+                parts.add(String.format(RECORD_SEARCH_SQL, table) + criteria.toWhereClause());
+                conditions.add(criteria);
+            }
+        }
+        if (source != SearchHit.Source.MEDICAL_RECORD) {
+            Criteria criteria = new Criteria().where(NOTE_MATCH, query).eq("patient_id", patientId);
+            parts.add(NOTE_SEARCH_SQL + criteria.toWhereClause());
+            conditions.add(criteria);
+        }
+        String sql = String.join(" UNION ALL ", parts) + " ORDER BY score DESC, id DESC LIMIT ? OFFSET ?";
+
+        List<SearchHit> hits = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Criteria criteria : conditions) {
+                // The score's MATCH comes before the WHERE clause
+                stmt.setString(index++, query);
+                index = criteria.bind(stmt, index);
+            }
+            stmt.setInt(index++, count);
+            stmt.setInt(index, offset);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp date = rs.getTimestamp("item_date");
+                    hits.add(new SearchHit(
+                            "R".equals(rs.getString("source")) ? SearchHit.Source.MEDICAL_RECORD : SearchHit.Source.NOTE,
+                            rs.getInt("id"),
+                            rs.getInt("patient_id"),
+                            rs.getString("patient_name"),
+                            rs.getString("title"),
+                            date != null ? date.toLocalDateTime() : null,
+                            rs.getDouble("score")));
+                }
+            }
+        }
+        return hits;
+    }
+
+    private List<SearchHit> searchMemoryIndex(List<String> terms, SearchHit.Source source, Integer patientId,
+                                              int offset, int count) throws SQLException {
+        ensureMemoryIndex();
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return new ArrayList<>();
+            }
+            double averageLength = (double) totalTerms / documentCount;
+
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+                    Document doc = documents.get(entry.getKey());
+                    if ((source != null && doc.source != source) ||
+                            (patientId != null && doc.patientId != patientId)) {
+                        continue;
+                    }
+                    double tf = entry.getValue();
+                    double lengthRatio = doc.length / averageLength;
+                    double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengthRatio));
+                    scores.merge(entry.getKey(), score, Double::sum);
+                }
+            }
+
+            // Keep only the best offset + count hits rather than sorting every match
+            int wanted = offset + count;
+            PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(BEST_FIRST.reversed());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                best.offer(entry);
+                if (best.size() > wanted) {
+                    best.poll();
+                }
+            }
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(best);
+            ranked.sort(BEST_FIRST);
+
+            List<SearchHit> hits = new ArrayList<>();
+            for (int i = offset; i < ranked.size(); i++) {
+                Map.Entry<Long, Double> entry = ranked.get(i);
+                Document doc = documents.get(entry.getKey());
+                hits.add(new SearchHit(doc.source, doc.id, doc.patientId, doc.patientName, doc.title,
+                        doc.date, entry.getValue()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keep the ranked hits whose medical record matches a filter, checking
+     * them in rank order a chunk at a time until the page is full.
+     *
+     * @param ranked Every hit of the search, most relevant first
+     * @return The filtered hits from offset, at most count of them
+     */
+    private List<SearchHit> filterHits(List<SearchHit> ranked, Criteria recordFilter, int offset, int count)
+            throws SQLException {
+        long wanted = (long) offset + count;
+        List<SearchHit> kept = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (int from = 0; from < ranked.size() && kept.size() < wanted; from += MAX_IDS_PER_QUERY) {
+                List<SearchHit> chunk = ranked.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ranked.size()));
+                List<Integer> recordIds = new ArrayList<>();
+                for (SearchHit hit : chunk) {
+                    if (hit.getSource() == SearchHit.Source.MEDICAL_RECORD) {
+                        recordIds.add(hit.getId());
+                    }
+                }
+
+                Set<Integer> matching = new HashSet<>();
+                if (!recordIds.isEmpty()) {
+                    Criteria criteria = new Criteria().in("record_id", recordIds).and(recordFilter);
+                    for (String table : RECORD_TABLES) {
+                        try (PreparedStatement stmt = conn.prepareStatement(
+                                "SELECT record_id FROM " + table + criteria.toWhereClause())) {
+                            criteria.bind(stmt, 1);
+                            try (ResultSet rs = stmt.executeQuery()) {
+                                while (rs.next()) {
+                                    matching.add(rs.getInt("record_id"));
+                                }
+                            }
+                        }
+                    }
+                }
+
+                for (SearchHit hit : chunk) {
+                    if (hit.getSource() != SearchHit.Source.MEDICAL_RECORD || matching.contains(hit.getId())) {
+                        kept.add(hit);
+                        if (kept.size() == wanted) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return offset < kept.size() ? kept.subList(offset, kept.size()) : new ArrayList<>();
+    }
+
+    /**
+     * Build the memory index on first use and apply the changes reported since the last search.
+     */
+    private void ensureMemoryIndex() throws SQLException {
+        if (!indexBuilt) {
+            lock.writeLock().lock();
+            try {
+                if (!indexBuilt) {
+                    // Changes committed while the tables are read are applied again afterwards
+                    trackingChanges = true;
+                    changedRecords.clear();
+                    changedNotes.clear();
+                    buildMemoryIndex();
+                    indexBuilt = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        applyChanges();
+    }
+
+    private void buildMemoryIndex() throws SQLException {
+        long start = System.currentTimeMillis();
+        postings.clear();
+        documents.clear();
+        totalTerms = 0;
+
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (String table : RECORD_TABLES) {
+                try (PreparedStatement stmt = DatabaseConnection.prepareStreamingStatement(conn,
+                        String.format(RECORD_INDEX_SQL, table));
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        indexRecord(rs);
+                    }
+                }
+            }
+            try (PreparedStatement stmt = DatabaseConnection.prepareStreamingStatement(conn, NOTE_INDEX_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    indexNote(rs);
+                }
+            }
+        }
+
+        System.out.println("Built full-text search index of " + documents.size() + " documents and " +
+                postings.size() + " terms in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void applyChanges() throws SQLException {
+        if (changedRecords.isEmpty() && changedNotes.isEmpty()) {
+            return;
+        }
+        List<Integer> recordIds = drain(changedRecords);
+        List<Integer> noteIds = drain(changedNotes);
+
+        lock.writeLock().lock();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            List<String> recordQueries = new ArrayList<>();
+            for (String table : RECORD_TABLES) {
+                recordQueries.add(String.format(RECORD_INDEX_SQL, table));
+            }
+            reindex(conn, recordQueries, "record_id", SearchHit.Source.MEDICAL_RECORD, recordIds);
+            reindex(conn, List.of(NOTE_INDEX_SQL), "note_id", SearchHit.Source.NOTE, noteIds);
+        } catch (SQLException e) {
+            // Try again on the next search
+            changedRecords.addAll(recordIds);
+            changedNotes.addAll(noteIds);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reload changed rows into the index and drop the ones that no longer exist.
+     *
+     * @param queries The queries that read the rows, one per table they may be in
+     */
+    private void reindex(Connection conn, List<String> queries, String idColumn, SearchHit.Source source,
+                         List<Integer> ids) throws SQLException {
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+            for (Integer id : chunk) {
+                remove(key(source, id));
+            }
+
+            Criteria criteria = new Criteria().in(idColumn, chunk);
+            for (String sql : queries) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql + criteria.toWhereClause())) {
+                    criteria.bind(stmt, 1);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (source == SearchHit.Source.MEDICAL_RECORD) {
+                                indexRecord(rs);
+                            } else {
+                                indexNote(rs);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void indexRecord(ResultSet rs) throws SQLException {
+        String diagnosis = rs.getString("diagnosis");
+        Timestamp visitDate = rs.getTimestamp("visit_date");
+        Document doc = new Document(SearchHit.Source.MEDICAL_RECORD, rs.getInt("record_id"),
+                rs.getInt("patient_id"), rs.getString("patient_name"),
+                diagnosis != null ? diagnosis : rs.getString("visit_type"),
+                visitDate != null ? visitDate.toLocalDateTime() : null);
+        index(doc, rs.getString("symptoms"), diagnosis, rs.getString("treatment"), rs.getString("notes"));
+    }
+
+    private void indexNote(ResultSet rs) throws SQLException {
+        String title = rs.getString("title");
+        Timestamp createdDate = rs.getTimestamp("created_date");
+        Document doc = new Document(SearchHit.Source.NOTE, rs.getInt("note_id"), rs.getInt("patient_id"),
+                null, title, createdDate != null ? createdDate.toLocalDateTime() : null);
+        index(doc, title, rs.getString("content"));
+    }
+
+    private void index(Document doc, String... texts) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String text : texts) {
+            for (String term : tokenize(text)) {
+                frequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+        }
+
+        long key = key(doc.source, doc.id);
+        remove(key);
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(key, entry.getValue());
+        }
+        doc.length = length;
+        doc.terms = frequencies.keySet().toArray(new String[0]);
+        documents.put(key, doc);
+        totalTerms += length;
+    }
+
+    private void remove(long key) {
+        Document doc = documents.remove(key);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms) {
+            Map<Long, Integer> posting = postings.get(term);
+            posting.remove(key);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalTerms -= doc.length;
+    }
+
+    private static long key(SearchHit.Source source, int id) {
+        return ((long) id << 1) | (source == SearchHit.Source.NOTE ? 1 : 0);
+    }
+
+    private static List<Integer> drain(Set<Integer> ids) {
+        List<Integer> drained = new ArrayList<>();
+        for (Iterator<Integer> iterator = ids.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * Split text into lower-case words, dropping single characters and common
+     * English stopwords.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (token.length() > 1 && !STOPWORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * A row in the memory index.
+     */
+    private static final class Document {
+        private final SearchHit.Source source;
+        private final int id;
+        private final int patientId;
+        private final String patientName;
+        private final String title;
+        private final LocalDateTime date;
+        private int length;
+        private String[] terms;
+
+        private Document(SearchHit.Source source, int id, int patientId, String patientName, String title,
+                         LocalDateTime date) {
+            this.source = source;
+            this.id = id;
+            this.patientId = patientId;
+            this.patientName = patientName;
+            this.title = title;
+            this.date = date;
+        }
+    }
+}
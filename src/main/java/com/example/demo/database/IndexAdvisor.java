@@ -0,0 +1,705 @@
+package com.example.demo.database;
+
+import com.example.demo.model.UserRole;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Development tool that captures the SQL the DAOs issue, runs EXPLAIN on each
+ * statement and reports full table scans, filesorts and predicates that cannot
+ * use an index. From those findings it proposes composite indexes, skipping
+ * any that an existing index already covers.
+ * <p>
+ * Plans depend on table sizes, so run it against a copy of production data:
+ * <pre>
+ * java com.example.demo.database.IndexAdvisor [jdbcUrl [username [password]]]
+ * </pre>
+ * Without arguments the URL from database.properties is used. An embedded H2
+ * database (e.g. jdbc:h2:mem:advisor;MODE=MySQL;DB_CLOSE_DELAY=-1) works too.
+ */
+public class IndexAdvisor {
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+    private static final String COLUMN = "([a-z_][\\w.]*)";
+
+    private static final Pattern FUNCTION_ON_COLUMN = Pattern.compile(
+            "\\b(DATE|YEAR|MONTH|DAY|LOWER|UPPER|TRIM|SUBSTRING|CONCAT|COALESCE|IFNULL)\\s*\\(\\s*" + COLUMN + "\\s*([,)])", FLAGS);
+    private static final Pattern LIKE_PREDICATE = Pattern.compile("(\\S+)\\s+LIKE\\s+(\\?|'[^']*')", FLAGS);
+    private static final Pattern OR_ACROSS_COLUMNS = Pattern.compile(
+            COLUMN + "\\s*(?:=|LIKE)\\s*\\?\\s+OR\\s+" + COLUMN + "\\s*(?:=|LIKE)", FLAGS);
+    private static final Pattern EQUALITY = Pattern.compile(
+            "(?<![\\w.(])" + COLUMN + "\\s*=\\s*(?:\\?|'[^']*'|\\d+)", FLAGS);
+    private static final Pattern RANGE = Pattern.compile(
+            COLUMN + "\\s*(?:>=|<=|>|<)\\s*[?'\\d]|" + COLUMN + "\\s+BETWEEN\\s", FLAGS);
+    private static final Pattern MAIN_TABLE = Pattern.compile("^(?:SELECT\\b.*?\\bFROM|UPDATE|DELETE\\s+FROM)\\s+(\\w+)", FLAGS);
+    private static final Pattern WHERE_CLAUSE = Pattern.compile(
+            "\\bWHERE\\s+(.+?)(?:\\s+ORDER\\s+BY\\b|\\s+GROUP\\s+BY\\b|\\s+LIMIT\\b|$)", FLAGS);
+    private static final Pattern ORDER_BY_CLAUSE = Pattern.compile(
+            "\\bORDER\\s+BY\\s+(.+?)(?:\\s+LIMIT\\b|\\s+OFFSET\\b|$)", FLAGS);
+    private static final Pattern H2_TABLE_SCAN = Pattern.compile("(\\w+)\\.tableScan", FLAGS);
+
+    // Composite indexes wider than this rarely pay for their write cost
+    private static final int MAX_INDEX_COLUMNS = 4;
+
+    // Normalized SQL -> parameters bound on its first execution
+    private final Map<String, List<Object>> capturedQueries = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final UnaryOperator<Connection> captureDecorator = this::capture;
+
+    /**
+     * Kinds of problems the advisor reports.
+     */
+    public enum Problem {
+        FULL_SCAN,
+        FILESORT,
+        TEMPORARY_TABLE,
+        NON_SARGABLE
+    }
+
+    /**
+     * Start capturing the SQL issued on connections from {@link DatabaseConnection}.
+     */
+    public void startCapture() {
+        DatabaseConnection.getInstance().addConnectionDecorator(captureDecorator);
+    }
+
+    /**
+     * Stop capturing SQL.
+     */
+    public void stopCapture() {
+        DatabaseConnection.getInstance().removeConnectionDecorator(captureDecorator);
+    }
+
+    /**
+     * Add a query to analyse without executing it through a DAO.
+     *
+     * @param sql The SQL text
+     * @param parameters Representative parameter values, in order
+     */
+    public void addQuery(String sql, List<Object> parameters) {
+        capturedQueries.putIfAbsent(normalize(sql), new ArrayList<>(parameters));
+    }
+
+    /**
+     * Get the distinct queries captured so far.
+     *
+     * @return Normalized SQL mapped to the parameters it was first executed with
+     */
+    public Map<String, List<Object>> getCapturedQueries() {
+        synchronized (capturedQueries) {
+            return new LinkedHashMap<>(capturedQueries);
+        }
+    }
+
+    /**
+     * Run EXPLAIN and the predicate checks on every captured query.
+     *
+     * @param conn The connection to explain on
+     * @return One analysis per captured query
+     * @throws SQLException If the database metadata could not be read
+     */
+    public List<QueryAnalysis> analyze(Connection conn) throws SQLException {
+        String dialect = SchemaMigrator.dialectOf(conn.getMetaData().getURL());
+        List<QueryAnalysis> analyses = new ArrayList<>();
+
+        for (Map.Entry<String, List<Object>> entry : getCapturedQueries().entrySet()) {
+            QueryAnalysis analysis = new QueryAnalysis(entry.getKey(), entry.getValue());
+            analysis.findings.addAll(checkPredicates(analysis.sql, analysis.parameters));
+            try {
+                if ("h2".equals(dialect)) {
+                    analysis.findings.addAll(explainH2(conn, analysis));
+                } else {
+                    analysis.findings.addAll(explainMySql(conn, analysis));
+                }
+            } catch (SQLException e) {
+                analysis.explainError = e.getMessage();
+            }
+            analyses.add(analysis);
+        }
+        return analyses;
+    }
+
+    /**
+     * Propose composite indexes for the queries that scan or sort.
+     * Each proposal puts equality columns first, then one range column or,
+     * failing that, the ORDER BY columns, so the index can serve both the
+     * filter and the sort.
+     *
+     * @param conn The connection used to look up existing indexes
+     * @param analyses The output of {@link #analyze}
+     * @return Proposed indexes not already covered by an existing index
+     * @throws SQLException If the database metadata could not be read
+     */
+    public List<IndexProposal> proposeIndexes(Connection conn, List<QueryAnalysis> analyses) throws SQLException {
+        Map<String, IndexProposal> proposals = new LinkedHashMap<>();
+        Map<String, List<List<String>>> existingIndexes = new LinkedHashMap<>();
+
+        for (QueryAnalysis analysis : analyses) {
+            if (!analysis.needsIndex()) {
+                continue;
+            }
+            Matcher tableMatcher = MAIN_TABLE.matcher(analysis.sql);
+            if (!tableMatcher.find()) {
+                continue;
+            }
+            String table = tableMatcher.group(1).toLowerCase(Locale.ROOT);
+            List<String> columns = candidateColumns(analysis.sql);
+            if (columns.isEmpty()) {
+                continue;
+            }
+
+            List<List<String>> existing = existingIndexes.get(table);
+            if (existing == null) {
+                existing = getIndexColumns(conn, table);
+                existingIndexes.put(table, existing);
+            }
+            if (isCovered(existing, columns)) {
+                continue;
+            }
+
+            String key = table + columns;
+            IndexProposal proposal = proposals.get(key);
+            if (proposal == null) {
+                proposal = new IndexProposal(table, columns);
+                proposals.put(key, proposal);
+            }
+            proposal.queries.add(analysis.sql);
+        }
+        return new ArrayList<>(proposals.values());
+    }
+
+    /**
+     * Analyse the captured queries and format the findings and proposals.
+     *
+     * @param conn The connection to explain on
+     * @return A human-readable report
+     * @throws SQLException If the database metadata could not be read
+     */
+    public String report(Connection conn) throws SQLException {
+        List<QueryAnalysis> analyses = analyze(conn);
+        List<IndexProposal> proposals = proposeIndexes(conn, analyses);
+
+        StringBuilder report = new StringBuilder();
+        int flagged = 0;
+        for (QueryAnalysis analysis : analyses) {
+            if (analysis.findings.isEmpty() && analysis.explainError == null) {
+                continue;
+            }
+            flagged++;
+            report.append('[').append(flagged).append("] ").append(analysis.sql).append('\n');
+            for (Finding finding : analysis.findings) {
+                report.append("    ").append(finding).append('\n');
+            }
+            if (analysis.explainError != null) {
+                report.append("    EXPLAIN failed: ").append(analysis.explainError).append('\n');
+            }
+        }
+
+        report.insert(0, "Index advisor: " + analyses.size() + " queries analysed, " + flagged + " with findings\n\n");
+        report.append('\n');
+        if (proposals.isEmpty()) {
+            report.append("No new indexes proposed.\n");
+        } else {
+            report.append("Proposed indexes:\n");
+            for (IndexProposal proposal : proposals) {
+                report.append(proposal.toSql()).append('\n');
+                report.append("    -- helps ").append(proposal.queries.size()).append(" quer")
+                        .append(proposal.queries.size() == 1 ? "y" : "ies").append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    private List<Finding> checkPredicates(String sql, List<Object> parameters) {
+        List<Finding> findings = new ArrayList<>();
+        Matcher whereMatcher = WHERE_CLAUSE.matcher(sql);
+        if (!whereMatcher.find()) {
+            return findings;
+        }
+        String where = whereMatcher.group(1);
+        int whereOffset = whereMatcher.start(1);
+
+        Matcher function = FUNCTION_ON_COLUMN.matcher(where);
+        while (function.find()) {
+            String fn = function.group(1).toUpperCase(Locale.ROOT);
+            String hint = isDatePart(fn)
+                    ? "; compare " + function.group(2) + " against a half-open range instead"
+                    : "; an index on " + function.group(2) + " cannot be used";
+            String call = fn + "(" + function.group(2) + (function.group(3).equals(",") ? ", ...)" : ")");
+            findings.add(new Finding(Problem.NON_SARGABLE, null, call + " wraps the column" + hint));
+        }
+
+        Matcher like = LIKE_PREDICATE.matcher(where);
+        while (like.find()) {
+            String pattern = like.group(2);
+            if ("?".equals(pattern)) {
+                int index = countPlaceholders(sql.substring(0, whereOffset + like.start(2)));
+                Object value = index < parameters.size() ? parameters.get(index) : null;
+                pattern = value == null ? null : value.toString();
+            } else {
+                pattern = pattern.substring(1);
+            }
+            if (pattern != null && (pattern.startsWith("%") || pattern.startsWith("_"))) {
+                findings.add(new Finding(Problem.NON_SARGABLE, null,
+                        like.group(1) + " LIKE with a leading wildcard scans every row"));
+            }
+        }
+
+        Matcher or = OR_ACROSS_COLUMNS.matcher(where);
+        while (or.find()) {
+            if (!or.group(1).equalsIgnoreCase(or.group(2))) {
+                findings.add(new Finding(Problem.NON_SARGABLE, null,
+                        "OR across " + or.group(1) + " and " + or.group(2) + " prevents a single index range scan"));
+            }
+        }
+        return findings;
+    }
+
+    private List<Finding> explainMySql(Connection conn, QueryAnalysis analysis) throws SQLException {
+        List<Finding> findings = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + analysis.sql)) {
+            bind(stmt, analysis.parameters);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    String type = rs.getString("type");
+                    String key = rs.getString("key");
+                    String extra = rs.getString("Extra");
+                    long rows = rs.getLong("rows");
+
+                    if ("ALL".equals(type)) {
+                        findings.add(new Finding(Problem.FULL_SCAN, table, "type=ALL, ~" + rows + " rows examined"));
+                    } else if ("index".equals(type)) {
+                        findings.add(new Finding(Problem.FULL_SCAN, table, "full scan of index " + key + ", ~" + rows + " rows"));
+                    }
+                    if (extra != null && extra.contains("Using filesort")) {
+                        findings.add(new Finding(Problem.FILESORT, table, "Using filesort"));
+                    }
+                    if (extra != null && extra.contains("Using temporary")) {
+                        findings.add(new Finding(Problem.TEMPORARY_TABLE, table, "Using temporary"));
+                    }
+                }
+            }
+        }
+        return findings;
+    }
+
+    private List<Finding> explainH2(Connection conn, QueryAnalysis analysis) throws SQLException {
+        List<Finding> findings = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + analysis.sql)) {
+            bind(stmt, analysis.parameters);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String plan = rs.getString(1);
+                    Matcher scan = H2_TABLE_SCAN.matcher(plan);
+                    while (scan.find()) {
+                        findings.add(new Finding(Problem.FULL_SCAN, scan.group(1).toLowerCase(Locale.ROOT), "tableScan"));
+                    }
+                    if (plan.toUpperCase(Locale.ROOT).contains("ORDER BY") && !plan.contains("index sorted")) {
+                        findings.add(new Finding(Problem.FILESORT, null, "rows are sorted after they are read"));
+                    }
+                }
+            }
+        }
+        return findings;
+    }
+
+    private static void bind(PreparedStatement stmt, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            if (value == null) {
+                stmt.setNull(i + 1, Types.NULL);
+            } else {
+                stmt.setObject(i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * Pick index columns for a query: equality columns, then a range column or the sort columns.
+     */
+    private static List<String> candidateColumns(String sql) {
+        Set<String> columns = new LinkedHashSet<>();
+        Matcher whereMatcher = WHERE_CLAUSE.matcher(sql);
+        String where = whereMatcher.find() ? whereMatcher.group(1) : "";
+
+        // Columns compared in an OR cannot lead a composite index
+        Set<String> orColumns = new LinkedHashSet<>();
+        Matcher or = OR_ACROSS_COLUMNS.matcher(where);
+        while (or.find()) {
+            orColumns.add(columnName(or.group(1)));
+            orColumns.add(columnName(or.group(2)));
+        }
+
+        Matcher equality = EQUALITY.matcher(where);
+        while (equality.find()) {
+            String column = columnName(equality.group(1));
+            if (!orColumns.contains(column)) {
+                columns.add(column);
+            }
+        }
+
+        String rangeColumn = null;
+        Matcher range = RANGE.matcher(where);
+        if (range.find()) {
+            rangeColumn = columnName(range.group(1) != null ? range.group(1) : range.group(2));
+        } else {
+            Matcher function = FUNCTION_ON_COLUMN.matcher(where);
+            while (function.find()) {
+                if (isDatePart(function.group(1))) {
+                    rangeColumn = columnName(function.group(2));
+                    break;
+                }
+            }
+        }
+
+        if (rangeColumn != null) {
+            columns.add(rangeColumn);
+        } else {
+            Matcher orderBy = ORDER_BY_CLAUSE.matcher(sql);
+            if (orderBy.find()) {
+                for (String term : orderBy.group(1).split(",")) {
+                    String column = term.trim().split("\\s+")[0];
+                    if (column.matches("[a-zA-Z_][\\w.]*")) {
+                        columns.add(columnName(column));
+                    }
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>(columns);
+        return result.size() > MAX_INDEX_COLUMNS ? result.subList(0, MAX_INDEX_COLUMNS) : result;
+    }
+
+    /**
+     * Get the column lists of every index on a table.
+     */
+    private static List<List<String>> getIndexColumns(Connection conn, String table) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        Map<String, TreeMap<Short, String>> indexes = new LinkedHashMap<>();
+
+        try (ResultSet rs = metaData.getIndexInfo(conn.getCatalog(), null, name, false, true)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (indexName == null || column == null) {
+                    continue;
+                }
+                indexes.computeIfAbsent(indexName, k -> new TreeMap<>())
+                        .put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        List<List<String>> result = new ArrayList<>();
+        for (TreeMap<Short, String> columns : indexes.values()) {
+            result.add(new ArrayList<>(columns.values()));
+        }
+        return result;
+    }
+
+    private static boolean isCovered(List<List<String>> existingIndexes, List<String> columns) {
+        for (List<String> index : existingIndexes) {
+            if (index.size() >= columns.size() && index.subList(0, columns.size()).equals(columns)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDatePart(String function) {
+        String fn = function.toUpperCase(Locale.ROOT);
+        return fn.equals("DATE") || fn.equals("YEAR") || fn.equals("MONTH") || fn.equals("DAY");
+    }
+
+    private static String columnName(String qualified) {
+        int dot = qualified.lastIndexOf('.');
+        return qualified.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static int countPlaceholders(String sql) {
+        int count = 0;
+        boolean inQuote = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inQuote = !inQuote;
+            } else if (c == '?' && !inQuote) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    private static boolean isExplainable(String sql) {
+        String keyword = sql.trim().split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+        return keyword.equals("SELECT") || keyword.equals("UPDATE") || keyword.equals("DELETE");
+    }
+
+    /**
+     * Wrap a connection so the SQL and parameters of every executed prepared statement are recorded.
+     */
+    private Connection capture(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    Object result = invoke(conn, method, args);
+                    if (result instanceof PreparedStatement && method.getName().equals("prepareStatement")
+                            && isExplainable((String) args[0])) {
+                        return captureStatement((PreparedStatement) result, (String) args[0]);
+                    }
+                    return result;
+                });
+    }
+
+    private PreparedStatement captureStatement(PreparedStatement statement, String sql) {
+        TreeMap<Integer, Object> parameters = new TreeMap<>();
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                    } else if (name.equals("clearParameters")) {
+                        parameters.clear();
+                    } else if ((name.equals("executeQuery") || name.equals("execute") || name.equals("executeUpdate"))
+                            && (args == null || args.length == 0)) {
+                        addQuery(sql, new ArrayList<>(parameters.values()));
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Issue every read the DAOs expose, with representative arguments.
+     */
+    private static void exerciseDaoReads() {
+        Date today = Date.valueOf(LocalDate.now());
+        Date monthAgo = Date.valueOf(LocalDate.now().minusMonths(1));
+
+        MedicalRecordDAO medicalRecordDAO = new MedicalRecordDAO();
+        medicalRecordDAO.getMedicalRecordsByPatientId(1);
+        medicalRecordDAO.getMedicalRecordById(1);
+        medicalRecordDAO.getAllMedicalRecords(0, 50);
+        medicalRecordDAO.getTotalRecordsCount();
+        medicalRecordDAO.getRecordStats(monthAgo.toLocalDate());
+        medicalRecordDAO.recordExists(1);
+        medicalRecordDAO.getFilteredMedicalRecords(null, null, null, null, null, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords("smi", null, null, null, null, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords(null, "Consultation", null, null, null, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords(null, "Recent Records", null, null, null, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords(null, null, "Completed", null, null, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords(null, null, null, today, null, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords(null, null, null, monthAgo, today, null, 0, 50);
+        medicalRecordDAO.getFilteredMedicalRecords(null, null, null, null, null, 2, 0, 50);
+
+        PatientDAO patientDAO = PatientDAO.getInstance();
+        patientDAO.getAllPatients();
+        patientDAO.getAllPatients(1, 50);
+        patientDAO.getPatientById(1);
+        patientDAO.searchPatients("smi");
+        patientDAO.getPatientsByDoctorId(2);
+        patientDAO.getPatientCount();
+
+        LabResultDAO labResultDAO = new LabResultDAO();
+        labResultDAO.getLabResultsByPatientId(1);
+        labResultDAO.getLabResultById(1);
+        labResultDAO.getPendingLabResults(1);
+        labResultDAO.getLabResultsByValue("Glucose", 180.0, null, true,
+                LocalDate.now().withDayOfMonth(1).atStartOfDay(), null);
+
+        MedicationDAO medicationDAO = new MedicationDAO();
+        medicationDAO.getMedicationsByPatientId(1);
+        medicationDAO.getMedicationById(1);
+        medicationDAO.getCurrentMedications(1);
+
+        NoteDAO noteDAO = new NoteDAO();
+        noteDAO.getNotesByPatientId(1);
+        noteDAO.getNoteById(1);
+        noteDAO.getNotesByAuthorId(2);
+        noteDAO.searchNotes("follow", 1);
+        noteDAO.searchNotes("follow", null);
+
+        FullTextSearch.getInstance().search("chest pain metformin", null, 20);
+
+        UserDAO userDAO = new UserDAO();
+        userDAO.getUserById(1);
+        userDAO.getUserByUsername("admin");
+        userDAO.getUserByEmail("admin@example.com");
+        userDAO.getUsersByRole(UserRole.DOCTOR);
+        userDAO.getUserProfile(1);
+        userDAO.countTotalUsers();
+        userDAO.countUsersByRole(UserRole.DOCTOR);
+    }
+
+    /**
+     * Exercise the DAO reads and print the advisor report.
+     *
+     * @param args Optional JDBC URL, username and password
+     */
+    public static void main(String[] args) {
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        if (args.length > 0) {
+            db.updateConnectionProperties(args[0], args.length > 1 ? args[1] : "", args.length > 2 ? args[2] : "");
+        }
+        db.initializeDatabase();
+
+        IndexAdvisor advisor = new IndexAdvisor();
+        advisor.startCapture();
+        try {
+            exerciseDaoReads();
+        } finally {
+            advisor.stopCapture();
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            System.out.println();
+            System.out.println(advisor.report(conn));
+        } catch (SQLException e) {
+            System.err.println("Error running index advisor: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    /**
+     * A problem found in one query's plan or predicates.
+     */
+    public static final class Finding {
+        private final Problem problem;
+        private final String table;
+        private final String detail;
+
+        Finding(Problem problem, String table, String detail) {
+            this.problem = problem;
+            this.table = table;
+            this.detail = detail;
+        }
+
+        public Problem getProblem() {
+            return problem;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return problem + (table != null ? " " + table : "") + ": " + detail;
+        }
+    }
+
+    /**
+     * The findings for one captured query.
+     */
+    public static final class QueryAnalysis {
+        private final String sql;
+        private final List<Object> parameters;
+        private final List<Finding> findings = new ArrayList<>();
+        private String explainError;
+
+        QueryAnalysis(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Finding> getFindings() {
+            return findings;
+        }
+
+        public String getExplainError() {
+            return explainError;
+        }
+
+        /**
+         * @return true if the query scans or sorts in a way an index could avoid
+         */
+        public boolean needsIndex() {
+            for (Finding finding : findings) {
+                if (finding.problem == Problem.FULL_SCAN || finding.problem == Problem.FILESORT) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A proposed composite index and the queries it would help.
+     */
+    public static final class IndexProposal {
+        private final String table;
+        private final List<String> columns;
+        private final Set<String> queries = new LinkedHashSet<>();
+
+        IndexProposal(String table, List<String> columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        public Set<String> getQueries() {
+            return queries;
+        }
+
+        /**
+         * @return The CREATE INDEX statement for this proposal
+         */
+        public String toSql() {
+            return "CREATE INDEX idx_" + table + "_" + String.join("_", columns) +
+                   " ON " + table + " (" + String.join(", ", columns) + ");";
+        }
+    }
+}
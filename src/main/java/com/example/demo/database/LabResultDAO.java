@@ -13,6 +13,37 @@ import java.util.Optional;
  */
 public class LabResultDAO {
     
+    // Nullable foreign keys read as 0
+    private static final RowMapper<LabResult> LAB_RESULT_MAPPER = RowMapper.builder(LabResult::new)
+            .integer("result_id", LabResult::setResultId)
+            .integer("patient_id", LabResult::setPatientId)
+            .integer("doctor_id", LabResult::setDoctorId)
+            .integer("lab_tech_id", LabResult::setLabTechId)
+            .string("test_name", LabResult::setTestName)
+            .string("test_type", LabResult::setTestType)
+            .string("result", LabResult::setResult)
+            .string("normal_range", LabResult::setNormalRange)
+            .string("unit", LabResult::setUnit)
+            .bool("is_abnormal", LabResult::setAbnormal)
+            .timestamp("test_date", LabResult::setTestDate)
+            .timestamp("result_date", LabResult::setResultDate)
+            .string("notes", LabResult::setNotes)
+            .string("status", LabResult::setStatus)
+            .bool("is_urgent", LabResult::setUrgent)
+            .decimal("result_value", LabResult::setResultValue)
+            .decimal("result_value2", LabResult::setResultValue2)
+            .decimal("range_low", LabResult::setRangeLow)
+            .decimal("range_high", LabResult::setRangeHigh)
+            .decimal("range_low2", LabResult::setRangeLow2)
+            .decimal("range_high2", LabResult::setRangeHigh2)
+            .build();
+    
+    // A value outside its own normal range, in either component, or flagged by hand; LabValues.isAbnormal
+    // is the same test in Java
+    private static final String ABNORMAL_PREDICATE =
+            "is_abnormal = TRUE OR result_value < range_low OR result_value > range_high " +
+            "OR result_value2 < range_low2 OR result_value2 > range_high2";
+    
     /**
      * Get all lab results for a patient
      * 
@@ -22,7 +53,7 @@ public class LabResultDAO {
     public List<LabResult> getLabResultsByPatientId(int patientId) {
         List<LabResult> results = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM lab_results WHERE patient_id = ? ORDER BY test_date DESC";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -30,9 +61,7 @@ public class LabResultDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    results.add(mapResultSetToLabResult(rs));
-                }
+                results.addAll(LAB_RESULT_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving lab results: " + e.getMessage());
@@ -49,7 +78,7 @@ public class LabResultDAO {
      * @return Optional containing the lab result if found
      */
     public Optional<LabResult> getLabResultById(int resultId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM lab_results WHERE result_id = ?";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -77,75 +106,101 @@ public class LabResultDAO {
      */
     public boolean createLabResult(LabResult labResult) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "INSERT INTO lab_results (patient_id, doctor_id, lab_tech_id, test_name, " +
-                    "test_type, result, normal_range, unit, is_abnormal, test_date, result_date, " +
-                    "notes, status, is_urgent) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            return createLabResult(conn, labResult);
+        } catch (SQLException e) {
+            System.err.println("Error creating lab result: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Create a new lab result as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param labResult The lab result to create
+     * @return true if creation was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean createLabResult(Transaction tx, LabResult labResult) throws SQLException {
+        return createLabResult(tx.getConnection(), labResult);
+    }
+    
+    /**
+     * Create a new lab result using the given connection. The numbers in the
+     * result and normal range are parsed and stored alongside the text.
+     */
+    private boolean createLabResult(Connection conn, LabResult labResult) throws SQLException {
+        String sql = "INSERT INTO lab_results (patient_id, doctor_id, lab_tech_id, test_name, " +
+                "test_type, result, normal_range, unit, is_abnormal, test_date, result_date, " +
+                "notes, status, is_urgent, result_value, result_value2, range_low, range_high, " +
+                "range_low2, range_high2, values_parsed) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, labResult.getPatientId());
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setInt(1, labResult.getPatientId());
-                
-                if (labResult.getDoctorId() > 0) {
-                    stmt.setInt(2, labResult.getDoctorId());
-                } else {
-                    stmt.setNull(2, Types.INTEGER);
-                }
-                
-                if (labResult.getLabTechId() > 0) {
-                    stmt.setInt(3, labResult.getLabTechId());
-                } else {
-                    stmt.setNull(3, Types.INTEGER);
-                }
-                
-                stmt.setString(4, labResult.getTestName());
-                stmt.setString(5, labResult.getTestType());
-                stmt.setString(6, labResult.getResult());
-                stmt.setString(7, labResult.getNormalRange());
-                stmt.setString(8, labResult.getUnit());
-                stmt.setBoolean(9, labResult.isAbnormal());
-                
-                // Handle dates
-                if (labResult.getTestDate() != null) {
-                    stmt.setTimestamp(10, Timestamp.valueOf(labResult.getTestDate()));
-                } else {
-                    stmt.setTimestamp(10, new Timestamp(System.currentTimeMillis()));
-                }
-                
-                if (labResult.getResultDate() != null) {
-                    stmt.setTimestamp(11, Timestamp.valueOf(labResult.getResultDate()));
-                } else {
-                    stmt.setNull(11, Types.TIMESTAMP);
-                }
-                
-                stmt.setString(12, labResult.getNotes());
-                
-                // Default to "Pending" if no status
-                if (labResult.getStatus() == null || labResult.getStatus().isEmpty()) {
-                    stmt.setString(13, "Pending");
+            if (labResult.getDoctorId() > 0) {
+                stmt.setInt(2, labResult.getDoctorId());
+            } else {
+                stmt.setNull(2, Types.INTEGER);
+            }
+            
+            if (labResult.getLabTechId() > 0) {
+                stmt.setInt(3, labResult.getLabTechId());
+            } else {
+                stmt.setNull(3, Types.INTEGER);
+            }
+            
+            stmt.setString(4, labResult.getTestName());
+            stmt.setString(5, labResult.getTestType());
+            stmt.setString(6, labResult.getResult());
+            stmt.setString(7, labResult.getNormalRange());
+            stmt.setString(8, labResult.getUnit());
+            stmt.setBoolean(9, labResult.isAbnormal());
+            
+            // Handle dates
+            if (labResult.getTestDate() != null) {
+                stmt.setTimestamp(10, Timestamp.valueOf(labResult.getTestDate()));
+            } else {
+                stmt.setTimestamp(10, new Timestamp(System.currentTimeMillis()));
+            }
+            
+            if (labResult.getResultDate() != null) {
+                stmt.setTimestamp(11, Timestamp.valueOf(labResult.getResultDate()));
+            } else {
+                stmt.setNull(11, Types.TIMESTAMP);
+            }
+            
+            stmt.setString(12, labResult.getNotes());
+            
+            // Default to "Pending" if no status
+            if (labResult.getStatus() == null || labResult.getStatus().isEmpty()) {
+                stmt.setString(13, "Pending");
+            } else {
+                stmt.setString(13, labResult.getStatus());
+            }
+            
+            stmt.setBoolean(14, labResult.isUrgent());
+            
+            LabValues values = LabValues.parse(labResult.getResult(), labResult.getNormalRange());
+            values.bind(stmt, 15);
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            if (affectedRows == 0) {
+                return false;
+            }
+            
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    labResult.setResultId(generatedKeys.getInt(1));
+                    values.applyTo(labResult);
+                    return true;
                 } else {
-                    stmt.setString(13, labResult.getStatus());
-                }
-                
-                stmt.setBoolean(14, labResult.isUrgent());
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                if (affectedRows == 0) {
                     return false;
                 }
-                
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        labResult.setResultId(generatedKeys.getInt(1));
-                        return true;
-                    } else {
-                        return false;
-                    }
-                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error creating lab result: " + e.getMessage());
-            e.printStackTrace();
-            return false;
         }
     }
     
@@ -157,62 +212,7 @@ public class LabResultDAO {
      */
     public boolean updateLabResult(LabResult labResult) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "UPDATE lab_results SET patient_id = ?, doctor_id = ?, lab_tech_id = ?, " +
-                    "test_name = ?, test_type = ?, result = ?, normal_range = ?, unit = ?, " +
-                    "is_abnormal = ?, test_date = ?, result_date = ?, notes = ?, status = ?, " +
-                    "is_urgent = ? WHERE result_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, labResult.getPatientId());
-                
-                if (labResult.getDoctorId() > 0) {
-                    stmt.setInt(2, labResult.getDoctorId());
-                } else {
-                    stmt.setNull(2, Types.INTEGER);
-                }
-                
-                if (labResult.getLabTechId() > 0) {
-                    stmt.setInt(3, labResult.getLabTechId());
-                } else {
-                    stmt.setNull(3, Types.INTEGER);
-                }
-                
-                stmt.setString(4, labResult.getTestName());
-                stmt.setString(5, labResult.getTestType());
-                stmt.setString(6, labResult.getResult());
-                stmt.setString(7, labResult.getNormalRange());
-                stmt.setString(8, labResult.getUnit());
-                stmt.setBoolean(9, labResult.isAbnormal());
-                
-                // Handle dates
-                if (labResult.getTestDate() != null) {
-                    stmt.setTimestamp(10, Timestamp.valueOf(labResult.getTestDate()));
-                } else {
-                    stmt.setTimestamp(10, new Timestamp(System.currentTimeMillis()));
-                }
-                
-                if (labResult.getResultDate() != null) {
-                    stmt.setTimestamp(11, Timestamp.valueOf(labResult.getResultDate()));
-                } else {
-                    stmt.setNull(11, Types.TIMESTAMP);
-                }
-                
-                stmt.setString(12, labResult.getNotes());
-                
-                // Default to "Pending" if no status
-                if (labResult.getStatus() == null || labResult.getStatus().isEmpty()) {
-                    stmt.setString(13, "Pending");
-                } else {
-                    stmt.setString(13, labResult.getStatus());
-                }
-                
-                stmt.setBoolean(14, labResult.isUrgent());
-                stmt.setInt(15, labResult.getResultId());
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                return affectedRows > 0;
-            }
+            return updateLabResult(conn, labResult);
         } catch (SQLException e) {
             System.err.println("Error updating lab result: " + e.getMessage());
             e.printStackTrace();
@@ -220,6 +220,87 @@ public class LabResultDAO {
         }
     }
     
+    /**
+     * Update an existing lab result as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param labResult The lab result to update
+     * @return true if update was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean updateLabResult(Transaction tx, LabResult labResult) throws SQLException {
+        return updateLabResult(tx.getConnection(), labResult);
+    }
+    
+    /**
+     * Update an existing lab result using the given connection. The numbers
+     * in the result and normal range are parsed again.
+     */
+    private boolean updateLabResult(Connection conn, LabResult labResult) throws SQLException {
+        String sql = "UPDATE lab_results SET patient_id = ?, doctor_id = ?, lab_tech_id = ?, " +
+                "test_name = ?, test_type = ?, result = ?, normal_range = ?, unit = ?, " +
+                "is_abnormal = ?, test_date = ?, result_date = ?, notes = ?, status = ?, " +
+                "is_urgent = ?, result_value = ?, result_value2 = ?, range_low = ?, range_high = ?, " +
+                "range_low2 = ?, range_high2 = ?, values_parsed = TRUE WHERE result_id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, labResult.getPatientId());
+            
+            if (labResult.getDoctorId() > 0) {
+                stmt.setInt(2, labResult.getDoctorId());
+            } else {
+                stmt.setNull(2, Types.INTEGER);
+            }
+            
+            if (labResult.getLabTechId() > 0) {
+                stmt.setInt(3, labResult.getLabTechId());
+            } else {
+                stmt.setNull(3, Types.INTEGER);
+            }
+            
+            stmt.setString(4, labResult.getTestName());
+            stmt.setString(5, labResult.getTestType());
+            stmt.setString(6, labResult.getResult());
+            stmt.setString(7, labResult.getNormalRange());
+            stmt.setString(8, labResult.getUnit());
+            stmt.setBoolean(9, labResult.isAbnormal());
+            
+            // Handle dates
+            if (labResult.getTestDate() != null) {
+                stmt.setTimestamp(10, Timestamp.valueOf(labResult.getTestDate()));
+            } else {
+                stmt.setTimestamp(10, new Timestamp(System.currentTimeMillis()));
+            }
+            
+            if (labResult.getResultDate() != null) {
+                stmt.setTimestamp(11, Timestamp.valueOf(labResult.getResultDate()));
+            } else {
+                stmt.setNull(11, Types.TIMESTAMP);
+            }
+            
+            stmt.setString(12, labResult.getNotes());
+            
+            // Default to "Pending" if no status
+            if (labResult.getStatus() == null || labResult.getStatus().isEmpty()) {
+                stmt.setString(13, "Pending");
+            } else {
+                stmt.setString(13, labResult.getStatus());
+            }
+            
+            stmt.setBoolean(14, labResult.isUrgent());
+            
+            LabValues values = LabValues.parse(labResult.getResult(), labResult.getNormalRange());
+            stmt.setInt(values.bind(stmt, 15), labResult.getResultId());
+            
+            int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                values.applyTo(labResult);
+            }
+            
+            return affectedRows > 0;
+        }
+    }
+    
     /**
      * Delete a lab result
      * 
@@ -228,15 +309,7 @@ public class LabResultDAO {
      */
     public boolean deleteLabResult(int resultId) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "DELETE FROM lab_results WHERE result_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, resultId);
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                return affectedRows > 0;
-            }
+            return deleteLabResult(conn, resultId);
         } catch (SQLException e) {
             System.err.println("Error deleting lab result: " + e.getMessage());
             e.printStackTrace();
@@ -244,6 +317,33 @@ public class LabResultDAO {
         }
     }
     
+    /**
+     * Delete a lab result as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param resultId The ID of the lab result to delete
+     * @return true if deletion was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean deleteLabResult(Transaction tx, int resultId) throws SQLException {
+        return deleteLabResult(tx.getConnection(), resultId);
+    }
+    
+    /**
+     * Delete a lab result using the given connection
+     */
+    private boolean deleteLabResult(Connection conn, int resultId) throws SQLException {
+        String sql = "DELETE FROM lab_results WHERE result_id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, resultId);
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            return affectedRows > 0;
+        }
+    }
+    
     /**
      * Get all pending lab results for a patient
      * 
@@ -253,7 +353,7 @@ public class LabResultDAO {
     public List<LabResult> getPendingLabResults(int patientId) {
         List<LabResult> results = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM lab_results WHERE patient_id = ? AND status = 'Pending' " +
                          "ORDER BY is_urgent DESC, test_date DESC";
             
@@ -262,9 +362,7 @@ public class LabResultDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    results.add(mapResultSetToLabResult(rs));
-                }
+                results.addAll(LAB_RESULT_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving pending lab results: " + e.getMessage());
@@ -275,58 +373,64 @@ public class LabResultDAO {
     }
     
     /**
-     * Map a ResultSet row to a LabResult object
+     * Find results of one test by their numeric value, e.g. every abnormal
+     * glucose above 180 this month. Only results whose text held a number
+     * are found.
      * 
-     * @param rs The ResultSet to map
-     * @return A LabResult object with data from the ResultSet
-     * @throws SQLException If there's an error accessing the ResultSet
+     * @param testName The test name, as stored
+     * @param above Only values greater than this; null for no lower limit
+     * @param below Only values less than this; null for no upper limit
+     * @param abnormalOnly True to keep only results outside their normal range or flagged abnormal
+     * @param from The earliest test date, inclusive; null for no limit
+     * @param to The latest test date, exclusive; null for no limit
+     * @return The matching lab results, latest test first
      */
-    private LabResult mapResultSetToLabResult(ResultSet rs) throws SQLException {
-        LabResult labResult = new LabResult();
-        
-        labResult.setResultId(rs.getInt("result_id"));
-        labResult.setPatientId(rs.getInt("patient_id"));
+    public List<LabResult> getLabResultsByValue(String testName, Double above, Double below, boolean abnormalOnly,
+                                                LocalDateTime from, LocalDateTime to) {
+        List<LabResult> results = new ArrayList<>();
         
-        // Handle nullable foreign keys
-        try {
-            labResult.setDoctorId(rs.getInt("doctor_id"));
-            if (rs.wasNull()) {
-                labResult.setDoctorId(0);
-            }
-        } catch (SQLException e) {
-            labResult.setDoctorId(0);
+        Criteria criteria = new Criteria()
+                .eq("test_name", testName)
+                .atLeast("test_date", from)
+                .before("test_date", to)
+                .where("result_value IS NOT NULL");
+        if (above != null) {
+            criteria.where("result_value > ?", above);
         }
-        
-        try {
-            labResult.setLabTechId(rs.getInt("lab_tech_id"));
-            if (rs.wasNull()) {
-                labResult.setLabTechId(0);
-            }
-        } catch (SQLException e) {
-            labResult.setLabTechId(0);
+        if (below != null) {
+            criteria.where("result_value < ?", below);
         }
-        
-        labResult.setTestName(rs.getString("test_name"));
-        labResult.setTestType(rs.getString("test_type"));
-        labResult.setResult(rs.getString("result"));
-        labResult.setNormalRange(rs.getString("normal_range"));
-        labResult.setUnit(rs.getString("unit"));
-        labResult.setAbnormal(rs.getBoolean("is_abnormal"));
-        
-        Timestamp testDate = rs.getTimestamp("test_date");
-        if (testDate != null) {
-            labResult.setTestDate(testDate.toLocalDateTime());
+        if (abnormalOnly) {
+            criteria.where(ABNORMAL_PREDICATE);
         }
         
-        Timestamp resultDate = rs.getTimestamp("result_date");
-        if (resultDate != null) {
-            labResult.setResultDate(resultDate.toLocalDateTime());
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            String sql = "SELECT * FROM lab_results" + criteria.toWhereClause() +
+                         " ORDER BY test_date DESC, result_id DESC";
+            
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                criteria.bind(stmt, 1);
+                
+                ResultSet rs = stmt.executeQuery();
+                
+                results.addAll(LAB_RESULT_MAPPER.mapAll(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving lab results by value: " + e.getMessage());
+            e.printStackTrace();
         }
         
-        labResult.setNotes(rs.getString("notes"));
-        labResult.setStatus(rs.getString("status"));
-        labResult.setUrgent(rs.getBoolean("is_urgent"));
-        
-        return labResult;
+        return results;
+    }
+    
+    /**
+     * Map a ResultSet row to a LabResult object
+     * 
+     * @param rs The ResultSet to map
+     * @return A LabResult object with data from the ResultSet
+     * @throws SQLException If there's an error accessing the ResultSet
+     */
+    private LabResult mapResultSetToLabResult(ResultSet rs) throws SQLException {
+        return LAB_RESULT_MAPPER.map(rs);
     }
 } 
\ No newline at end of file
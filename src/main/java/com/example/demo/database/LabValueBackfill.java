@@ -0,0 +1,143 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Parses the numbers out of lab results written before LabResultDAO stored
+ * them, so value queries also find older results.
+ * <p>
+ * Rows with values_parsed = FALSE are parsed in batches of
+ * db.labBackfill.batchSize, each in its own short transaction, with a pause
+ * between batches. Every parsed row is marked, numeric or not, so an
+ * interrupted backfill simply carries on with the remaining rows next time.
+ */
+public class LabValueBackfill {
+
+    private static LabValueBackfill instance;
+
+    private final int batchSize;
+    private final long pauseMillis;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Thread worker;
+
+    private LabValueBackfill(int batchSize, long pauseMillis) {
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Get the singleton instance, configured from db.labBackfill.* in database.properties.
+     *
+     * @return The backfill
+     */
+    public static synchronized LabValueBackfill getInstance() {
+        if (instance == null) {
+            DatabaseConnection db = DatabaseConnection.getInstance();
+            instance = new LabValueBackfill(
+                    Math.max(1, db.getIntProperty("db.labBackfill.batchSize", 500)),
+                    Math.max(0, db.getIntProperty("db.labBackfill.pauseMillis", 100)));
+        }
+        return instance;
+    }
+
+    /**
+     * Parse the remaining rows on a background thread. Returns at once.
+     */
+    public synchronized void start() {
+        if (worker != null && worker.isAlive()) {
+            return;
+        }
+        worker = Thread.ofPlatform().name("lab-value-backfill").daemon().start(this::backfill);
+    }
+
+    /**
+     * Stop a backfill in progress. The batch being parsed is rolled back.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null && instance.worker != null) {
+            instance.worker.interrupt();
+            instance.worker = null;
+        }
+    }
+
+    /**
+     * Parse every lab result that has not been parsed yet.
+     *
+     * @return The number of rows parsed, or -1 if there was an error
+     */
+    public int backfill() {
+        if (!running.compareAndSet(false, true)) {
+            System.out.println("Lab value backfill is already running");
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        int parsed = 0;
+        try {
+            int batch;
+            do {
+                batch = Transaction.execute(this::parseBatch);
+                parsed += batch;
+                if (batch == batchSize && pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (batch == batchSize);
+
+            if (parsed > 0) {
+                System.out.println("Parsed numeric values of " + parsed + " lab results in " +
+                        (System.currentTimeMillis() - start) + " ms");
+            }
+            return parsed;
+        } catch (SQLException e) {
+            System.err.println("Error parsing lab result values after " + parsed + " rows: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Lab value backfill stopped after " + parsed + " rows");
+            return parsed;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int parseBatch(Transaction tx) throws SQLException {
+        Connection conn = tx.getConnection();
+
+        // Lock the batch so a concurrent edit waits rather than being overwritten
+        List<Integer> resultIds = new ArrayList<>();
+        List<LabValues> values = new ArrayList<>();
+        String sql = "SELECT result_id, result, normal_range FROM lab_results WHERE values_parsed = FALSE " +
+                     "ORDER BY result_id LIMIT ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    resultIds.add(rs.getInt("result_id"));
+                    values.add(LabValues.parse(rs.getString("result"), rs.getString("normal_range")));
+                }
+            }
+        }
+        if (resultIds.isEmpty()) {
+            return 0;
+        }
+
+        String update = "UPDATE lab_results SET result_value = ?, result_value2 = ?, range_low = ?, " +
+                        "range_high = ?, range_low2 = ?, range_high2 = ?, values_parsed = TRUE WHERE result_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(update)) {
+            for (int i = 0; i < resultIds.size(); i++) {
+                stmt.setInt(values.get(i).bind(stmt, 1), resultIds.get(i));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        return resultIds.size();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.demo.database;
+
+import com.example.demo.model.LabResult;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The numbers in a lab result and its normal range, parsed from the free
+ * text once when the result is written so they can be filtered and compared
+ * in SQL.
+ * <p>
+ * Results read as a number with an optional unit, e.g. "126 mg/dL" or
+ * "7.2%", or as two numbers for blood pressure, e.g. "120/80 mmHg". Results
+ * that only bound the value, e.g. "&lt;5", or are not numbers, e.g.
+ * "Negative", have no value.
+ * <p>
+ * Ranges read as "70-99", "3.5 to 5.0 mmol/L", "&lt;200", "up to 200" or
+ * "&gt;40", each giving a low bound, a high bound or both. Blood pressure
+ * ranges have a second component after a slash, e.g. "90-120/60-80"; a bare
+ * number there is a high bound, so "120/80" means at most 120 over 80.
+ */
+final class LabValues {
+
+    // Larger values do not fit the DECIMAL(14,4) columns
+    private static final double MAX_MAGNITUDE = 1e10;
+
+    // A comma separates thousands only after a group without a leading zero, so "0,250" is 0.25
+    private static final String NUMBER = "[+-]?(?:[1-9]\\d{0,2}(?:,\\d{3})+|\\d+)(?:[.,]\\d+)?";
+    private static final Pattern PLAIN = Pattern.compile("(" + NUMBER + ")");
+    private static final Pattern BETWEEN = Pattern.compile("(" + NUMBER + ")\\s*-\\s*(" + NUMBER + ")");
+    private static final Pattern BOUND = Pattern.compile("(<=?|>=?)\\s*(" + NUMBER + ")");
+    private static final Pattern THOUSANDS = Pattern.compile("[+-]?[1-9]\\d{0,2}(?:,\\d{3})+(?:\\.\\d+)?");
+    // The unit starts at the first letter, e.g. "mg/dL" or "x10^9/L"
+    private static final Pattern UNIT = Pattern.compile("[\\p{L}%(*]");
+
+    private Double value;
+    private Double value2;
+    private Double low;
+    private Double high;
+    private Double low2;
+    private Double high2;
+
+    private LabValues() {
+    }
+
+    /**
+     * @param result The result text, e.g. "120/80 mmHg"; may be null
+     * @param normalRange The normal range text, e.g. "90-120/60-80"; may be null
+     * @return The numbers found, with null for the parts that are not numeric
+     */
+    static LabValues parse(String result, String normalRange) {
+        LabValues values = new LabValues();
+
+        String[] results = components(result);
+        if (results != null) {
+            values.value = plainNumber(results[0]);
+            values.value2 = results.length > 1 ? plainNumber(results[1]) : null;
+            // "120/" or "/80" is not a blood pressure
+            if (values.value == null || (results.length > 1 && values.value2 == null)) {
+                values.value = null;
+                values.value2 = null;
+            }
+        }
+
+        String[] ranges = components(normalRange);
+        if (ranges != null) {
+            Double[] first = bounds(ranges[0], ranges.length > 1);
+            Double[] second = ranges.length > 1 ? bounds(ranges[1], true) : new Double[2];
+            if (first != null && second != null) {
+                values.low = first[0];
+                values.high = first[1];
+                values.low2 = second[0];
+                values.high2 = second[1];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Copy the numbers onto a lab result.
+     *
+     * @param labResult The lab result the text came from
+     */
+    void applyTo(LabResult labResult) {
+        labResult.setResultValue(value);
+        labResult.setResultValue2(value2);
+        labResult.setRangeLow(low);
+        labResult.setRangeHigh(high);
+        labResult.setRangeLow2(low2);
+        labResult.setRangeHigh2(high2);
+    }
+
+    /**
+     * The abnormal filter of {@link LabResultDAO} applied to a result in
+     * memory. As in SQL, a comparison with a missing number is never true.
+     *
+     * @param labResult A lab result with its numbers filled in
+     * @return Whether the result is flagged abnormal or a value is outside its range
+     */
+    static boolean isAbnormal(LabResult labResult) {
+        return labResult.isAbnormal()
+                || below(labResult.getResultValue(), labResult.getRangeLow())
+                || below(labResult.getRangeHigh(), labResult.getResultValue())
+                || below(labResult.getResultValue2(), labResult.getRangeLow2())
+                || below(labResult.getRangeHigh2(), labResult.getResultValue2());
+    }
+
+    private static boolean below(Double number, Double bound) {
+        return number != null && bound != null && number < bound;
+    }
+
+    /**
+     * Bind result_value, result_value2, range_low, range_high, range_low2
+     * and range_high2, in that order.
+     *
+     * @param stmt The statement to bind
+     * @param firstIndex The index of the result_value placeholder
+     * @return The index of the next placeholder
+     * @throws SQLException If a value cannot be bound
+     */
+    int bind(PreparedStatement stmt, int firstIndex) throws SQLException {
+        int index = firstIndex;
+        for (Double number : new Double[] { value, value2, low, high, low2, high2 }) {
+            if (number != null) {
+                stmt.setDouble(index++, number);
+            } else {
+                stmt.setNull(index++, Types.DECIMAL);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Split text into one or two components around a slash, dropping the
+     * unit and spelling comparisons as symbols.
+     *
+     * @return The components, or null if there are none or more than two
+     */
+    private static String[] components(String text) {
+        if (text == null) {
+            return null;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT)
+                .replace('–', '-')
+                .replace('—', '-')
+                .replace("≤", "<=")
+                .replace("≥", ">=")
+                .replaceAll("\\b(up to|less than|below)\\b", "<")
+                .replaceAll("\\b(greater than|more than|above|over)\\b", ">")
+                .replaceAll("\\bto\\b", "-");
+
+        Matcher unit = UNIT.matcher(normalized);
+        if (unit.find()) {
+            normalized = normalized.substring(0, unit.start());
+        }
+        normalized = normalized.trim();
+        if (normalized.isEmpty()) {
+            return null;
+        }
+
+        String[] parts = normalized.split("/", -1);
+        if (parts.length > 2) {
+            return null;
+        }
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+        }
+        return parts;
+    }
+
+    /**
+     * @param bareIsHigh Whether a bare number is a high bound, as in a blood pressure range
+     * @return The low and high bound, either possibly null, or null if the text is not a range
+     */
+    private static Double[] bounds(String text, boolean bareIsHigh) {
+        Matcher matcher = BETWEEN.matcher(text);
+        if (matcher.matches()) {
+            Double low = number(matcher.group(1));
+            Double high = number(matcher.group(2));
+            return low != null && high != null && low <= high ? new Double[] { low, high } : null;
+        }
+        matcher = BOUND.matcher(text);
+        if (matcher.matches()) {
+            Double bound = number(matcher.group(2));
+            if (bound == null) {
+                return null;
+            }
+            return matcher.group(1).startsWith("<") ? new Double[] { null, bound } : new Double[] { bound, null };
+        }
+        Double bare = bareIsHigh ? plainNumber(text) : null;
+        return bare != null ? new Double[] { null, bare } : null;
+    }
+
+    private static Double plainNumber(String text) {
+        Matcher matcher = PLAIN.matcher(text);
+        return matcher.matches() ? number(matcher.group(1)) : null;
+    }
+
+    /**
+     * @param text A number, with a comma either between thousands or before decimals
+     */
+    private static Double number(String text) {
+        String plain = THOUSANDS.matcher(text).matches() ? text.replace(",", "") : text.replace(',', '.');
+        try {
+            double parsed = Double.parseDouble(plain);
+            return Math.abs(parsed) < MAX_MAGNITUDE ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
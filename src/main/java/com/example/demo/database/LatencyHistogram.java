@@ -0,0 +1,83 @@
+package com.example.demo.database;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size latency histogram with exponentially growing buckets.
+ * Recording is lock-free and the memory used does not depend on the number
+ * of samples; percentiles are accurate to within one bucket (about 20%).
+ */
+class LatencyHistogram {
+
+    // Bucket upper bounds grow by 20% from 10 microseconds to past two minutes
+    private static final double GROWTH = 1.2;
+    private static final long SMALLEST_BOUND_NANOS = 10_000L;
+    private static final long[] BOUNDS;
+
+    static {
+        int count = 1;
+        double bound = SMALLEST_BOUND_NANOS;
+        while (bound < 120_000_000_000L) {
+            bound *= GROWTH;
+            count++;
+        }
+        BOUNDS = new long[count];
+        bound = SMALLEST_BOUND_NANOS;
+        for (int i = 0; i < count; i++) {
+            BOUNDS[i] = (long) bound;
+            bound *= GROWTH;
+        }
+    }
+
+    // One extra bucket for samples above the largest bound
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+    /**
+     * @param nanos The latency to record
+     */
+    void record(long nanos) {
+        counts.incrementAndGet(bucketFor(nanos));
+    }
+
+    /**
+     * Get a latency percentile.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The upper bound of the bucket holding that percentile, in nanoseconds, or 0 if empty
+     */
+    long percentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return i < BOUNDS.length ? BOUNDS[i] : Long.MAX_VALUE;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static int bucketFor(long nanos) {
+        int low = 0;
+        int high = BOUNDS.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BOUNDS[mid] < nanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
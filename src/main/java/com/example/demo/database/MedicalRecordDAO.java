@@ -4,10 +4,22 @@ import com.example.demo.model.MedicalRecord;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import java.time.LocalDate;
 
 /**
@@ -15,7 +27,77 @@ import java.time.LocalDate;
  */
 public class MedicalRecordDAO {
     
+    private static final Logger LOGGER = Logger.getLogger(MedicalRecordDAO.class.getName());
+    
+    // follow_up_date and record_type are missing on databases older than the current schema
+    private static final RowMapper<MedicalRecord> MEDICAL_RECORD_MAPPER = RowMapper.builder(MedicalRecord::new)
+            .integer("record_id", MedicalRecord::setRecordId)
+            .integer("patient_id", MedicalRecord::setPatientId)
+            .string("patient_name", MedicalRecord::setPatientName)
+            .integer("doctor_id", MedicalRecord::setDoctorId)
+            .string("doctor_name", MedicalRecord::setDoctorName)
+            .string("visit_type", MedicalRecord::setVisitType)
+            .timestamp("visit_date", MedicalRecord::setVisitDate)
+            .string("symptoms", MedicalRecord::setSymptoms)
+            .string("diagnosis", MedicalRecord::setDiagnosis)
+            .string("treatment", MedicalRecord::setTreatment)
+            .string("notes", MedicalRecord::setNotes)
+            .string("status", MedicalRecord::setStatus)
+            .string("diagnosis_codes", MedicalRecord::setDiagnosisCodes)
+            .string("attachments", MedicalRecord::setAttachments)
+            .date("follow_up_date", (record, date) -> record.setFollowUpDate(date.atStartOfDay()))
+            .string("record_type", MedicalRecord::setRecordType)
+            .integer("version", MedicalRecord::setVersion)
+            // Later updates write only the fields set after loading
+            .afterRow(MedicalRecord::markClean)
+            .build();
+    
+    // Column written for each field of a partial update
+    private static final Map<MedicalRecord.Field, String> UPDATE_COLUMNS = new EnumMap<>(Map.ofEntries(
+            Map.entry(MedicalRecord.Field.PATIENT_ID, "patient_id"),
+            Map.entry(MedicalRecord.Field.PATIENT_NAME, "patient_name"),
+            Map.entry(MedicalRecord.Field.DOCTOR_ID, "doctor_id"),
+            Map.entry(MedicalRecord.Field.DOCTOR_NAME, "doctor_name"),
+            Map.entry(MedicalRecord.Field.VISIT_TYPE, "visit_type"),
+            Map.entry(MedicalRecord.Field.VISIT_DATE, "visit_date"),
+            Map.entry(MedicalRecord.Field.SYMPTOMS, "symptoms"),
+            Map.entry(MedicalRecord.Field.DIAGNOSIS, "diagnosis"),
+            Map.entry(MedicalRecord.Field.TREATMENT, "treatment"),
+            Map.entry(MedicalRecord.Field.NOTES, "notes"),
+            Map.entry(MedicalRecord.Field.STATUS, "status"),
+            Map.entry(MedicalRecord.Field.DIAGNOSIS_CODES, "diagnosis_codes"),
+            Map.entry(MedicalRecord.Field.ATTACHMENTS, "attachments"),
+            Map.entry(MedicalRecord.Field.FOLLOW_UP_DATE, "follow_up_date"),
+            Map.entry(MedicalRecord.Field.RECORD_TYPE, "record_type")));
+    
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter US_DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    
+    // Every medical_records column, for queries that read the archive as well
+    private static final String RECORD_COLUMNS =
+            "record_id, patient_id, patient_name, doctor_id, doctor_name, visit_type, visit_date, symptoms, " +
+            "diagnosis, treatment, notes, status, diagnosis_codes, attachments, follow_up_date, record_type, version";
+    
+    private static final String NEWEST_FIRST = " ORDER BY visit_date DESC, record_id DESC";
+    
+    // A record ID as shown in record tables, e.g. "MR-12", or just the number
+    private static final Pattern RECORD_ID = Pattern.compile("(?i)(?:MR-?)?(\\d{1,9})");
+    
+    // Columns shown in record tables; leaves out the TEXT columns symptoms, diagnosis, treatment and notes
+    private static final String SUMMARY_COLUMNS =
+            "record_id, patient_id, patient_name, doctor_id, doctor_name, visit_type, record_type, visit_date, status, " +
+            "version";
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO medical_records (patient_id, patient_name, doctor_id, doctor_name, " +
+            "visit_type, visit_date, symptoms, diagnosis, treatment, notes, status, " +
+            "diagnosis_codes, attachments, follow_up_date, record_type) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final long BULK_PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+    
+    // Keeps IN lists well below the placeholder limits of both drivers
+    private static final int MAX_IDS_PER_QUERY = 500;
     
     /**
      * Get all medical records for a patient
@@ -25,18 +107,18 @@ public class MedicalRecordDAO {
      */
     public List<MedicalRecord> getMedicalRecordsByPatientId(int patientId) {
         List<MedicalRecord> records = new ArrayList<>();
+        Criteria criteria = new Criteria().eq("patient_id", patientId);
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM medical_records WHERE patient_id = ? ORDER BY visit_date DESC";
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            boolean withArchive = RecordArchiver.getInstance().mayHoldVisitsFrom(conn, null);
+            String sql = listingQuery("*", criteria, withArchive, false);
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, patientId);
+                bindListingQuery(stmt, criteria, withArchive, -1, 0);
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    records.add(mapResultSetToMedicalRecord(rs));
-                }
+                records.addAll(MEDICAL_RECORD_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving medical records: " + e.getMessage());
@@ -53,16 +135,18 @@ public class MedicalRecordDAO {
      * @return Optional containing the medical record if found
      */
     public Optional<MedicalRecord> getMedicalRecordById(int recordId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM medical_records WHERE record_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, recordId);
-                
-                ResultSet rs = stmt.executeQuery();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (String table : recordTables(conn)) {
+                String sql = "SELECT * FROM " + table + " WHERE record_id = ?";
                 
-                if (rs.next()) {
-                    return Optional.of(mapResultSetToMedicalRecord(rs));
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, recordId);
+                    
+                    ResultSet rs = stmt.executeQuery();
+                    
+                    if (rs.next()) {
+                        return Optional.of(mapResultSetToMedicalRecord(rs));
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -73,6 +157,78 @@ public class MedicalRecordDAO {
         return Optional.empty();
     }
     
+    /**
+     * Get full medical records by ID, for example to fill in summaries
+     * before they are displayed in detail or exported
+     * 
+     * @param recordIds The IDs of the medical records
+     * @return The records found, in the order of the given IDs
+     */
+    public List<MedicalRecord> getMedicalRecordsByIds(List<Integer> recordIds) {
+        Map<Integer, MedicalRecord> byId = new HashMap<>();
+        
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            loadByIds(conn, "medical_records", recordIds, byId);
+            
+            // The archive is only looked at for IDs the hot table does not have
+            if (RecordArchiver.getInstance().hasArchivedRecords(conn)) {
+                List<Integer> missingIds = new ArrayList<>();
+                for (Integer recordId : recordIds) {
+                    if (!byId.containsKey(recordId)) {
+                        missingIds.add(recordId);
+                    }
+                }
+                loadByIds(conn, "medical_records_archive", missingIds, byId);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving medical records: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        List<MedicalRecord> records = new ArrayList<>();
+        for (Integer recordId : recordIds) {
+            MedicalRecord record = byId.get(recordId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * Get the tables to look up a record ID in, in order. The archive is only
+     * looked at for IDs the hot table does not have.
+     */
+    private static List<String> recordTables(Connection conn) throws SQLException {
+        return RecordArchiver.getInstance().hasArchivedRecords(conn)
+                ? List.of("medical_records", "medical_records_archive")
+                : List.of("medical_records");
+    }
+    
+    /**
+     * Load records by ID from one table, a chunk of IDs per query
+     */
+    private void loadByIds(Connection conn, String table, List<Integer> recordIds,
+                           Map<Integer, MedicalRecord> byId) throws SQLException {
+        for (int from = 0; from < recordIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = recordIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, recordIds.size()));
+            String sql = "SELECT * FROM " + table + " WHERE record_id IN (" +
+                         String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(i + 1, chunk.get(i));
+                }
+                
+                ResultSet rs = stmt.executeQuery();
+                
+                for (MedicalRecord record : MEDICAL_RECORD_MAPPER.mapAll(rs)) {
+                    byId.put(record.getRecordId(), record);
+                }
+            }
+        }
+    }
+    
     /**
      * Create a new medical record in the database
      * 
@@ -80,174 +236,313 @@ public class MedicalRecordDAO {
      * @return true if successful, false otherwise
      */
     public boolean createMedicalRecord(MedicalRecord medicalRecord) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            // Debug info
-            System.out.println("Attempting to create new medical record with:");
-            System.out.println("- Patient ID: " + medicalRecord.getPatientId());
-            System.out.println("- Patient Name: " + medicalRecord.getPatientName());
-            System.out.println("- Doctor ID: " + medicalRecord.getDoctorId());
-            System.out.println("- Doctor Name: " + medicalRecord.getDoctorName());
-            System.out.println("- Visit Type: " + medicalRecord.getVisitType());
-            System.out.println("- Visit Date: " + (medicalRecord.getVisitDate() != null ? medicalRecord.getVisitDate() : "null"));
-            
-            // Check for valid patient ID (required constraint)
-            if (medicalRecord.getPatientId() <= 0) {
-                // Try to find patient ID by name
-                if (medicalRecord.getPatientName() != null && !medicalRecord.getPatientName().trim().isEmpty()) {
-                    int patientId = findPatientIdByName(conn, medicalRecord.getPatientName());
-                    if (patientId > 0) {
-                        medicalRecord.setPatientId(patientId);
-                        System.out.println("Found patient ID " + patientId + " for name: " + medicalRecord.getPatientName());
-                    } else {
-                        // If no patient found, use default patient ID 1 (John Doe)
-                        medicalRecord.setPatientId(1);
-                        System.out.println("Using default patient ID 1");
-                    }
+        try {
+            // All statements share one connection and commit once
+            return Transaction.execute(tx -> createMedicalRecord(tx, medicalRecord));
+        } catch (SQLException e) {
+            System.err.println("SQL Error creating medical record: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } catch (Exception e) {
+            System.err.println("Unexpected error creating medical record: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Create a new medical record in the database as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param medicalRecord The medical record to create
+     * @return true if successful, false otherwise
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean createMedicalRecord(Transaction tx, MedicalRecord medicalRecord) throws SQLException {
+        boolean created = createMedicalRecord(tx.getConnection(), medicalRecord);
+        if (created) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.MEDICAL_RECORD, medicalRecord.getRecordId());
+        }
+        return created;
+    }
+    
+    /**
+     * Create a new medical record in the database using the given connection
+     */
+    private boolean createMedicalRecord(Connection conn, MedicalRecord medicalRecord) throws SQLException {
+        // Debug info
+        System.out.println("Attempting to create new medical record with:");
+        System.out.println("- Patient ID: " + medicalRecord.getPatientId());
+        System.out.println("- Patient Name: " + medicalRecord.getPatientName());
+        System.out.println("- Doctor ID: " + medicalRecord.getDoctorId());
+        System.out.println("- Doctor Name: " + medicalRecord.getDoctorName());
+        System.out.println("- Visit Type: " + medicalRecord.getVisitType());
+        System.out.println("- Visit Date: " + (medicalRecord.getVisitDate() != null ? medicalRecord.getVisitDate() : "null"));
+        
+        // Check for valid patient ID (required constraint)
+        if (medicalRecord.getPatientId() <= 0) {
+            // Try to find patient ID by name
+            if (medicalRecord.getPatientName() != null && !medicalRecord.getPatientName().trim().isEmpty()) {
+                int patientId = findPatientIdByName(conn, medicalRecord.getPatientName());
+                if (patientId > 0) {
+                    medicalRecord.setPatientId(patientId);
+                    System.out.println("Found patient ID " + patientId + " for name: " + medicalRecord.getPatientName());
                 } else {
-                    // No patient name, use default
+                    // If no patient found, use default patient ID 1 (John Doe)
                     medicalRecord.setPatientId(1);
-                    System.out.println("Using default patient ID 1 due to missing patient information");
+                    System.out.println("Using default patient ID 1");
                 }
+            } else {
+                // No patient name, use default
+                medicalRecord.setPatientId(1);
+                System.out.println("Using default patient ID 1 due to missing patient information");
             }
-            
-            // Check for valid doctor ID (required constraint)
-            if (medicalRecord.getDoctorId() <= 0) {
-                // Try to find doctor ID by name
-                if (medicalRecord.getDoctorName() != null && !medicalRecord.getDoctorName().trim().isEmpty()) {
-                    int doctorId = findDoctorIdByName(conn, medicalRecord.getDoctorName());
-                    if (doctorId > 0) {
-                        medicalRecord.setDoctorId(doctorId);
-                        System.out.println("Found doctor ID " + doctorId + " for name: " + medicalRecord.getDoctorName());
-                    } else {
-                        // If no doctor found, use default doctor ID 2 (Dr. John Smith)
-                        medicalRecord.setDoctorId(2);
-                        System.out.println("Using default doctor ID 2");
-                    }
+        }
+        
+        // Check for valid doctor ID (required constraint)
+        if (medicalRecord.getDoctorId() <= 0) {
+            // Try to find doctor ID by name
+            if (medicalRecord.getDoctorName() != null && !medicalRecord.getDoctorName().trim().isEmpty()) {
+                int doctorId = findDoctorIdByName(conn, medicalRecord.getDoctorName());
+                if (doctorId > 0) {
+                    medicalRecord.setDoctorId(doctorId);
+                    System.out.println("Found doctor ID " + doctorId + " for name: " + medicalRecord.getDoctorName());
                 } else {
-                    // No doctor name, use default
+                    // If no doctor found, use default doctor ID 2 (Dr. John Smith)
                     medicalRecord.setDoctorId(2);
-                    System.out.println("Using default doctor ID 2 due to missing doctor information");
+                    System.out.println("Using default doctor ID 2");
                 }
+            } else {
+                // No doctor name, use default
+                medicalRecord.setDoctorId(2);
+                System.out.println("Using default doctor ID 2 due to missing doctor information");
             }
+        }
+        
+        // Ensure visit_type has a value (DEFAULT clause doesn't exist in table)
+        if (medicalRecord.getVisitType() == null || medicalRecord.getVisitType().trim().isEmpty()) {
+            medicalRecord.setVisitType("Regular visit");
+            System.out.println("Using default visit type: Regular visit");
+        }
+        
+        // Ensure visit_date has a value
+        if (medicalRecord.getVisitDate() == null) {
+            medicalRecord.setVisitDate(LocalDateTime.now());
+            System.out.println("Using current date/time for visit date");
+        }
+        
+        // Ensure status has a value
+        if (medicalRecord.getStatus() == null || medicalRecord.getStatus().trim().isEmpty()) {
+            medicalRecord.setStatus("Pending");
+            System.out.println("Using default status: Pending");
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsertParameters(stmt, medicalRecord);
             
-            // Ensure visit_type has a value (DEFAULT clause doesn't exist in table)
-            if (medicalRecord.getVisitType() == null || medicalRecord.getVisitType().trim().isEmpty()) {
-                medicalRecord.setVisitType("Regular visit");
-                System.out.println("Using default visit type: Regular visit");
-            }
-            
-            // Ensure visit_date has a value
-            if (medicalRecord.getVisitDate() == null) {
-                medicalRecord.setVisitDate(LocalDateTime.now());
-                System.out.println("Using current date/time for visit date");
-            }
+            // Execute the insert
+            int affectedRows = stmt.executeUpdate();
             
-            // Ensure status has a value
-            if (medicalRecord.getStatus() == null || medicalRecord.getStatus().trim().isEmpty()) {
-                medicalRecord.setStatus("Pending");
-                System.out.println("Using default status: Pending");
+            if (affectedRows == 0) {
+                System.err.println("Creating medical record failed, no rows affected.");
+                return false;
             }
             
-            // Prepare SQL statement with explicit column names
-            String sql = "INSERT INTO medical_records (patient_id, patient_name, doctor_id, doctor_name, " +
-                         "visit_type, visit_date, symptoms, diagnosis, treatment, notes, status, " +
-                         "diagnosis_codes, attachments, follow_up_date, record_type) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                // Set patient_id (NOT NULL field)
-                stmt.setInt(1, medicalRecord.getPatientId());
-                
-                // Set patient_name (can be NULL)
-                if (medicalRecord.getPatientName() != null) {
-                    stmt.setString(2, medicalRecord.getPatientName());
-                } else {
-                    stmt.setNull(2, Types.VARCHAR);
-                }
-                
-                // Set doctor_id (NOT NULL field)
-                stmt.setInt(3, medicalRecord.getDoctorId());
-                
-                // Set doctor_name (can be NULL)
-                if (medicalRecord.getDoctorName() != null) {
-                    stmt.setString(4, medicalRecord.getDoctorName());
-                } else {
-                    stmt.setNull(4, Types.VARCHAR);
-                }
-                
-                // Set visit_type
-                if (medicalRecord.getVisitType() != null) {
-                    stmt.setString(5, medicalRecord.getVisitType());
-                } else {
-                    stmt.setString(5, "Regular visit"); // Default value
-                }
-                
-                // Set visit_date (NOT NULL field)
-                if (medicalRecord.getVisitDate() != null) {
-                    stmt.setTimestamp(6, Timestamp.valueOf(medicalRecord.getVisitDate()));
-                } else {
-                    stmt.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
-                }
-                
-                // Set optional fields, handling null values properly
-                setStringOrNull(stmt, 7, medicalRecord.getSymptoms());
-                setStringOrNull(stmt, 8, medicalRecord.getDiagnosis());
-                setStringOrNull(stmt, 9, medicalRecord.getTreatment());
-                setStringOrNull(stmt, 10, medicalRecord.getNotes());
-                
-                // Set status with default if null
-                if (medicalRecord.getStatus() != null && !medicalRecord.getStatus().isEmpty()) {
-                    stmt.setString(11, medicalRecord.getStatus());
-                } else {
-                    stmt.setString(11, "Pending"); // Default value
-                }
-                
-                setStringOrNull(stmt, 12, medicalRecord.getDiagnosisCodes());
-                setStringOrNull(stmt, 13, medicalRecord.getAttachments());
-                
-                // Handle follow_up_date (can be null)
-                if (medicalRecord.getFollowUpDate() != null) {
-                    stmt.setDate(14, java.sql.Date.valueOf(medicalRecord.getFollowUpDate().toLocalDate()));
-                } else {
-                    stmt.setNull(14, Types.DATE);
-                }
-                
-                // Set record_type with default if null
-                if (medicalRecord.getRecordType() != null && !medicalRecord.getRecordType().isEmpty()) {
-                    stmt.setString(15, medicalRecord.getRecordType());
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    int newId = generatedKeys.getInt(1);
+                    medicalRecord.setRecordId(newId);
+                    System.out.println("Created record with ID: " + newId);
+                    
+                    RecordCounters counters = new RecordCounters();
+                    counters.add(conn, List.of(newId));
+                    counters.apply(conn);
+                    return true;
                 } else {
-                    stmt.setString(15, "Regular visit"); // Default value
-                }
-                
-                // Execute the insert
-                int affectedRows = stmt.executeUpdate();
-                
-                if (affectedRows == 0) {
-                    System.err.println("Creating medical record failed, no rows affected.");
+                    System.err.println("Creating medical record failed, no ID obtained.");
                     return false;
                 }
-                
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int newId = generatedKeys.getInt(1);
-                        medicalRecord.setRecordId(newId);
-                        System.out.println("Created record with ID: " + newId);
-                        return true;
-                    } else {
-                        System.err.println("Creating medical record failed, no ID obtained.");
-                        return false;
+            }
+        }
+    }
+    
+    /**
+     * Insert many medical records with JDBC batching
+     * 
+     * @param records The records to insert
+     * @param batchSize The number of rows sent and committed together
+     * @return The number of rows inserted and the throughput
+     * @see #bulkInsertMedicalRecords(Iterator, int)
+     */
+    public BulkInsertResult bulkInsertMedicalRecords(Stream<MedicalRecord> records, int batchSize) {
+        return bulkInsertMedicalRecords(records.iterator(), batchSize);
+    }
+    
+    /**
+     * Insert many medical records with JDBC batching, committing once per batch.
+     * <p>
+     * Unlike {@link #createMedicalRecord(MedicalRecord)} there are no per-record
+     * lookups or logging, so records must already carry their patient and doctor
+     * IDs; missing visit types, dates and statuses get the usual defaults. The
+     * generated IDs are read once per batch and set on the records. On MySQL the
+     * driver rewrites each batch into multi-row INSERT statements.
+     * <p>
+     * If a batch fails it is rolled back and the insert stops. Earlier batches
+     * stay committed, and the result says how many rows they hold.
+     * 
+     * @param records The records to insert, consumed once
+     * @param batchSize The number of rows sent and committed together
+     * @return The number of rows inserted and the throughput
+     */
+    public BulkInsertResult bulkInsertMedicalRecords(Iterator<MedicalRecord> records, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        
+        long start = System.nanoTime();
+        long lastReport = start;
+        long inserted = 0;
+        List<MedicalRecord> batch = new ArrayList<>(batchSize);
+        
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                while (records.hasNext()) {
+                    MedicalRecord record = records.next();
+                    if (record.getPatientId() <= 0 || record.getDoctorId() <= 0) {
+                        throw new SQLException("Record " + (inserted + batch.size() + 1) +
+                                               " has no patient ID or doctor ID");
+                    }
+                    
+                    bindInsertParameters(stmt, record);
+                    stmt.addBatch();
+                    batch.add(record);
+                    
+                    if (batch.size() == batchSize || !records.hasNext()) {
+                        inserted += executeInsertBatch(conn, stmt, batch);
+                        batch.clear();
+                        
+                        long now = System.nanoTime();
+                        if (now - lastReport >= BULK_PROGRESS_INTERVAL_NANOS) {
+                            System.out.println("Bulk insert: " +
+                                    new BulkInsertResult(inserted, (now - start) / 1_000_000, null));
+                            lastReport = now;
+                        }
                     }
                 }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
         } catch (SQLException e) {
-            System.err.println("SQL Error creating medical record: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        } catch (Exception e) {
-            System.err.println("Unexpected error creating medical record: " + e.getMessage());
+            BulkInsertResult result = new BulkInsertResult(inserted, (System.nanoTime() - start) / 1_000_000,
+                    e.getMessage());
+            System.err.println("Bulk insert of medical records failed: " + result);
             e.printStackTrace();
-            return false;
+            return result;
+        }
+        
+        BulkInsertResult result = new BulkInsertResult(inserted, (System.nanoTime() - start) / 1_000_000, null);
+        System.out.println("Bulk insert of medical records complete: " + result);
+        return result;
+    }
+    
+    /**
+     * Send one batch, copy the generated IDs onto its records and commit it
+     * 
+     * @return The number of rows in the batch
+     */
+    private int executeInsertBatch(Connection conn, PreparedStatement stmt, List<MedicalRecord> batch)
+            throws SQLException {
+        stmt.executeBatch();
+        
+        List<Integer> recordIds = new ArrayList<>(batch.size());
+        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+            int i = 0;
+            while (i < batch.size() && generatedKeys.next()) {
+                batch.get(i).setRecordId(generatedKeys.getInt(1));
+                recordIds.add(batch.get(i++).getRecordId());
+            }
         }
+        
+        RecordCounters counters = new RecordCounters();
+        counters.add(conn, recordIds);
+        counters.apply(conn);
+        
+        conn.commit();
+        for (MedicalRecord record : batch) {
+            DataChangeEvents.publish(DataChangeEvents.Entity.MEDICAL_RECORD, record.getRecordId());
+        }
+        return batch.size();
+    }
+    
+    /**
+     * Bind a record to the parameters of {@link #INSERT_SQL}
+     */
+    private void bindInsertParameters(PreparedStatement stmt, MedicalRecord medicalRecord) throws SQLException {
+        // Set patient_id (NOT NULL field)
+        stmt.setInt(1, medicalRecord.getPatientId());
+        
+        // Set patient_name (can be NULL)
+        if (medicalRecord.getPatientName() != null) {
+            stmt.setString(2, medicalRecord.getPatientName());
+        } else {
+            stmt.setNull(2, Types.VARCHAR);
+        }
+        
+        // Set doctor_id (NOT NULL field)
+        stmt.setInt(3, medicalRecord.getDoctorId());
+        
+        // Set doctor_name (can be NULL)
+        if (medicalRecord.getDoctorName() != null) {
+            stmt.setString(4, medicalRecord.getDoctorName());
+        } else {
+            stmt.setNull(4, Types.VARCHAR);
+        }
+        
+        // Set visit_type
+        if (medicalRecord.getVisitType() != null) {
+            stmt.setString(5, medicalRecord.getVisitType());
+        } else {
+            stmt.setString(5, "Regular visit"); // Default value
+        }
+        
+        // Set visit_date (NOT NULL field)
+        if (medicalRecord.getVisitDate() != null) {
+            stmt.setTimestamp(6, Timestamp.valueOf(medicalRecord.getVisitDate()));
+        } else {
+            stmt.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+        }
+        
+        // Set optional fields, handling null values properly
+        setStringOrNull(stmt, 7, medicalRecord.getSymptoms());
+        setStringOrNull(stmt, 8, medicalRecord.getDiagnosis());
+        setStringOrNull(stmt, 9, medicalRecord.getTreatment());
+        setStringOrNull(stmt, 10, medicalRecord.getNotes());
+        
+        // Set status with default if null
+        if (medicalRecord.getStatus() != null && !medicalRecord.getStatus().isEmpty()) {
+            stmt.setString(11, medicalRecord.getStatus());
+        } else {
+            stmt.setString(11, "Pending"); // Default value
+        }
+        
+        setStringOrNull(stmt, 12, medicalRecord.getDiagnosisCodes());
+        setStringOrNull(stmt, 13, medicalRecord.getAttachments());
+        
+        // Handle follow_up_date (can be null)
+        if (medicalRecord.getFollowUpDate() != null) {
+            stmt.setDate(14, java.sql.Date.valueOf(medicalRecord.getFollowUpDate().toLocalDate()));
+        } else {
+            stmt.setNull(14, Types.DATE);
+        }
+        
+        // record_type mirrors visit_type; the list filters match on it alone
+        stmt.setString(15, medicalRecord.getVisitType() != null ? medicalRecord.getVisitType() : "Regular visit");
     }
     
     /**
@@ -262,226 +557,278 @@ public class MedicalRecordDAO {
     }
     
     /**
-     * Find a patient ID by name
+     * Find a patient ID by name from the in-memory name maps
      */
     private int findPatientIdByName(Connection conn, String patientName) {
-        try {
-            String sql = "SELECT patient_id FROM patients WHERE full_name LIKE ? OR " +
-                         "CONCAT(first_name, ' ', last_name) LIKE ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                String searchPattern = "%" + patientName + "%";
-                stmt.setString(1, searchPattern);
-                stmt.setString(2, searchPattern);
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getInt("patient_id");
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error finding patient ID: " + e.getMessage());
-        }
-        return -1;
+        return NameResolver.getInstance().resolvePatientId(conn, patientName);
     }
     
     /**
-     * Find a doctor ID by name
+     * Find a doctor ID by name from the in-memory name maps
      */
     private int findDoctorIdByName(Connection conn, String doctorName) {
+        return NameResolver.getInstance().resolveDoctorId(conn, doctorName);
+    }
+    
+    /**
+     * Update an existing medical record in the database. A record loaded from
+     * the database writes only the fields set since, and fails if the record
+     * has been changed by someone else in the meantime.
+     * 
+     * @param medicalRecord The medical record to update
+     * @return true if successful, false otherwise
+     */
+    public boolean updateMedicalRecord(MedicalRecord medicalRecord) {
         try {
-            String sql = "SELECT user_id FROM users WHERE full_name LIKE ? AND role = 'DOCTOR'";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, "%" + doctorName + "%");
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getInt("user_id");
-                    }
-                }
-            }
+            // All statements share one connection and commit once
+            return Transaction.execute(tx -> updateMedicalRecord(tx, medicalRecord));
+        } catch (StaleRecordException e) {
+            System.err.println("Medical record " + e.getRecordId() + " was changed by another user since version " +
+                    e.getExpectedVersion() + "; reload it and try again");
+            return false;
         } catch (SQLException e) {
-            System.err.println("Error finding doctor ID: " + e.getMessage());
+            System.err.println("SQL Error updating medical record: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } catch (Exception e) {
+            System.err.println("Unexpected error updating medical record: " + e.getMessage());
+            e.printStackTrace();
+            return false;
         }
-        return -1;
     }
     
     /**
-     * Update an existing medical record in the database
+     * Update an existing medical record in the database as part of a transaction.
+     * Once the transaction commits the record holds the new version and is
+     * clean, so it can be changed and updated again.
      * 
+     * @param tx The transaction to run in
      * @param medicalRecord The medical record to update
      * @return true if successful, false otherwise
+     * @throws StaleRecordException If the record was changed since it was loaded
+     * @throws SQLException If a database access error occurs
      */
-    public boolean updateMedicalRecord(MedicalRecord medicalRecord) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            // Debug info
-            System.out.println("Attempting to update medical record ID " + medicalRecord.getRecordId() + " with:");
-            System.out.println("- Patient ID: " + medicalRecord.getPatientId());
-            System.out.println("- Patient Name: " + medicalRecord.getPatientName());
-            System.out.println("- Doctor ID: " + medicalRecord.getDoctorId());
-            System.out.println("- Doctor Name: " + medicalRecord.getDoctorName());
-            System.out.println("- Visit Type: " + medicalRecord.getVisitType());
-            System.out.println("- Visit Date: " + (medicalRecord.getVisitDate() != null ? medicalRecord.getVisitDate() : "null"));
-            
-            // Check for valid record ID
-            if (medicalRecord.getRecordId() <= 0) {
-                System.err.println("Cannot update record with invalid ID: " + medicalRecord.getRecordId());
-                return false;
+    public boolean updateMedicalRecord(Transaction tx, MedicalRecord medicalRecord) throws SQLException {
+        if (medicalRecord.isTracking() && medicalRecord.getChangedFields().isEmpty()) {
+            LOGGER.fine(() -> "No changes to medical record ID " + medicalRecord.getRecordId());
+            return true;
+        }
+        
+        boolean updated = updateMedicalRecord(tx.getConnection(), medicalRecord);
+        if (updated) {
+            if (isVersioned(medicalRecord)) {
+                int newVersion = medicalRecord.getVersion() + 1;
+                tx.afterCommit(() -> {
+                    medicalRecord.setVersion(newVersion);
+                    medicalRecord.markClean();
+                });
             }
-            
-            // Check for valid patient ID (required constraint)
-            if (medicalRecord.getPatientId() <= 0) {
-                // Try to find patient ID by name
-                if (medicalRecord.getPatientName() != null && !medicalRecord.getPatientName().trim().isEmpty()) {
-                    int patientId = findPatientIdByName(conn, medicalRecord.getPatientName());
-                    if (patientId > 0) {
-                        medicalRecord.setPatientId(patientId);
-                        System.out.println("Found patient ID " + patientId + " for name: " + medicalRecord.getPatientName());
-                    } else {
-                        // If no patient found, use default patient ID 1 (John Doe)
-                        medicalRecord.setPatientId(1);
-                        System.out.println("Using default patient ID 1");
-                    }
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.MEDICAL_RECORD, medicalRecord.getRecordId());
+        }
+        return updated;
+    }
+    
+    /**
+     * Change only the status of a medical record, for example from the records
+     * table, without loading or sending the rest of the record.
+     * 
+     * @param recordId The ID of the medical record
+     * @param version The version the record was displayed at
+     * @param status The new status
+     * @return true if successful, false if the record is gone, was changed
+     *         since that version or there was an error
+     */
+    public boolean updateMedicalRecordStatus(int recordId, int version, String status) {
+        MedicalRecord change = new MedicalRecord();
+        change.setRecordId(recordId);
+        change.setVersion(version);
+        change.markClean();
+        change.setStatus(status);
+        change.markChanged(MedicalRecord.Field.STATUS);
+        return updateMedicalRecord(change);
+    }
+    
+    /**
+     * Whether an update must match the version the record was loaded at.
+     * Records built in code without a version overwrite whatever is stored.
+     */
+    private static boolean isVersioned(MedicalRecord medicalRecord) {
+        return medicalRecord.isTracking() || medicalRecord.getVersion() > 0;
+    }
+    
+    /**
+     * Update an existing medical record in the database using the given connection
+     */
+    private boolean updateMedicalRecord(Connection conn, MedicalRecord medicalRecord) throws SQLException {
+        LOGGER.fine(() -> "Updating medical record ID " + medicalRecord.getRecordId() +
+                " at version " + medicalRecord.getVersion() + ", fields: " +
+                (medicalRecord.isTracking() ? medicalRecord.getChangedFields() : "all"));
+        
+        // Check for valid record ID
+        if (medicalRecord.getRecordId() <= 0) {
+            System.err.println("Cannot update record with invalid ID: " + medicalRecord.getRecordId());
+            return false;
+        }
+        
+        // Check for valid patient ID (required constraint)
+        if (medicalRecord.isChanged(MedicalRecord.Field.PATIENT_ID) && medicalRecord.getPatientId() <= 0) {
+            // Try to find patient ID by name
+            if (medicalRecord.getPatientName() != null && !medicalRecord.getPatientName().trim().isEmpty()) {
+                int patientId = findPatientIdByName(conn, medicalRecord.getPatientName());
+                if (patientId > 0) {
+                    medicalRecord.setPatientId(patientId);
+                    System.out.println("Found patient ID " + patientId + " for name: " + medicalRecord.getPatientName());
                 } else {
-                    // No patient name, use default
+                    // If no patient found, use default patient ID 1 (John Doe)
                     medicalRecord.setPatientId(1);
-                    System.out.println("Using default patient ID 1 due to missing patient information");
+                    System.out.println("Using default patient ID 1");
                 }
+            } else {
+                // No patient name, use default
+                medicalRecord.setPatientId(1);
+                System.out.println("Using default patient ID 1 due to missing patient information");
             }
-            
-            // Check for valid doctor ID (required constraint)
-            if (medicalRecord.getDoctorId() <= 0) {
-                // Try to find doctor ID by name
-                if (medicalRecord.getDoctorName() != null && !medicalRecord.getDoctorName().trim().isEmpty()) {
-                    int doctorId = findDoctorIdByName(conn, medicalRecord.getDoctorName());
-                    if (doctorId > 0) {
-                        medicalRecord.setDoctorId(doctorId);
-                        System.out.println("Found doctor ID " + doctorId + " for name: " + medicalRecord.getDoctorName());
-                    } else {
-                        // If no doctor found, use default doctor ID 2 (Dr. John Smith)
-                        medicalRecord.setDoctorId(2);
-                        System.out.println("Using default doctor ID 2");
-                    }
+        }
+        
+        // Check for valid doctor ID (required constraint)
+        if (medicalRecord.isChanged(MedicalRecord.Field.DOCTOR_ID) && medicalRecord.getDoctorId() <= 0) {
+            // Try to find doctor ID by name
+            if (medicalRecord.getDoctorName() != null && !medicalRecord.getDoctorName().trim().isEmpty()) {
+                int doctorId = findDoctorIdByName(conn, medicalRecord.getDoctorName());
+                if (doctorId > 0) {
+                    medicalRecord.setDoctorId(doctorId);
+                    System.out.println("Found doctor ID " + doctorId + " for name: " + medicalRecord.getDoctorName());
                 } else {
-                    // No doctor name, use default
+                    // If no doctor found, use default doctor ID 2 (Dr. John Smith)
                     medicalRecord.setDoctorId(2);
-                    System.out.println("Using default doctor ID 2 due to missing doctor information");
+                    System.out.println("Using default doctor ID 2");
                 }
+            } else {
+                // No doctor name, use default
+                medicalRecord.setDoctorId(2);
+                System.out.println("Using default doctor ID 2 due to missing doctor information");
             }
-            
-            // Ensure visit_type has a value (DEFAULT clause doesn't exist in table)
-            if (medicalRecord.getVisitType() == null || medicalRecord.getVisitType().trim().isEmpty()) {
-                medicalRecord.setVisitType("Regular visit");
-                System.out.println("Using default visit type: Regular visit");
+        }
+        
+        // Ensure visit_type has a value (DEFAULT clause doesn't exist in table)
+        if (medicalRecord.isChanged(MedicalRecord.Field.VISIT_TYPE) &&
+                (medicalRecord.getVisitType() == null || medicalRecord.getVisitType().trim().isEmpty())) {
+            medicalRecord.setVisitType("Regular visit");
+            System.out.println("Using default visit type: Regular visit");
+        }
+        
+        // Ensure visit_date has a value
+        if (medicalRecord.isChanged(MedicalRecord.Field.VISIT_DATE) && medicalRecord.getVisitDate() == null) {
+            medicalRecord.setVisitDate(LocalDateTime.now());
+            System.out.println("Using current date/time for visit date");
+        }
+        
+        // Ensure status has a value
+        if (medicalRecord.isChanged(MedicalRecord.Field.STATUS) &&
+                (medicalRecord.getStatus() == null || medicalRecord.getStatus().trim().isEmpty())) {
+            medicalRecord.setStatus("Pending");
+            System.out.println("Using default status: Pending");
+        }
+        
+        // Only the columns being written are sent; the version changes on every update
+        List<MedicalRecord.Field> fields = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("UPDATE medical_records SET ");
+        for (MedicalRecord.Field field : MedicalRecord.Field.values()) {
+            if (medicalRecord.isChanged(field)) {
+                fields.add(field);
+                sql.append(UPDATE_COLUMNS.get(field)).append(" = ?, ");
             }
-            
-            // Ensure visit_date has a value
-            if (medicalRecord.getVisitDate() == null) {
-                medicalRecord.setVisitDate(LocalDateTime.now());
-                System.out.println("Using current date/time for visit date");
+        }
+        boolean versioned = isVersioned(medicalRecord);
+        sql.append("version = version + 1 WHERE record_id = ?");
+        if (versioned) {
+            sql.append(" AND version = ?");
+        }
+        
+        // Count the stored version out before it changes; a change to other
+        // columns leaves the counters alone and takes no extra lock
+        RecordCounters counters = null;
+        if (medicalRecord.isChanged(MedicalRecord.Field.STATUS) || medicalRecord.isChanged(MedicalRecord.Field.VISIT_TYPE) ||
+                medicalRecord.isChanged(MedicalRecord.Field.DOCTOR_ID) || medicalRecord.isChanged(MedicalRecord.Field.VISIT_DATE)) {
+            counters = new RecordCounters();
+            counters.remove(conn, List.of(medicalRecord.getRecordId()));
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (MedicalRecord.Field field : fields) {
+                bindUpdateField(stmt, index++, medicalRecord, field);
             }
             
-            // Ensure status has a value
-            if (medicalRecord.getStatus() == null || medicalRecord.getStatus().trim().isEmpty()) {
-                medicalRecord.setStatus("Pending");
-                System.out.println("Using default status: Pending");
+            // Set record_id and the expected version for the WHERE clause
+            stmt.setInt(index++, medicalRecord.getRecordId());
+            if (versioned) {
+                stmt.setInt(index, medicalRecord.getVersion());
             }
             
-            String sql = "UPDATE medical_records SET patient_id = ?, patient_name = ?, " +
-                         "doctor_id = ?, doctor_name = ?, visit_type = ?, visit_date = ?, " +
-                         "symptoms = ?, diagnosis = ?, treatment = ?, notes = ?, status = ?, " +
-                         "diagnosis_codes = ?, attachments = ?, follow_up_date = ?, record_type = ? " +
-                         "WHERE record_id = ?";
+            // Execute the update
+            int affectedRows = stmt.executeUpdate();
+            System.out.println("Updated record ID: " + medicalRecord.getRecordId() + ", Affected rows: " + affectedRows);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                // Set patient_id (NOT NULL field)
-                stmt.setInt(1, medicalRecord.getPatientId());
-                
-                // Set patient_name (can be NULL)
-                if (medicalRecord.getPatientName() != null) {
-                    stmt.setString(2, medicalRecord.getPatientName());
-                } else {
-                    stmt.setNull(2, Types.VARCHAR);
-                }
-                
-                // Set doctor_id (NOT NULL field)
-                stmt.setInt(3, medicalRecord.getDoctorId());
-                
-                // Set doctor_name (can be NULL)
-                if (medicalRecord.getDoctorName() != null) {
-                    stmt.setString(4, medicalRecord.getDoctorName());
-                } else {
-                    stmt.setNull(4, Types.VARCHAR);
-                }
-                
-                // Set visit_type
-                if (medicalRecord.getVisitType() != null) {
-                    stmt.setString(5, medicalRecord.getVisitType());
-                } else {
-                    stmt.setString(5, "Regular visit"); // Default value
-                }
-                
-                // Set visit_date (NOT NULL field)
-                if (medicalRecord.getVisitDate() != null) {
-                    stmt.setTimestamp(6, Timestamp.valueOf(medicalRecord.getVisitDate()));
-                } else {
-                    stmt.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+            if (affectedRows > 0) {
+                if (counters != null) {
+                    counters.add(conn, List.of(medicalRecord.getRecordId()));
+                    counters.apply(conn);
                 }
-                
-                // Set optional fields, handling null values properly
-                setStringOrNull(stmt, 7, medicalRecord.getSymptoms());
-                setStringOrNull(stmt, 8, medicalRecord.getDiagnosis());
-                setStringOrNull(stmt, 9, medicalRecord.getTreatment());
-                setStringOrNull(stmt, 10, medicalRecord.getNotes());
-                
-                // Set status with default if null
-                if (medicalRecord.getStatus() != null && !medicalRecord.getStatus().isEmpty()) {
-                    stmt.setString(11, medicalRecord.getStatus());
-                } else {
-                    stmt.setString(11, "Pending"); // Default value
-                }
-                
-                setStringOrNull(stmt, 12, medicalRecord.getDiagnosisCodes());
-                setStringOrNull(stmt, 13, medicalRecord.getAttachments());
-                
-                // Handle follow_up_date (can be null)
+                return true;
+            } else if (RecordArchiver.getInstance().restore(conn, medicalRecord.getRecordId())) {
+                // An archived record is edited in the hot table, like any other
+                return updateMedicalRecord(conn, medicalRecord);
+            } else if (versioned && recordExists(conn, medicalRecord.getRecordId())) {
+                throw new StaleRecordException(medicalRecord.getRecordId(), medicalRecord.getVersion());
+            } else {
+                System.err.println("No record found with ID: " + medicalRecord.getRecordId());
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * Set the parameter for one column of an update, filling in values for
+     * the NOT NULL columns the DAO has always defaulted.
+     */
+    private void bindUpdateField(PreparedStatement stmt, int index, MedicalRecord medicalRecord,
+                                 MedicalRecord.Field field) throws SQLException {
+        switch (field) {
+            case PATIENT_ID -> stmt.setInt(index, medicalRecord.getPatientId());
+            case PATIENT_NAME -> setStringOrNull(stmt, index, medicalRecord.getPatientName());
+            case DOCTOR_ID -> stmt.setInt(index, medicalRecord.getDoctorId());
+            case DOCTOR_NAME -> setStringOrNull(stmt, index, medicalRecord.getDoctorName());
+            // record_type mirrors visit_type; the list filters match on it alone
+            case VISIT_TYPE, RECORD_TYPE -> stmt.setString(index,
+                    medicalRecord.getVisitType() != null ? medicalRecord.getVisitType() : "Regular visit");
+            case VISIT_DATE -> stmt.setTimestamp(index, medicalRecord.getVisitDate() != null
+                    ? Timestamp.valueOf(medicalRecord.getVisitDate())
+                    : new Timestamp(System.currentTimeMillis()));
+            case SYMPTOMS -> setStringOrNull(stmt, index, medicalRecord.getSymptoms());
+            case DIAGNOSIS -> setStringOrNull(stmt, index, medicalRecord.getDiagnosis());
+            case TREATMENT -> setStringOrNull(stmt, index, medicalRecord.getTreatment());
+            case NOTES -> setStringOrNull(stmt, index, medicalRecord.getNotes());
+            case STATUS -> stmt.setString(index, medicalRecord.getStatus() != null && !medicalRecord.getStatus().isEmpty()
+                    ? medicalRecord.getStatus() : "Pending");
+            case DIAGNOSIS_CODES -> setStringOrNull(stmt, index, medicalRecord.getDiagnosisCodes());
+            case ATTACHMENTS -> setStringOrNull(stmt, index, medicalRecord.getAttachments());
+            case FOLLOW_UP_DATE -> {
                 if (medicalRecord.getFollowUpDate() != null) {
-                    stmt.setDate(14, java.sql.Date.valueOf(medicalRecord.getFollowUpDate().toLocalDate()));
+                    stmt.setDate(index, java.sql.Date.valueOf(medicalRecord.getFollowUpDate().toLocalDate()));
                 } else {
-                    stmt.setNull(14, Types.DATE);
-                }
-                
-                // Set record_type with default if null
-                if (medicalRecord.getRecordType() != null && !medicalRecord.getRecordType().isEmpty()) {
-                    stmt.setString(15, medicalRecord.getRecordType());
-                } else {
-                    stmt.setString(15, "Regular visit"); // Default value
-                }
-                
-                // Set record_id for WHERE clause
-                stmt.setInt(16, medicalRecord.getRecordId());
-                
-                // Execute the update
-                int affectedRows = stmt.executeUpdate();
-                System.out.println("Updated record ID: " + medicalRecord.getRecordId() + ", Affected rows: " + affectedRows);
-                
-                if (affectedRows > 0) {
-                    return true;
-                } else {
-                    System.err.println("No record found with ID: " + medicalRecord.getRecordId());
-                    return false;
+                    stmt.setNull(index, Types.DATE);
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("SQL Error updating medical record: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        } catch (Exception e) {
-            System.err.println("Unexpected error updating medical record: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        }
+    }
+    
+    private static boolean recordExists(Connection conn, int recordId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM medical_records WHERE record_id = ?")) {
+            stmt.setInt(1, recordId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
         }
     }
     
@@ -492,15 +839,9 @@ public class MedicalRecordDAO {
      * @return true if successful, false otherwise
      */
     public boolean deleteMedicalRecord(int recordId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "DELETE FROM medical_records WHERE record_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, recordId);
-                
-                int affectedRows = stmt.executeUpdate();
-                return affectedRows > 0;
-            }
+        try {
+            // The delete and the counter updates commit together
+            return Transaction.execute(tx -> deleteMedicalRecord(tx, recordId));
         } catch (SQLException e) {
             System.err.println("Error deleting medical record: " + e.getMessage());
             e.printStackTrace();
@@ -509,7 +850,47 @@ public class MedicalRecordDAO {
     }
     
     /**
-     * Get all medical records with pagination
+     * Delete a medical record from the database as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param recordId The ID of the medical record to delete
+     * @return true if successful, false otherwise
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean deleteMedicalRecord(Transaction tx, int recordId) throws SQLException {
+        boolean deleted = deleteMedicalRecord(tx.getConnection(), recordId);
+        if (deleted) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.MEDICAL_RECORD, recordId);
+        }
+        return deleted;
+    }
+    
+    /**
+     * Delete a medical record from the database using the given connection
+     */
+    private boolean deleteMedicalRecord(Connection conn, int recordId) throws SQLException {
+        String sql = "DELETE FROM medical_records WHERE record_id = ?";
+        
+        // An archived record comes back first so it is counted out like any other
+        RecordArchiver.getInstance().restore(conn, recordId);
+        
+        RecordCounters counters = new RecordCounters();
+        counters.remove(conn, List.of(recordId));
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, recordId);
+            
+            int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                counters.apply(conn);
+            }
+            return affectedRows > 0;
+        }
+    }
+    
+    /**
+     * Get all medical records with pagination. The cost of a page grows with
+     * the offset; use {@link #getMedicalRecordsPage} to page through large results.
      * 
      * @param offset The offset for pagination
      * @param limit The maximum number of records to return
@@ -517,19 +898,18 @@ public class MedicalRecordDAO {
      */
     public List<MedicalRecord> getAllMedicalRecords(int offset, int limit) {
         List<MedicalRecord> records = new ArrayList<>();
+        Criteria criteria = new Criteria();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM medical_records ORDER BY visit_date DESC LIMIT ? OFFSET ?";
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            boolean withArchive = RecordArchiver.getInstance().mayHoldVisitsFrom(conn, null);
+            String sql = listingQuery("*", criteria, withArchive, true);
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, limit);
-                stmt.setInt(2, offset);
+                bindListingQuery(stmt, criteria, withArchive, limit, offset);
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    records.add(mapResultSetToMedicalRecord(rs));
-                }
+                records.addAll(MEDICAL_RECORD_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving medical records: " + e.getMessage());
@@ -540,19 +920,20 @@ public class MedicalRecordDAO {
     }
     
     /**
-     * Get total count of medical records
+     * Get total count of medical records, from the maintained counters
      * 
      * @return The total number of records
      */
     public int getTotalRecordsCount() {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT COUNT(*) FROM medical_records";
+        String sql = "SELECT record_count FROM medical_record_stats WHERE dimension = ? AND dim_value = ''";
+        
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, RecordCounters.TOTAL);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                ResultSet rs = stmt.executeQuery();
-                
+            try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getInt(1);
+                    return (int) rs.getLong(1);
                 }
             }
         } catch (SQLException e) {
@@ -563,6 +944,58 @@ public class MedicalRecordDAO {
         return 0;
     }
     
+    /**
+     * Get the record counters: the total and the counts by status, record
+     * type and doctor, plus the counts by visit day from a given day on. The
+     * counters are updated with every write, so this does not scan records.
+     * 
+     * @param firstDay The first visit day to load counts for, or null for none
+     * @return The counters; all zero if there was an error
+     */
+    public RecordStats getRecordStats(LocalDate firstDay) {
+        long total = 0;
+        Map<String, Long> byStatus = new HashMap<>();
+        Map<String, Long> byRecordType = new HashMap<>();
+        Map<Integer, Long> byDoctor = new HashMap<>();
+        SortedMap<LocalDate, Long> byDay = new TreeMap<>();
+        
+        // Day rows grow with the history; load only the ones asked for
+        String sql = "SELECT dimension, dim_value, record_count FROM medical_record_stats " +
+                     "WHERE dimension <> ? OR dim_value >= ?";
+        
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, RecordCounters.DAY);
+            // ISO dates sort as text; '~' sorts after every date
+            stmt.setString(2, firstDay != null ? firstDay.toString() : "~");
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String dimension = rs.getString("dimension");
+                    String value = rs.getString("dim_value");
+                    long count = rs.getLong("record_count");
+                    
+                    if (RecordCounters.TOTAL.equals(dimension)) {
+                        total = count;
+                    } else if (RecordCounters.STATUS.equals(dimension)) {
+                        byStatus.put(value, count);
+                    } else if (RecordCounters.RECORD_TYPE.equals(dimension)) {
+                        byRecordType.put(value, count);
+                    } else if (RecordCounters.DOCTOR.equals(dimension)) {
+                        byDoctor.put(Integer.parseInt(value), count);
+                    } else if (RecordCounters.DAY.equals(dimension)) {
+                        byDay.put(LocalDate.parse(value), count);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading medical record stats: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return new RecordStats(total, byStatus, byRecordType, byDoctor, byDay);
+    }
+    
     /**
      * Convert a ResultSet row to a MedicalRecord object
      * 
@@ -571,167 +1004,449 @@ public class MedicalRecordDAO {
      * @throws SQLException If a database access error occurs
      */
     private MedicalRecord mapResultSetToMedicalRecord(ResultSet rs) throws SQLException {
-        MedicalRecord record = new MedicalRecord();
+        return MEDICAL_RECORD_MAPPER.map(rs);
+    }
+    
+    /**
+     * Get filtered medical records based on various criteria.
+     * Patient names match by prefix, and a start date without an end date selects that day.
+     * The cost of a page grows with the offset; use
+     * {@link #getFilteredMedicalRecordsPage} to page through large results.
+     */
+    public List<MedicalRecord> getFilteredMedicalRecords(String patientName, String recordType, 
+                                                        String status, Date startDate, Date endDate, 
+                                                        Integer doctorId, int offset, int limit) {
+        List<MedicalRecord> records = new ArrayList<>();
+        Criteria criteria = recordFilters(patientName, recordType, status, startDate, endDate, doctorId);
         
-        record.setRecordId(rs.getInt("record_id"));
-        record.setPatientId(rs.getInt("patient_id"));
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            boolean withArchive = RecordArchiver.getInstance().mayHoldVisitsFrom(conn, firstVisitDay(recordType, startDate));
+            String sql = listingQuery("*", criteria, withArchive, true);
+            
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                bindListingQuery(stmt, criteria, withArchive, limit, offset);
+                
+                ResultSet rs = stmt.executeQuery();
+                
+                records.addAll(MEDICAL_RECORD_MAPPER.mapAll(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving filtered medical records: " + e.getMessage());
+            e.printStackTrace();
+        }
         
-        // Handle nullable fields
-        record.setPatientName(rs.getString("patient_name"));
+        return records;
+    }
+    
+    /**
+     * Get one page of all medical records, newest first
+     * 
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of records to return
+     * @return The page of medical records; empty if there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     */
+    public Page<MedicalRecord> getMedicalRecordsPage(String pageToken, int limit) {
+        return getFilteredMedicalRecordsPage(null, null, null, null, null, null, pageToken, limit);
+    }
+    
+    /**
+     * Get one page of filtered medical records, newest first.
+     * <p>
+     * Pages are addressed by the (visit_date, record_id) of the last row on the
+     * previous page rather than by offset, so every page costs the same as the
+     * first one however deep it is.
+     * 
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of records to return
+     * @return The page of medical records; empty if there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     * @see #getFilteredMedicalRecords
+     */
+    public Page<MedicalRecord> getFilteredMedicalRecordsPage(String patientName, String recordType,
+                                                            String status, Date startDate, Date endDate,
+                                                            Integer doctorId, String pageToken, int limit) {
+        return queryPage("*", recordFilters(patientName, recordType, status, startDate, endDate, doctorId),
+                firstVisitDay(recordType, startDate), pageToken, limit);
+    }
+    
+    /**
+     * Get one page of filtered medical record summaries for list views, newest first.
+     * Summaries hold only the columns shown in record tables; symptoms, diagnosis,
+     * treatment, notes, diagnosis codes and attachments are not loaded. Use
+     * {@link #getMedicalRecordById} or {@link #getMedicalRecordsByIds} when a
+     * record is opened or exported.
+     * 
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of records to return
+     * @return The page of record summaries; empty if there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     * @see #getFilteredMedicalRecordsPage
+     */
+    public Page<MedicalRecord> getFilteredMedicalRecordSummaries(String patientName, String recordType,
+                                                                String status, Date startDate, Date endDate,
+                                                                Integer doctorId, String pageToken, int limit) {
+        return queryPage(SUMMARY_COLUMNS, recordFilters(patientName, recordType, status, startDate, endDate, doctorId),
+                firstVisitDay(recordType, startDate), pageToken, limit);
+    }
+    
+    /**
+     * Get one page of summaries of the records a search box entry names,
+     * newest first: the record with that ID, e.g. "MR-12" or "12", or else
+     * the records where each word of the text starts a word of the patient or
+     * doctor name. The
+     * other filters narrow the results as in
+     * {@link #getFilteredMedicalRecordSummaries}.
+     * 
+     * @param text The name or record ID typed in
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of records to return
+     * @return The page of record summaries; empty if there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     * @see #searchMedicalRecordSummaries
+     */
+    public Page<MedicalRecord> findMedicalRecordSummaries(String text, String patientName, String recordType,
+                                                         String status, Date startDate, Date endDate,
+                                                         Integer doctorId, String pageToken, int limit) {
+        Criteria criteria = recordFilters(patientName, recordType, status, startDate, endDate, doctorId);
+        Matcher recordId = RECORD_ID.matcher(text != null ? text.trim() : "");
+        if (recordId.matches()) {
+            criteria.eq("record_id", Integer.parseInt(recordId.group(1)));
+        } else if (text != null) {
+            for (String word : text.trim().split("\\s+")) {
+                criteria.wordStartsWithAny(word, "patient_name", "doctor_name");
+            }
+        }
+        return queryPage(SUMMARY_COLUMNS, criteria, firstVisitDay(recordType, startDate), pageToken, limit);
+    }
+    
+    /**
+     * Search the clinical text of medical records (symptoms, diagnosis,
+     * treatment, notes) with {@link FullTextSearch} and get one page of
+     * summaries of the matching records, most relevant first. The filters
+     * are part of the search, so only the last page holds fewer than limit
+     * records.
+     * 
+     * @param query The words to search for, e.g. "chest pain metformin"
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of records to return
+     * @return The page of record summaries; empty if there was an error
+     * @throws IllegalArgumentException If the page token is malformed or the limit is not positive
+     * @see #getFilteredMedicalRecordSummaries
+     */
+    public Page<MedicalRecord> searchMedicalRecordSummaries(String query, String patientName, String recordType,
+                                                           String status, Date startDate, Date endDate,
+                                                           Integer doctorId, String pageToken, int limit) {
+        Page<SearchHit> hits = FullTextSearch.getInstance().search(query, SearchHit.Source.MEDICAL_RECORD, null,
+                recordFilters(patientName, recordType, status, startDate, endDate, doctorId), pageToken, limit);
+        List<Integer> recordIds = new ArrayList<>();
+        for (SearchHit hit : hits.getItems()) {
+            recordIds.add(hit.getId());
+        }
+        if (recordIds.isEmpty()) {
+            return new Page<>(new ArrayList<>(), hits.getNextPageToken());
+        }
         
-        try {
-            record.setDoctorId(rs.getInt("doctor_id"));
-            if (rs.wasNull()) {
-                record.setDoctorId(0);
+        Map<Integer, MedicalRecord> byId = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (String table : recordTables(conn)) {
+                Criteria criteria = new Criteria().in("record_id", recordIds);
+                
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT " + SUMMARY_COLUMNS + " FROM " + table + criteria.toWhereClause())) {
+                    criteria.bind(stmt, 1);
+                    
+                    ResultSet rs = stmt.executeQuery();
+                    
+                    for (MedicalRecord record : MEDICAL_RECORD_MAPPER.mapAll(rs)) {
+                        byId.putIfAbsent(record.getRecordId(), record);
+                    }
+                }
             }
         } catch (SQLException e) {
-            record.setDoctorId(0);
+            System.err.println("Error retrieving searched medical records: " + e.getMessage());
+            e.printStackTrace();
+            return new Page<>(new ArrayList<>(), null);
         }
         
-        record.setDoctorName(rs.getString("doctor_name"));
-        record.setVisitType(rs.getString("visit_type"));
+        // Keep the search's ranking
+        List<MedicalRecord> records = new ArrayList<>();
+        for (Integer recordId : recordIds) {
+            MedicalRecord record = byId.get(recordId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return new Page<>(records, hits.getNextPageToken());
+    }
+    
+    /**
+     * Run a keyset-paginated listing query selecting the given columns.
+     * 
+     * @param firstVisitDay The earliest visit the filters allow, or null if unbounded
+     */
+    private Page<MedicalRecord> queryPage(String columns, Criteria criteria, LocalDate firstVisitDay,
+                                          String pageToken, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
         
-        Timestamp visitDate = rs.getTimestamp("visit_date");
-        if (visitDate != null) {
-            record.setVisitDate(visitDate.toLocalDateTime());
+        if (pageToken != null) {
+            String[] key = PageToken.decode(pageToken, 2);
+            int lastRecordId = Integer.parseInt(key[1]);
+            if (key[0] != null) {
+                // Rows with no visit date sort after every dated row
+                Timestamp lastVisitDate;
+                try {
+                    lastVisitDate = Timestamp.valueOf(LocalDateTime.parse(key[0]));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid page token", e);
+                }
+                criteria.where("visit_date < ? OR (visit_date = ? AND record_id < ?) OR visit_date IS NULL",
+                        lastVisitDate, lastVisitDate, lastRecordId);
+            } else {
+                criteria.where("visit_date IS NULL AND record_id < ?", lastRecordId);
+            }
         }
         
-        record.setSymptoms(rs.getString("symptoms"));
-        record.setDiagnosis(rs.getString("diagnosis"));
-        record.setTreatment(rs.getString("treatment"));
-        record.setNotes(rs.getString("notes"));
-        record.setStatus(rs.getString("status"));
-        record.setDiagnosisCodes(rs.getString("diagnosis_codes"));
-        record.setAttachments(rs.getString("attachments"));
+        RecordArchiver archiver = RecordArchiver.getInstance();
         
-        // Map follow_up_date if it exists
-        try {
-            java.sql.Date followUpDate = rs.getDate("follow_up_date");
-            if (followUpDate != null) {
-                // Convert java.sql.Date to LocalDateTime at midnight
-                record.setFollowUpDate(followUpDate.toLocalDate().atStartOfDay());
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            boolean mayNeedArchive = archiver.mayHoldVisitsFrom(conn, firstVisitDay);
+            // Most pages are served from the hot table alone, even when the filters reach back into the archive
+            Page<MedicalRecord> page = readPage(conn, columns, criteria, false, limit,
+                    mayNeedArchive ? archiver.getArchivedBefore(conn) : null);
+            if (page == null) {
+                page = readPage(conn, columns, criteria, true, limit, null);
             }
+            return page;
         } catch (SQLException e) {
-            // Column might not exist in older database versions, ignore
-            System.out.println("Note: follow_up_date column might not exist: " + e.getMessage());
+            System.err.println("Error retrieving page of medical records: " + e.getMessage());
+            e.printStackTrace();
         }
         
-        // Map record_type if it exists
+        return new Page<>(new ArrayList<>(), null);
+    }
+    
+    /**
+     * Read one page of a listing query, plus one extra row that tells us
+     * whether there is a next page.
+     * 
+     * @param archivedBefore The archive boundary when reading the hot table
+     *        for a query that may need the archive, otherwise null
+     * @return The page, or null if archived rows could belong on it: the hot
+     *         table ran out before the extra row, or the extra row is older
+     *         than the boundary
+     */
+    private Page<MedicalRecord> readPage(Connection conn, String columns, Criteria criteria, boolean withArchive,
+                                         int limit, LocalDateTime archivedBefore) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(listingQuery(columns, criteria, withArchive, true))) {
+            bindListingQuery(stmt, criteria, withArchive, limit + 1, 0);
+            
+            ResultSet rs = stmt.executeQuery();
+            
+            RowMapper.Bound<MedicalRecord> mapper = MEDICAL_RECORD_MAPPER.bind(rs);
+            // Read the key from the row itself; the model defaults a missing visit date to now
+            int visitDateColumn = rs.findColumn("visit_date");
+            List<MedicalRecord> records = new ArrayList<>();
+            Timestamp lastVisitDate = null;
+            String nextPageToken = null;
+            
+            while (rs.next()) {
+                if (records.size() == limit) {
+                    // Archived visits all sort after a row at or after the boundary
+                    Timestamp extraVisitDate = rs.getTimestamp(visitDateColumn);
+                    if (archivedBefore != null && (extraVisitDate == null ||
+                            extraVisitDate.toLocalDateTime().isBefore(archivedBefore))) {
+                        return null;
+                    }
+                    nextPageToken = PageToken.encode(
+                            lastVisitDate != null ? lastVisitDate.toLocalDateTime().toString() : null,
+                            String.valueOf(records.get(limit - 1).getRecordId()));
+                    break;
+                }
+                records.add(mapper.map(rs));
+                lastVisitDate = rs.getTimestamp(visitDateColumn);
+            }
+            if (nextPageToken == null && archivedBefore != null) {
+                return null;
+            }
+            return new Page<>(records, nextPageToken);
+        }
+    }
+    
+    /**
+     * Stream filtered medical records, newest first, reading them from the
+     * database as the stream is consumed so memory use does not depend on
+     * the number of rows. The stream holds a connection open and must be
+     * closed, for example with try-with-resources.
+     * 
+     * @return The matching records; empty if the query could not be started
+     * @throws UncheckedSQLException If reading fails part way through
+     * @see #getFilteredMedicalRecords
+     */
+    public Stream<MedicalRecord> streamMedicalRecords(String patientName, String recordType,
+                                                      String status, Date startDate, Date endDate,
+                                                      Integer doctorId) {
         try {
-            String recordType = rs.getString("record_type");
-            record.setRecordType(recordType);
+            return openRecordStream(recordFilters(patientName, recordType, status, startDate, endDate, doctorId),
+                    firstVisitDay(recordType, startDate));
         } catch (SQLException e) {
-            // Column might not exist in older database versions, ignore
-            System.out.println("Note: record_type column might not exist: " + e.getMessage());
+            System.err.println("Error streaming medical records: " + e.getMessage());
+            e.printStackTrace();
+            return Stream.empty();
         }
-        
-        return record;
     }
     
     /**
-     * Get filtered medical records based on various criteria
+     * Pass every matching medical record to an action, newest first, without
+     * holding more than one record in memory.
+     * 
+     * @param action Receives each record, on the calling thread
+     * @return The number of records processed, or -1 if there was an error
+     * @see #getFilteredMedicalRecords
      */
-    public List<MedicalRecord> getFilteredMedicalRecords(String patientName, String recordType, 
-                                                        String status, Date startDate, Date endDate, 
-                                                        Integer doctorId, int offset, int limit) {
-        List<MedicalRecord> records = new ArrayList<>();
-        StringBuilder sqlBuilder = new StringBuilder("SELECT * FROM medical_records WHERE 1=1");
-        List<Object> params = new ArrayList<>();
-        
-        System.out.println("Building SQL filter query:");
+    public long forEachMedicalRecord(String patientName, String recordType, String status,
+                                     Date startDate, Date endDate, Integer doctorId,
+                                     Consumer<MedicalRecord> action) {
+        Criteria criteria = recordFilters(patientName, recordType, status, startDate, endDate, doctorId);
+        long count = 0;
         
-        if (patientName != null && !patientName.isEmpty()) {
-            sqlBuilder.append(" AND patient_name LIKE ?");
-            params.add("%" + patientName + "%");
-            System.out.println("- Added patient name filter: " + patientName);
+        try (Stream<MedicalRecord> records = openRecordStream(criteria, firstVisitDay(recordType, startDate))) {
+            Iterator<MedicalRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                count++;
+            }
+            return count;
+        } catch (SQLException | UncheckedSQLException e) {
+            System.err.println("Error reading medical records after " + count + " rows: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
         }
-        
-        if (recordType != null && !recordType.isEmpty() && !"All Records".equals(recordType)) {
-            // Handle "Recent Records" as a special case
-            if ("Recent Records".equals(recordType)) {
-                sqlBuilder.append(" AND visit_date >= ?");
-                Calendar cal = Calendar.getInstance();
-                cal.add(Calendar.DAY_OF_MONTH, -7);
-                params.add(new Date(cal.getTimeInMillis()));
-                System.out.println("- Added recent records filter (last 7 days)");
-            } else {
-                // Normal record type filtering
-                sqlBuilder.append(" AND (visit_type = ? OR record_type = ?)");
-                params.add(recordType);
-                params.add(recordType);
-                System.out.println("- Added record type filter: " + recordType);
+    }
+    
+    /**
+     * Run a filtered listing query with a streaming cursor.
+     * 
+     * @param firstVisitDay The first visit day the filters can match, or null
+     */
+    private Stream<MedicalRecord> openRecordStream(Criteria criteria, LocalDate firstVisitDay) throws SQLException {
+        Connection conn = DatabaseConnection.getReadConnection();
+        PreparedStatement stmt = null;
+        try {
+            boolean withArchive = RecordArchiver.getInstance().mayHoldVisitsFrom(conn, firstVisitDay);
+            String sql = listingQuery("*", criteria, withArchive, false);
+            stmt = DatabaseConnection.prepareStreamingStatement(conn, sql);
+            bindListingQuery(stmt, criteria, withArchive, -1, 0);
+            ResultSet rs = stmt.executeQuery();
+            return MEDICAL_RECORD_MAPPER.stream(rs, rs, stmt, conn);
+        } catch (SQLException e) {
+            if (stmt != null) {
+                stmt.close();
             }
+            conn.close();
+            throw e;
         }
-        
-        if (status != null && !status.isEmpty() && !"All Statuses".equals(status)) {
-            sqlBuilder.append(" AND status = ?");
-            params.add(status);
-            System.out.println("- Added status filter: " + status);
+    }
+    
+    /**
+     * Build a listing query, newest first. With the archive, each table is
+     * filtered, sorted and limited on its own indexes and the results merged.
+     * 
+     * @param columns The columns to select, or "*"
+     * @param paged Whether the query ends with LIMIT ? OFFSET ?
+     */
+    private static String listingQuery(String columns, Criteria criteria, boolean withArchive, boolean paged) {
+        String where = criteria.toWhereClause();
+        if (!withArchive) {
+            return "SELECT " + columns + " FROM medical_records" + where + NEWEST_FIRST +
+                   (paged ? " LIMIT ? OFFSET ?" : "");
         }
         
-        if (startDate != null) {
-            // For single date filtering (when only startDate is provided),
-            // ensure we get the entire day by using >= date 00:00:00 and < date+1 00:00:00
-            if (endDate == null) {
-                sqlBuilder.append(" AND DATE(visit_date) = DATE(?)");
-                params.add(startDate);
-                System.out.println("- Added date filter for specific day: " + startDate);
-            } else {
-                sqlBuilder.append(" AND visit_date >= ?");
-                params.add(startDate);
-                System.out.println("- Added start date filter: " + startDate);
+        // The archive has extra columns, so both sides list theirs
+        String select = "SELECT " + ("*".equals(columns) ? RECORD_COLUMNS : columns);
+        if (!paged) {
+            return select + " FROM medical_records" + where +
+                   " UNION ALL " + select + " FROM medical_records_archive" + where + NEWEST_FIRST;
+        }
+        // Neither side can contribute more than offset + limit rows
+        return "SELECT * FROM ((" + select + " FROM medical_records" + where + NEWEST_FIRST + " LIMIT ?)" +
+               " UNION ALL (" + select + " FROM medical_records_archive" + where + NEWEST_FIRST + " LIMIT ?)) r" +
+               NEWEST_FIRST + " LIMIT ? OFFSET ?";
+    }
+    
+    /**
+     * Bind the parameters of a {@link #listingQuery}.
+     * 
+     * @param limit The page size, or -1 if the query is not paged
+     */
+    private static void bindListingQuery(PreparedStatement stmt, Criteria criteria, boolean withArchive,
+                                         int limit, int offset) throws SQLException {
+        boolean paged = limit >= 0;
+        int index = criteria.bind(stmt, 1);
+        if (withArchive) {
+            if (paged) {
+                stmt.setInt(index++, offset + limit);
+            }
+            index = criteria.bind(stmt, index);
+            if (paged) {
+                stmt.setInt(index++, offset + limit);
             }
         }
-        
-        if (endDate != null) {
-            // Only used if this is a date range query, not a single day query
-            if (startDate != null) {
-                sqlBuilder.append(" AND visit_date <= ?");
-                params.add(endDate);
-                System.out.println("- Added end date filter: " + endDate);
+        if (paged) {
+            stmt.setInt(index++, limit);
+            stmt.setInt(index, offset);
+        }
+    }
+    
+    /**
+     * Get the first visit day the record filters can match, or null if they
+     * have no lower bound
+     */
+    private static LocalDate firstVisitDay(String recordType, Date startDate) {
+        LocalDate firstDay = startDate != null ? startDate.toLocalDate() : null;
+        if ("Recent Records".equals(recordType)) {
+            LocalDate recent = LocalDate.now().minusDays(7);
+            if (firstDay == null || firstDay.isBefore(recent)) {
+                firstDay = recent;
             }
         }
+        return firstDay;
+    }
+    
+    /**
+     * Build the conditions shared by the filtered listing queries. Every
+     * condition is a plain comparison on an indexed column.
+     */
+    private Criteria recordFilters(String patientName, String recordType, String status,
+                                   Date startDate, Date endDate, Integer doctorId) {
+        Criteria criteria = new Criteria()
+                .startsWith("patient_name", patientName);
         
-        // Add doctor ID filter if provided
-        if (doctorId != null && doctorId > 0) {
-            sqlBuilder.append(" AND doctor_id = ?");
-            params.add(doctorId);
-            System.out.println("- Added doctor filter: " + doctorId);
+        if (recordType != null && !"All Records".equals(recordType)) {
+            if ("Recent Records".equals(recordType)) {
+                // Whole days, so the parameter is the same all day long
+                criteria.atLeast("visit_date", LocalDate.now().minusDays(7).atStartOfDay());
+            } else {
+                // record_type mirrors visit_type (see migration V3), so one indexed column is enough
+                criteria.eq("record_type", recordType);
+            }
         }
         
-        sqlBuilder.append(" ORDER BY visit_date DESC LIMIT ? OFFSET ?");
-        params.add(limit);
-        params.add(offset);
+        if (!"All Statuses".equals(status)) {
+            criteria.eq("status", status);
+        }
         
-        System.out.println("Final SQL query: " + sqlBuilder.toString());
+        // A start date on its own selects that single day; both bounds are inclusive
+        LocalDate firstDay = startDate != null ? startDate.toLocalDate() : null;
+        LocalDate lastDay = endDate != null ? endDate.toLocalDate() : firstDay;
+        criteria.betweenDays("visit_date", firstDay, lastDay);
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            try (PreparedStatement stmt = conn.prepareStatement(sqlBuilder.toString())) {
-                for (int i = 0; i < params.size(); i++) {
-                    Object param = params.get(i);
-                    if (param instanceof String) {
-                        stmt.setString(i + 1, (String) param);
-                    } else if (param instanceof Integer) {
-                        stmt.setInt(i + 1, (Integer) param);
-                    } else if (param instanceof Date) {
-                        stmt.setDate(i + 1, (Date) param);
-                    }
-                }
-                
-                ResultSet rs = stmt.executeQuery();
-                
-                while (rs.next()) {
-                    records.add(mapResultSetToMedicalRecord(rs));
-                }
-                
-                System.out.println("Query returned " + records.size() + " records");
-            }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving filtered medical records: " + e.getMessage());
-            e.printStackTrace();
+        if (doctorId != null && doctorId > 0) {
+            criteria.eq("doctor_id", doctorId);
         }
-        
-        return records;
+        return criteria;
     }
     
     /**
@@ -850,8 +1565,7 @@ public class MedicalRecordDAO {
                     // Try alternative formats
                     try {
                         // Try to parse as MM/dd/yyyy
-                        DateTimeFormatter alternateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-                        LocalDate date = LocalDate.parse(dateStr, alternateFormatter);
+                        LocalDate date = LocalDate.parse(dateStr, US_DATE_FORMATTER);
                         dbRecord.setVisitDate(date.atStartOfDay());
                         System.out.println("- Parsed alternative date format: " + date);
                     } catch (Exception e2) {
@@ -894,16 +1608,67 @@ public class MedicalRecordDAO {
         String diagnosis = dbRecord.getDiagnosis();
         String treatment = dbRecord.getTreatment();
         
-        // Print debug info
-        System.out.println("Converting from DB format - ID: " + id + 
-                          ", Patient: " + patient + 
-                          ", Type: " + type);
+        com.example.demo.controller.MedicalRecordsController.MedicalRecord record =
+            new com.example.demo.controller.MedicalRecordsController.MedicalRecord(
+                id, patient, date, type, doctor, status, 
+                notes, diagnosisCodes, attachments,
+                symptoms, diagnosis, treatment
+            );
+        record.setVersion(dbRecord.getVersion());
+        return record;
+    }
+    
+    /**
+     * Convert a record summary to controller format for list views. The detail
+     * fields are left empty and the result is marked as a summary.
+     * 
+     * @param dbRecord A record loaded by {@link #getFilteredMedicalRecordSummaries}
+     * @return A MedicalRecord suitable for the records table
+     */
+    public com.example.demo.controller.MedicalRecordsController.MedicalRecord convertToControllerSummary(MedicalRecord dbRecord) {
+        String id = "MR-" + dbRecord.getRecordId();
+        String date = dbRecord.getVisitDate() != null ? dbRecord.getVisitDate().format(DATE_FORMATTER) : "";
+        
+        com.example.demo.controller.MedicalRecordsController.MedicalRecord summary =
+            new com.example.demo.controller.MedicalRecordsController.MedicalRecord(
+                id, dbRecord.getPatientName(), date, dbRecord.getVisitType(),
+                dbRecord.getDoctorName(), dbRecord.getStatus());
+        summary.setSummary(true);
+        summary.setVersion(dbRecord.getVersion());
+        return summary;
+    }
+    
+    /**
+     * Convert an edited record to database format as changes to the record it
+     * was edited from. Updating the result writes only the fields that differ,
+     * and fails if the record was changed by someone else since it was loaded.
+     * 
+     * @param original The record as loaded, with its version
+     * @param edited The record with the user's edits
+     * @return A database record whose changed fields are the edits
+     */
+    public MedicalRecord convertToDbChanges(com.example.demo.controller.MedicalRecordsController.MedicalRecord original,
+                                            com.example.demo.controller.MedicalRecordsController.MedicalRecord edited) {
+        MedicalRecord dbRecord = convertToDbFormat(original);
+        dbRecord.setVersion(original.getVersion());
+        dbRecord.markClean();
         
-        return new com.example.demo.controller.MedicalRecordsController.MedicalRecord(
-            id, patient, date, type, doctor, status, 
-            notes, diagnosisCodes, attachments,
-            symptoms, diagnosis, treatment
-        );
+        MedicalRecord changes = convertToDbFormat(edited);
+        dbRecord.setPatientId(changes.getPatientId());
+        dbRecord.setPatientName(changes.getPatientName());
+        dbRecord.setDoctorId(changes.getDoctorId());
+        dbRecord.setDoctorName(changes.getDoctorName());
+        dbRecord.setVisitType(changes.getVisitType());
+        dbRecord.setRecordType(changes.getRecordType());
+        dbRecord.setVisitDate(changes.getVisitDate());
+        dbRecord.setSymptoms(changes.getSymptoms());
+        dbRecord.setDiagnosis(changes.getDiagnosis());
+        dbRecord.setTreatment(changes.getTreatment());
+        dbRecord.setNotes(changes.getNotes());
+        dbRecord.setStatus(changes.getStatus());
+        dbRecord.setDiagnosisCodes(changes.getDiagnosisCodes());
+        dbRecord.setAttachments(changes.getAttachments());
+        return dbRecord;
     }
     
     /**
@@ -913,16 +1678,18 @@ public class MedicalRecordDAO {
      * @return True if the record exists, false otherwise
      */
     public boolean recordExists(int recordId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT COUNT(*) FROM medical_records WHERE record_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, recordId);
-                
-                ResultSet rs = stmt.executeQuery();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (String table : recordTables(conn)) {
+                String sql = "SELECT COUNT(*) FROM " + table + " WHERE record_id = ?";
                 
-                if (rs.next()) {
-                    return rs.getInt(1) > 0;
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, recordId);
+                    
+                    ResultSet rs = stmt.executeQuery();
+                    
+                    if (rs.next() && rs.getInt(1) > 0) {
+                        return true;
+                    }
                 }
             }
         } catch (SQLException e) {
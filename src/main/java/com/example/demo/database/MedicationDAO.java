@@ -12,6 +12,22 @@ import java.util.Optional;
  */
 public class MedicationDAO {
     
+    private static final RowMapper<Medication> MEDICATION_MAPPER = RowMapper.builder(Medication::new)
+            .integer("medication_id", Medication::setMedicationId)
+            .integer("patient_id", Medication::setPatientId)
+            .integer("doctor_id", Medication::setDoctorId)
+            .string("name", Medication::setName)
+            .string("dosage", Medication::setDosage)
+            .string("frequency", Medication::setFrequency)
+            .string("instructions", Medication::setInstructions)
+            .string("purpose", Medication::setPurpose)
+            .date("start_date", Medication::setStartDate)
+            .date("end_date", Medication::setEndDate)
+            .bool("is_current", Medication::setCurrent)
+            .string("side_effects", Medication::setSideEffects)
+            .string("notes", Medication::setNotes)
+            .build();
+    
     /**
      * Get all medications for a patient
      * 
@@ -21,7 +37,7 @@ public class MedicationDAO {
     public List<Medication> getMedicationsByPatientId(int patientId) {
         List<Medication> medications = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM medications WHERE patient_id = ? ORDER BY is_current DESC, start_date DESC";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -29,9 +45,7 @@ public class MedicationDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    medications.add(mapResultSetToMedication(rs));
-                }
+                medications.addAll(MEDICATION_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving medications: " + e.getMessage());
@@ -48,7 +62,7 @@ public class MedicationDAO {
      * @return Optional containing the medication if found
      */
     public Optional<Medication> getMedicationById(int medicationId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM medications WHERE medication_id = ?";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -76,61 +90,80 @@ public class MedicationDAO {
      */
     public boolean createMedication(Medication medication) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "INSERT INTO medications (patient_id, doctor_id, name, dosage, frequency, " +
-                    "instructions, purpose, start_date, end_date, is_current, side_effects, notes) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            return createMedication(conn, medication);
+        } catch (SQLException e) {
+            System.err.println("Error creating medication: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Create a new medication as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param medication The medication to create
+     * @return true if creation was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean createMedication(Transaction tx, Medication medication) throws SQLException {
+        return createMedication(tx.getConnection(), medication);
+    }
+    
+    /**
+     * Create a new medication using the given connection
+     */
+    private boolean createMedication(Connection conn, Medication medication) throws SQLException {
+        String sql = "INSERT INTO medications (patient_id, doctor_id, name, dosage, frequency, " +
+                "instructions, purpose, start_date, end_date, is_current, side_effects, notes) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, medication.getPatientId());
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setInt(1, medication.getPatientId());
-                
-                if (medication.getDoctorId() > 0) {
-                    stmt.setInt(2, medication.getDoctorId());
-                } else {
-                    stmt.setNull(2, Types.INTEGER);
-                }
-                
-                stmt.setString(3, medication.getName());
-                stmt.setString(4, medication.getDosage());
-                stmt.setString(5, medication.getFrequency());
-                stmt.setString(6, medication.getInstructions());
-                stmt.setString(7, medication.getPurpose());
-                
-                // Handle dates
-                if (medication.getStartDate() != null) {
-                    stmt.setDate(8, Date.valueOf(medication.getStartDate()));
-                } else {
-                    stmt.setDate(8, Date.valueOf(LocalDate.now()));
-                }
-                
-                if (medication.getEndDate() != null) {
-                    stmt.setDate(9, Date.valueOf(medication.getEndDate()));
+            if (medication.getDoctorId() > 0) {
+                stmt.setInt(2, medication.getDoctorId());
+            } else {
+                stmt.setNull(2, Types.INTEGER);
+            }
+            
+            stmt.setString(3, medication.getName());
+            stmt.setString(4, medication.getDosage());
+            stmt.setString(5, medication.getFrequency());
+            stmt.setString(6, medication.getInstructions());
+            stmt.setString(7, medication.getPurpose());
+            
+            // Handle dates
+            if (medication.getStartDate() != null) {
+                stmt.setDate(8, Date.valueOf(medication.getStartDate()));
+            } else {
+                stmt.setDate(8, Date.valueOf(LocalDate.now()));
+            }
+            
+            if (medication.getEndDate() != null) {
+                stmt.setDate(9, Date.valueOf(medication.getEndDate()));
+            } else {
+                stmt.setNull(9, Types.DATE);
+            }
+            
+            stmt.setBoolean(10, medication.isCurrent());
+            stmt.setString(11, medication.getSideEffects());
+            stmt.setString(12, medication.getNotes());
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            if (affectedRows == 0) {
+                return false;
+            }
+            
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    medication.setMedicationId(generatedKeys.getInt(1));
+                    return true;
                 } else {
-                    stmt.setNull(9, Types.DATE);
-                }
-                
-                stmt.setBoolean(10, medication.isCurrent());
-                stmt.setString(11, medication.getSideEffects());
-                stmt.setString(12, medication.getNotes());
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                if (affectedRows == 0) {
                     return false;
                 }
-                
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        medication.setMedicationId(generatedKeys.getInt(1));
-                        return true;
-                    } else {
-                        return false;
-                    }
-                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error creating medication: " + e.getMessage());
-            e.printStackTrace();
-            return false;
         }
     }
     
@@ -142,47 +175,7 @@ public class MedicationDAO {
      */
     public boolean updateMedication(Medication medication) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "UPDATE medications SET patient_id = ?, doctor_id = ?, name = ?, dosage = ?, " +
-                    "frequency = ?, instructions = ?, purpose = ?, start_date = ?, end_date = ?, " +
-                    "is_current = ?, side_effects = ?, notes = ? WHERE medication_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, medication.getPatientId());
-                
-                if (medication.getDoctorId() > 0) {
-                    stmt.setInt(2, medication.getDoctorId());
-                } else {
-                    stmt.setNull(2, Types.INTEGER);
-                }
-                
-                stmt.setString(3, medication.getName());
-                stmt.setString(4, medication.getDosage());
-                stmt.setString(5, medication.getFrequency());
-                stmt.setString(6, medication.getInstructions());
-                stmt.setString(7, medication.getPurpose());
-                
-                // Handle dates
-                if (medication.getStartDate() != null) {
-                    stmt.setDate(8, Date.valueOf(medication.getStartDate()));
-                } else {
-                    stmt.setDate(8, Date.valueOf(LocalDate.now()));
-                }
-                
-                if (medication.getEndDate() != null) {
-                    stmt.setDate(9, Date.valueOf(medication.getEndDate()));
-                } else {
-                    stmt.setNull(9, Types.DATE);
-                }
-                
-                stmt.setBoolean(10, medication.isCurrent());
-                stmt.setString(11, medication.getSideEffects());
-                stmt.setString(12, medication.getNotes());
-                stmt.setInt(13, medication.getMedicationId());
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                return affectedRows > 0;
-            }
+            return updateMedication(conn, medication);
         } catch (SQLException e) {
             System.err.println("Error updating medication: " + e.getMessage());
             e.printStackTrace();
@@ -190,6 +183,65 @@ public class MedicationDAO {
         }
     }
     
+    /**
+     * Update an existing medication as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param medication The medication to update
+     * @return true if update was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean updateMedication(Transaction tx, Medication medication) throws SQLException {
+        return updateMedication(tx.getConnection(), medication);
+    }
+    
+    /**
+     * Update an existing medication using the given connection
+     */
+    private boolean updateMedication(Connection conn, Medication medication) throws SQLException {
+        String sql = "UPDATE medications SET patient_id = ?, doctor_id = ?, name = ?, dosage = ?, " +
+                "frequency = ?, instructions = ?, purpose = ?, start_date = ?, end_date = ?, " +
+                "is_current = ?, side_effects = ?, notes = ? WHERE medication_id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, medication.getPatientId());
+            
+            if (medication.getDoctorId() > 0) {
+                stmt.setInt(2, medication.getDoctorId());
+            } else {
+                stmt.setNull(2, Types.INTEGER);
+            }
+            
+            stmt.setString(3, medication.getName());
+            stmt.setString(4, medication.getDosage());
+            stmt.setString(5, medication.getFrequency());
+            stmt.setString(6, medication.getInstructions());
+            stmt.setString(7, medication.getPurpose());
+            
+            // Handle dates
+            if (medication.getStartDate() != null) {
+                stmt.setDate(8, Date.valueOf(medication.getStartDate()));
+            } else {
+                stmt.setDate(8, Date.valueOf(LocalDate.now()));
+            }
+            
+            if (medication.getEndDate() != null) {
+                stmt.setDate(9, Date.valueOf(medication.getEndDate()));
+            } else {
+                stmt.setNull(9, Types.DATE);
+            }
+            
+            stmt.setBoolean(10, medication.isCurrent());
+            stmt.setString(11, medication.getSideEffects());
+            stmt.setString(12, medication.getNotes());
+            stmt.setInt(13, medication.getMedicationId());
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            return affectedRows > 0;
+        }
+    }
+    
     /**
      * Delete a medication
      * 
@@ -198,15 +250,7 @@ public class MedicationDAO {
      */
     public boolean deleteMedication(int medicationId) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "DELETE FROM medications WHERE medication_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, medicationId);
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                return affectedRows > 0;
-            }
+            return deleteMedication(conn, medicationId);
         } catch (SQLException e) {
             System.err.println("Error deleting medication: " + e.getMessage());
             e.printStackTrace();
@@ -214,6 +258,33 @@ public class MedicationDAO {
         }
     }
     
+    /**
+     * Delete a medication as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param medicationId The ID of the medication to delete
+     * @return true if deletion was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean deleteMedication(Transaction tx, int medicationId) throws SQLException {
+        return deleteMedication(tx.getConnection(), medicationId);
+    }
+    
+    /**
+     * Delete a medication using the given connection
+     */
+    private boolean deleteMedication(Connection conn, int medicationId) throws SQLException {
+        String sql = "DELETE FROM medications WHERE medication_id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, medicationId);
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            return affectedRows > 0;
+        }
+    }
+    
     /**
      * Get all current medications for a patient
      * 
@@ -223,7 +294,7 @@ public class MedicationDAO {
     public List<Medication> getCurrentMedications(int patientId) {
         List<Medication> medications = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM medications WHERE patient_id = ? AND is_current = 1 " +
                          "ORDER BY start_date DESC";
             
@@ -232,9 +303,7 @@ public class MedicationDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    medications.add(mapResultSetToMedication(rs));
-                }
+                medications.addAll(MEDICATION_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving current medications: " + e.getMessage());
@@ -252,41 +321,6 @@ public class MedicationDAO {
      * @throws SQLException If there's an error accessing the ResultSet
      */
     private Medication mapResultSetToMedication(ResultSet rs) throws SQLException {
-        Medication medication = new Medication();
-        
-        medication.setMedicationId(rs.getInt("medication_id"));
-        medication.setPatientId(rs.getInt("patient_id"));
-        
-        // Handle nullable doctor_id
-        try {
-            medication.setDoctorId(rs.getInt("doctor_id"));
-            if (rs.wasNull()) {
-                medication.setDoctorId(0);
-            }
-        } catch (SQLException e) {
-            medication.setDoctorId(0);
-        }
-        
-        medication.setName(rs.getString("name"));
-        medication.setDosage(rs.getString("dosage"));
-        medication.setFrequency(rs.getString("frequency"));
-        medication.setInstructions(rs.getString("instructions"));
-        medication.setPurpose(rs.getString("purpose"));
-        
-        Date startDate = rs.getDate("start_date");
-        if (startDate != null) {
-            medication.setStartDate(startDate.toLocalDate());
-        }
-        
-        Date endDate = rs.getDate("end_date");
-        if (endDate != null) {
-            medication.setEndDate(endDate.toLocalDate());
-        }
-        
-        medication.setCurrent(rs.getBoolean("is_current"));
-        medication.setSideEffects(rs.getString("side_effects"));
-        medication.setNotes(rs.getString("notes"));
-        
-        return medication;
+        return MEDICATION_MAPPER.map(rs);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.example.demo.database;
+
+import java.util.Locale;
+
+/**
+ * Metaphone phonetic codes for names, so spellings that sound alike, such as
+ * "Smith" and "Smyth" or "Catherine" and "Kathryn", get the same code.
+ * <p>
+ * These are the original Metaphone rules for English, applied to the Latin
+ * letters of a name; other characters are ignored.
+ */
+final class Metaphone {
+
+    private static final int MAX_LENGTH = 6;
+    private static final String VOWELS = "AEIOU";
+    private static final String FRONT_VOWELS = "EIY";
+
+    private Metaphone() {
+    }
+
+    /**
+     * @param name A name, e.g. "Kathryn" or "O'Brien"
+     * @return The code, e.g. "K0RN", or "" if the name has no Latin letters
+     */
+    static String encode(String name) {
+        String word = NameResolver.normalize(name, false).toUpperCase(Locale.ROOT).replaceAll("[^A-Z]", "");
+        if (word.isEmpty()) {
+            return "";
+        }
+
+        // Silent or altered first letters
+        if (word.startsWith("KN") || word.startsWith("GN") || word.startsWith("PN") ||
+                word.startsWith("AE") || word.startsWith("WR")) {
+            word = word.substring(1);
+        } else if (word.startsWith("WH")) {
+            word = "W" + word.substring(2);
+        } else if (word.charAt(0) == 'X') {
+            word = "S" + word.substring(1);
+        }
+
+        StringBuilder code = new StringBuilder();
+        int length = word.length();
+        for (int i = 0; i < length && code.length() < MAX_LENGTH; i++) {
+            char c = word.charAt(i);
+            char previous = i > 0 ? word.charAt(i - 1) : 0;
+            if (c == previous && c != 'C') {
+                continue;
+            }
+
+            switch (c) {
+                case 'A', 'E', 'I', 'O', 'U' -> {
+                    if (i == 0) {
+                        code.append(c);
+                    }
+                }
+                case 'B' -> {
+                    // Silent in a final "MB", as in "Lamb"
+                    if (!(i == length - 1 && previous == 'M')) {
+                        code.append('B');
+                    }
+                }
+                case 'C' -> {
+                    if (word.startsWith("IA", i + 1) || word.startsWith("H", i + 1)) {
+                        code.append(previous == 'S' && word.startsWith("H", i + 1) ? 'K' : 'X');
+                    } else if (isAt(word, i + 1, FRONT_VOWELS)) {
+                        // Silent in "SCE", "SCI" and "SCY"
+                        if (previous != 'S') {
+                            code.append('S');
+                        }
+                    } else {
+                        code.append('K');
+                    }
+                }
+                case 'D' -> {
+                    if (word.startsWith("G", i + 1) && isAt(word, i + 2, FRONT_VOWELS)) {
+                        code.append('J');
+                        i++;
+                    } else {
+                        code.append('T');
+                    }
+                }
+                case 'G' -> {
+                    if (word.startsWith("H", i + 1) && !isAt(word, i + 2, VOWELS)) {
+                        // Silent, as in "Wright" or "Leigh"
+                    } else if (word.startsWith("N", i + 1) &&
+                            (i + 2 == length || (word.startsWith("ED", i + 2) && i + 4 == length))) {
+                        // Silent, as in "Sign"
+                    } else if (isAt(word, i + 1, FRONT_VOWELS)) {
+                        code.append('J');
+                    } else {
+                        code.append('K');
+                    }
+                }
+                case 'H' -> {
+                    if (isAt(word, i + 1, VOWELS) && "CSPTG".indexOf(previous) < 0) {
+                        code.append('H');
+                    }
+                }
+                case 'K' -> {
+                    if (previous != 'C') {
+                        code.append('K');
+                    }
+                }
+                case 'P' -> code.append(word.startsWith("H", i + 1) ? 'F' : 'P');
+                case 'Q' -> code.append('K');
+                case 'S' -> {
+                    boolean sh = word.startsWith("H", i + 1) || word.startsWith("IO", i + 1) ||
+                            word.startsWith("IA", i + 1);
+                    code.append(sh ? 'X' : 'S');
+                }
+                case 'T' -> {
+                    if (word.startsWith("IA", i + 1) || word.startsWith("IO", i + 1)) {
+                        code.append('X');
+                    } else if (word.startsWith("H", i + 1)) {
+                        code.append('0');
+                    } else if (!word.startsWith("CH", i + 1)) {
+                        code.append('T');
+                    }
+                }
+                case 'V' -> code.append('F');
+                case 'W', 'Y' -> {
+                    if (isAt(word, i + 1, VOWELS)) {
+                        code.append(c);
+                    }
+                }
+                case 'X' -> code.append("KS");
+                case 'Z' -> code.append('S');
+                default -> code.append(c);
+            }
+        }
+        // Letters that sound alike next to each other, as in "Schmidt", count once
+        String collapsed = code.toString().replaceAll("(.)\\1+", "$1");
+        return collapsed.length() > MAX_LENGTH ? collapsed.substring(0, MAX_LENGTH) : collapsed;
+    }
+
+    private static boolean isAt(String word, int index, String letters) {
+        return index < word.length() && letters.indexOf(word.charAt(index)) >= 0;
+    }
+}
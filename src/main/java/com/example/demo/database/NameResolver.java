@@ -0,0 +1,378 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves patient and doctor names to IDs from memory, for writes that
+ * arrive with a name but no ID.
+ * <p>
+ * Each table is read once, at startup through {@link #ensureLoaded}, into two
+ * maps: one keyed by the name exactly as stored, and one keyed by a normalized
+ * form that ignores case, accents, punctuation, extra spaces and, for doctors,
+ * a leading "Dr." title. After that a lookup is a pair of hash probes. Rows
+ * written through {@link PatientDAO} and {@link UserDAO} are reported through
+ * {@link DataChangeEvents} and reloaded by primary key on the next lookup.
+ * <p>
+ * Lookups run inside the caller's transaction and only use its connection.
+ * Until the maps are loaded, a lookup queries the exact name instead and
+ * starts loading them in the background.
+ * <p>
+ * When several rows share a name the lowest ID wins, so repeated lookups are
+ * stable.
+ */
+public class NameResolver {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_NAME_CHARACTERS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DOCTOR_TITLE = Pattern.compile("^(dr|doctor) ");
+
+    private static NameResolver instance;
+
+    private final NameIndex patients = new NameIndex(
+            "SELECT patient_id, full_name, first_name, last_name FROM patients", "patient_id", false) {
+        @Override
+        Criteria named(String name) {
+            return filter().where("(full_name = ? OR CONCAT(first_name, ' ', last_name) = ?)", name, name);
+        }
+
+        @Override
+        List<String> names(ResultSet rs) throws SQLException {
+            List<String> names = new ArrayList<>(2);
+            names.add(rs.getString("full_name"));
+            String firstName = rs.getString("first_name");
+            String lastName = rs.getString("last_name");
+            if (firstName != null && lastName != null) {
+                names.add(firstName + " " + lastName);
+            }
+            return names;
+        }
+    };
+
+    private final NameIndex doctors = new NameIndex(
+            "SELECT user_id, full_name FROM users", "user_id", true) {
+        @Override
+        Criteria filter() {
+            return new Criteria().eq("role", "DOCTOR");
+        }
+
+        @Override
+        Criteria named(String name) {
+            return filter().eq("full_name", name);
+        }
+
+        @Override
+        List<String> names(ResultSet rs) throws SQLException {
+            List<String> names = new ArrayList<>(1);
+            names.add(rs.getString("full_name"));
+            return names;
+        }
+    };
+
+    private NameResolver() {
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The name resolver
+     */
+    public static synchronized NameResolver getInstance() {
+        if (instance == null) {
+            instance = new NameResolver();
+            DataChangeEvents.addListener(instance::dataChanged);
+        }
+        return instance;
+    }
+
+    /**
+     * Read the patient and doctor names into memory, so that writes never
+     * have to. Call once at startup, off the UI thread.
+     *
+     * @return true if both tables were read
+     */
+    public boolean ensureLoaded() {
+        return patients.ensureLoaded() & doctors.ensureLoaded();
+    }
+
+    /**
+     * Find the ID of a patient by full name.
+     *
+     * @param conn The connection of the caller's transaction
+     * @param name The patient's name, e.g. "John Doe"
+     * @return The patient ID, or -1 if no patient has that name
+     */
+    public int resolvePatientId(Connection conn, String name) {
+        return patients.resolve(conn, name);
+    }
+
+    /**
+     * Find the user ID of a doctor by full name, with or without the title.
+     *
+     * @param conn The connection of the caller's transaction
+     * @param name The doctor's name, e.g. "Dr. John Smith" or "john smith"
+     * @return The doctor's user ID, or -1 if no doctor has that name
+     */
+    public int resolveDoctorId(Connection conn, String name) {
+        return doctors.resolve(conn, name);
+    }
+
+    /**
+     * Drop everything cached, for example after rows were changed outside the
+     * DAOs. The tables are read again in the background on the next lookup.
+     */
+    public void invalidateAll() {
+        patients.invalidateAll();
+        doctors.invalidateAll();
+    }
+
+    private void dataChanged(DataChangeEvents.Entity entity, int id) {
+        if (entity == DataChangeEvents.Entity.PATIENT) {
+            patients.changed(id);
+        } else if (entity == DataChangeEvents.Entity.USER) {
+            doctors.changed(id);
+        }
+    }
+
+    /**
+     * Lower-case a name and strip accents and punctuation, so that spellings
+     * a person would consider the same compare equal.
+     */
+    static String normalize(String name, boolean stripTitle) {
+        String folded = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        String normalized = NON_NAME_CHARACTERS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        return stripTitle ? DOCTOR_TITLE.matcher(normalized).replaceFirst("") : normalized;
+    }
+
+    /**
+     * The names of one table, by exact and normalized spelling.
+     */
+    private abstract static class NameIndex {
+        private static final int MAX_IDS_PER_QUERY = 500;
+
+        private final String sql;
+        private final String idColumn;
+        private final boolean stripTitle;
+
+        // Replaced together under the lock once a load has read the whole table
+        private Map<String, TreeSet<Integer>> exact = new HashMap<>();
+        private Map<String, TreeSet<Integer>> normalized = new HashMap<>();
+        private Map<Integer, List<String>> namesById = new HashMap<>();
+        private final Set<Integer> changedIds = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean loading = new AtomicBoolean();
+        private volatile boolean loaded;
+
+        NameIndex(String sql, String idColumn, boolean stripTitle) {
+            this.sql = sql;
+            this.idColumn = idColumn;
+            this.stripTitle = stripTitle;
+        }
+
+        /**
+         * @return The names a row can be looked up by
+         */
+        abstract List<String> names(ResultSet rs) throws SQLException;
+
+        /**
+         * @return The condition for rows stored under exactly this name
+         */
+        abstract Criteria named(String name);
+
+        /**
+         * @return The condition a row must meet to be looked up
+         */
+        Criteria filter() {
+            return new Criteria();
+        }
+
+        int resolve(Connection conn, String name) {
+            if (name == null || name.trim().isEmpty()) {
+                return -1;
+            }
+            try {
+                synchronized (this) {
+                    if (loaded) {
+                        if (!changedIds.isEmpty()) {
+                            reload(conn);
+                        }
+                        TreeSet<Integer> ids = exact.get(name.trim());
+                        if (ids == null) {
+                            ids = normalized.get(normalize(name, stripTitle));
+                        }
+                        return ids != null ? ids.first() : -1;
+                    }
+                }
+
+                // Reading the whole table here would hold up the caller's transaction
+                if (loading.compareAndSet(false, true)) {
+                    Thread.ofPlatform().name("name-resolver-" + idColumn).daemon().start(this::ensureLoaded);
+                }
+                return findByName(conn, name.trim());
+            } catch (SQLException e) {
+                System.err.println("Error looking up " + idColumn + " by name: " + e.getMessage());
+                e.printStackTrace();
+                return -1;
+            }
+        }
+
+        void changed(int id) {
+            // Before the first load there is nothing to refresh; during it the row is read again afterwards
+            if (loaded || loading.get()) {
+                changedIds.add(id);
+            }
+        }
+
+        synchronized void invalidateAll() {
+            loaded = false;
+            changedIds.clear();
+        }
+
+        boolean ensureLoaded() {
+            if (loaded) {
+                return true;
+            }
+            try {
+                load();
+                return true;
+            } catch (SQLException e) {
+                System.err.println("Error loading names for " + idColumn + " lookup: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        private int findByName(Connection conn, String name) throws SQLException {
+            Criteria criteria = named(name);
+            try (PreparedStatement stmt = conn.prepareStatement(sql + criteria.toWhereClause() +
+                    " ORDER BY " + idColumn + " LIMIT 1")) {
+                criteria.bind(stmt, 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(idColumn) : -1;
+                }
+            }
+        }
+
+        /**
+         * Read the whole table into new maps, without holding the lock, and
+         * swap them in.
+         */
+        private void load() throws SQLException {
+            long start = System.currentTimeMillis();
+            loading.set(true);
+            // Changes committed while the table is read are applied on the next lookup
+            changedIds.clear();
+
+            Map<String, TreeSet<Integer>> newExact = new HashMap<>();
+            Map<String, TreeSet<Integer>> newNormalized = new HashMap<>();
+            Map<Integer, List<String>> newNamesById = new HashMap<>();
+            Criteria criteria = filter();
+            try (Connection conn = DatabaseConnection.getReadConnection();
+                 PreparedStatement stmt = DatabaseConnection.prepareStreamingStatement(conn,
+                         sql + criteria.toWhereClause())) {
+                criteria.bind(stmt, 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        add(newExact, newNormalized, newNamesById, rs);
+                    }
+                }
+            } catch (SQLException e) {
+                loading.set(false);
+                throw e;
+            }
+
+            synchronized (this) {
+                exact = newExact;
+                normalized = newNormalized;
+                namesById = newNamesById;
+                loaded = true;
+            }
+            loading.set(false);
+            System.out.println("Loaded " + newNamesById.size() + " names for " + idColumn + " lookup in " +
+                    (System.currentTimeMillis() - start) + " ms");
+        }
+
+        /**
+         * Read the changed rows again by primary key, on the caller's connection.
+         */
+        private void reload(Connection conn) throws SQLException {
+            List<Integer> ids = new ArrayList<>();
+            for (Iterator<Integer> iterator = changedIds.iterator(); iterator.hasNext(); ) {
+                ids.add(iterator.next());
+                iterator.remove();
+            }
+
+            try {
+                for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                    for (Integer id : chunk) {
+                        remove(id);
+                    }
+
+                    // Rows that no longer match, such as a user who is no longer a doctor, stay removed
+                    Criteria criteria = filter().in(idColumn, chunk);
+                    try (PreparedStatement stmt = conn.prepareStatement(sql + criteria.toWhereClause())) {
+                        criteria.bind(stmt, 1);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                add(exact, normalized, namesById, rs);
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                // Try again on the next lookup
+                changedIds.addAll(ids);
+                throw e;
+            }
+        }
+
+        private void add(Map<String, TreeSet<Integer>> exact, Map<String, TreeSet<Integer>> normalized,
+                         Map<Integer, List<String>> namesById, ResultSet rs) throws SQLException {
+            int id = rs.getInt(idColumn);
+            List<String> names = new ArrayList<>();
+            for (String name : names(rs)) {
+                if (name != null && !name.trim().isEmpty()) {
+                    names.add(name);
+                    exact.computeIfAbsent(name.trim(), key -> new TreeSet<>()).add(id);
+                    normalized.computeIfAbsent(normalize(name, stripTitle), key -> new TreeSet<>()).add(id);
+                }
+            }
+            namesById.put(id, names);
+        }
+
+        private void remove(int id) {
+            List<String> names = namesById.remove(id);
+            if (names == null) {
+                return;
+            }
+            for (String name : names) {
+                removeId(exact, name.trim(), id);
+                removeId(normalized, normalize(name, stripTitle), id);
+            }
+        }
+
+        private static void removeId(Map<String, TreeSet<Integer>> map, String key, int id) {
+            TreeSet<Integer> ids = map.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    map.remove(key);
+                }
+            }
+        }
+    }
+}
@@ -7,9 +7,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,7 +19,22 @@ import java.util.logging.Logger;
  */
 public class NoteDAO {
     
+    private static final RowMapper<Note> NOTE_MAPPER = RowMapper.builder(Note::new)
+            .integer("note_id", Note::setNoteId)
+            .integer("patient_id", Note::setPatientId)
+            .integer("author_id", Note::setAuthorId)
+            .string("author_name", Note::setAuthorName)
+            .string("title", Note::setTitle)
+            .string("content", Note::setContent)
+            .string("note_type", Note::setNoteType)
+            .timestamp("created_date", Note::setCreatedDate)
+            .timestamp("updated_date", Note::setUpdatedDate)
+            .bool("is_private", Note::setPrivate)
+            .build();
+    
     private static final Logger LOGGER = Logger.getLogger(NoteDAO.class.getName());
+    
+    private static final int MAX_SEARCH_RESULTS = 200;
     private final DatabaseConnection databaseConnection;
     
     /**
@@ -35,12 +51,42 @@ public class NoteDAO {
      * @return true if successful, false otherwise
      */
     public boolean createNote(Note note) {
+        try (Connection conn = databaseConnection.getConnection()) {
+            boolean created = createNote(conn, note);
+            if (created) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.NOTE, note.getNoteId());
+            }
+            return created;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error creating note", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Creates a new note in the database as part of a transaction.
+     * 
+     * @param tx The transaction to run in
+     * @param note The note to create
+     * @return true if successful, false otherwise
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean createNote(Transaction tx, Note note) throws SQLException {
+        boolean created = createNote(tx.getConnection(), note);
+        if (created) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.NOTE, note.getNoteId());
+        }
+        return created;
+    }
+    
+    /**
+     * Creates a new note in the database using the given connection.
+     */
+    private boolean createNote(Connection conn, Note note) throws SQLException {
         String sql = "INSERT INTO notes (patient_id, author_id, author_name, title, content, note_type, created_date, updated_date, is_private) " +
                      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = databaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setInt(1, note.getPatientId());
             pstmt.setInt(2, note.getAuthorId());
             pstmt.setString(3, note.getAuthorName());
@@ -67,10 +113,6 @@ public class NoteDAO {
                     return false;
                 }
             }
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error creating note", e);
-            return false;
         }
     }
     
@@ -84,15 +126,13 @@ public class NoteDAO {
         List<Note> notes = new ArrayList<>();
         String sql = "SELECT * FROM notes WHERE patient_id = ? ORDER BY created_date DESC";
         
-        try (Connection conn = databaseConnection.getConnection();
+        try (Connection conn = databaseConnection.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, patientId);
             
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    notes.add(mapResultSetToNote(rs));
-                }
+                notes.addAll(NOTE_MAPPER.mapAll(rs));
             }
             
         } catch (SQLException e) {
@@ -111,7 +151,7 @@ public class NoteDAO {
     public Note getNoteById(int noteId) {
         String sql = "SELECT * FROM notes WHERE note_id = ?";
         
-        try (Connection conn = databaseConnection.getConnection();
+        try (Connection conn = databaseConnection.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, noteId);
@@ -136,13 +176,43 @@ public class NoteDAO {
      * @return true if successful, false otherwise
      */
     public boolean updateNote(Note note) {
+        try (Connection conn = databaseConnection.getConnection()) {
+            boolean updated = updateNote(conn, note);
+            if (updated) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.NOTE, note.getNoteId());
+            }
+            return updated;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error updating note ID: " + note.getNoteId(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Updates an existing note in the database as part of a transaction.
+     * 
+     * @param tx The transaction to run in
+     * @param note The note to update
+     * @return true if successful, false otherwise
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean updateNote(Transaction tx, Note note) throws SQLException {
+        boolean updated = updateNote(tx.getConnection(), note);
+        if (updated) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.NOTE, note.getNoteId());
+        }
+        return updated;
+    }
+    
+    /**
+     * Updates an existing note in the database using the given connection.
+     */
+    private boolean updateNote(Connection conn, Note note) throws SQLException {
         String sql = "UPDATE notes SET patient_id = ?, author_id = ?, author_name = ?, title = ?, " +
                      "content = ?, note_type = ?, updated_date = ?, is_private = ? " +
                      "WHERE note_id = ?";
         
-        try (Connection conn = databaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, note.getPatientId());
             pstmt.setInt(2, note.getAuthorId());
             pstmt.setString(3, note.getAuthorName());
@@ -155,10 +225,6 @@ public class NoteDAO {
             
             int affectedRows = pstmt.executeUpdate();
             return affectedRows > 0;
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error updating note ID: " + note.getNoteId(), e);
-            return false;
         }
     }
     
@@ -169,19 +235,45 @@ public class NoteDAO {
      * @return true if successful, false otherwise
      */
     public boolean deleteNote(int noteId) {
+        try (Connection conn = databaseConnection.getConnection()) {
+            boolean deleted = deleteNote(conn, noteId);
+            if (deleted) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.NOTE, noteId);
+            }
+            return deleted;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error deleting note ID: " + noteId, e);
+            return false;
+        }
+    }
+    
+    /**
+     * Deletes a note from the database as part of a transaction.
+     * 
+     * @param tx The transaction to run in
+     * @param noteId The ID of the note to delete
+     * @return true if successful, false otherwise
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean deleteNote(Transaction tx, int noteId) throws SQLException {
+        boolean deleted = deleteNote(tx.getConnection(), noteId);
+        if (deleted) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.NOTE, noteId);
+        }
+        return deleted;
+    }
+    
+    /**
+     * Deletes a note from the database using the given connection.
+     */
+    private boolean deleteNote(Connection conn, int noteId) throws SQLException {
         String sql = "DELETE FROM notes WHERE note_id = ?";
         
-        try (Connection conn = databaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, noteId);
             
             int affectedRows = pstmt.executeUpdate();
             return affectedRows > 0;
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error deleting note ID: " + noteId, e);
-            return false;
         }
     }
     
@@ -193,19 +285,7 @@ public class NoteDAO {
      * @throws SQLException If a database access error occurs
      */
     private Note mapResultSetToNote(ResultSet rs) throws SQLException {
-        int noteId = rs.getInt("note_id");
-        int patientId = rs.getInt("patient_id");
-        int authorId = rs.getInt("author_id");
-        String authorName = rs.getString("author_name");
-        String title = rs.getString("title");
-        String content = rs.getString("content");
-        String noteType = rs.getString("note_type");
-        LocalDateTime createdDate = rs.getTimestamp("created_date").toLocalDateTime();
-        LocalDateTime updatedDate = rs.getTimestamp("updated_date").toLocalDateTime();
-        boolean isPrivate = rs.getBoolean("is_private");
-        
-        return new Note(noteId, patientId, authorId, authorName, title, content, noteType, 
-                        createdDate, updatedDate, isPrivate);
+        return NOTE_MAPPER.map(rs);
     }
     
     /**
@@ -218,15 +298,13 @@ public class NoteDAO {
         List<Note> notes = new ArrayList<>();
         String sql = "SELECT * FROM notes WHERE author_id = ? ORDER BY created_date DESC";
         
-        try (Connection conn = databaseConnection.getConnection();
+        try (Connection conn = databaseConnection.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, authorId);
             
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    notes.add(mapResultSetToNote(rs));
-                }
+                notes.addAll(NOTE_MAPPER.mapAll(rs));
             }
             
         } catch (SQLException e) {
@@ -237,39 +315,43 @@ public class NoteDAO {
     }
     
     /**
-     * Searches for notes containing the given text in title or content.
+     * Searches the title and content of notes for any of the words in a term,
+     * using {@link FullTextSearch}.
      * 
-     * @param searchTerm The term to search for
+     * @param searchTerm The words to search for
      * @param patientId Optional patient ID to limit the search (can be null)
-     * @return List of matching notes
+     * @return The best matching notes, at most {@value #MAX_SEARCH_RESULTS}, most relevant first
      */
     public List<Note> searchNotes(String searchTerm, Integer patientId) {
         List<Note> notes = new ArrayList<>();
-        String sql;
-        
-        if (patientId != null) {
-            sql = "SELECT * FROM notes WHERE patient_id = ? AND (title LIKE ? OR content LIKE ?) ORDER BY created_date DESC";
-        } else {
-            sql = "SELECT * FROM notes WHERE title LIKE ? OR content LIKE ? ORDER BY created_date DESC";
+        List<Integer> noteIds = new ArrayList<>();
+        for (SearchHit hit : FullTextSearch.getInstance()
+                .search(searchTerm, SearchHit.Source.NOTE, patientId, null, MAX_SEARCH_RESULTS).getItems()) {
+            noteIds.add(hit.getId());
         }
+        if (noteIds.isEmpty()) {
+            return notes;
+        }
+        
+        Criteria criteria = new Criteria().in("note_id", noteIds);
+        String sql = "SELECT * FROM notes" + criteria.toWhereClause();
         
-        try (Connection conn = databaseConnection.getConnection();
+        try (Connection conn = databaseConnection.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            String searchPattern = "%" + searchTerm + "%";
-            
-            if (patientId != null) {
-                pstmt.setInt(1, patientId);
-                pstmt.setString(2, searchPattern);
-                pstmt.setString(3, searchPattern);
-            } else {
-                pstmt.setString(1, searchPattern);
-                pstmt.setString(2, searchPattern);
-            }
+            criteria.bind(pstmt, 1);
             
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    notes.add(mapResultSetToNote(rs));
+                Map<Integer, Note> byId = new HashMap<>();
+                for (Note note : NOTE_MAPPER.mapAll(rs)) {
+                    byId.put(note.getNoteId(), note);
+                }
+                // Keep the search's ranking
+                for (Integer noteId : noteIds) {
+                    Note note = byId.get(noteId);
+                    if (note != null) {
+                        notes.add(note);
+                    }
                 }
             }
             
@@ -0,0 +1,72 @@
+package com.example.demo.database;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query.
+ * <p>
+ * The next page token is opaque to callers; pass it back to the DAO method
+ * that produced this page to continue from the last row.
+ *
+ * @param <T> The type of the rows on the page
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final String nextPageToken;
+    private final long totalCount;
+
+    /**
+     * @param items The rows on this page
+     * @param nextPageToken The token for the following page, or null if this is the last page
+     */
+    public Page(List<T> items, String nextPageToken) {
+        this(items, nextPageToken, -1);
+    }
+
+    /**
+     * @param items The rows on this page
+     * @param nextPageToken The token for the following page, or null if this is the last page
+     * @param totalCount The number of rows on all pages together, or -1 if not counted
+     */
+    public Page(List<T> items, String nextPageToken, long totalCount) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextPageToken = nextPageToken;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Get the rows on this page.
+     *
+     * @return The rows, in query order
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the token for the following page.
+     *
+     * @return The token, or null if this is the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    /**
+     * Get the number of rows the query matches across all pages.
+     *
+     * @return The count, or -1 if the query that produced this page does not count rows
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return True if there are more rows after this page
+     */
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
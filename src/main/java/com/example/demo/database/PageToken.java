@@ -0,0 +1,65 @@
+package com.example.demo.database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the sort key of the last row on a page as an opaque, URL-safe
+ * continuation token, and decodes it again for the next query.
+ */
+final class PageToken {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char NULL_VALUE = 'n';
+    private static final char PRESENT_VALUE = 'v';
+
+    private PageToken() {
+    }
+
+    /**
+     * @param values The sort key values of the last row, in ORDER BY order; nulls allowed
+     * @return The token
+     */
+    static String encode(String... values) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            if (values[i] == null) {
+                raw.append(NULL_VALUE);
+            } else {
+                raw.append(PRESENT_VALUE).append(values[i]);
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token A token produced by {@link #encode(String...)}
+     * @param length The number of values the token must hold
+     * @return The values, with nulls where encoded
+     * @throws IllegalArgumentException If the token is malformed
+     */
+    static String[] decode(String token, int length) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+
+        String[] parts = raw.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != length) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            if (parts[i].isEmpty()) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            values[i] = parts[i].charAt(0) == PRESENT_VALUE ? parts[i].substring(1) : null;
+        }
+        return values;
+    }
+}
@@ -3,15 +3,46 @@ package com.example.demo.database;
 import com.example.demo.model.Patient;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Data Access Object for Patient-related database operations
  */
 public class PatientDAO {
     
+    private static final RowMapper<Patient> PATIENT_MAPPER = RowMapper.builder(Patient::new)
+            .integer("patient_id", Patient::setPatientId)
+            .string("first_name", Patient::setFirstName)
+            .string("last_name", Patient::setLastName)
+            .date("date_of_birth", Patient::setDateOfBirth)
+            .string("gender", Patient::setGender)
+            .string("address", Patient::setAddress)
+            .string("phone_number", Patient::setPhoneNumber)
+            .string("email", Patient::setEmail)
+            .string("insurance_provider", Patient::setInsuranceProvider)
+            .string("insurance_number", Patient::setInsuranceNumber)
+            .string("medical_history", Patient::setMedicalHistory)
+            .string("allergies", Patient::setAllergies)
+            .string("emergency_contact_name", Patient::setEmergencyContactName)
+            .string("emergency_contact_phone", Patient::setEmergencyContactPhone)
+            .string("blood_type", Patient::setBloodType)
+            .date("registration_date", Patient::setRegistrationDate)
+            .integer("primary_doctor_id", Patient::setPrimaryDoctorId)
+            .bool("is_active", Patient::setActive)
+            .build();
+    
+    private static final int MAX_IDS_PER_QUERY = 500;
+    
+    // Broader searches filter on word prefixes in SQL rather than binding every match
+    private static final int MAX_SEARCH_MATCHES = 10_000;
+    
     private static PatientDAO instance;
     
     /**
@@ -44,7 +75,7 @@ public class PatientDAO {
         List<Patient> patients = new ArrayList<>();
         int offset = (page - 1) * pageSize;
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM patients ORDER BY last_name, first_name LIMIT ? OFFSET ?";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -53,9 +84,7 @@ public class PatientDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    patients.add(mapResultSetToPatient(rs));
-                }
+                patients.addAll(PATIENT_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving patients: " + e.getMessage());
@@ -73,15 +102,13 @@ public class PatientDAO {
     public List<Patient> getAllPatients() {
         List<Patient> patients = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM patients ORDER BY last_name, first_name";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    patients.add(mapResultSetToPatient(rs));
-                }
+                patients.addAll(PATIENT_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving patients: " + e.getMessage());
@@ -91,6 +118,233 @@ public class PatientDAO {
         return patients;
     }
     
+    /**
+     * Get one page of a patient list, sorted, filtered and counted in the
+     * database so only the rows shown are loaded. Pages continue from the
+     * last row of the previous page rather than skipping rows, so a late
+     * page costs the same as the first. A search term is looked up in the
+     * {@link PatientSearchIndex}, and only the patients it matches are read.
+     * 
+     * @param query The sort order, filters and page size
+     * @param pageToken The token from the previous page, or null for the first page
+     * @return The page, with the number of patients the query matches on
+     *         all pages; empty if the query failed
+     * @throws IllegalArgumentException If the page token is malformed
+     */
+    public Page<Patient> queryPatients(PatientQuery query, String pageToken) {
+        PatientQuery.SortKey sortKey = query.getSortKey();
+        String[] sortColumns = sortKey.columns();
+        // The search term is looked up once; the count must not include the
+        // predicate that skips earlier pages
+        List<Integer> matches = searchMatches(query.getSearchTerm());
+        if (matches != null && matches.isEmpty()) {
+            return new Page<>(new ArrayList<>(), null, 0);
+        }
+        Criteria filters = patientFilters(query, matches);
+        Criteria criteria = patientFilters(query, matches);
+        
+        // The total is counted with the first page and carried along in the token
+        long totalCount = -1;
+        if (pageToken != null) {
+            String[] key = PageToken.decode(pageToken, sortColumns.length + 2);
+            try {
+                totalCount = Long.parseLong(key[0]);
+                Object[] lastValues = new Object[sortColumns.length];
+                for (int i = 0; i < sortColumns.length; i++) {
+                    lastValues[i] = sortKey.isNullable() && key[i + 1] != null ? LocalDate.parse(key[i + 1]) : key[i + 1];
+                }
+                addKeysetPredicate(criteria, sortKey, query.isAscending(), lastValues,
+                        Integer.parseInt(key[sortColumns.length + 1]));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid page token", e);
+            }
+        }
+        
+        String direction = query.isAscending() ? " ASC" : " DESC";
+        StringBuilder orderBy = new StringBuilder(" ORDER BY ");
+        for (String column : sortColumns) {
+            orderBy.append(column).append(direction).append(", ");
+        }
+        orderBy.append("patient_id").append(direction);
+        
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            if (totalCount < 0) {
+                totalCount = countPatients(conn, filters);
+            }
+            
+            String sql = "SELECT * FROM patients" + criteria.toWhereClause() + orderBy + " LIMIT ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int limit = query.getPageSize();
+                // One extra row tells us whether there is a next page
+                stmt.setInt(criteria.bind(stmt, 1), limit + 1);
+                
+                ResultSet rs = stmt.executeQuery();
+                
+                RowMapper.Bound<Patient> mapper = PATIENT_MAPPER.bind(rs);
+                List<Patient> patients = new ArrayList<>();
+                // Read the key from the row itself; the model defaults a missing registration date to today
+                String[] lastKey = new String[sortColumns.length];
+                String nextPageToken = null;
+                
+                while (rs.next()) {
+                    if (patients.size() == limit) {
+                        String[] token = new String[sortColumns.length + 2];
+                        token[0] = String.valueOf(totalCount);
+                        System.arraycopy(lastKey, 0, token, 1, lastKey.length);
+                        token[sortColumns.length + 1] = String.valueOf(patients.get(limit - 1).getPatientId());
+                        nextPageToken = PageToken.encode(token);
+                        break;
+                    }
+                    patients.add(mapper.map(rs));
+                    for (int i = 0; i < sortColumns.length; i++) {
+                        Object value = sortKey.isNullable() ? rs.getDate(sortColumns[i]) : rs.getString(sortColumns[i]);
+                        lastKey[i] = value != null ? value.toString() : null;
+                    }
+                }
+                return new Page<>(patients, nextPageToken, totalCount);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving page of patients: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return new Page<>(new ArrayList<>(), null, 0);
+    }
+    
+    /**
+     * Count patients in the database, by dimension, for dashboards.
+     * 
+     * @return The counts; empty if they could not be read
+     */
+    public PatientStats getPatientStats() {
+        long total = 0;
+        long activeCount = 0;
+        Map<String, Long> byGender = new HashMap<>();
+        Map<String, Long> byBloodType = new HashMap<>();
+        SortedMap<LocalDate, Long> byBirthDate = new TreeMap<>();
+        SortedMap<LocalDate, Long> byRegistrationDate = new TreeMap<>();
+        
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT is_active, COUNT(*) AS patient_count FROM patients GROUP BY is_active")) {
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    long count = rs.getLong("patient_count");
+                    total += count;
+                    // Patients from before is_active existed count as active
+                    if (rs.getBoolean("is_active") || rs.wasNull()) {
+                        activeCount += count;
+                    }
+                }
+            }
+            countByText(conn, "gender", byGender);
+            countByText(conn, "blood_type", byBloodType);
+            countByDate(conn, "date_of_birth", byBirthDate);
+            countByDate(conn, "registration_date", byRegistrationDate);
+        } catch (SQLException e) {
+            System.err.println("Error counting patients: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return new PatientStats(total, activeCount, byGender, byBloodType, byBirthDate, byRegistrationDate);
+    }
+    
+    /**
+     * Look a patient list's search term up in the {@link PatientSearchIndex}.
+     * 
+     * @return The IDs of the matching patients, in ID order; null if there is
+     *         no search term, the index is unavailable or too many patients match
+     */
+    private static List<Integer> searchMatches(String searchTerm) {
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return null;
+        }
+        List<Integer> patientIds = PatientSearchIndex.getInstance().search(searchTerm, 0);
+        if (patientIds == null || patientIds.size() > MAX_SEARCH_MATCHES) {
+            return null;
+        }
+        // Sorted, so the same matches always bind the same statement
+        List<Integer> sorted = new ArrayList<>(patientIds);
+        sorted.sort(null);
+        return sorted;
+    }
+    
+    /**
+     * Build the filters of a patient list query.
+     * 
+     * @param matches The patients matching the search term, or null to match
+     *        each word of the term against the start of the searchable columns
+     */
+    private static Criteria patientFilters(PatientQuery query, List<Integer> matches) {
+        Criteria criteria = new Criteria().eq("is_active", query.getActive());
+        String searchTerm = query.getSearchTerm();
+        if (matches != null) {
+            criteria.in("patient_id", matches);
+        } else if (searchTerm != null) {
+            for (String word : searchTerm.trim().split("\\s+")) {
+                criteria.startsWithAny(word, "first_name", "last_name", "phone_number", "email");
+            }
+        }
+        return criteria;
+    }
+    
+    /**
+     * Only match rows after the last row of the previous page. Null values
+     * sort below every other value, as both MySQL and H2 sort them.
+     */
+    private static void addKeysetPredicate(Criteria criteria, PatientQuery.SortKey sortKey, boolean ascending,
+                                           Object[] lastValues, int lastPatientId) {
+        String after = ascending ? " > ?" : " < ?";
+        if (sortKey == PatientQuery.SortKey.ID) {
+            criteria.where("patient_id" + after, lastPatientId);
+        } else if (sortKey == PatientQuery.SortKey.NAME) {
+            criteria.where("last_name" + after + " OR (last_name = ? AND (first_name" + after +
+                            " OR (first_name = ? AND patient_id" + after + ")))",
+                    lastValues[0], lastValues[0], lastValues[1], lastValues[1], lastPatientId);
+        } else {
+            String column = sortKey.columns()[0];
+            if (lastValues[0] == null) {
+                criteria.where(ascending
+                        ? column + " IS NULL AND patient_id > ? OR " + column + " IS NOT NULL"
+                        : column + " IS NULL AND patient_id < ?", lastPatientId);
+            } else {
+                criteria.where(column + after + " OR (" + column + " = ? AND patient_id" + after + ")" +
+                        (ascending ? "" : " OR " + column + " IS NULL"),
+                        lastValues[0], lastValues[0], lastPatientId);
+            }
+        }
+    }
+    
+    private static long countPatients(Connection conn, Criteria filters) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM patients" + filters.toWhereClause())) {
+            filters.bind(stmt, 1);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+    
+    private static void countByText(Connection conn, String column, Map<String, Long> counts) throws SQLException {
+        String sql = "SELECT " + column + ", COUNT(*) AS patient_count FROM patients GROUP BY " + column;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String value = rs.getString(column);
+                counts.merge(value != null ? value : "", rs.getLong("patient_count"), Long::sum);
+            }
+        }
+    }
+    
+    private static void countByDate(Connection conn, String column, Map<LocalDate, Long> counts) throws SQLException {
+        String sql = "SELECT " + column + ", COUNT(*) AS patient_count FROM patients " +
+                     "WHERE " + column + " IS NOT NULL GROUP BY " + column;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                counts.put(rs.getDate(column).toLocalDate(), rs.getLong("patient_count"));
+            }
+        }
+    }
+    
     /**
      * Get a specific patient by ID
      * 
@@ -98,7 +352,7 @@ public class PatientDAO {
      * @return Optional containing the patient if found
      */
     public Optional<Patient> getPatientById(int patientId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM patients WHERE patient_id = ?";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -119,26 +373,116 @@ public class PatientDAO {
     }
     
     /**
-     * Search for patients by name, gender, or phone number
+     * Search for patients by name, phone number or email, best matches first
      * 
      * @param searchTerm The search term
      * @return List of matching patients
+     * @see PatientSearchIndex#search
      */
     public List<Patient> searchPatients(String searchTerm) {
+        return searchPatients(searchTerm, 0);
+    }
+    
+    /**
+     * Search for the best matching patients by name, phone number or email,
+     * for example to suggest patients while a name is typed. Matching runs
+     * against the in-memory {@link PatientSearchIndex}; only the patients
+     * returned are read from the database.
+     * 
+     * @param searchTerm The search term
+     * @param limit The maximum number of patients to return, or 0 for all matches
+     * @return List of matching patients, best matches first
+     */
+    public List<Patient> searchPatients(String searchTerm, int limit) {
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return limit > 0 ? getAllPatients(1, limit) : getAllPatients();
+        }
+        
+        List<Integer> patientIds = PatientSearchIndex.getInstance().search(searchTerm, limit);
+        if (patientIds == null) {
+            // The index could not be loaded; fall back to scanning the table
+            return searchPatientsInDatabase(searchTerm, limit);
+        }
+        return getPatientsByIds(patientIds);
+    }
+    
+    /**
+     * Get patients by ID
+     * 
+     * @param patientIds The IDs of the patients
+     * @return The patients found, in the order of the given IDs
+     */
+    public List<Patient> getPatientsByIds(List<Integer> patientIds) {
+        Map<Integer, Patient> byId = new HashMap<>();
+        
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (int from = 0; from < patientIds.size(); from += MAX_IDS_PER_QUERY) {
+                Criteria criteria = new Criteria().in("patient_id",
+                        patientIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, patientIds.size())));
+                
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM patients" + criteria.toWhereClause())) {
+                    criteria.bind(stmt, 1);
+                    
+                    ResultSet rs = stmt.executeQuery();
+                    
+                    for (Patient patient : PATIENT_MAPPER.mapAll(rs)) {
+                        byId.put(patient.getPatientId(), patient);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving patients: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
         List<Patient> patients = new ArrayList<>();
+        for (Integer patientId : patientIds) {
+            Patient patient = byId.get(patientId);
+            if (patient != null) {
+                patients.add(patient);
+            }
+        }
+        return patients;
+    }
+    
+    /**
+     * Find existing patients who are probably the same person as a patient,
+     * for example before registering them. Matching runs against the
+     * in-memory {@link DuplicatePatientDetector}; only the likely duplicates
+     * are read from the database.
+     * 
+     * @param patient The patient to check
+     * @return The likely duplicates, best match first
+     */
+    public List<DuplicateMatch> findPossibleDuplicates(Patient patient) {
+        Map<Integer, Double> scores = DuplicatePatientDetector.getInstance().findDuplicates(patient);
+        List<DuplicateMatch> matches = new ArrayList<>();
+        if (scores.isEmpty()) {
+            return matches;
+        }
         
-        if (searchTerm == null || searchTerm.trim().isEmpty()) {
-            return getAllPatients();
+        for (Patient duplicate : getPatientsByIds(new ArrayList<>(scores.keySet()))) {
+            matches.add(new DuplicateMatch(duplicate, scores.get(duplicate.getPatientId())));
         }
+        return matches;
+    }
+    
+    /**
+     * Search with LIKE '%term%' on every searchable column. This scans the
+     * whole table and is only used when the search index is unavailable.
+     */
+    private List<Patient> searchPatientsInDatabase(String searchTerm, int limit) {
+        List<Patient> patients = new ArrayList<>();
         
         String term = "%" + searchTerm.trim() + "%";
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM patients WHERE " +
                          "first_name LIKE ? OR last_name LIKE ? OR " +
                          "CONCAT(first_name, ' ', last_name) LIKE ? OR " +
                          "phone_number LIKE ? OR email LIKE ? " +
-                         "ORDER BY last_name, first_name";
+                         "ORDER BY last_name, first_name" +
+                         (limit > 0 ? " LIMIT " + limit : "");
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, term);
@@ -149,9 +493,7 @@ public class PatientDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    patients.add(mapResultSetToPatient(rs));
-                }
+                patients.addAll(PATIENT_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error searching patients: " + e.getMessage());
@@ -169,68 +511,11 @@ public class PatientDAO {
      */
     public boolean createPatient(Patient patient) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "INSERT INTO patients (full_name, first_name, last_name, date_of_birth, gender, " +
-                         "address, phone_number, email, insurance_provider, insurance_number, " +
-                         "medical_history, allergies, emergency_contact_name, emergency_contact_phone, " +
-                         "blood_type, registration_date, primary_doctor_id, status, is_active) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setString(1, patient.getFirstName() + " " + patient.getLastName());
-                stmt.setString(2, patient.getFirstName());
-                stmt.setString(3, patient.getLastName());
-                
-                if (patient.getDateOfBirth() != null) {
-                    stmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
-                } else {
-                    stmt.setNull(4, Types.DATE);
-                }
-                
-                stmt.setString(5, patient.getGender());
-                stmt.setString(6, patient.getAddress());
-                stmt.setString(7, patient.getPhoneNumber());
-                stmt.setString(8, patient.getEmail());
-                stmt.setString(9, patient.getInsuranceProvider());
-                stmt.setString(10, patient.getInsuranceNumber());
-                stmt.setString(11, patient.getMedicalHistory());
-                stmt.setString(12, patient.getAllergies());
-                stmt.setString(13, patient.getEmergencyContactName());
-                stmt.setString(14, patient.getEmergencyContactPhone());
-                stmt.setString(15, patient.getBloodType());
-                
-                if (patient.getRegistrationDate() != null) {
-                    stmt.setDate(16, Date.valueOf(patient.getRegistrationDate()));
-                } else {
-                    stmt.setDate(16, Date.valueOf(LocalDate.now()));
-                }
-                
-                if (patient.getPrimaryDoctorId() > 0) {
-                    stmt.setInt(17, patient.getPrimaryDoctorId());
-                } else {
-                    stmt.setNull(17, Types.INTEGER);
-                }
-                
-                stmt.setString(18, patient.isActive() ? "Active" : "Inactive");
-                stmt.setBoolean(19, patient.isActive());
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                if (affectedRows == 0) {
-                    System.err.println("Creating patient failed, no rows affected.");
-                    return false;
-                }
-                
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        patient.setPatientId(generatedKeys.getInt(1));
-                        System.out.println("Successfully created patient with ID: " + patient.getPatientId());
-                        return true;
-                    } else {
-                        System.err.println("Creating patient failed, no ID obtained.");
-                        return false;
-                    }
-                }
+            boolean created = createPatient(conn, patient);
+            if (created) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.PATIENT, patient.getPatientId());
             }
+            return created;
         } catch (SQLException e) {
             System.err.println("Error creating patient: " + e.getMessage());
             e.printStackTrace();
@@ -238,6 +523,93 @@ public class PatientDAO {
         }
     }
     
+    /**
+     * Create a new patient as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param patient The patient to create
+     * @return true if creation was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean createPatient(Transaction tx, Patient patient) throws SQLException {
+        boolean created = createPatient(tx.getConnection(), patient);
+        if (created) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.PATIENT, patient.getPatientId());
+        }
+        return created;
+    }
+    
+    /**
+     * Create a new patient using the given connection
+     */
+    private boolean createPatient(Connection conn, Patient patient) throws SQLException {
+        String sql = "INSERT INTO patients (full_name, first_name, last_name, date_of_birth, gender, " +
+                     "address, phone_number, email, insurance_provider, insurance_number, " +
+                     "medical_history, allergies, emergency_contact_name, emergency_contact_phone, " +
+                     "blood_type, registration_date, primary_doctor_id, status, is_active) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            // Names are never null, so lists sort and page by them predictably
+            String firstName = patient.getFirstName() != null ? patient.getFirstName() : "";
+            String lastName = patient.getLastName() != null ? patient.getLastName() : "";
+            stmt.setString(1, (firstName + " " + lastName).trim());
+            stmt.setString(2, firstName);
+            stmt.setString(3, lastName);
+            
+            if (patient.getDateOfBirth() != null) {
+                stmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
+            } else {
+                stmt.setNull(4, Types.DATE);
+            }
+            
+            stmt.setString(5, patient.getGender());
+            stmt.setString(6, patient.getAddress());
+            stmt.setString(7, patient.getPhoneNumber());
+            stmt.setString(8, patient.getEmail());
+            stmt.setString(9, patient.getInsuranceProvider());
+            stmt.setString(10, patient.getInsuranceNumber());
+            stmt.setString(11, patient.getMedicalHistory());
+            stmt.setString(12, patient.getAllergies());
+            stmt.setString(13, patient.getEmergencyContactName());
+            stmt.setString(14, patient.getEmergencyContactPhone());
+            stmt.setString(15, patient.getBloodType());
+            
+            if (patient.getRegistrationDate() != null) {
+                stmt.setDate(16, Date.valueOf(patient.getRegistrationDate()));
+            } else {
+                stmt.setDate(16, Date.valueOf(LocalDate.now()));
+            }
+            
+            if (patient.getPrimaryDoctorId() > 0) {
+                stmt.setInt(17, patient.getPrimaryDoctorId());
+            } else {
+                stmt.setNull(17, Types.INTEGER);
+            }
+            
+            stmt.setString(18, patient.isActive() ? "Active" : "Inactive");
+            stmt.setBoolean(19, patient.isActive());
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            if (affectedRows == 0) {
+                System.err.println("Creating patient failed, no rows affected.");
+                return false;
+            }
+            
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    patient.setPatientId(generatedKeys.getInt(1));
+                    System.out.println("Successfully created patient with ID: " + patient.getPatientId());
+                    return true;
+                } else {
+                    System.err.println("Creating patient failed, no ID obtained.");
+                    return false;
+                }
+            }
+        }
+    }
+    
     /**
      * Update an existing patient
      * 
@@ -246,57 +618,11 @@ public class PatientDAO {
      */
     public boolean updatePatient(Patient patient) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "UPDATE patients SET full_name = ?, first_name = ?, last_name = ?, date_of_birth = ?, " +
-                         "gender = ?, address = ?, phone_number = ?, email = ?, " +
-                         "insurance_provider = ?, insurance_number = ?, medical_history = ?, " +
-                         "allergies = ?, emergency_contact_name = ?, emergency_contact_phone = ?, " +
-                         "blood_type = ?, primary_doctor_id = ?, " +
-                         "status = ?, is_active = ? WHERE patient_id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, patient.getFirstName() + " " + patient.getLastName());
-                stmt.setString(2, patient.getFirstName());
-                stmt.setString(3, patient.getLastName());
-                
-                if (patient.getDateOfBirth() != null) {
-                    stmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
-                } else {
-                    stmt.setNull(4, Types.DATE);
-                }
-                
-                stmt.setString(5, patient.getGender());
-                stmt.setString(6, patient.getAddress());
-                stmt.setString(7, patient.getPhoneNumber());
-                stmt.setString(8, patient.getEmail());
-                stmt.setString(9, patient.getInsuranceProvider());
-                stmt.setString(10, patient.getInsuranceNumber());
-                stmt.setString(11, patient.getMedicalHistory());
-                stmt.setString(12, patient.getAllergies());
-                stmt.setString(13, patient.getEmergencyContactName());
-                stmt.setString(14, patient.getEmergencyContactPhone());
-                stmt.setString(15, patient.getBloodType());
-                
-                if (patient.getPrimaryDoctorId() > 0) {
-                    stmt.setInt(16, patient.getPrimaryDoctorId());
-                } else {
-                    stmt.setNull(16, Types.INTEGER);
-                }
-                
-                stmt.setString(17, patient.isActive() ? "Active" : "Inactive");
-                stmt.setBoolean(18, patient.isActive());
-                
-                stmt.setInt(19, patient.getPatientId());
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                if (affectedRows == 0) {
-                    System.err.println("Updating patient failed, no rows affected. Patient ID: " + patient.getPatientId());
-                    return false;
-                }
-                
-                System.out.println("Successfully updated patient with ID: " + patient.getPatientId());
-                return true;
+            boolean updated = updatePatient(conn, patient);
+            if (updated) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.PATIENT, patient.getPatientId());
             }
+            return updated;
         } catch (SQLException e) {
             System.err.println("Error updating patient: " + e.getMessage());
             e.printStackTrace();
@@ -304,6 +630,82 @@ public class PatientDAO {
         }
     }
     
+    /**
+     * Update an existing patient as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param patient The patient to update
+     * @return true if update was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean updatePatient(Transaction tx, Patient patient) throws SQLException {
+        boolean updated = updatePatient(tx.getConnection(), patient);
+        if (updated) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.PATIENT, patient.getPatientId());
+        }
+        return updated;
+    }
+    
+    /**
+     * Update an existing patient using the given connection
+     */
+    private boolean updatePatient(Connection conn, Patient patient) throws SQLException {
+        String sql = "UPDATE patients SET full_name = ?, first_name = ?, last_name = ?, date_of_birth = ?, " +
+                     "gender = ?, address = ?, phone_number = ?, email = ?, " +
+                     "insurance_provider = ?, insurance_number = ?, medical_history = ?, " +
+                     "allergies = ?, emergency_contact_name = ?, emergency_contact_phone = ?, " +
+                     "blood_type = ?, primary_doctor_id = ?, " +
+                     "status = ?, is_active = ? WHERE patient_id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            // Names are never null, so lists sort and page by them predictably
+            String firstName = patient.getFirstName() != null ? patient.getFirstName() : "";
+            String lastName = patient.getLastName() != null ? patient.getLastName() : "";
+            stmt.setString(1, (firstName + " " + lastName).trim());
+            stmt.setString(2, firstName);
+            stmt.setString(3, lastName);
+            
+            if (patient.getDateOfBirth() != null) {
+                stmt.setDate(4, Date.valueOf(patient.getDateOfBirth()));
+            } else {
+                stmt.setNull(4, Types.DATE);
+            }
+            
+            stmt.setString(5, patient.getGender());
+            stmt.setString(6, patient.getAddress());
+            stmt.setString(7, patient.getPhoneNumber());
+            stmt.setString(8, patient.getEmail());
+            stmt.setString(9, patient.getInsuranceProvider());
+            stmt.setString(10, patient.getInsuranceNumber());
+            stmt.setString(11, patient.getMedicalHistory());
+            stmt.setString(12, patient.getAllergies());
+            stmt.setString(13, patient.getEmergencyContactName());
+            stmt.setString(14, patient.getEmergencyContactPhone());
+            stmt.setString(15, patient.getBloodType());
+            
+            if (patient.getPrimaryDoctorId() > 0) {
+                stmt.setInt(16, patient.getPrimaryDoctorId());
+            } else {
+                stmt.setNull(16, Types.INTEGER);
+            }
+            
+            stmt.setString(17, patient.isActive() ? "Active" : "Inactive");
+            stmt.setBoolean(18, patient.isActive());
+            
+            stmt.setInt(19, patient.getPatientId());
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            if (affectedRows == 0) {
+                System.err.println("Updating patient failed, no rows affected. Patient ID: " + patient.getPatientId());
+                return false;
+            }
+            
+            System.out.println("Successfully updated patient with ID: " + patient.getPatientId());
+            return true;
+        }
+    }
+    
     /**
      * Delete a patient (or mark as inactive)
      * 
@@ -313,21 +715,11 @@ public class PatientDAO {
      */
     public boolean deletePatient(int patientId, boolean hardDelete) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql;
-            
-            if (hardDelete) {
-                sql = "DELETE FROM patients WHERE patient_id = ?";
-            } else {
-                sql = "UPDATE patients SET is_active = false WHERE patient_id = ?";
-            }
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, patientId);
-                
-                int affectedRows = stmt.executeUpdate();
-                
-                return affectedRows > 0;
+            boolean deleted = deletePatient(conn, patientId, hardDelete);
+            if (deleted) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.PATIENT, patientId);
             }
+            return deleted;
         } catch (SQLException e) {
             System.err.println("Error deleting patient: " + e.getMessage());
             e.printStackTrace();
@@ -335,6 +727,44 @@ public class PatientDAO {
         }
     }
     
+    /**
+     * Delete a patient (or mark as inactive) as part of a transaction
+     * 
+     * @param tx The transaction to run in
+     * @param patientId The ID of the patient to delete
+     * @param hardDelete Whether to perform a hard delete or just mark as inactive
+     * @return true if deletion was successful
+     * @throws SQLException If a database access error occurs
+     */
+    public boolean deletePatient(Transaction tx, int patientId, boolean hardDelete) throws SQLException {
+        boolean deleted = deletePatient(tx.getConnection(), patientId, hardDelete);
+        if (deleted) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.PATIENT, patientId);
+        }
+        return deleted;
+    }
+    
+    /**
+     * Delete a patient (or mark as inactive) using the given connection
+     */
+    private boolean deletePatient(Connection conn, int patientId, boolean hardDelete) throws SQLException {
+        String sql;
+        
+        if (hardDelete) {
+            sql = "DELETE FROM patients WHERE patient_id = ?";
+        } else {
+            sql = "UPDATE patients SET is_active = false WHERE patient_id = ?";
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, patientId);
+            
+            int affectedRows = stmt.executeUpdate();
+            
+            return affectedRows > 0;
+        }
+    }
+    
     /**
      * Simplified delete method (soft delete by marking inactive)
      * 
@@ -354,7 +784,7 @@ public class PatientDAO {
     public List<Patient> getPatientsByDoctorId(int doctorId) {
         List<Patient> patients = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM patients WHERE primary_doctor_id = ? ORDER BY last_name, first_name";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -362,9 +792,7 @@ public class PatientDAO {
                 
                 ResultSet rs = stmt.executeQuery();
                 
-                while (rs.next()) {
-                    patients.add(mapResultSetToPatient(rs));
-                }
+                patients.addAll(PATIENT_MAPPER.mapAll(rs));
             }
         } catch (SQLException e) {
             System.err.println("Error retrieving patients by doctor ID: " + e.getMessage());
@@ -380,7 +808,7 @@ public class PatientDAO {
      * @return The number of patients
      */
     public int getPatientCount() {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT COUNT(*) FROM patients";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -406,45 +834,6 @@ public class PatientDAO {
      * @throws SQLException If there's an error accessing the ResultSet
      */
     private Patient mapResultSetToPatient(ResultSet rs) throws SQLException {
-        Patient patient = new Patient();
-        
-        patient.setPatientId(rs.getInt("patient_id"));
-        patient.setFirstName(rs.getString("first_name"));
-        patient.setLastName(rs.getString("last_name"));
-        
-        Date dob = rs.getDate("date_of_birth");
-        if (dob != null) {
-            patient.setDateOfBirth(dob.toLocalDate());
-        }
-        
-        patient.setGender(rs.getString("gender"));
-        patient.setAddress(rs.getString("address"));
-        patient.setPhoneNumber(rs.getString("phone_number"));
-        patient.setEmail(rs.getString("email"));
-        patient.setInsuranceProvider(rs.getString("insurance_provider"));
-        patient.setInsuranceNumber(rs.getString("insurance_number"));
-        patient.setMedicalHistory(rs.getString("medical_history"));
-        patient.setAllergies(rs.getString("allergies"));
-        patient.setEmergencyContactName(rs.getString("emergency_contact_name"));
-        patient.setEmergencyContactPhone(rs.getString("emergency_contact_phone"));
-        patient.setBloodType(rs.getString("blood_type"));
-        
-        Date regDate = rs.getDate("registration_date");
-        if (regDate != null) {
-            patient.setRegistrationDate(regDate.toLocalDate());
-        }
-        
-        try {
-            patient.setPrimaryDoctorId(rs.getInt("primary_doctor_id"));
-            if (rs.wasNull()) {
-                patient.setPrimaryDoctorId(0);
-            }
-        } catch (SQLException e) {
-            patient.setPrimaryDoctorId(0);
-        }
-        
-        patient.setActive(rs.getBoolean("is_active"));
-        
-        return patient;
+        return PATIENT_MAPPER.map(rs);
     }
 } 
\ No newline at end of file
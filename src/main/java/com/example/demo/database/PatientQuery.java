@@ -0,0 +1,119 @@
+package com.example.demo.database;
+
+/**
+ * What a patient list shows: the sort order, filters and page size passed to
+ * {@link PatientDAO#queryPatients}.
+ * <pre>
+ * PatientQuery query = new PatientQuery()
+ *         .sortBy(PatientQuery.SortKey.REGISTRATION_DATE, false)
+ *         .active(true)
+ *         .search("smi")
+ *         .pageSize(20);
+ * </pre>
+ */
+public class PatientQuery {
+
+    /**
+     * The orders a patient list can be sorted in. Rows that tie are ordered
+     * by patient ID in the same direction, so every order is total and pages
+     * never overlap.
+     */
+    public enum SortKey {
+        /** Last name, then first name */
+        NAME("last_name", "first_name"),
+        ID,
+        DATE_OF_BIRTH("date_of_birth"),
+        REGISTRATION_DATE("registration_date");
+
+        private final String[] columns;
+
+        SortKey(String... columns) {
+            this.columns = columns;
+        }
+
+        /**
+         * @return The columns sorted on before the patient ID
+         */
+        String[] columns() {
+            return columns.clone();
+        }
+
+        /**
+         * @return True if the column may be null; nulls sort below every value
+         */
+        boolean isNullable() {
+            return this == DATE_OF_BIRTH || this == REGISTRATION_DATE;
+        }
+    }
+
+    private SortKey sortKey = SortKey.NAME;
+    private boolean ascending = true;
+    private Boolean active;
+    private String searchTerm;
+    private int pageSize = 20;
+
+    /**
+     * @param sortKey The order to sort in
+     * @param ascending True for A to Z, lowest ID or earliest date first
+     * @return This query
+     */
+    public PatientQuery sortBy(SortKey sortKey, boolean ascending) {
+        this.sortKey = sortKey;
+        this.ascending = ascending;
+        return this;
+    }
+
+    /**
+     * @param active True for active patients only, false for inactive ones
+     *        only, or null for both
+     * @return This query
+     */
+    public PatientQuery active(Boolean active) {
+        this.active = active;
+        return this;
+    }
+
+    /**
+     * Only show patients whose name, phone number or email matches a search
+     * term, as {@link PatientSearchIndex} matches them.
+     *
+     * @param searchTerm The search term, or null or blank for every patient
+     * @return This query
+     */
+    public PatientQuery search(String searchTerm) {
+        this.searchTerm = searchTerm;
+        return this;
+    }
+
+    /**
+     * @param pageSize The number of patients per page
+     * @return This query
+     */
+    public PatientQuery pageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public String getSearchTerm() {
+        return searchTerm;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,591 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory index of patient names, phone numbers and email addresses for
+ * search-as-you-type.
+ * <p>
+ * Each field is normalized like {@link NameResolver} does (case, accents and
+ * punctuation are ignored). Matches are ranked in three tiers: a field that
+ * starts with the term, then a later word that starts with it, then the term
+ * anywhere else, as the LIKE '%term%' search matched. Within a tier patients
+ * are ordered by last and first name. Terms shorter than three characters
+ * only match the start of a word.
+ * <p>
+ * Two kinds of posting lists are kept. Trigram lists are in ID order, so the
+ * candidates for a longer term are found by intersecting the lists of its
+ * trigrams. Prefix lists, keyed by the first one to three characters of each
+ * field and each word, are in rank order, so the best few matches of a broad
+ * term are the first few entries that match rather than a scan of every
+ * candidate.
+ * <p>
+ * The table is read once, on first use. Patients written through
+ * {@link PatientDAO} are reported through {@link DataChangeEvents} and
+ * reloaded by primary key on the next search.
+ */
+public class PatientSearchIndex {
+
+    private static final String SELECT_SQL =
+            "SELECT patient_id, first_name, last_name, phone_number, email FROM patients";
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    // Above this many candidates a limited search walks the prefix lists first
+    private static final int MAX_CANDIDATES_TO_SCAN = 5_000;
+
+    // Keep prefix keys apart from trigram keys. Normalized text never contains
+    // '\0', so short prefixes padded with it cannot collide with longer ones.
+    private static final long FIELD_START = 1L << 48;
+    private static final long WORD_START = 1L << 49;
+
+    // Match tiers, best first
+    private static final int FIELD_PREFIX = 0;
+    private static final int WORD_PREFIX = 1;
+    private static final int SUBSTRING = 2;
+    private static final int NO_MATCH = 3;
+
+    private static final Comparator<Entry> RANK_ORDER = Comparator.comparing((Entry entry) -> entry.sortKey)
+            .thenComparingInt(entry -> entry.id);
+
+    private static PatientSearchIndex instance;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<Long, Postings> prefixes = new HashMap<>();
+    private final Set<Integer> changedIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    private PatientSearchIndex() {
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return The patient search index
+     */
+    public static synchronized PatientSearchIndex getInstance() {
+        if (instance == null) {
+            instance = new PatientSearchIndex();
+            DataChangeEvents.addListener(instance::dataChanged);
+        }
+        return instance;
+    }
+
+    /**
+     * Read the patients table now rather than on the first search, for
+     * example in the background at startup.
+     *
+     * @return true if the index is ready
+     */
+    public synchronized boolean ensureLoaded() {
+        try {
+            refresh();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error loading the patient search index: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Find patients whose name, phone number or email matches a term, best
+     * matches first.
+     *
+     * @param term The search term
+     * @param limit The maximum number of IDs to return, or 0 for all matches
+     * @return The IDs of the matching patients, or null if the index could not be loaded
+     */
+    public synchronized List<Integer> search(String term, int limit) {
+        try {
+            refresh();
+        } catch (SQLException e) {
+            System.err.println("Error loading the patient search index: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+
+        String query = term != null ? NameResolver.normalize(term, false) : "";
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int max = limit > 0 ? limit : Integer.MAX_VALUE;
+        if (query.length() < 3) {
+            // Every entry of a short term's prefix lists is a match
+            return walkPrefixes(query, max, Integer.MAX_VALUE);
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            Postings list = trigrams.get(trigramKey(query, i));
+            if (list == null) {
+                return new ArrayList<>();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        // A broad term usually fills the page with prefix matches alone
+        if (limit > 0 && lists.get(0).size > MAX_CANDIDATES_TO_SCAN) {
+            List<Integer> ids = walkPrefixes(query, max, MAX_CANDIDATES_TO_SCAN);
+            if (ids != null && ids.size() == max) {
+                return ids;
+            }
+        }
+        return scan(query, lists, max);
+    }
+
+    /**
+     * Drop the index, for example after patients were changed outside the
+     * DAOs. The table is read again on the next search.
+     */
+    public synchronized void invalidateAll() {
+        loaded = false;
+        changedIds.clear();
+        entries.clear();
+        trigrams.clear();
+        prefixes.clear();
+    }
+
+    /**
+     * Collect field and then word prefix matches in rank order. Every such
+     * match is in the prefix lists of the term's first three characters.
+     *
+     * @param budget The number of entries to check before giving up
+     * @return The matches, or null if the budget ran out first
+     */
+    private List<Integer> walkPrefixes(String query, int max, int budget) {
+        String prefix = query.substring(0, Math.min(3, query.length()));
+        List<Integer> ids = new ArrayList<>();
+        int checked = collect(prefixes.get(prefixKey(FIELD_START, prefix)), query, FIELD_PREFIX, ids, max, budget);
+        // Field prefix matches were all taken above, so the tier check skips them here
+        checked += collect(prefixes.get(prefixKey(WORD_START, prefix)), query, WORD_PREFIX, ids, max,
+                budget - checked);
+        return ids.size() < max && checked >= budget ? null : ids;
+    }
+
+    /**
+     * @return The number of entries checked
+     */
+    private int collect(Postings list, String query, int tier, List<Integer> ids, int max, int budget) {
+        int checked = 0;
+        while (list != null && checked < list.size && checked < budget && ids.size() < max) {
+            int id = list.ids[checked++];
+            if (entries.get(id).tier(query) == tier) {
+                ids.add(id);
+            }
+        }
+        return checked;
+    }
+
+    /**
+     * Check every patient that has all of the term's trigrams, keeping the
+     * best few.
+     */
+    private List<Integer> scan(String query, List<Postings> lists, int max) {
+        Comparator<Match> order = Comparator.comparingInt((Match match) -> match.tier)
+                .thenComparing(match -> match.entry, RANK_ORDER);
+        PriorityQueue<Match> best = new PriorityQueue<>(order.reversed());
+
+        // Start from the rarest trigram, so the candidates only shrink
+        int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int count = candidates.length;
+        for (int j = 1; j < lists.size() && count > 0; j++) {
+            count = lists.get(j).retainAll(candidates, count);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries.get(candidates[i]);
+            int tier = entry.tier(query);
+            if (tier == NO_MATCH) {
+                continue;
+            }
+            if (best.size() == max) {
+                Match worst = best.peek();
+                if (tier > worst.tier || (tier == worst.tier && RANK_ORDER.compare(entry, worst.entry) > 0)) {
+                    continue;
+                }
+                best.poll();
+            }
+            best.add(new Match(entry, tier));
+        }
+
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(order);
+        List<Integer> ids = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            ids.add(match.entry.id);
+        }
+        return ids;
+    }
+
+    private void dataChanged(DataChangeEvents.Entity entity, int id) {
+        // Before the first load there is nothing to refresh
+        if (entity == DataChangeEvents.Entity.PATIENT && loaded) {
+            changedIds.add(id);
+        }
+    }
+
+    private void refresh() throws SQLException {
+        if (!loaded) {
+            load();
+        } else if (!changedIds.isEmpty()) {
+            reload();
+        }
+    }
+
+    private void load() throws SQLException {
+        long start = System.currentTimeMillis();
+        entries.clear();
+        trigrams.clear();
+        prefixes.clear();
+        // Changes committed while the table is read are applied on the next search
+        loaded = true;
+        changedIds.clear();
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             // In key order, so the trigram lists are built by appending
+             PreparedStatement stmt = DatabaseConnection.prepareStreamingStatement(conn,
+                     SELECT_SQL + " ORDER BY patient_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                add(rs, false);
+            }
+        } catch (SQLException e) {
+            loaded = false;
+            throw e;
+        }
+        rankPrefixLists();
+        System.out.println("Indexed " + entries.size() + " patients for search in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void reload() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (Iterator<Integer> iterator = changedIds.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+                for (Integer id : chunk) {
+                    remove(id);
+                }
+
+                // Deleted patients stay removed
+                Criteria criteria = new Criteria().in("patient_id", chunk);
+                try (PreparedStatement stmt = conn.prepareStatement(SELECT_SQL + criteria.toWhereClause())) {
+                    criteria.bind(stmt, 1);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            add(rs, true);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // Try again on the next search
+            changedIds.addAll(ids);
+            throw e;
+        }
+    }
+
+    /**
+     * @param ranked Whether to insert into the prefix lists in rank order,
+     *        rather than append and leave them to {@link #rankPrefixLists()}
+     */
+    private void add(ResultSet rs, boolean ranked) throws SQLException {
+        add(rs.getInt("patient_id"), rs.getString("first_name"), rs.getString("last_name"),
+                rs.getString("phone_number"), rs.getString("email"), ranked);
+    }
+
+    private void add(int id, String firstName, String lastName, String phone, String email, boolean ranked) {
+        // The full name covers first and last name searches as well
+        Set<String> fields = new LinkedHashSet<>();
+        addField(fields, (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : ""));
+        addField(fields, phone);
+        if (phone != null) {
+            // Digits typed without the separators the number was stored with
+            addField(fields, phone.replaceAll("[^0-9]", ""));
+        }
+        addField(fields, email);
+
+        String sortKey = NameResolver.normalize((lastName != null ? lastName : "") + " " +
+                (firstName != null ? firstName : ""), false);
+        Entry entry = new Entry(id, fields.toArray(new String[0]), sortKey);
+        entries.put(id, entry);
+
+        for (long key : entry.trigramKeys()) {
+            trigrams.computeIfAbsent(key, k -> new Postings()).addInOrder(id);
+        }
+        for (long key : entry.prefixKeys()) {
+            Postings list = prefixes.computeIfAbsent(key, k -> new Postings());
+            if (!ranked) {
+                list.insert(list.size, id);
+            } else {
+                int index = rankIndex(list, entry);
+                if (index < 0) {
+                    list.insert(-index - 1, id);
+                }
+            }
+        }
+    }
+
+    private void remove(int id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        for (long key : entry.trigramKeys()) {
+            Postings list = trigrams.get(key);
+            if (list != null) {
+                list.removeAt(Arrays.binarySearch(list.ids, 0, list.size, id));
+                if (list.size == 0) {
+                    trigrams.remove(key);
+                }
+            }
+        }
+        for (long key : entry.prefixKeys()) {
+            Postings list = prefixes.get(key);
+            if (list != null) {
+                list.removeAt(rankIndex(list, entry));
+                if (list.size == 0) {
+                    prefixes.remove(key);
+                }
+            }
+        }
+        entries.remove(id);
+    }
+
+    /**
+     * Find an entry in a prefix list.
+     *
+     * @return Its index, or (-(insertion point) - 1) as Arrays.binarySearch does
+     */
+    private int rankIndex(Postings list, Entry entry) {
+        int low = 0;
+        int high = list.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (RANK_ORDER.compare(entries.get(list.ids[middle]), entry) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < list.size && list.ids[low] == entry.id ? low : -low - 1;
+    }
+
+    /**
+     * Sort the prefix lists after a load. Each patient is ranked once, so
+     * the lists sort as plain numbers rather than by comparing names.
+     */
+    private void rankPrefixLists() {
+        List<Entry> ranking = new ArrayList<>(entries.values());
+        ranking.sort(RANK_ORDER);
+        for (int i = 0; i < ranking.size(); i++) {
+            ranking.get(i).rank = i;
+        }
+
+        for (Postings list : prefixes.values()) {
+            long[] ranked = new long[list.size];
+            for (int i = 0; i < list.size; i++) {
+                ranked[i] = ((long) entries.get(list.ids[i]).rank << 32) | (list.ids[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(ranked);
+            for (int i = 0; i < ranked.length; i++) {
+                list.ids[i] = (int) ranked[i];
+            }
+        }
+    }
+
+    private static void addField(Set<String> fields, String value) {
+        if (value != null) {
+            String normalized = NameResolver.normalize(value, false);
+            if (!normalized.isEmpty()) {
+                fields.add(normalized);
+            }
+        }
+    }
+
+    private static long trigramKey(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private static long prefixKey(long flag, String prefix) {
+        long key = flag;
+        for (int i = 0; i < prefix.length(); i++) {
+            key |= (long) prefix.charAt(i) << (32 - 16 * i);
+        }
+        return key;
+    }
+
+    /**
+     * The searchable fields of one patient.
+     */
+    private static final class Entry {
+        private final int id;
+        private final String[] fields;
+        private final String sortKey;
+        // Position in rank order, only valid while loading
+        private int rank;
+
+        Entry(int id, String[] fields, String sortKey) {
+            this.id = id;
+            this.fields = fields;
+            this.sortKey = sortKey;
+        }
+
+        long[] trigramKeys() {
+            long[] keys = new long[0];
+            int count = 0;
+            for (String field : fields) {
+                keys = Arrays.copyOf(keys, count + Math.max(0, field.length() - 2));
+                for (int i = 0; i + 3 <= field.length(); i++) {
+                    keys[count++] = trigramKey(field, i);
+                }
+            }
+            return distinct(keys, count);
+        }
+
+        /**
+         * @return The keys of the first one to three characters of each
+         *         field and of each later word
+         */
+        long[] prefixKeys() {
+            long[] keys = new long[0];
+            int count = 0;
+            for (String field : fields) {
+                String[] words = field.split(" ");
+                keys = Arrays.copyOf(keys, count + 3 * words.length);
+                for (int w = 0; w < words.length; w++) {
+                    long flag = w == 0 ? FIELD_START : WORD_START;
+                    for (int length = 1; length <= Math.min(3, words[w].length()); length++) {
+                        keys[count++] = prefixKey(flag, words[w].substring(0, length));
+                    }
+                }
+            }
+            return distinct(keys, count);
+        }
+
+        int tier(String query) {
+            int best = NO_MATCH;
+            for (String field : fields) {
+                if (field.startsWith(query)) {
+                    return FIELD_PREFIX;
+                }
+                for (int index = field.indexOf(query); index > 0 && best > WORD_PREFIX;
+                     index = field.indexOf(query, index + 1)) {
+                    best = Math.min(best, field.charAt(index - 1) == ' ' ? WORD_PREFIX : SUBSTRING);
+                }
+            }
+            // Short terms only match the start of a word
+            return best == SUBSTRING && query.length() < 3 ? NO_MATCH : best;
+        }
+
+        private static long[] distinct(long[] keys, int count) {
+            Arrays.sort(keys, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || keys[i] != keys[unique - 1]) {
+                    keys[unique++] = keys[i];
+                }
+            }
+            return Arrays.copyOf(keys, unique);
+        }
+    }
+
+    private static final class Match {
+        private final Entry entry;
+        private final int tier;
+
+        Match(Entry entry, int tier) {
+            this.entry = entry;
+            this.tier = tier;
+        }
+    }
+
+    /**
+     * A growable list of patient IDs, in ID order for a trigram and in rank
+     * order for a prefix.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        /**
+         * Add to a list in ID order. IDs mostly arrive in increasing order:
+         * on load, and for new patients.
+         */
+        void addInOrder(int id) {
+            int index = size;
+            if (size > 0 && ids[size - 1] >= id) {
+                index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                index = -index - 1;
+            }
+            insert(index, id);
+        }
+
+        void insert(int index, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void removeAt(int index) {
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Keep the IDs that are also in this list, galloping ahead so a short
+         * list costs little against a long one.
+         *
+         * @param candidates IDs in increasing order, filtered in place
+         * @param count The number of candidates
+         * @return The number of candidates kept
+         */
+        int retainAll(int[] candidates, int count) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count && from < size; i++) {
+                int step = 1;
+                while (from + step < size && ids[from + step] < candidates[i]) {
+                    step <<= 1;
+                }
+                int index = Arrays.binarySearch(ids, from, Math.min(from + step + 1, size), candidates[i]);
+                if (index >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.database;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A snapshot of patient counts for dashboards: the total, active patients,
+ * and the number of patients by gender, blood type, birth date and
+ * registration date. Counted in the database, so no patient rows are loaded.
+ */
+public class PatientStats {
+
+    private final long total;
+    private final long activeCount;
+    private final Map<String, Long> byGender;
+    private final Map<String, Long> byBloodType;
+    private final SortedMap<LocalDate, Long> byBirthDate;
+    private final SortedMap<LocalDate, Long> byRegistrationDate;
+
+    /**
+     * @param total The number of patients
+     * @param activeCount The number of active patients
+     * @param byGender Counts by gender as stored; patients with none are under ""
+     * @param byBloodType Counts by blood type as stored; patients with none are under ""
+     * @param byBirthDate Counts by date of birth, for patients that have one
+     * @param byRegistrationDate Counts by registration date, for patients that have one
+     */
+    public PatientStats(long total, long activeCount, Map<String, Long> byGender, Map<String, Long> byBloodType,
+                        SortedMap<LocalDate, Long> byBirthDate, SortedMap<LocalDate, Long> byRegistrationDate) {
+        this.total = total;
+        this.activeCount = activeCount;
+        this.byGender = Collections.unmodifiableMap(byGender);
+        this.byBloodType = Collections.unmodifiableMap(byBloodType);
+        this.byBirthDate = Collections.unmodifiableSortedMap(byBirthDate);
+        this.byRegistrationDate = Collections.unmodifiableSortedMap(byRegistrationDate);
+    }
+
+    /**
+     * @return The number of patients
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The number of active patients
+     */
+    public long getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @param gender A gender, e.g. "Male"; compared ignoring case
+     * @return The number of patients with that gender
+     */
+    public long getCountByGender(String gender) {
+        long count = 0;
+        for (Map.Entry<String, Long> entry : byGender.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(gender)) {
+                count += entry.getValue();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param firstDay The first registration day to count
+     * @return The number of patients registered on or after that day
+     */
+    public long getCountRegisteredSince(LocalDate firstDay) {
+        long count = 0;
+        for (long dayCount : byRegistrationDate.tailMap(firstDay).values()) {
+            count += dayCount;
+        }
+        return count;
+    }
+
+    /**
+     * @return Counts by the month of the registration date, in any year
+     */
+    public Map<Month, Long> getCountsByRegistrationMonth() {
+        Map<Month, Long> byMonth = new EnumMap<>(Month.class);
+        for (Map.Entry<LocalDate, Long> entry : byRegistrationDate.entrySet()) {
+            byMonth.merge(entry.getKey().getMonth(), entry.getValue(), Long::sum);
+        }
+        return byMonth;
+    }
+
+    public Map<String, Long> getCountsByGender() {
+        return byGender;
+    }
+
+    public Map<String, Long> getCountsByBloodType() {
+        return byBloodType;
+    }
+
+    /**
+     * @return Counts by date of birth, for grouping by age
+     */
+    public SortedMap<LocalDate, Long> getCountsByBirthDate() {
+        return byBirthDate;
+    }
+
+    public SortedMap<LocalDate, Long> getCountsByRegistrationDate() {
+        return byRegistrationDate;
+    }
+}
@@ -0,0 +1,759 @@
+package com.example.demo.database;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool used by {@link DatabaseConnection}.
+ * Connections handed out are proxies: closing one returns the physical
+ * connection to the pool instead of closing it. A background housekeeper
+ * evicts connections idle for too long, keeps the pool topped up to the
+ * minimum idle size, pings long-idle connections so the server does not drop
+ * them and reports connections that look leaked.
+ * <p>
+ * At most maxActive physical connections are open at any time, counting idle
+ * connections, borrowed ones and ones being opened or pinged by the
+ * housekeeper.
+ * <p>
+ * Idle connections are only validated (with {@link Connection#isValid(int)})
+ * when they have not been used or checked within the validation window, so
+ * borrowing a recently used connection costs no network round-trip.
+ * <p>
+ * Each physical connection keeps a {@link StatementCache}, so preparing the
+ * same SQL again on a pooled connection reuses the already parsed statement.
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private final int initialSize;
+    private final int maxActive;
+    private final int maxIdle;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long evictionIntervalMillis;
+    private final long leakDetectionThresholdMillis;
+    private final long validationWindowMillis;
+    private final int validationTimeoutSeconds;
+    private final long keepAliveIntervalMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    // Physical connections open or being opened, idle and borrowed alike
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private int loginTimeout;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private volatile Runnable writeListener;
+
+    /**
+     * Create a pool configured from properties.
+     * Recognised keys (relative to {@code prefix}): initialSize, maxActive, maxIdle,
+     * minIdle, maxWait, idleTimeout, evictionInterval, leakDetectionThreshold,
+     * validationWindow, validationTimeout (seconds), keepAliveInterval and
+     * statementCacheSize (0 disables statement caching).
+     * Durations are in milliseconds unless noted otherwise.
+     *
+     * @param url The JDBC URL
+     * @param username The database username
+     * @param password The database password
+     * @param properties The properties to read pool settings from
+     * @param prefix The key prefix, e.g. "db.pool."
+     */
+    public PooledDataSource(String url, String username, String password, Properties properties, String prefix) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+
+        this.maxActive = Math.max(1, intProperty(properties, prefix + "maxActive", 10));
+        this.maxIdle = Math.min(maxActive, Math.max(0, intProperty(properties, prefix + "maxIdle", 5)));
+        this.minIdle = Math.min(maxIdle, Math.max(0, intProperty(properties, prefix + "minIdle", 2)));
+        this.initialSize = Math.min(maxIdle, Math.max(0, intProperty(properties, prefix + "initialSize", minIdle)));
+        this.maxWaitMillis = longProperty(properties, prefix + "maxWait", 30000L);
+        this.idleTimeoutMillis = longProperty(properties, prefix + "idleTimeout", 600000L);
+        this.evictionIntervalMillis = longProperty(properties, prefix + "evictionInterval", 30000L);
+        this.leakDetectionThresholdMillis = longProperty(properties, prefix + "leakDetectionThreshold", 0L);
+        this.validationWindowMillis = longProperty(properties, prefix + "validationWindow", 5000L);
+        this.validationTimeoutSeconds = Math.max(1, intProperty(properties, prefix + "validationTimeout", 5));
+        this.keepAliveIntervalMillis = longProperty(properties, prefix + "keepAliveInterval", 300000L);
+        this.statementCacheSize = Math.max(0, intProperty(properties, prefix + "statementCacheSize", 50));
+
+        this.permits = new Semaphore(maxActive, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (evictionIntervalMillis > 0) {
+            housekeeper.scheduleWithFixedDelay(this::runHousekeeping,
+                    evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        housekeeper.execute(this::fillToInitialSize);
+    }
+
+    /**
+     * Borrow a connection from the pool, waiting up to maxWait milliseconds
+     * for one to become available.
+     *
+     * @return A pooled connection; closing it returns it to the pool
+     * @throws SQLException If no connection could be obtained
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis
+                        + " ms waiting for a database connection (maxActive=" + maxActive
+                        + ", in use=" + borrowed.size() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeOrOpenConnection(deadline);
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = leakDetectionThresholdMillis > 0
+                    ? new Exception("Connection borrowed by thread " + Thread.currentThread().getName())
+                    : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections always use the configured credentials");
+    }
+
+    /**
+     * Take an idle connection, or open one if fewer than maxActive are open.
+     * When the housekeeper is holding the remaining connections, wait for it
+     * to put one back.
+     */
+    private PooledConnection takeOrOpenConnection(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled != null) {
+                return pooled;
+            }
+            if (reserveConnection()) {
+                return openPooledConnection();
+            }
+            synchronized (idle) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis
+                            + " ms waiting for a database connection (maxActive=" + maxActive
+                            + ", open=" + openCount.get() + ")");
+                }
+                if (idle.isEmpty()) {
+                    try {
+                        idle.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLTransientConnectionException(
+                                "Interrupted while waiting for a database connection", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Count a connection about to be opened, unless maxActive are already open.
+     */
+    private boolean reserveConnection() {
+        while (true) {
+            int open = openCount.get();
+            if (open >= maxActive) {
+                return false;
+            }
+            if (openCount.compareAndSet(open, open + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Open a connection for a slot taken with {@link #reserveConnection()},
+     * giving the slot back if the database cannot be reached.
+     */
+    private PooledConnection openPooledConnection() throws SQLException {
+        try {
+            return new PooledConnection(openPhysicalConnection());
+        } catch (SQLException | RuntimeException e) {
+            openCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Put a connection on the idle stack and wake a borrower waiting for one.
+     */
+    private void offerIdle(PooledConnection pooled, boolean mostRecent) {
+        synchronized (idle) {
+            if (mostRecent) {
+                idle.offerFirst(pooled);
+            } else {
+                idle.offerLast(pooled);
+            }
+            idle.notifyAll();
+        }
+    }
+
+    /**
+     * Take a healthy connection from the idle stack, discarding any that fail validation.
+     */
+    private PooledConnection takeIdleConnection() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (!needsValidation(pooled, System.currentTimeMillis()) || validate(pooled)) {
+                return pooled;
+            }
+            closeQuietly(pooled);
+        }
+    }
+
+    /**
+     * A connection only needs checking if it has sat unused and unchecked
+     * for longer than the validation window.
+     */
+    private boolean needsValidation(PooledConnection pooled, long now) {
+        long lastKnownGood = Math.max(pooled.lastUsed, pooled.lastValidated);
+        return now - lastKnownGood > validationWindowMillis;
+    }
+
+    /**
+     * Check that a connection is still usable using the driver's lightweight ping.
+     */
+    private boolean validate(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isValid(validationTimeoutSeconds)) {
+                pooled.lastValidated = System.currentTimeMillis();
+                return true;
+            }
+            System.err.println("Discarding pooled connection that failed validation");
+        } catch (SQLException e) {
+            System.err.println("Discarding broken pooled connection: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Open a new physical connection to the database.
+     */
+    private Connection openPhysicalConnection() throws SQLException {
+        if (loginTimeout > 0) {
+            DriverManager.setLoginTimeout(loginTimeout);
+        }
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    /**
+     * Return a connection to the pool once its handle has been closed.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        pooled.borrowSite = null;
+        try {
+            if (pooled.statements != null) {
+                pooled.statements.reclaimCheckedOut();
+            }
+            if (pooled.wrote) {
+                pooled.wrote = false;
+                Runnable listener = writeListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+            boolean reusable = !closed && resetState(pooled);
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                synchronized (idle) {
+                    if (idle.size() < maxIdle) {
+                        offerIdle(pooled, true);
+                        return;
+                    }
+                }
+            }
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Undo per-borrower state so the next borrower gets a clean connection.
+     */
+    private boolean resetState(PooledConnection pooled) {
+        Connection conn = pooled.physical;
+        try {
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (conn.isReadOnly()) {
+                conn.setReadOnly(false);
+            }
+            conn.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Discarding pooled connection that could not be reset: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Open connections until the idle pool holds initialSize connections.
+     */
+    private void fillToInitialSize() {
+        fillIdle(initialSize);
+    }
+
+    /**
+     * Evict expired idle connections, keep the rest alive, top the pool back
+     * up to minIdle and report leaks.
+     */
+    private void runHousekeeping() {
+        if (closed) {
+            return;
+        }
+        evictIdleConnections();
+        keepAliveIdleConnections();
+        fillIdle(minIdle);
+        detectLeaks();
+    }
+
+    /**
+     * Ping idle connections that have been quiet for keepAliveInterval so that
+     * server or firewall idle timeouts do not silently drop them.
+     */
+    private void keepAliveIdleConnections() {
+        if (keepAliveIntervalMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PooledConnection> due = new ArrayList<>();
+        synchronized (idle) {
+            // Take the connections out while pinging so no borrower can grab them mid-check
+            idle.removeIf(pooled -> {
+                if (now - Math.max(pooled.lastUsed, pooled.lastValidated) >= keepAliveIntervalMillis) {
+                    due.add(pooled);
+                    return true;
+                }
+                return false;
+            });
+        }
+        for (PooledConnection pooled : due) {
+            if (!closed && validate(pooled)) {
+                // Keep-alive does not count as use, so eviction order is preserved at the tail
+                offerIdle(pooled, false);
+            } else {
+                closeQuietly(pooled);
+            }
+        }
+    }
+
+    private void evictIdleConnections() {
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        synchronized (idle) {
+            // Oldest connections sit at the tail of the stack
+            while (idle.size() > minIdle) {
+                PooledConnection oldest = idle.peekLast();
+                if (oldest == null || now - oldest.lastUsed < idleTimeoutMillis) {
+                    break;
+                }
+                evicted.add(idle.pollLast());
+            }
+        }
+        for (PooledConnection pooled : evicted) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private void fillIdle(int target) {
+        while (!closed) {
+            synchronized (idle) {
+                if (idle.size() >= target) {
+                    return;
+                }
+            }
+            // Count the connection before opening it so topping up never exceeds maxActive
+            if (!reserveConnection()) {
+                return;
+            }
+            try {
+                PooledConnection pooled = openPooledConnection();
+                pooled.lastUsed = System.currentTimeMillis();
+                offerIdle(pooled, false);
+            } catch (SQLException e) {
+                System.err.println("Could not open pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowed) {
+            Exception site = pooled.borrowSite;
+            if (!pooled.leakReported && site != null && now - pooled.borrowedAt > leakDetectionThresholdMillis) {
+                pooled.leakReported = true;
+                System.err.println("Possible connection leak: connection held for "
+                        + (now - pooled.borrowedAt) + " ms without being closed");
+                site.printStackTrace();
+            }
+        }
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+        openCount.decrementAndGet();
+        // A borrower waiting for a connection may now open one
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+    }
+
+    /**
+     * Get the number of connections currently borrowed from the pool.
+     * @return The number of active connections.
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Get the number of physical connections open, idle and borrowed alike.
+     * @return The number of open connections, never more than maxActive.
+     */
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    /**
+     * Get the number of idle connections waiting in the pool.
+     * @return The number of idle connections.
+     */
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Register a callback run whenever a connection that may have written data
+     * is returned to the pool, i.e. after the write has been committed.
+     * @param writeListener The callback, or null to remove it.
+     */
+    public void setWriteListener(Runnable writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * Get the number of prepared statement requests served from a statement cache.
+     * @return The pool-wide statement cache hit count.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * Get the number of prepared statement requests that had to be parsed again.
+     * @return The pool-wide statement cache miss count.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * Get the maximum number of connections the pool will hand out at once.
+     * @return The maxActive setting.
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * Get the JDBC URL this pool connects to.
+     * @return The JDBC URL.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Shut the pool down, closing all idle connections.
+     * Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        List<PooledConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PooledConnection pooled : toClose) {
+            closeQuietly(pooled);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger(PooledDataSource.class.getPackageName());
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("PooledDataSource does not wrap " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private static int intProperty(Properties properties, String key, int defaultValue) {
+        return (int) longProperty(properties, key, defaultValue);
+    }
+
+    private static long longProperty(Properties properties, String key, long defaultValue) {
+        String value = properties != null ? properties.getProperty(key) : null;
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool plus its bookkeeping.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsed;
+        private volatile long lastValidated;
+        private volatile long borrowedAt;
+        private volatile Exception borrowSite;
+        private volatile boolean leakReported;
+        private boolean wrote;
+        private final StatementCache statements;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses)
+                    : null;
+        }
+
+        /**
+         * Create a fresh proxy for one borrow. Each borrower gets its own handle so
+         * a stale reference closed twice cannot return a connection someone else holds.
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Only prepareStatement(String) and prepareStatement(String, int autoGeneratedKeys)
+     * are cached; other variants change cursor behaviour and are passed through.
+     */
+    private static boolean isCacheablePrepare(Method method) {
+        if (!method.getName().equals("prepareStatement")) {
+            return false;
+        }
+        Class<?>[] types = method.getParameterTypes();
+        return types.length == 1 || (types.length == 2 && types[1] == int.class);
+    }
+
+    /**
+     * Invocation handler backing a borrowed connection.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean logicallyClosed;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + (logicallyClosed ? ", closed]" : "]");
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (logicallyClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            trackWrites(method, args);
+
+            if (pooled.statements != null && isCacheablePrepare(method)) {
+                int autoGeneratedKeys = args.length > 1 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                return pooled.statements.prepare((Connection) proxy, (String) args[0], autoGeneratedKeys);
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Remember whether this borrow may have modified data. Prepared SQL is
+         * classified by its leading keyword; plain statements could run anything,
+         * so they are conservatively treated as writes.
+         */
+        private void trackWrites(Method method, Object[] args) {
+            if (pooled.wrote) {
+                return;
+            }
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("prepareCall")) {
+                pooled.wrote = !isReadOnlySql((String) args[0]);
+            } else if (name.equals("createStatement")) {
+                pooled.wrote = true;
+            }
+        }
+    }
+
+    /**
+     * Check whether a SQL statement only reads data.
+     */
+    private static boolean isReadOnlySql(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String keyword = trimmed.substring(0, end).toUpperCase();
+        return keyword.equals("SELECT") || keyword.equals("WITH") || keyword.equals("SHOW")
+                || keyword.equals("EXPLAIN") || keyword.equals("DESCRIBE");
+    }
+}
@@ -0,0 +1,516 @@
+package com.example.demo.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Per-statement metrics for the connections {@link DatabaseConnection} hands out.
+ * Connections are wrapped in a proxy that times every execute call and counts
+ * the rows read from its result sets. Statistics are kept per normalized SQL
+ * shape (literals replaced by ?), together with the DAO method that first
+ * issued it.
+ * <p>
+ * Statements slower than db.metrics.slowQueryThreshold milliseconds are
+ * written to the "com.example.demo.database.SlowQueryLog" logger and kept in
+ * a short in-memory history. Parameter values are never logged, as they may
+ * hold patient data.
+ */
+public class QueryMetrics {
+
+    private static final Logger SLOW_QUERY_LOG = Logger.getLogger("com.example.demo.database.SlowQueryLog");
+    private static final int SLOW_QUERY_HISTORY = 100;
+    private static final int NORMALIZED_CACHE_LIMIT = 1000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Frames from these classes are skipped when looking for the calling DAO method
+    private static final Set<String> INFRASTRUCTURE = Set.of(
+            QueryMetrics.class.getName(),
+            DatabaseConnection.class.getName(),
+            PooledDataSource.class.getName(),
+            StatementCache.class.getName(),
+            Transaction.class.getName());
+
+    private final long slowQueryThresholdNanos;
+    private final ConcurrentHashMap<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> normalizedSql = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private final LongAdder connectionsBorrowed = new LongAdder();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * @param slowQueryThresholdMillis Statements taking at least this long are logged as slow
+     */
+    public QueryMetrics(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdNanos = slowQueryThresholdMillis * 1_000_000L;
+    }
+
+    /**
+     * Wrap a connection so the statements run on it are measured.
+     *
+     * @param conn The borrowed connection
+     * @param waitNanos How long the caller waited to borrow it
+     * @return An instrumented connection; closing it closes the original
+     */
+    Connection instrument(Connection conn, long waitNanos) {
+        connectionWait.record(waitNanos);
+        connectionsBorrowed.increment();
+        ConnectionHandler handler = new ConnectionHandler(conn, waitNanos);
+        handler.proxy = proxy(Connection.class, handler);
+        return handler.proxy;
+    }
+
+    /**
+     * Get the statistics for every statement seen so far.
+     *
+     * @return Statistics sorted by total execution time, highest first
+     */
+    public List<QueryStats> getQueryStats() {
+        List<QueryStats> stats = new ArrayList<>();
+        for (StatementMetrics metrics : statements.values()) {
+            stats.add(metrics.snapshot());
+        }
+        stats.sort(Comparator.comparingDouble(QueryStats::getTotalMillis).reversed());
+        return stats;
+    }
+
+    /**
+     * Get the most recent slow statements.
+     *
+     * @return Slow statements, oldest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    /**
+     * Get a percentile of the time callers waited for a pooled connection.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The wait in milliseconds
+     */
+    public double getConnectionWaitMillis(double percentile) {
+        return connectionWait.percentile(percentile) / 1_000_000.0;
+    }
+
+    /**
+     * Forget all statistics collected so far.
+     */
+    public void reset() {
+        statements.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Format the most expensive statements as a table.
+     *
+     * @param limit The maximum number of statements to include
+     * @return A human-readable report
+     */
+    public String report(int limit) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Connection wait: %d borrows, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms%n",
+                connectionsBorrowed.sum(), getConnectionWaitMillis(50), getConnectionWaitMillis(95),
+                getConnectionWaitMillis(99)));
+        report.append(String.format("%8s %10s %8s %8s %8s %9s %8s  %s%n",
+                "calls", "total ms", "p50", "p95", "p99", "rows", "wait ms", "caller / sql"));
+
+        List<QueryStats> stats = getQueryStats();
+        for (QueryStats s : stats.subList(0, Math.min(limit, stats.size()))) {
+            report.append(String.format("%8d %10.1f %8.1f %8.1f %8.1f %9d %8.1f  %s%n",
+                    s.getCount(), s.getTotalMillis(), s.getP50Millis(), s.getP95Millis(), s.getP99Millis(),
+                    s.getRows(), s.getConnectionWaitMillis(), s.getCaller()));
+            report.append(String.format("%66s%s%s%n", "", s.getSql(),
+                    s.getErrors() > 0 ? "  [" + s.getErrors() + " errors]" : ""));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Reduce a statement to its shape: literals become ?, IN lists collapse and whitespace is normalized.
+     *
+     * @param sql The SQL text
+     * @return The normalized SQL
+     */
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("IN (?)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private StatementMetrics metricsFor(String sql) {
+        String normalized = normalizedSql.get(sql);
+        if (normalized == null) {
+            normalized = normalize(sql);
+            // SQL built with inline literals would otherwise grow the cache without bound
+            if (normalizedSql.size() < NORMALIZED_CACHE_LIMIT) {
+                normalizedSql.put(sql, normalized);
+            }
+        }
+        return statements.computeIfAbsent(normalized, key -> new StatementMetrics(key, findCaller()));
+    }
+
+    /**
+     * Find the application method that issued the statement, e.g. MedicalRecordDAO.getAllMedicalRecords.
+     */
+    private static String findCaller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("com.example.demo.")
+                        && !INFRASTRUCTURE.contains(frame.getClassName())
+                        && !frame.getClassName().startsWith(QueryMetrics.class.getName() + "$"))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName())
+                .orElse("unknown"));
+    }
+
+    private void recordSlowQuery(StatementMetrics metrics, long nanos) {
+        SlowQuery slowQuery = new SlowQuery(LocalDateTime.now(), metrics.sql, metrics.caller, nanos / 1_000_000.0);
+        SLOW_QUERY_LOG.warning(slowQuery.toString());
+        synchronized (slowQueries) {
+            slowQueries.addLast(slowQuery);
+            if (slowQueries.size() > SLOW_QUERY_HISTORY) {
+                slowQueries.removeFirst();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Handles identity methods so a proxy equals only itself.
+     *
+     * @return The result, or null if the method is not an identity method
+     */
+    private static Object identity(Object proxy, Method method, Object[] args, Object target) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Instrumented[" + target + "]";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Wraps the statements created on one borrowed connection.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private Connection proxy;
+        private long unattributedWaitNanos;
+
+        private ConnectionHandler(Connection target, long waitNanos) {
+            this.target = target;
+            this.unattributedWaitNanos = waitNanos;
+        }
+
+        /**
+         * The wait to borrow the connection is charged to the first statement run on it.
+         */
+        private long takeWait() {
+            long wait = unattributedWaitNanos;
+            unattributedWaitNanos = 0;
+            return wait;
+        }
+
+        @Override
+        public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+            Object identity = identity(proxyInstance, method, args, target);
+            if (identity != null) {
+                return identity;
+            }
+
+            Object result = call(target, method, args);
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                StatementHandler handler = new StatementHandler((Statement) result, sql, this);
+                if (result instanceof CallableStatement) {
+                    return proxy(CallableStatement.class, handler);
+                } else if (result instanceof PreparedStatement) {
+                    return proxy(PreparedStatement.class, handler);
+                }
+                return proxy(Statement.class, handler);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Times the execute calls of one statement.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final ConnectionHandler owner;
+        private StatementMetrics lastExecuted;
+
+        private StatementHandler(Statement target, String sql, ConnectionHandler owner) {
+            this.target = target;
+            this.sql = sql;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+            Object identity = identity(proxyInstance, method, args, target);
+            if (identity != null) {
+                return identity;
+            }
+
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                return owner.proxy;
+            }
+            if (name.equals("getResultSet")) {
+                Object result = call(target, method, args);
+                return result instanceof ResultSet && lastExecuted != null
+                        ? countRows((ResultSet) result, lastExecuted) : result;
+            }
+
+            String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            if (!name.startsWith("execute") || executed == null) {
+                return call(target, method, args);
+            }
+
+            StatementMetrics metrics = metricsFor(executed);
+            lastExecuted = metrics;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(target, method, args);
+            } catch (Throwable t) {
+                metrics.errors.increment();
+                metrics.record(System.nanoTime() - start, owner.takeWait());
+                throw t;
+            }
+            long elapsed = System.nanoTime() - start;
+            metrics.record(elapsed, owner.takeWait());
+            if (elapsed >= slowQueryThresholdNanos) {
+                recordSlowQuery(metrics, elapsed);
+            }
+
+            if (result instanceof ResultSet) {
+                return countRows((ResultSet) result, metrics);
+            } else if (result instanceof Integer || result instanceof Long) {
+                metrics.rows.add(Math.max(0, ((Number) result).longValue()));
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    metrics.rows.add(Math.max(0, count));
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    metrics.rows.add(Math.max(0, count));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static ResultSet countRows(ResultSet resultSet, StatementMetrics metrics) {
+        return proxy(ResultSet.class, (proxyInstance, method, args) -> {
+            Object identity = identity(proxyInstance, method, args, resultSet);
+            if (identity != null) {
+                return identity;
+            }
+            Object result = call(resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                metrics.rows.increment();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Running totals for one normalized statement.
+     */
+    private static final class StatementMetrics {
+        private final String sql;
+        private final String caller;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private StatementMetrics(String sql, String caller) {
+            this.sql = sql;
+            this.caller = caller;
+        }
+
+        private void record(long nanos, long connectionWaitNanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            waitNanos.add(connectionWaitNanos);
+            latency.record(nanos);
+        }
+
+        private QueryStats snapshot() {
+            return new QueryStats(sql, caller, count.sum(), errors.sum(), rows.sum(),
+                    totalNanos.sum() / 1_000_000.0,
+                    latency.percentile(50) / 1_000_000.0,
+                    latency.percentile(95) / 1_000_000.0,
+                    latency.percentile(99) / 1_000_000.0,
+                    waitNanos.sum() / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Statistics for one normalized statement.
+     * Percentiles are accurate to within about 20%.
+     */
+    public static final class QueryStats {
+        private final String sql;
+        private final String caller;
+        private final long count;
+        private final long errors;
+        private final long rows;
+        private final double totalMillis;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double connectionWaitMillis;
+
+        QueryStats(String sql, String caller, long count, long errors, long rows, double totalMillis,
+                   double p50Millis, double p95Millis, double p99Millis, double connectionWaitMillis) {
+            this.sql = sql;
+            this.caller = caller;
+            this.count = count;
+            this.errors = errors;
+            this.rows = rows;
+            this.totalMillis = totalMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.connectionWaitMillis = connectionWaitMillis;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return The method that first issued the statement, e.g. PatientDAO.searchPatients
+         */
+        public String getCaller() {
+            return caller;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return Rows read from result sets plus rows affected by updates
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        public double getTotalMillis() {
+            return totalMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP95Millis() {
+            return p95Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        /**
+         * @return Total time spent waiting for the pooled connections this statement was the first to use
+         */
+        public double getConnectionWaitMillis() {
+            return connectionWaitMillis;
+        }
+    }
+
+    /**
+     * One statement that exceeded the slow query threshold.
+     */
+    public static final class SlowQuery {
+        private final LocalDateTime time;
+        private final String sql;
+        private final String caller;
+        private final double millis;
+
+        SlowQuery(LocalDateTime time, String sql, String caller, double millis) {
+            this.time = time;
+            this.sql = sql;
+            this.caller = caller;
+            this.millis = millis;
+        }
+
+        public LocalDateTime getTime() {
+            return time;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getCaller() {
+            return caller;
+        }
+
+        public double getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Slow query (%.1f ms) from %s: %s", millis, caller, sql);
+        }
+    }
+}
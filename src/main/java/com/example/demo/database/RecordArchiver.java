@@ -0,0 +1,323 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves medical records whose visit is older than db.archive.maxAgeDays from
+ * medical_records to medical_records_archive, so the indexes of the hot table
+ * only cover recent visits.
+ * <p>
+ * Records are moved in batches of db.archive.batchSize, each in its own short
+ * transaction, with a pause between batches. A run that is interrupted leaves
+ * every batch either moved or not, and the next run simply carries on with the
+ * records that are still old enough.
+ * <p>
+ * Every archived record has a visit before the archive boundary kept in
+ * medical_records_archive_state. {@link MedicalRecordDAO} reads the archive
+ * only for queries whose visit dates reach below the boundary, or for IDs it
+ * did not find in the hot table. Updating or deleting an archived record moves
+ * it back first. The record counters and full-text search include archived
+ * records.
+ */
+public class RecordArchiver {
+
+    private static final String COLUMNS =
+            "record_id, patient_id, patient_name, doctor_id, doctor_name, visit_type, visit_date, symptoms, " +
+            "diagnosis, treatment, notes, status, diagnosis_codes, attachments, follow_up_date, record_type, version";
+
+    // How long a boundary read from the database is trusted. A run that raises
+    // the boundary moves rows this much later, so every application instance
+    // sees the new boundary before any record leaves the hot table.
+    private static final long BOUNDARY_TTL_MILLIS = 60_000;
+    private static final long FIRST_RUN_DELAY_MINUTES = 5;
+
+    private static RecordArchiver instance;
+
+    private final int maxAgeDays;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final long intervalHours;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile LocalDateTime archivedBefore;
+    private volatile long boundaryLoadedAt;
+    private ScheduledExecutorService scheduler;
+
+    private RecordArchiver(int maxAgeDays, int batchSize, long pauseMillis, long intervalHours) {
+        this.maxAgeDays = maxAgeDays;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.intervalHours = intervalHours;
+    }
+
+    /**
+     * Get the singleton instance, configured from db.archive.* in database.properties.
+     *
+     * @return The archiver
+     */
+    public static synchronized RecordArchiver getInstance() {
+        if (instance == null) {
+            DatabaseConnection db = DatabaseConnection.getInstance();
+            instance = new RecordArchiver(
+                    db.getIntProperty("db.archive.maxAgeDays", 730),
+                    Math.max(1, db.getIntProperty("db.archive.batchSize", 500)),
+                    Math.max(0, db.getIntProperty("db.archive.pauseMillis", 200)),
+                    Math.max(1, db.getIntProperty("db.archive.intervalHours", 24)));
+        }
+        return instance;
+    }
+
+    /**
+     * Start archiving in the background: a few minutes after startup, then
+     * every db.archive.intervalHours. Does nothing if archiving is disabled.
+     */
+    public synchronized void start() {
+        if (maxAgeDays <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("record-archiver").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::archiveOldRecords,
+                TimeUnit.MINUTES.toMillis(FIRST_RUN_DELAY_MINUTES), TimeUnit.HOURS.toMillis(intervalHours),
+                TimeUnit.MILLISECONDS);
+        System.out.println("Archiving medical records older than " + maxAgeDays + " days every " +
+                intervalHours + " hours");
+    }
+
+    /**
+     * Stop background archiving. A batch in progress is rolled back.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null && instance.scheduler != null) {
+            instance.scheduler.shutdownNow();
+            instance.scheduler = null;
+        }
+    }
+
+    /**
+     * Move every record older than the configured age to the archive. A run
+     * that has to raise the archive boundary first moves nothing itself; it
+     * schedules the move for when every instance has re-read the boundary.
+     *
+     * @return The number of records moved, or -1 if there was an error
+     */
+    public int archiveOldRecords() {
+        if (maxAgeDays <= 0) {
+            return 0;
+        }
+        if (!running.compareAndSet(false, true)) {
+            System.out.println("Archiving is already running");
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        int moved = 0;
+        try {
+            LocalDateTime cutoff = LocalDate.now().minusDays(maxAgeDays).atStartOfDay();
+            if (raiseBoundary(cutoff)) {
+                scheduleMove();
+                return 0;
+            }
+
+            int batch;
+            do {
+                batch = Transaction.execute(tx -> moveBatch(tx, cutoff));
+                moved += batch;
+                if (batch == batchSize && pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (batch == batchSize);
+
+            recordRun();
+            System.out.println("Archived " + moved + " medical records with visits before " + cutoff +
+                    " in " + (System.currentTimeMillis() - start) + " ms");
+            return moved;
+        } catch (SQLException e) {
+            System.err.println("Error archiving medical records after " + moved + " rows: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Archiving stopped after " + moved + " records");
+            return moved;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Check whether records with a visit on or after a day may be archived,
+     * that is whether a query for those visits has to read the archive.
+     *
+     * @param conn The connection the caller reads records on
+     * @param firstDay The first visit day the query asks for, or null for no lower bound
+     * @return true if the archive must be read as well as the hot table
+     * @throws SQLException If the archive boundary cannot be read
+     */
+    public boolean mayHoldVisitsFrom(Connection conn, LocalDate firstDay) throws SQLException {
+        LocalDateTime boundary = getArchivedBefore(conn);
+        return boundary != null && (firstDay == null || firstDay.atStartOfDay().isBefore(boundary));
+    }
+
+    /**
+     * Check whether any record may be archived, for lookups by ID.
+     *
+     * @param conn The connection the caller reads records on
+     * @return false if the archive has never been used
+     * @throws SQLException If the archive boundary cannot be read
+     */
+    public boolean hasArchivedRecords(Connection conn) throws SQLException {
+        return getArchivedBefore(conn) != null;
+    }
+
+    /**
+     * Move a record back from the archive so it can be updated or deleted,
+     * as part of the caller's transaction.
+     *
+     * @param conn The caller's transaction connection
+     * @param recordId The ID of the record
+     * @return true if the record was archived and is now in medical_records
+     * @throws SQLException If a database access error occurs
+     */
+    boolean restore(Connection conn, int recordId) throws SQLException {
+        if (!hasArchivedRecords(conn)) {
+            return false;
+        }
+        Criteria criteria = new Criteria().eq("record_id", recordId);
+        if (copy(conn, "medical_records_archive", "medical_records", criteria) == 0) {
+            return false;
+        }
+        delete(conn, "medical_records_archive", criteria);
+        System.out.println("Restored medical record " + recordId + " from the archive");
+        return true;
+    }
+
+    private int moveBatch(Transaction tx, LocalDateTime cutoff) throws SQLException {
+        Connection conn = tx.getConnection();
+
+        // Lock the batch so it cannot change between the copy and the delete
+        List<Integer> recordIds = new ArrayList<>();
+        String sql = "SELECT record_id FROM medical_records WHERE visit_date < ? ORDER BY visit_date LIMIT ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+            stmt.setInt(2, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    recordIds.add(rs.getInt(1));
+                }
+            }
+        }
+        if (recordIds.isEmpty()) {
+            return 0;
+        }
+
+        Criteria criteria = new Criteria().in("record_id", recordIds);
+        int copied = copy(conn, "medical_records", "medical_records_archive", criteria);
+        int deleted = delete(conn, "medical_records", criteria);
+        if (copied != recordIds.size() || deleted != recordIds.size()) {
+            throw new SQLException("Archive batch out of step: locked " + recordIds.size() + ", copied " +
+                    copied + ", deleted " + deleted);
+        }
+
+        // Caches that hold these records reload them from where they now are
+        for (int recordId : recordIds) {
+            DataChangeEvents.publishAfterCommit(tx, DataChangeEvents.Entity.MEDICAL_RECORD, recordId);
+        }
+        return recordIds.size();
+    }
+
+    private static int copy(Connection conn, String from, String to, Criteria criteria) throws SQLException {
+        String sql = "INSERT INTO " + to + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + from +
+                criteria.toWhereClause();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            criteria.bind(stmt, 1);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private static int delete(Connection conn, String table, Criteria criteria) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + criteria.toWhereClause())) {
+            criteria.bind(stmt, 1);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Get the archive boundary, re-reading it once it is older than the TTL.
+     * It is read on the caller's connection, so a reader never holds one
+     * pooled connection while waiting for another, and a boundary that cannot
+     * be read fails the caller's query rather than hiding archived records.
+     *
+     * @param conn The connection the caller reads records on
+     * @return Every archived record has a visit before this; null if nothing was ever archived
+     * @throws SQLException If the boundary is due to be re-read and cannot be
+     */
+    LocalDateTime getArchivedBefore(Connection conn) throws SQLException {
+        if (System.currentTimeMillis() - boundaryLoadedAt > BOUNDARY_TTL_MILLIS) {
+            String sql = "SELECT archived_before FROM medical_records_archive_state WHERE id = 1";
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                Timestamp boundary = rs.next() ? rs.getTimestamp(1) : null;
+                archivedBefore = boundary != null ? boundary.toLocalDateTime() : null;
+                boundaryLoadedAt = System.currentTimeMillis();
+            }
+        }
+        return archivedBefore;
+    }
+
+    /**
+     * Run again once the boundary just raised has reached every instance.
+     */
+    private synchronized void scheduleMove() {
+        if (scheduler == null) {
+            System.out.println("Run archiving again in " + BOUNDARY_TTL_MILLIS / 1000 +
+                    " s to move the records");
+            return;
+        }
+        scheduler.schedule(this::archiveOldRecords, BOUNDARY_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        System.out.println("Moving records to the archive in " + BOUNDARY_TTL_MILLIS / 1000 + " s");
+    }
+
+    /**
+     * Move the archive boundary up to the cutoff before any record below it is moved.
+     *
+     * @return true if the boundary changed
+     */
+    private boolean raiseBoundary(LocalDateTime cutoff) throws SQLException {
+        String sql = "UPDATE medical_records_archive_state SET archived_before = ? " +
+                     "WHERE id = 1 AND (archived_before IS NULL OR archived_before < ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+            stmt.setTimestamp(2, Timestamp.valueOf(cutoff));
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        archivedBefore = cutoff;
+        boundaryLoadedAt = System.currentTimeMillis();
+        System.out.println("Archive boundary raised to " + cutoff);
+        return true;
+    }
+
+    private void recordRun() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "UPDATE medical_records_archive_state SET last_run_at = ? WHERE id = 1")) {
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            stmt.executeUpdate();
+        }
+    }
+}
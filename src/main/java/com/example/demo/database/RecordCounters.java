@@ -0,0 +1,136 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects changes to the medical_record_stats counters for one write and
+ * applies them on the writer's connection, so the counts commit or roll back
+ * with the records they describe.
+ * <p>
+ * Counts come from the stored rows rather than from the objects being saved,
+ * so defaults filled in by the DAO are counted as written:
+ * <pre>
+ * RecordCounters counters = new RecordCounters();
+ * counters.remove(conn, recordIds);   // before an update or delete
+ * ... write ...
+ * counters.add(conn, recordIds);      // after an insert or update
+ * counters.apply(conn);
+ * </pre>
+ */
+final class RecordCounters {
+
+    static final String TOTAL = "total";
+    static final String STATUS = "status";
+    static final String RECORD_TYPE = "record_type";
+    static final String DOCTOR = "doctor";
+    static final String DAY = "day";
+
+    private static final String COUNTED_COLUMNS_SQL =
+            "SELECT status, record_type, doctor_id, visit_date FROM medical_records";
+    private static final String UPDATE_SQL =
+            "UPDATE medical_record_stats SET record_count = record_count + ? WHERE dimension = ? AND dim_value = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO medical_record_stats (dimension, dim_value, record_count) VALUES (?, ?, ?)";
+
+    // Sorted so concurrent writers lock counter rows in the same order
+    private final Map<String, Long> deltas = new TreeMap<>();
+
+    /**
+     * Count stored records in. Call after they are inserted or updated.
+     */
+    void add(Connection conn, Collection<Integer> recordIds) throws SQLException {
+        count(conn, recordIds, 1, false);
+    }
+
+    /**
+     * Count stored records out, locking them until the transaction ends so
+     * their counted columns cannot change underneath. Call before they are
+     * updated or deleted.
+     */
+    void remove(Connection conn, Collection<Integer> recordIds) throws SQLException {
+        count(conn, recordIds, -1, true);
+    }
+
+    /**
+     * Apply the collected changes to the counters.
+     */
+    void apply(Connection conn) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement(UPDATE_SQL)) {
+            for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                String[] key = entry.getKey().split("\u0000", 2);
+                if (!update(update, key[0], key[1], entry.getValue())) {
+                    insert(conn, update, key[0], key[1], entry.getValue());
+                }
+            }
+        }
+        deltas.clear();
+    }
+
+    private void count(Connection conn, Collection<Integer> recordIds, int sign, boolean lock) throws SQLException {
+        if (recordIds.isEmpty()) {
+            return;
+        }
+        Criteria criteria = new Criteria().in("record_id", recordIds);
+        String sql = COUNTED_COLUMNS_SQL + criteria.toWhereClause() + (lock ? " FOR UPDATE" : "");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            criteria.bind(stmt, 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String status = rs.getString("status");
+                    String recordType = rs.getString("record_type");
+                    Timestamp visitDate = rs.getTimestamp("visit_date");
+
+                    change(TOTAL, "", sign);
+                    change(STATUS, status != null ? status : "", sign);
+                    change(RECORD_TYPE, recordType != null ? recordType : "", sign);
+                    change(DOCTOR, String.valueOf(rs.getInt("doctor_id")), sign);
+                    if (visitDate != null) {
+                        change(DAY, visitDate.toLocalDateTime().toLocalDate().toString(), sign);
+                    }
+                }
+            }
+        }
+    }
+
+    private void change(String dimension, String value, long delta) {
+        deltas.merge(dimension + '\u0000' + value, delta, Long::sum);
+    }
+
+    private static boolean update(PreparedStatement update, String dimension, String value, long delta)
+            throws SQLException {
+        update.setLong(1, delta);
+        update.setString(2, dimension);
+        update.setString(3, value);
+        return update.executeUpdate() > 0;
+    }
+
+    /**
+     * Create a counter row, or add to it if a concurrent writer created it first.
+     */
+    private static void insert(Connection conn, PreparedStatement update, String dimension, String value,
+                               long delta) throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_SQL)) {
+            insert.setString(1, dimension);
+            insert.setString(2, value);
+            insert.setLong(3, delta);
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            // Integrity constraint violation: the row exists now
+            if (e.getSQLState() == null || !e.getSQLState().startsWith("23") ||
+                    !update(update, dimension, value, delta)) {
+                throw e;
+            }
+        }
+    }
+}
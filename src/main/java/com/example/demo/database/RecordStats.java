@@ -0,0 +1,100 @@
+package com.example.demo.database;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A snapshot of the medical record counters: the total and the number of
+ * records by status, record type, doctor and visit day.
+ */
+public class RecordStats {
+
+    private final long total;
+    private final Map<String, Long> byStatus;
+    private final Map<String, Long> byRecordType;
+    private final Map<Integer, Long> byDoctor;
+    private final SortedMap<LocalDate, Long> byDay;
+
+    /**
+     * @param total The number of records
+     * @param byStatus Counts by status; records with no status are under ""
+     * @param byRecordType Counts by record type; records with no type are under ""
+     * @param byDoctor Counts by doctor ID
+     * @param byDay Counts by visit day, for the days that were loaded
+     */
+    public RecordStats(long total, Map<String, Long> byStatus, Map<String, Long> byRecordType,
+                       Map<Integer, Long> byDoctor, SortedMap<LocalDate, Long> byDay) {
+        this.total = total;
+        this.byStatus = Collections.unmodifiableMap(byStatus);
+        this.byRecordType = Collections.unmodifiableMap(byRecordType);
+        this.byDoctor = Collections.unmodifiableMap(byDoctor);
+        this.byDay = Collections.unmodifiableSortedMap(byDay);
+    }
+
+    /**
+     * @return The number of records
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param status A status, e.g. "Pending"
+     * @return The number of records with that status
+     */
+    public long getCountByStatus(String status) {
+        return byStatus.getOrDefault(status, 0L);
+    }
+
+    /**
+     * @param recordType A record type, e.g. "Consultation"
+     * @return The number of records of that type
+     */
+    public long getCountByRecordType(String recordType) {
+        return byRecordType.getOrDefault(recordType, 0L);
+    }
+
+    /**
+     * @param doctorId A doctor's user ID
+     * @return The number of records written by that doctor
+     */
+    public long getCountByDoctor(int doctorId) {
+        return byDoctor.getOrDefault(doctorId, 0L);
+    }
+
+    /**
+     * Get the number of records with a visit on or after a day. Only days
+     * that were loaded into this snapshot are counted.
+     *
+     * @param firstDay The first day to count
+     * @return The number of records
+     */
+    public long getCountFromDay(LocalDate firstDay) {
+        long count = 0;
+        for (long dayCount : byDay.tailMap(firstDay).values()) {
+            count += dayCount;
+        }
+        return count;
+    }
+
+    public Map<String, Long> getCountsByStatus() {
+        return byStatus;
+    }
+
+    public Map<String, Long> getCountsByRecordType() {
+        return byRecordType;
+    }
+
+    public Map<Integer, Long> getCountsByDoctor() {
+        return byDoctor;
+    }
+
+    /**
+     * @return Counts by visit day, for the days that were loaded
+     */
+    public SortedMap<LocalDate, Long> getCountsByDay() {
+        return byDay;
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.demo.database;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Maps ResultSet rows to objects by column index.
+ * <p>
+ * The column labels are resolved once per ResultSet shape (the list of labels
+ * in the result metadata) and the resulting plan is cached, so mapping a row
+ * is a straight run of indexed getters. Columns the mapper knows about but the
+ * query did not return are skipped without an exception, which lets the same
+ * mapper serve SELECT * on older schemas and narrower projections.
+ *
+ * @param <T> The type of object produced for each row
+ */
+public final class RowMapper<T> {
+
+    // Enough for every query shape the DAOs use; beyond this plans are built but not cached
+    private static final int MAX_CACHED_PLANS = 64;
+
+    private final Supplier<T> factory;
+    private final Map<String, Column<T>> columns;
+    private final Consumer<T> afterRow;
+    private final Map<String, Plan<T>> plans = new ConcurrentHashMap<>();
+
+    private RowMapper(Supplier<T> factory, Map<String, Column<T>> columns, Consumer<T> afterRow) {
+        this.factory = factory;
+        this.columns = columns;
+        this.afterRow = afterRow;
+    }
+
+    /**
+     * Start building a mapper.
+     *
+     * @param factory Creates an empty object for each row
+     * @return A builder for the mapper's columns
+     */
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Map every remaining row of a ResultSet.
+     *
+     * @param rs The ResultSet to read
+     * @return The mapped rows, in order
+     * @throws SQLException If there's an error accessing the ResultSet
+     */
+    public List<T> mapAll(ResultSet rs) throws SQLException {
+        Plan<T> plan = planFor(rs.getMetaData());
+        List<T> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(plan.map(rs, factory.get()));
+        }
+        return rows;
+    }
+
+    /**
+     * Map the current row of a ResultSet. For loops over many rows prefer
+     * {@link #mapAll(ResultSet)} or {@link #bind(ResultSet)}.
+     *
+     * @param rs The ResultSet positioned on the row to map
+     * @return The mapped row
+     * @throws SQLException If there's an error accessing the ResultSet
+     */
+    public T map(ResultSet rs) throws SQLException {
+        return planFor(rs.getMetaData()).map(rs, factory.get());
+    }
+
+    /**
+     * Resolve the column plan for a ResultSet once, for callers that iterate
+     * the rows themselves.
+     *
+     * @param rs The ResultSet that will be mapped
+     * @return A mapper for the rows of that ResultSet
+     * @throws SQLException If there's an error reading the result metadata
+     */
+    public Bound<T> bind(ResultSet rs) throws SQLException {
+        return new Bound<>(planFor(rs.getMetaData()), factory);
+    }
+
+    /**
+     * Map the rows of a ResultSet lazily, as the stream is consumed, so only
+     * the current row is held in memory. The stream must be closed; closing it
+     * closes the given resources in order. SQL errors while reading rows are
+     * rethrown as {@link UncheckedSQLException}.
+     *
+     * @param rs The ResultSet to read
+     * @param resources The ResultSet, statement and connection to close with the stream
+     * @return A sequential stream of the mapped rows
+     * @throws SQLException If there's an error reading the result metadata
+     */
+    public Stream<T> stream(ResultSet rs, AutoCloseable... resources) throws SQLException {
+        Bound<T> bound = bind(rs);
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(bound.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> closeAll(resources));
+    }
+
+    private static void closeAll(AutoCloseable... resources) {
+        Exception failure = null;
+        for (AutoCloseable resource : resources) {
+            try {
+                if (resource != null) {
+                    resource.close();
+                }
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw new UncheckedSQLException((SQLException) failure);
+        } else if (failure != null) {
+            throw new IllegalStateException("Error closing result stream", failure);
+        }
+    }
+
+    private Plan<T> planFor(ResultSetMetaData metaData) throws SQLException {
+        int count = metaData.getColumnCount();
+        String[] labels = new String[count];
+        StringBuilder shape = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            // H2 reports unquoted identifiers in upper case, MySQL as written
+            labels[i] = metaData.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+            shape.append(labels[i]).append(',');
+        }
+
+        String key = shape.toString();
+        Plan<T> plan = plans.get(key);
+        if (plan == null) {
+            plan = compile(labels);
+            if (plans.size() < MAX_CACHED_PLANS) {
+                plans.putIfAbsent(key, plan);
+            }
+        }
+        return plan;
+    }
+
+    private Plan<T> compile(String[] labels) {
+        List<Integer> indexes = new ArrayList<>();
+        List<Column<T>> readers = new ArrayList<>();
+        for (int i = 0; i < labels.length; i++) {
+            Column<T> column = columns.get(labels[i]);
+            // A label can repeat in a join; the first occurrence wins
+            if (column != null && !readers.contains(column)) {
+                indexes.add(i + 1);
+                readers.add(column);
+            }
+        }
+
+        int[] indexArray = new int[indexes.size()];
+        for (int i = 0; i < indexArray.length; i++) {
+            indexArray[i] = indexes.get(i);
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Column<T>[] readerArray = readers.toArray(new Column[0]);
+        return new Plan<>(indexArray, readerArray, afterRow);
+    }
+
+    /**
+     * Reads one column into the object being mapped.
+     */
+    @FunctionalInterface
+    public interface Column<T> {
+        /**
+         * @param rs The ResultSet positioned on the current row
+         * @param index The 1-based column index
+         * @param target The object being mapped
+         * @throws SQLException If there's an error accessing the ResultSet
+         */
+        void read(ResultSet rs, int index, T target) throws SQLException;
+    }
+
+    /**
+     * A mapper bound to the column layout of one ResultSet.
+     */
+    public static final class Bound<T> {
+        private final Plan<T> plan;
+        private final Supplier<T> factory;
+
+        private Bound(Plan<T> plan, Supplier<T> factory) {
+            this.plan = plan;
+            this.factory = factory;
+        }
+
+        /**
+         * Map the current row.
+         *
+         * @param rs The ResultSet this mapper was bound to
+         * @return The mapped row
+         * @throws SQLException If there's an error accessing the ResultSet
+         */
+        public T map(ResultSet rs) throws SQLException {
+            return plan.map(rs, factory.get());
+        }
+    }
+
+    private static final class Plan<T> {
+        private final int[] indexes;
+        private final Column<T>[] readers;
+        private final Consumer<T> afterRow;
+
+        private Plan(int[] indexes, Column<T>[] readers, Consumer<T> afterRow) {
+            this.indexes = indexes;
+            this.readers = readers;
+            this.afterRow = afterRow;
+        }
+
+        private T map(ResultSet rs, T target) throws SQLException {
+            for (int i = 0; i < indexes.length; i++) {
+                readers[i].read(rs, indexes[i], target);
+            }
+            if (afterRow != null) {
+                afterRow.accept(target);
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Collects the columns a mapper reads. Column names are matched against
+     * result labels case-insensitively.
+     */
+    public static final class Builder<T> {
+        private final Supplier<T> factory;
+        private final Map<String, Column<T>> columns = new LinkedHashMap<>();
+        private Consumer<T> afterRow;
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * @param name The column label
+         * @param column Reads the column into the object
+         * @return This builder
+         */
+        public Builder<T> column(String name, Column<T> column) {
+            columns.put(name.toLowerCase(Locale.ROOT), column);
+            return this;
+        }
+
+        /**
+         * @param name The column label
+         * @param setter Receives the value, or null for SQL NULL
+         * @return This builder
+         */
+        public Builder<T> string(String name, BiConsumer<T, String> setter) {
+            return column(name, (rs, index, target) -> setter.accept(target, rs.getString(index)));
+        }
+
+        /**
+         * @param name The column label
+         * @param setter Receives the value, or 0 for SQL NULL
+         * @return This builder
+         */
+        public Builder<T> integer(String name, ObjIntConsumer<T> setter) {
+            return column(name, (rs, index, target) -> setter.accept(target, rs.getInt(index)));
+        }
+
+        /**
+         * @param name The column label
+         * @param setter Receives the value, or false for SQL NULL
+         * @return This builder
+         */
+        public Builder<T> bool(String name, BiConsumer<T, Boolean> setter) {
+            return column(name, (rs, index, target) -> setter.accept(target, rs.getBoolean(index)));
+        }
+
+        /**
+         * @param name The column label
+         * @param setter Receives the value, or null for SQL NULL
+         * @return This builder
+         */
+        public Builder<T> decimal(String name, BiConsumer<T, Double> setter) {
+            return column(name, (rs, index, target) -> {
+                double value = rs.getDouble(index);
+                setter.accept(target, rs.wasNull() ? null : value);
+            });
+        }
+
+        /**
+         * @param name The column label
+         * @param setter Receives the value; not called for SQL NULL
+         * @return This builder
+         */
+        public Builder<T> timestamp(String name, BiConsumer<T, LocalDateTime> setter) {
+            return column(name, (rs, index, target) -> {
+                Timestamp value = rs.getTimestamp(index);
+                if (value != null) {
+                    setter.accept(target, value.toLocalDateTime());
+                }
+            });
+        }
+
+        /**
+         * @param name The column label
+         * @param setter Receives the value; not called for SQL NULL
+         * @return This builder
+         */
+        public Builder<T> date(String name, BiConsumer<T, LocalDate> setter) {
+            return column(name, (rs, index, target) -> {
+                Date value = rs.getDate(index);
+                if (value != null) {
+                    setter.accept(target, value.toLocalDate());
+                }
+            });
+        }
+
+        /**
+         * @param afterRow Called with each object once all its columns are read
+         * @return This builder
+         */
+        public Builder<T> afterRow(Consumer<T> afterRow) {
+            this.afterRow = afterRow;
+            return this;
+        }
+
+        /**
+         * @return The mapper
+         */
+        public RowMapper<T> build() {
+            return new RowMapper<>(factory, new LinkedHashMap<>(columns), afterRow);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.demo.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the numbered SQL scripts under com/example/demo/database/migrations
+ * and records each one in the schema_version table with a checksum.
+ * <p>
+ * Scripts are named V&lt;version&gt;__&lt;description&gt;.sql. A script may have a
+ * dialect-specific variant (for example V3__foo.mysql.sql or V3__foo.h2.sql),
+ * which is used instead of the plain script on that database.
+ * <p>
+ * On a current database startup costs a single SELECT of the schema version.
+ * To add a migration, drop the script into the migrations folder and append it
+ * to {@link #MIGRATIONS}; never edit a script that has already been released.
+ */
+public class SchemaMigrator {
+
+    private static final String MIGRATIONS_PATH = "migrations/";
+
+    // Every migration, in the order it must be applied
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline"),
+            new Migration(2, "align_columns_with_daos"),
+            new Migration(3, "record_type_filter_indexes"),
+            new Migration(4, "fulltext_search"),
+            new Migration(5, "medical_record_stats"),
+            new Migration(6, "medical_record_version"),
+            new Migration(7, "medical_records_archive"),
+            new Migration(8, "patient_list_indexes"),
+            new Migration(9, "lab_result_values"),
+            new Migration(10, "archive_fulltext_search"),
+            new Migration(11, "reparse_decimal_comma_lab_values"));
+
+    // MySQL and H2 error codes for "table/column/index already exists"
+    private static final Set<Integer> ALREADY_EXISTS_ERRORS = Set.of(1050, 1060, 1061, 42101, 42111, 42121);
+
+    private static final String CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT PRIMARY KEY," +
+            "description VARCHAR(200) NOT NULL," +
+            "script VARCHAR(200) NOT NULL," +
+            "checksum VARCHAR(64) NOT NULL," +
+            "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+            "execution_time INT NOT NULL" +
+            ")";
+
+    private final String dialect;
+
+    /**
+     * @param dialect The database dialect, "mysql" or "h2"
+     */
+    public SchemaMigrator(String dialect) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * Get the dialect name used to pick dialect-specific scripts.
+     *
+     * @param url The JDBC URL
+     * @return "h2" for H2 URLs, "mysql" otherwise
+     */
+    public static String dialectOf(String url) {
+        return url != null && url.startsWith("jdbc:h2:") ? "h2" : "mysql";
+    }
+
+    /**
+     * Get the version the application expects the schema to be at.
+     *
+     * @return The highest known migration version
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Bring the schema up to the latest version.
+     *
+     * @param conn The connection to migrate on
+     * @return The number of migrations applied; 0 if the schema was already current
+     * @throws SQLException If a migration fails or an applied script has been modified
+     */
+    public int migrate(Connection conn) throws SQLException {
+        int current = getCurrentVersion(conn);
+        int latest = getLatestVersion();
+        if (current >= latest) {
+            if (current > latest) {
+                System.err.println("Database schema version " + current +
+                        " is newer than this application expects (" + latest + ")");
+            }
+            return 0;
+        }
+
+        // Enable H2 compatibility mode for MySQL syntax if using H2
+        if ("h2".equals(dialect)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET MODE MySQL");
+            }
+        }
+
+        if (current < 0) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_VERSION_TABLE);
+            }
+        }
+
+        Map<Integer, String> appliedChecksums = getAppliedChecksums(conn);
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            String script = resolveScript(migration);
+            String sql = readScript(script);
+            String checksum = checksum(sql);
+
+            String appliedChecksum = appliedChecksums.get(migration.version);
+            if (appliedChecksum != null) {
+                if (!appliedChecksum.equals(checksum)) {
+                    throw new SQLException("Migration " + script + " was modified after it was applied " +
+                            "(expected checksum " + appliedChecksum + ", found " + checksum + ")");
+                }
+                continue;
+            }
+
+            long start = System.currentTimeMillis();
+            for (String statement : splitStatements(sql)) {
+                execute(conn, script, statement);
+            }
+            int elapsed = (int) (System.currentTimeMillis() - start);
+            recordMigration(conn, migration, script, checksum, elapsed);
+
+            System.out.println("Applied schema migration " + script + " in " + elapsed + " ms");
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Get the highest applied version.
+     *
+     * @param conn The connection to query
+     * @return The current version, 0 if none applied, or -1 if the schema_version table does not exist
+     */
+    public int getCurrentVersion(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT MAX(version) FROM schema_version");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            // Table does not exist yet, which is expected on first run
+            return -1;
+        }
+    }
+
+    private Map<Integer, String> getAppliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> checksums = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT version, checksum FROM schema_version");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                checksums.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return checksums;
+    }
+
+    private void execute(Connection conn, String script, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            // Lets scripts run against databases that were patched by hand
+            if (ALREADY_EXISTS_ERRORS.contains(e.getErrorCode())) {
+                System.out.println("Skipping statement in " + script + ": " + e.getMessage());
+                return;
+            }
+            throw new SQLException("Migration " + script + " failed on: " + sql, e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
+    private void recordMigration(Connection conn, Migration migration, String script,
+                                 String checksum, int elapsed) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, script, checksum, execution_time) " +
+                     "VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setString(3, script);
+            stmt.setString(4, checksum);
+            stmt.setInt(5, elapsed);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Pick the dialect-specific script for a migration if there is one.
+     */
+    private String resolveScript(Migration migration) {
+        String base = "V" + migration.version + "__" + migration.description;
+        String dialectScript = base + "." + dialect + ".sql";
+        if (SchemaMigrator.class.getResource(MIGRATIONS_PATH + dialectScript) != null) {
+            return dialectScript;
+        }
+        return base + ".sql";
+    }
+
+    private String readScript(String script) throws SQLException {
+        try (InputStream input = SchemaMigrator.class.getResourceAsStream(MIGRATIONS_PATH + script)) {
+            if (input == null) {
+                throw new SQLException("Migration script not found: " + script);
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            input.transferTo(buffer);
+            // Line endings depend on how the repository was checked out; keep checksums stable
+            return buffer.toString(StandardCharsets.UTF_8).replace("\r\n", "\n");
+        } catch (IOException e) {
+            throw new SQLException("Error reading migration script " + script, e);
+        }
+    }
+
+    private static String checksum(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Split a script into statements on semicolons, ignoring semicolons
+     * inside quotes and dropping -- comments.
+     */
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                current.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                current.append(c);
+            } else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+                while (i < sql.length() && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                current.append('\n');
+            } else if (c == ';') {
+                addStatement(statements, current);
+            } else {
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+
+    /**
+     * One entry in the migration list.
+     */
+    private static final class Migration {
+        private final int version;
+        private final String description;
+
+        private Migration(int version, String description) {
+            this.version = version;
+            this.description = description;
+        }
+    }
+}
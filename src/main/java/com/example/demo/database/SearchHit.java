@@ -0,0 +1,85 @@
+package com.example.demo.database;
+
+import java.time.LocalDateTime;
+
+/**
+ * One ranked result of a full-text search: a medical record or a note that
+ * matched the query, with enough detail to list it and open it by ID.
+ */
+public class SearchHit {
+
+    /**
+     * The table a hit came from.
+     */
+    public enum Source {
+        MEDICAL_RECORD,
+        NOTE
+    }
+
+    private final Source source;
+    private final int id;
+    private final int patientId;
+    private final String patientName;
+    private final String title;
+    private final LocalDateTime date;
+    private final double score;
+
+    /**
+     * @param source The table the hit came from
+     * @param id The record ID or note ID
+     * @param patientId The patient the record or note belongs to
+     * @param patientName The patient's name, or null if not stored with the row
+     * @param title The diagnosis or visit type of a record, or the title of a note
+     * @param date The visit date of a record or the creation date of a note
+     * @param score The relevance score; higher is more relevant
+     */
+    public SearchHit(Source source, int id, int patientId, String patientName, String title,
+                     LocalDateTime date, double score) {
+        this.source = source;
+        this.id = id;
+        this.patientId = patientId;
+        this.patientName = patientName;
+        this.title = title;
+        this.date = date;
+        this.score = score;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Get the relevance score. Scores are only comparable between hits of the
+     * same search.
+     *
+     * @return The score; higher is more relevant
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %d (%.3f): %s", source, id, score, title);
+    }
+}
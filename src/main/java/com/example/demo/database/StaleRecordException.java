@@ -0,0 +1,36 @@
+package com.example.demo.database;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when an update is made from a copy of a row that someone else has
+ * changed since it was loaded, so applying it would overwrite their edit.
+ */
+public class StaleRecordException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    // SQLState for a serialization failure; the work can be retried on fresh data
+    private static final String SQL_STATE = "40001";
+
+    private final int recordId;
+    private final int expectedVersion;
+
+    /**
+     * @param recordId The ID of the row
+     * @param expectedVersion The version the update was made from
+     */
+    public StaleRecordException(int recordId, int expectedVersion) {
+        super("Record " + recordId + " has changed since version " + expectedVersion, SQL_STATE);
+        this.recordId = recordId;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public int getRecordId() {
+        return recordId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.demo.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of prepared statements belonging to one pooled physical connection.
+ * Statements are keyed by their SQL text (and whether generated keys were
+ * requested). Closing a statement handed out by the cache returns it to the
+ * cache instead of closing it, so DAOs that prepare the same SQL on every
+ * call only parse it once per connection.
+ * <p>
+ * Instances are confined to the thread currently holding the connection,
+ * except for the shared hit/miss counters.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int maxSize;
+    private final AtomicLong sharedHits;
+    private final AtomicLong sharedMisses;
+    private long hits;
+    private long misses;
+
+    // Idle statements in least-recently-used order
+    private final LinkedHashMap<String, PreparedStatement> idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+    // Statements currently handed out to the borrower of the connection
+    private final List<CachedStatement> checkedOut = new ArrayList<>();
+
+    /**
+     * @param physical The physical connection the statements belong to
+     * @param maxSize The maximum number of idle statements to keep
+     * @param sharedHits Pool-wide hit counter
+     * @param sharedMisses Pool-wide miss counter
+     */
+    StatementCache(Connection physical, int maxSize, AtomicLong sharedHits, AtomicLong sharedMisses) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.sharedHits = sharedHits;
+        this.sharedMisses = sharedMisses;
+    }
+
+    /**
+     * Get a prepared statement for the SQL, reusing a cached one if possible.
+     *
+     * @param owner The connection proxy the statement is handed out through
+     * @param sql The SQL text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @return A statement proxy whose close() returns it to the cache
+     * @throws SQLException If the statement could not be prepared
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? sql + "\u0000keys" : sql;
+
+        PreparedStatement statement = idleStatements.remove(key);
+        if (statement != null && !statement.isClosed()) {
+            hits++;
+            sharedHits.incrementAndGet();
+        } else {
+            misses++;
+            sharedMisses.incrementAndGet();
+            statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        CachedStatement cached = new CachedStatement(key, statement, owner);
+        checkedOut.add(cached);
+        return cached.proxy;
+    }
+
+    /**
+     * Return every statement the borrower forgot to close to the cache.
+     * Called when the connection goes back to the pool.
+     */
+    void reclaimCheckedOut() {
+        for (CachedStatement cached : new ArrayList<>(checkedOut)) {
+            cached.release();
+        }
+        checkedOut.clear();
+    }
+
+    /**
+     * Close all cached statements. Called when the physical connection is closed.
+     */
+    void closeAll() {
+        reclaimCheckedOut();
+        for (PreparedStatement statement : idleStatements.values()) {
+            closeQuietly(statement);
+        }
+        idleStatements.clear();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    int size() {
+        return idleStatements.size();
+    }
+
+    private void returnToCache(CachedStatement cached) {
+        checkedOut.remove(cached);
+        PreparedStatement statement = cached.physicalStatement;
+        try {
+            if (statement.isClosed()) {
+                return;
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+
+        // Two borrowers of the same SQL on one connection: keep only one copy
+        PreparedStatement previous = idleStatements.put(cached.key, statement);
+        if (previous != null && previous != statement) {
+            closeQuietly(previous);
+        }
+
+        if (idleStatements.size() > maxSize) {
+            Iterator<Map.Entry<String, PreparedStatement>> eldest = idleStatements.entrySet().iterator();
+            closeQuietly(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One checkout of a cached statement.
+     */
+    private final class CachedStatement implements InvocationHandler {
+        private final String key;
+        private final PreparedStatement physicalStatement;
+        private final Connection owner;
+        private final PreparedStatement proxy;
+        private final List<ResultSet> openResults = new ArrayList<>();
+        private boolean logicallyClosed;
+
+        private CachedStatement(String key, PreparedStatement physicalStatement, Connection owner) {
+            this.key = key;
+            this.physicalStatement = physicalStatement;
+            this.owner = owner;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    this);
+        }
+
+        /**
+         * Close result sets left open by the borrower and put the statement back.
+         */
+        private void release() {
+            if (logicallyClosed) {
+                return;
+            }
+            logicallyClosed = true;
+            for (ResultSet rs : openResults) {
+                closeQuietly(rs);
+            }
+            openResults.clear();
+            returnToCache(this);
+        }
+
+        @Override
+        public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || physicalStatement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxyInstance == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxyInstance);
+                case "toString":
+                    return "CachedStatement[" + key + "]";
+                default:
+                    break;
+            }
+
+            if (logicallyClosed) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            Object result;
+            try {
+                result = method.invoke(physicalStatement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof ResultSet) {
+                openResults.add((ResultSet) result);
+            }
+            return result;
+        }
+    }
+}
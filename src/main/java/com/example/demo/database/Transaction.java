@@ -0,0 +1,164 @@
+package com.example.demo.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A unit of work on a single primary database connection.
+ * DAO methods that accept a Transaction run their statements on its connection,
+ * so several operations (even across DAOs) commit or roll back together.
+ * <p>
+ * Typical use:
+ * <pre>
+ * boolean saved = Transaction.execute(tx -&gt; {
+ *     medicalRecordDAO.createMedicalRecord(tx, record);
+ *     return labResultDAO.createLabResult(tx, labResult);
+ * });
+ * </pre>
+ */
+public class Transaction implements AutoCloseable {
+
+    private final Connection connection;
+    private boolean completed;
+    private boolean rollbackOnly;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+
+    private Transaction(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Start a new transaction on a connection borrowed from the primary pool.
+     *
+     * @return The new transaction; close it to release the connection
+     * @throws SQLException If a connection could not be obtained
+     */
+    public static Transaction begin() throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return new Transaction(conn);
+    }
+
+    /**
+     * Run work in a transaction. The transaction commits if the work returns
+     * normally and has not been marked rollback-only, and rolls back otherwise.
+     *
+     * @param work The work to run
+     * @return The value returned by the work
+     * @throws SQLException If the work or the commit fails; the transaction is rolled back
+     */
+    public static <T> T execute(TransactionCallback<T> work) throws SQLException {
+        try (Transaction tx = begin()) {
+            T result = work.doInTransaction(tx);
+            if (tx.isRollbackOnly()) {
+                tx.rollback();
+            } else {
+                tx.commit();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Get the connection this transaction runs on.
+     * Callers must not close it or change its auto-commit mode.
+     *
+     * @return The transaction's connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Commit all work done in this transaction.
+     *
+     * @throws SQLException If the commit fails
+     */
+    public void commit() throws SQLException {
+        if (completed) {
+            throw new SQLException("Transaction has already been completed");
+        }
+        connection.commit();
+        completed = true;
+
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error in after-commit action: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        afterCommit.clear();
+    }
+
+    /**
+     * Roll back all work done in this transaction.
+     */
+    public void rollback() {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        afterCommit.clear();
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error rolling back transaction: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run an action once this transaction commits, for work such as cache
+     * updates that must not see changes that are later rolled back. The action
+     * is dropped if the transaction rolls back.
+     *
+     * @param action The action to run after the commit
+     */
+    public void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    /**
+     * Mark the transaction so that {@link #execute} rolls it back instead of committing.
+     */
+    public void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+
+    /**
+     * @return true if the transaction has been marked rollback-only
+     */
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    /**
+     * Roll back if the transaction was not committed and return the connection to the pool.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            rollback();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Work to run inside a transaction.
+     *
+     * @param <T> The type of value the work returns
+     */
+    @FunctionalInterface
+    public interface TransactionCallback<T> {
+        T doInTransaction(Transaction tx) throws SQLException;
+    }
+}
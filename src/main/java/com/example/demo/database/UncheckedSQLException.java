@@ -0,0 +1,32 @@
+package com.example.demo.database;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a SQLException where a checked exception cannot be thrown, such as
+ * while a stream of query results is being consumed.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message The detail message
+     * @param cause The SQL error
+     */
+    public UncheckedSQLException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    /**
+     * @param cause The SQL error
+     */
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
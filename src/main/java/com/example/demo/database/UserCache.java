@@ -0,0 +1,227 @@
+package com.example.demo.database;
+
+import com.example.demo.model.User;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for {@link UserDAO} lookups, shared by every DAO
+ * instance. User rows change rarely, while logins and the doctor pickers read
+ * them over and over.
+ * <p>
+ * Lookups are keyed by what was asked for, e.g. "username:alice" or
+ * "role:DOCTOR", and remember the users found, including finding none. The
+ * cache holds at most {@code db.userCache.maxEntries} lookups, dropping the
+ * least recently used, and forgets each after {@code db.userCache.ttlSeconds}
+ * (0 turns the cache off). Every committed USER change drops the lookups that
+ * returned that user, along with lookups that found nobody and role lists,
+ * which a new or changed user may now belong to. A login only stamps
+ * last_login and publishes no change, so a cached user's last login can be up
+ * to the TTL old.
+ * <p>
+ * Callers get copies, so changing a returned user never changes the cache.
+ */
+final class UserCache {
+
+    private static UserCache instance;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Lookups in least-recently-used order; guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Incremented on every invalidation, so loads that raced with one are not cached
+    private long generation;
+
+    UserCache(int maxEntries, long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * @return The cache, configured from database.properties and listening
+     *         for USER changes
+     */
+    static synchronized UserCache getInstance() {
+        if (instance == null) {
+            DatabaseConnection db = DatabaseConnection.getInstance();
+            instance = new UserCache(db.getIntProperty("db.userCache.maxEntries", 256),
+                    db.getIntProperty("db.userCache.ttlSeconds", 300));
+            DataChangeEvents.addListener(instance::dataChanged);
+        }
+        return instance;
+    }
+
+    /**
+     * @param key The lookup, e.g. "id:7"
+     * @return Copies of the users the lookup found, or null if it is not cached
+     */
+    List<User> get(String key) {
+        if (ttlNanos <= 0) {
+            misses.incrementAndGet();
+            return null;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.loadedAt > ttlNanos) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        List<User> users = new ArrayList<>(entry.users.size());
+        for (User user : entry.users) {
+            users.add(copy(user));
+        }
+        return users;
+    }
+
+    /**
+     * @return A token to pass to {@link #put} once the lookup has been loaded
+     */
+    synchronized long startLoad() {
+        return generation;
+    }
+
+    /**
+     * Remember what a lookup found, unless users changed while it was loading.
+     *
+     * @param key The lookup
+     * @param users The users found; copied
+     * @param loadToken The token from {@link #startLoad} taken before loading
+     */
+    void put(String key, List<User> users, long loadToken) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        List<User> copies = new ArrayList<>(users.size());
+        for (User user : users) {
+            copies.add(copy(user));
+        }
+        synchronized (this) {
+            if (loadToken != generation) {
+                return;
+            }
+            entries.put(key, new Entry(copies, key.startsWith("role:"), System.nanoTime()));
+            if (entries.size() > maxEntries) {
+                Iterator<String> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop every lookup that may no longer be right after a user changed.
+     *
+     * @param userId The ID of the user that was created, updated or deleted
+     */
+    synchronized void invalidate(int userId) {
+        generation++;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.list || entry.users.isEmpty() || entry.contains(userId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop every lookup, e.g. after users were changed outside the DAO.
+     */
+    synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return A one-line summary of how well the cache worked, or null if
+     *         no user was looked up
+     */
+    static synchronized String report() {
+        if (instance == null) {
+            return null;
+        }
+        long hits = instance.getHits();
+        long lookups = hits + instance.getMisses();
+        return String.format("User cache: %d lookups, %.1f%% hits, %d cached", lookups,
+                lookups > 0 ? 100.0 * hits / lookups : 0.0, instance.size());
+    }
+
+    private void dataChanged(DataChangeEvents.Entity entity, int id) {
+        if (entity == DataChangeEvents.Entity.USER) {
+            invalidate(id);
+        }
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setUserId(user.getUserId());
+        copy.setUsername(user.getUsername());
+        copy.setEmail(user.getEmail());
+        copy.setPassword(user.getPassword());
+        copy.setSalt(user.getSalt());
+        copy.setRole(user.getRole());
+        copy.setFullName(user.getFullName());
+        copy.setPhone(user.getPhone());
+        copy.setAddress(user.getAddress());
+        copy.setCity(user.getCity());
+        copy.setRegistrationDate(copy(user.getRegistrationDate()));
+        copy.setLastLogin(copy(user.getLastLogin()));
+        copy.setActive(user.isActive());
+        return copy;
+    }
+
+    private static Timestamp copy(Timestamp timestamp) {
+        return timestamp != null ? (Timestamp) timestamp.clone() : null;
+    }
+
+    /**
+     * The users one lookup found.
+     */
+    private static final class Entry {
+        private final List<User> users;
+        private final boolean list;
+        private final long loadedAt;
+
+        private Entry(List<User> users, boolean list, long loadedAt) {
+            this.users = users;
+            this.list = list;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean contains(int userId) {
+            for (User user : users) {
+                if (user.getUserId() == userId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
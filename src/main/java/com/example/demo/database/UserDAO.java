@@ -14,6 +14,22 @@ import java.util.Optional;
  */
 public class UserDAO {
     
+    private static final RowMapper<User> USER_MAPPER = RowMapper.builder(User::new)
+            .integer("user_id", User::setUserId)
+            .string("username", User::setUsername)
+            .string("email", User::setEmail)
+            .string("password", User::setPassword)
+            .string("salt", User::setSalt)
+            .string("role", (user, role) -> user.setRole(UserRole.fromString(role)))
+            .string("full_name", User::setFullName)
+            .string("phone", User::setPhone)
+            .string("address", User::setAddress)
+            .string("city", User::setCity)
+            .column("created_at", (rs, index, user) -> user.setRegistrationDate(rs.getTimestamp(index)))
+            .column("last_login", (rs, index, user) -> user.setLastLogin(rs.getTimestamp(index)))
+            .bool("active", User::setActive)
+            .build();
+    
     /**
      * Retrieve a user by ID
      * 
@@ -21,24 +37,7 @@ public class UserDAO {
      * @return An Optional containing the user if found, or empty if not found
      */
     public Optional<User> getUserById(int userId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM users WHERE user_id = ?";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, userId);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return Optional.of(mapResultSetToUser(rs));
-            }
-            
-            return Optional.empty();
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return Optional.empty();
-        }
+        return first(findUsers("id:" + userId, "user_id", userId));
     }
     
     /**
@@ -48,24 +47,7 @@ public class UserDAO {
      * @return An Optional containing the user if found, or empty if not found
      */
     public Optional<User> getUserByUsername(String username) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM users WHERE username = ?";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, username);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return Optional.of(mapResultSetToUser(rs));
-            }
-            
-            return Optional.empty();
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return Optional.empty();
-        }
+        return first(findUsers("username:" + username, "username", username));
     }
     
     /**
@@ -75,24 +57,7 @@ public class UserDAO {
      * @return An Optional containing the user if found, or empty if not found
      */
     public Optional<User> getUserByEmail(String email) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM users WHERE email = ?";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, email);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return Optional.of(mapResultSetToUser(rs));
-            }
-            
-            return Optional.empty();
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return Optional.empty();
-        }
+        return first(findUsers("email:" + email, "email", email));
     }
     
     /**
@@ -102,25 +67,84 @@ public class UserDAO {
      * @return A list of users with the specified role
      */
     public List<User> getUsersByRole(UserRole role) {
-        List<User> users = new ArrayList<>();
+        List<User> users = findUsers("role:" + role, "role", role.toString());
+        return users != null ? users : new ArrayList<>();
+    }
+    
+    /**
+     * Get the number of user lookups answered from the cache.
+     * 
+     * @return The cache hit count since startup
+     */
+    public static long getCacheHits() {
+        return UserCache.getInstance().getHits();
+    }
+    
+    /**
+     * Get the number of user lookups that had to query the database.
+     * 
+     * @return The cache miss count since startup
+     */
+    public static long getCacheMisses() {
+        return UserCache.getInstance().getMisses();
+    }
+    
+    /**
+     * Get the share of user lookups answered from the cache.
+     * 
+     * @return The hit rate from 0 to 1, or 0 before the first lookup
+     */
+    public static double getCacheHitRate() {
+        long hits = getCacheHits();
+        long lookups = hits + getCacheMisses();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+    
+    /**
+     * Forget every cached user lookup, e.g. after users were changed by SQL
+     * that does not go through this DAO.
+     */
+    public static void invalidateCache() {
+        UserCache.getInstance().invalidateAll();
+    }
+    
+    /**
+     * Find users by one column, answering from the cache when possible.
+     * Writes publish USER changes, which drop the affected lookups.
+     * 
+     * @param key The cache key of the lookup
+     * @param column The column to match
+     * @param value The value to match
+     * @return The users found, or null if the query failed
+     */
+    private List<User> findUsers(String key, String column, Object value) {
+        UserCache cache = UserCache.getInstance();
+        List<User> cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT * FROM users WHERE role = ?";
+        long loadToken = cache.startLoad();
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            String sql = "SELECT * FROM users WHERE " + column + " = ?";
             
             PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, role.toString());
+            stmt.setObject(1, value);
             
             ResultSet rs = stmt.executeQuery();
             
-            while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
-            }
+            List<User> users = USER_MAPPER.mapAll(rs);
+            cache.put(key, users, loadToken);
+            return users;
             
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        
-        return users;
+    }
+    
+    private static Optional<User> first(List<User> users) {
+        return users != null && !users.isEmpty() ? Optional.of(users.get(0)) : Optional.empty();
     }
     
     /**
@@ -155,6 +179,7 @@ public class UserDAO {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     user.setUserId(generatedKeys.getInt(1));
+                    DataChangeEvents.publish(DataChangeEvents.Entity.USER, user.getUserId());
                     return Optional.of(user);
                 } else {
                     return Optional.empty();
@@ -193,6 +218,9 @@ public class UserDAO {
             stmt.setInt(11, user.getUserId());
             
             int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.USER, user.getUserId());
+            }
             return affectedRows > 0;
             
         } catch (SQLException e) {
@@ -215,6 +243,9 @@ public class UserDAO {
             stmt.setInt(1, userId);
             
             int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                DataChangeEvents.publish(DataChangeEvents.Entity.USER, userId);
+            }
             
             return affectedRows > 0;
             
@@ -231,7 +262,7 @@ public class UserDAO {
      * @return An Optional containing the user profile if found, or empty if not found
      */
     public Optional<UserProfile> getUserProfile(int userId) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT * FROM user_profiles WHERE user_id = ?";
             
             PreparedStatement stmt = conn.prepareStatement(sql);
@@ -267,38 +298,13 @@ public class UserDAO {
         }
     }
     
-    /**
-     * Map a database result set to a User object
-     * 
-     * @param rs The result set containing user data
-     * @return A User object populated with data from the result set
-     * @throws SQLException If there is an error accessing the result set
-     */
-    private User mapResultSetToUser(ResultSet rs) throws SQLException {
-        return new User(
-            rs.getInt("user_id"),
-            rs.getString("username"),
-            rs.getString("email"),
-            rs.getString("password"),
-            rs.getString("salt"),
-            UserRole.fromString(rs.getString("role")),
-            rs.getString("full_name"),
-            rs.getString("phone"),
-            rs.getString("address"),
-            rs.getString("city"),
-            rs.getTimestamp("created_at"),
-            rs.getTimestamp("last_login"),
-            rs.getBoolean("active")
-        );
-    }
-    
     /**
      * Count the total number of users in the system
      * 
      * @return The total number of users
      */
     public int countTotalUsers() {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT COUNT(*) FROM users";
             
             PreparedStatement stmt = conn.prepareStatement(sql);
@@ -323,7 +329,7 @@ public class UserDAO {
      * @return The number of users with the specified role
      */
     public int countUsersByRole(UserRole role) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             String sql = "SELECT COUNT(*) FROM users WHERE role = ?";
             
             PreparedStatement stmt = conn.prepareStatement(sql);
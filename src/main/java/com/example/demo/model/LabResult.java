@@ -21,6 +21,13 @@ public class LabResult {
     private String notes;
     private String status;
     private boolean isUrgent;
+    // Numbers parsed from result and normalRange when the result is saved; null where not numeric
+    private Double resultValue;
+    private Double resultValue2;
+    private Double rangeLow;
+    private Double rangeHigh;
+    private Double rangeLow2;
+    private Double rangeHigh2;
 
     /**
      * Default constructor
@@ -209,6 +216,60 @@ public class LabResult {
         this.isUrgent = urgent;
     }
 
+    /**
+     * @return The numeric result, or the first component of a blood pressure; null if not numeric
+     */
+    public Double getResultValue() {
+        return resultValue;
+    }
+
+    public void setResultValue(Double resultValue) {
+        this.resultValue = resultValue;
+    }
+
+    /**
+     * @return The second component of a two-part result such as a blood pressure, or null
+     */
+    public Double getResultValue2() {
+        return resultValue2;
+    }
+
+    public void setResultValue2(Double resultValue2) {
+        this.resultValue2 = resultValue2;
+    }
+
+    public Double getRangeLow() {
+        return rangeLow;
+    }
+
+    public void setRangeLow(Double rangeLow) {
+        this.rangeLow = rangeLow;
+    }
+
+    public Double getRangeHigh() {
+        return rangeHigh;
+    }
+
+    public void setRangeHigh(Double rangeHigh) {
+        this.rangeHigh = rangeHigh;
+    }
+
+    public Double getRangeLow2() {
+        return rangeLow2;
+    }
+
+    public void setRangeLow2(Double rangeLow2) {
+        this.rangeLow2 = rangeLow2;
+    }
+
+    public Double getRangeHigh2() {
+        return rangeHigh2;
+    }
+
+    public void setRangeHigh2(Double rangeHigh2) {
+        this.rangeHigh2 = rangeHigh2;
+    }
+
     @Override
     public String toString() {
         return "LabResult{" +
@@ -1,11 +1,42 @@
 package com.example.demo.model;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Model class representing a medical record for a patient
+ * <p>
+ * Records loaded from the database track which fields have been set since, so
+ * an update writes only the changed columns. A record built in code tracks
+ * nothing and is written in full.
  */
 public class MedicalRecord {
+
+    /**
+     * The fields an update can write. The record type mirrors the visit type
+     * and changes whenever it does.
+     */
+    public enum Field {
+        PATIENT_ID,
+        PATIENT_NAME,
+        DOCTOR_ID,
+        DOCTOR_NAME,
+        VISIT_TYPE,
+        VISIT_DATE,
+        SYMPTOMS,
+        DIAGNOSIS,
+        TREATMENT,
+        NOTES,
+        STATUS,
+        DIAGNOSIS_CODES,
+        ATTACHMENTS,
+        FOLLOW_UP_DATE,
+        RECORD_TYPE
+    }
+
     private int recordId;
     private int patientId;
     private String patientName;
@@ -22,6 +53,10 @@ public class MedicalRecord {
     private String attachments;
     private LocalDateTime followUpDate;
     private String recordType;
+    private int version;
+
+    private final Set<Field> changedFields = EnumSet.noneOf(Field.class);
+    private boolean tracking;
 
     /**
      * Default constructor
@@ -125,6 +160,7 @@ public class MedicalRecord {
     }
 
     public void setPatientId(int patientId) {
+        changed(Field.PATIENT_ID, this.patientId, patientId);
         this.patientId = patientId;
     }
 
@@ -133,6 +169,7 @@ public class MedicalRecord {
     }
 
     public void setPatientName(String patientName) {
+        changed(Field.PATIENT_NAME, this.patientName, patientName);
         this.patientName = patientName;
     }
 
@@ -141,6 +178,7 @@ public class MedicalRecord {
     }
 
     public void setDoctorId(int doctorId) {
+        changed(Field.DOCTOR_ID, this.doctorId, doctorId);
         this.doctorId = doctorId;
     }
 
@@ -149,6 +187,7 @@ public class MedicalRecord {
     }
 
     public void setDoctorName(String doctorName) {
+        changed(Field.DOCTOR_NAME, this.doctorName, doctorName);
         this.doctorName = doctorName;
     }
 
@@ -157,6 +196,8 @@ public class MedicalRecord {
     }
 
     public void setVisitType(String visitType) {
+        changed(Field.VISIT_TYPE, this.visitType, visitType);
+        changed(Field.RECORD_TYPE, this.visitType, visitType);
         this.visitType = visitType;
     }
 
@@ -165,6 +206,7 @@ public class MedicalRecord {
     }
 
     public void setVisitDate(LocalDateTime visitDate) {
+        changed(Field.VISIT_DATE, this.visitDate, visitDate);
         this.visitDate = visitDate;
     }
 
@@ -173,6 +215,7 @@ public class MedicalRecord {
     }
 
     public void setSymptoms(String symptoms) {
+        changed(Field.SYMPTOMS, this.symptoms, symptoms);
         this.symptoms = symptoms;
     }
 
@@ -181,6 +224,7 @@ public class MedicalRecord {
     }
 
     public void setDiagnosis(String diagnosis) {
+        changed(Field.DIAGNOSIS, this.diagnosis, diagnosis);
         this.diagnosis = diagnosis;
     }
 
@@ -189,6 +233,7 @@ public class MedicalRecord {
     }
 
     public void setTreatment(String treatment) {
+        changed(Field.TREATMENT, this.treatment, treatment);
         this.treatment = treatment;
     }
 
@@ -197,6 +242,7 @@ public class MedicalRecord {
     }
 
     public void setNotes(String notes) {
+        changed(Field.NOTES, this.notes, notes);
         this.notes = notes;
     }
 
@@ -205,6 +251,7 @@ public class MedicalRecord {
     }
 
     public void setStatus(String status) {
+        changed(Field.STATUS, this.status, status);
         this.status = status;
     }
 
@@ -213,6 +260,7 @@ public class MedicalRecord {
     }
 
     public void setDiagnosisCodes(String diagnosisCodes) {
+        changed(Field.DIAGNOSIS_CODES, this.diagnosisCodes, diagnosisCodes);
         this.diagnosisCodes = diagnosisCodes;
     }
 
@@ -221,6 +269,7 @@ public class MedicalRecord {
     }
 
     public void setAttachments(String attachments) {
+        changed(Field.ATTACHMENTS, this.attachments, attachments);
         this.attachments = attachments;
     }
 
@@ -229,6 +278,7 @@ public class MedicalRecord {
     }
 
     public void setFollowUpDate(LocalDateTime followUpDate) {
+        changed(Field.FOLLOW_UP_DATE, this.followUpDate, followUpDate);
         this.followUpDate = followUpDate;
     }
 
@@ -240,6 +290,64 @@ public class MedicalRecord {
         this.recordType = recordType;
     }
 
+    /**
+     * @return The version the record was loaded at, or 0 if unknown
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Mark the record as matching the database: forget earlier changes and
+     * track changes from here on.
+     */
+    public void markClean() {
+        changedFields.clear();
+        tracking = true;
+    }
+
+    /**
+     * @return Whether changes are tracked; false for records built in code
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * @return The fields set to a new value since {@link #markClean()}
+     */
+    public Set<Field> getChangedFields() {
+        return Collections.unmodifiableSet(changedFields);
+    }
+
+    /**
+     * @param field A field
+     * @return Whether the field must be written: always for an untracked
+     *         record, otherwise only if it changed
+     */
+    public boolean isChanged(Field field) {
+        return !tracking || changedFields.contains(field);
+    }
+
+    /**
+     * Write a field on the next update even if its value has not changed.
+     *
+     * @param field The field to write
+     */
+    public void markChanged(Field field) {
+        changedFields.add(field);
+    }
+
+    private void changed(Field field, Object oldValue, Object newValue) {
+        if (tracking && !Objects.equals(oldValue, newValue)) {
+            changedFields.add(field);
+        }
+    }
+
     // For compatibility with the controller
     public String getId() {
         return "MR-" + recordId;
@@ -285,6 +393,7 @@ public class MedicalRecord {
                 ", doctorId=" + doctorId +
                 ", visitType='" + visitType + '\'' +
                 ", visitDate=" + visitDate +
+                ", version=" + version +
                 ", diagnosis='" + diagnosis + '\'' +
                 ", treatment='" + treatment + '\'' +
                 '}';
@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import com.example.demo.database.DatabaseConnection;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs database work off the JavaFX Application Thread.
+ * Each task gets its own virtual thread, and a fair semaphore sized to the
+ * connection pool's maxActive limits how many run at once. Extra tasks queue
+ * here instead of timing out in the pool while they wait for a connection.
+ * <p>
+ * Results are delivered on the virtual thread; use
+ * {@code future.thenAcceptAsync(result -> ..., Platform::runLater)} to update the UI.
+ */
+public final class DatabaseExecutor {
+    private static DatabaseExecutor instance;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    private DatabaseExecutor(int maxConcurrency) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("db-task-", 0).factory());
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * Get the singleton instance, sized to the primary pool.
+     * @return The shared executor.
+     */
+    public static synchronized DatabaseExecutor getInstance() {
+        if (instance == null) {
+            int maxActive = DatabaseConnection.getInstance().getDataSource().getMaxActive();
+            instance = new DatabaseExecutor(Math.max(1, maxActive));
+        }
+        return instance;
+    }
+
+    /**
+     * Run database work asynchronously.
+     * @param work The work to run; it may borrow one connection at a time.
+     * @return A future completed with the work's result, or exceptionally if it throws.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return work.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Get the number of tasks that could start right now.
+     * @return The number of free permits.
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Stop accepting work. Tasks already submitted are allowed to finish.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.executor.shutdown();
+            instance = null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import com.example.demo.database.LabResultDAO;
+import com.example.demo.model.LabResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade over {@link LabResultDAO} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database. Transaction-scoped overloads are not
+ * exposed; run those inside {@code DatabaseExecutor.getInstance().submit(...)}.
+ */
+public class LabResultService {
+    private final LabResultDAO dao;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by a new DAO.
+     */
+    public LabResultService() {
+        this(new LabResultDAO());
+    }
+
+    /**
+     * Create a service backed by an existing DAO.
+     *
+     * @param dao The DAO to delegate to
+     */
+    public LabResultService(LabResultDAO dao) {
+        this.dao = dao;
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Get all lab results for a patient
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with the list of lab results for the patient
+     */
+    public CompletableFuture<List<LabResult>> getLabResultsByPatientId(int patientId) {
+        return executor.submit(() -> dao.getLabResultsByPatientId(patientId));
+    }
+
+    /**
+     * Get a specific lab result by ID
+     *
+     * @param resultId The ID of the lab result
+     * @return A future completed with an Optional containing the lab result if found
+     */
+    public CompletableFuture<Optional<LabResult>> getLabResultById(int resultId) {
+        return executor.submit(() -> dao.getLabResultById(resultId));
+    }
+
+    /**
+     * Create a new lab result
+     *
+     * @param labResult The lab result to create
+     * @return A future completed with true if creation was successful
+     */
+    public CompletableFuture<Boolean> createLabResult(LabResult labResult) {
+        return executor.submit(() -> dao.createLabResult(labResult));
+    }
+
+    /**
+     * Update an existing lab result
+     *
+     * @param labResult The lab result to update
+     * @return A future completed with true if update was successful
+     */
+    public CompletableFuture<Boolean> updateLabResult(LabResult labResult) {
+        return executor.submit(() -> dao.updateLabResult(labResult));
+    }
+
+    /**
+     * Delete a lab result
+     *
+     * @param resultId The ID of the lab result to delete
+     * @return A future completed with true if deletion was successful
+     */
+    public CompletableFuture<Boolean> deleteLabResult(int resultId) {
+        return executor.submit(() -> dao.deleteLabResult(resultId));
+    }
+
+    /**
+     * Get all pending lab results for a patient
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with the list of pending lab results for the patient
+     */
+    public CompletableFuture<List<LabResult>> getPendingLabResults(int patientId) {
+        return executor.submit(() -> dao.getPendingLabResults(patientId));
+    }
+
+    /**
+     * Find results of one test by their numeric value
+     *
+     * @param testName The test name, as stored
+     * @param above Only values greater than this; null for no lower limit
+     * @param below Only values less than this; null for no upper limit
+     * @param abnormalOnly True to keep only results outside their normal range or flagged abnormal
+     * @param from The earliest test date, inclusive; null for no limit
+     * @param to The latest test date, exclusive; null for no limit
+     * @return A future completed with the matching lab results, latest test first
+     */
+    public CompletableFuture<List<LabResult>> getLabResultsByValue(String testName, Double above, Double below,
+                                                                   boolean abnormalOnly, LocalDateTime from,
+                                                                   LocalDateTime to) {
+        return executor.submit(() -> dao.getLabResultsByValue(testName, above, below, abnormalOnly, from, to));
+    }
+}
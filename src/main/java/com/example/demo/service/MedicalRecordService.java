@@ -0,0 +1,263 @@
+package com.example.demo.service;
+
+import com.example.demo.database.BulkInsertResult;
+import com.example.demo.database.MedicalRecordDAO;
+import com.example.demo.database.Page;
+import com.example.demo.database.RecordStats;
+import com.example.demo.model.MedicalRecord;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous facade over {@link MedicalRecordDAO} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database. Transaction-scoped overloads are not
+ * exposed; run those inside {@code DatabaseExecutor.getInstance().submit(...)}.
+ */
+public class MedicalRecordService {
+    private final MedicalRecordDAO dao;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by a new DAO.
+     */
+    public MedicalRecordService() {
+        this(new MedicalRecordDAO());
+    }
+
+    /**
+     * Create a service backed by an existing DAO.
+     *
+     * @param dao The DAO to delegate to
+     */
+    public MedicalRecordService(MedicalRecordDAO dao) {
+        this.dao = dao;
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Get all medical records for a patient
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with the list of medical records for the patient
+     */
+    public CompletableFuture<List<MedicalRecord>> getMedicalRecordsByPatientId(int patientId) {
+        return executor.submit(() -> dao.getMedicalRecordsByPatientId(patientId));
+    }
+
+    /**
+     * Get a specific medical record by ID
+     *
+     * @param recordId The ID of the medical record
+     * @return A future completed with an Optional containing the medical record if found
+     */
+    public CompletableFuture<Optional<MedicalRecord>> getMedicalRecordById(int recordId) {
+        return executor.submit(() -> dao.getMedicalRecordById(recordId));
+    }
+
+    /**
+     * Create a new medical record in the database
+     *
+     * @param medicalRecord The medical record to create
+     * @return A future completed with true if successful, false otherwise
+     */
+    public CompletableFuture<Boolean> createMedicalRecord(MedicalRecord medicalRecord) {
+        return executor.submit(() -> dao.createMedicalRecord(medicalRecord));
+    }
+
+    /**
+     * Insert many medical records with JDBC batching
+     *
+     * @param records The records to insert, consumed once
+     * @param batchSize The number of rows sent and committed together
+     * @return A future completed with the number of rows inserted and the throughput
+     * @see MedicalRecordDAO#bulkInsertMedicalRecords(Iterator, int)
+     */
+    public CompletableFuture<BulkInsertResult> bulkInsertMedicalRecords(Iterator<MedicalRecord> records, int batchSize) {
+        return executor.submit(() -> dao.bulkInsertMedicalRecords(records, batchSize));
+    }
+
+    /**
+     * Update an existing medical record in the database
+     *
+     * @param medicalRecord The medical record to update
+     * @return A future completed with true if successful, false otherwise
+     */
+    public CompletableFuture<Boolean> updateMedicalRecord(MedicalRecord medicalRecord) {
+        return executor.submit(() -> dao.updateMedicalRecord(medicalRecord));
+    }
+
+    /**
+     * Change only the status of a medical record
+     *
+     * @param recordId The ID of the medical record
+     * @param version The version the record was displayed at
+     * @param status The new status
+     * @return A future completed with true if successful, false if the record
+     *         was changed since that version or could not be updated
+     */
+    public CompletableFuture<Boolean> updateMedicalRecordStatus(int recordId, int version, String status) {
+        return executor.submit(() -> dao.updateMedicalRecordStatus(recordId, version, status));
+    }
+
+    /**
+     * Delete a medical record from the database
+     *
+     * @param recordId The ID of the medical record to delete
+     * @return A future completed with true if successful, false otherwise
+     */
+    public CompletableFuture<Boolean> deleteMedicalRecord(int recordId) {
+        return executor.submit(() -> dao.deleteMedicalRecord(recordId));
+    }
+
+    /**
+     * Get all medical records with pagination
+     *
+     * @param offset The offset for pagination
+     * @param limit The maximum number of records to return
+     * @return A future completed with the list of medical records
+     */
+    public CompletableFuture<List<MedicalRecord>> getAllMedicalRecords(int offset, int limit) {
+        return executor.submit(() -> dao.getAllMedicalRecords(offset, limit));
+    }
+
+    /**
+     * Get total count of medical records
+     *
+     * @return A future completed with the total number of records
+     */
+    public CompletableFuture<Integer> getTotalRecordsCount() {
+        return executor.submit(() -> dao.getTotalRecordsCount());
+    }
+
+    /**
+     * Get the record counters, with visit day counts from a given day on
+     *
+     * @see MedicalRecordDAO#getRecordStats
+     * @return A future completed with the counters
+     */
+    public CompletableFuture<RecordStats> getRecordStats(LocalDate firstDay) {
+        return executor.submit(() -> dao.getRecordStats(firstDay));
+    }
+
+    /**
+     * Get filtered medical records based on various criteria
+     *
+     * @see MedicalRecordDAO#getFilteredMedicalRecords
+     * @return A future completed with the list of matching medical records
+     */
+    public CompletableFuture<List<MedicalRecord>> getFilteredMedicalRecords(String patientName, String recordType,
+                                                                          String status, Date startDate, Date endDate,
+                                                                          Integer doctorId, int offset, int limit) {
+        return executor.submit(() -> dao.getFilteredMedicalRecords(patientName, recordType, status,
+                startDate, endDate, doctorId, offset, limit));
+    }
+
+    /**
+     * Get one page of all medical records, newest first
+     *
+     * @param pageToken The token from the previous page, or null for the first page
+     * @param limit The maximum number of records to return
+     * @return A future completed with the page of medical records
+     */
+    public CompletableFuture<Page<MedicalRecord>> getMedicalRecordsPage(String pageToken, int limit) {
+        return executor.submit(() -> dao.getMedicalRecordsPage(pageToken, limit));
+    }
+
+    /**
+     * Get one page of filtered medical records, newest first
+     *
+     * @see MedicalRecordDAO#getFilteredMedicalRecordsPage
+     * @return A future completed with the page of matching medical records
+     */
+    public CompletableFuture<Page<MedicalRecord>> getFilteredMedicalRecordsPage(String patientName, String recordType,
+                                                                              String status, Date startDate, Date endDate,
+                                                                              Integer doctorId, String pageToken, int limit) {
+        return executor.submit(() -> dao.getFilteredMedicalRecordsPage(patientName, recordType, status,
+                startDate, endDate, doctorId, pageToken, limit));
+    }
+
+    /**
+     * Get one page of filtered medical record summaries for list views, newest first
+     *
+     * @see MedicalRecordDAO#getFilteredMedicalRecordSummaries
+     * @return A future completed with the page of record summaries
+     */
+    public CompletableFuture<Page<MedicalRecord>> getFilteredMedicalRecordSummaries(String patientName, String recordType,
+                                                                                  String status, Date startDate, Date endDate,
+                                                                                  Integer doctorId, String pageToken, int limit) {
+        return executor.submit(() -> dao.getFilteredMedicalRecordSummaries(patientName, recordType, status,
+                startDate, endDate, doctorId, pageToken, limit));
+    }
+
+    /**
+     * Get one page of summaries of the records whose ID, patient name or
+     * doctor name matches a search box entry, newest first
+     *
+     * @see MedicalRecordDAO#findMedicalRecordSummaries
+     * @return A future completed with the page of record summaries
+     */
+    public CompletableFuture<Page<MedicalRecord>> findMedicalRecordSummaries(String text, String patientName,
+                                                                           String recordType, String status,
+                                                                           Date startDate, Date endDate,
+                                                                           Integer doctorId, String pageToken, int limit) {
+        return executor.submit(() -> dao.findMedicalRecordSummaries(text, patientName, recordType, status,
+                startDate, endDate, doctorId, pageToken, limit));
+    }
+
+    /**
+     * Search the clinical text of medical records and get one page of
+     * summaries of the matches, most relevant first
+     *
+     * @see MedicalRecordDAO#searchMedicalRecordSummaries
+     * @return A future completed with the page of record summaries
+     */
+    public CompletableFuture<Page<MedicalRecord>> searchMedicalRecordSummaries(String query, String patientName,
+                                                                             String recordType, String status,
+                                                                             Date startDate, Date endDate,
+                                                                             Integer doctorId, String pageToken, int limit) {
+        return executor.submit(() -> dao.searchMedicalRecordSummaries(query, patientName, recordType, status,
+                startDate, endDate, doctorId, pageToken, limit));
+    }
+
+    /**
+     * Pass every matching medical record to an action, newest first, reading
+     * them with a streaming cursor so exports of the whole table run in
+     * constant memory. The action runs on the database executor thread.
+     *
+     * @see MedicalRecordDAO#forEachMedicalRecord
+     * @return A future completed with the number of records processed, or -1 if there was an error
+     */
+    public CompletableFuture<Long> forEachMedicalRecord(String patientName, String recordType, String status,
+                                                        Date startDate, Date endDate, Integer doctorId,
+                                                        Consumer<MedicalRecord> action) {
+        return executor.submit(() -> dao.forEachMedicalRecord(patientName, recordType, status,
+                startDate, endDate, doctorId, action));
+    }
+
+    /**
+     * Get full medical records by ID
+     *
+     * @param recordIds The IDs of the medical records
+     * @return A future completed with the records found, in the order of the given IDs
+     */
+    public CompletableFuture<List<MedicalRecord>> getMedicalRecordsByIds(List<Integer> recordIds) {
+        return executor.submit(() -> dao.getMedicalRecordsByIds(recordIds));
+    }
+
+    /**
+     * Check if a medical record exists with the given ID
+     *
+     * @param recordId The ID of the medical record to check
+     * @return A future completed with true if the record exists, false otherwise
+     */
+    public CompletableFuture<Boolean> recordExists(int recordId) {
+        return executor.submit(() -> dao.recordExists(recordId));
+    }
+}
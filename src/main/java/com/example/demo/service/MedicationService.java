@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import com.example.demo.database.MedicationDAO;
+import com.example.demo.model.Medication;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade over {@link MedicationDAO} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database. Transaction-scoped overloads are not
+ * exposed; run those inside {@code DatabaseExecutor.getInstance().submit(...)}.
+ */
+public class MedicationService {
+    private final MedicationDAO dao;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by a new DAO.
+     */
+    public MedicationService() {
+        this(new MedicationDAO());
+    }
+
+    /**
+     * Create a service backed by an existing DAO.
+     *
+     * @param dao The DAO to delegate to
+     */
+    public MedicationService(MedicationDAO dao) {
+        this.dao = dao;
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Get all medications for a patient
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with the list of medications for the patient
+     */
+    public CompletableFuture<List<Medication>> getMedicationsByPatientId(int patientId) {
+        return executor.submit(() -> dao.getMedicationsByPatientId(patientId));
+    }
+
+    /**
+     * Get a specific medication by ID
+     *
+     * @param medicationId The ID of the medication
+     * @return A future completed with an Optional containing the medication if found
+     */
+    public CompletableFuture<Optional<Medication>> getMedicationById(int medicationId) {
+        return executor.submit(() -> dao.getMedicationById(medicationId));
+    }
+
+    /**
+     * Create a new medication
+     *
+     * @param medication The medication to create
+     * @return A future completed with true if creation was successful
+     */
+    public CompletableFuture<Boolean> createMedication(Medication medication) {
+        return executor.submit(() -> dao.createMedication(medication));
+    }
+
+    /**
+     * Update an existing medication
+     *
+     * @param medication The medication to update
+     * @return A future completed with true if update was successful
+     */
+    public CompletableFuture<Boolean> updateMedication(Medication medication) {
+        return executor.submit(() -> dao.updateMedication(medication));
+    }
+
+    /**
+     * Delete a medication
+     *
+     * @param medicationId The ID of the medication to delete
+     * @return A future completed with true if deletion was successful
+     */
+    public CompletableFuture<Boolean> deleteMedication(int medicationId) {
+        return executor.submit(() -> dao.deleteMedication(medicationId));
+    }
+
+    /**
+     * Get all current medications for a patient
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with the list of current medications for the patient
+     */
+    public CompletableFuture<List<Medication>> getCurrentMedications(int patientId) {
+        return executor.submit(() -> dao.getCurrentMedications(patientId));
+    }
+}
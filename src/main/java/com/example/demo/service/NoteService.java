@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import com.example.demo.database.NoteDAO;
+import com.example.demo.model.Note;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade over {@link NoteDAO} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database. Transaction-scoped overloads are not
+ * exposed; run those inside {@code DatabaseExecutor.getInstance().submit(...)}.
+ */
+public class NoteService {
+    private final NoteDAO dao;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by a new DAO.
+     */
+    public NoteService() {
+        this(new NoteDAO());
+    }
+
+    /**
+     * Create a service backed by an existing DAO.
+     *
+     * @param dao The DAO to delegate to
+     */
+    public NoteService(NoteDAO dao) {
+        this.dao = dao;
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Creates a new note in the database.
+     *
+     * @param note The note to create
+     * @return A future completed with true if successful, false otherwise
+     */
+    public CompletableFuture<Boolean> createNote(Note note) {
+        return executor.submit(() -> dao.createNote(note));
+    }
+
+    /**
+     * Retrieves all notes for a specific patient.
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with the list of notes for the patient
+     */
+    public CompletableFuture<List<Note>> getNotesByPatientId(int patientId) {
+        return executor.submit(() -> dao.getNotesByPatientId(patientId));
+    }
+
+    /**
+     * Retrieves a note by its ID.
+     *
+     * @param noteId The ID of the note
+     * @return A future completed with the note, or null if not found
+     */
+    public CompletableFuture<Note> getNoteById(int noteId) {
+        return executor.submit(() -> dao.getNoteById(noteId));
+    }
+
+    /**
+     * Updates an existing note in the database.
+     *
+     * @param note The note to update
+     * @return A future completed with true if successful, false otherwise
+     */
+    public CompletableFuture<Boolean> updateNote(Note note) {
+        return executor.submit(() -> dao.updateNote(note));
+    }
+
+    /**
+     * Deletes a note from the database.
+     *
+     * @param noteId The ID of the note to delete
+     * @return A future completed with true if successful, false otherwise
+     */
+    public CompletableFuture<Boolean> deleteNote(int noteId) {
+        return executor.submit(() -> dao.deleteNote(noteId));
+    }
+
+    /**
+     * Retrieves notes by author ID.
+     *
+     * @param authorId The ID of the author
+     * @return A future completed with the list of notes created by the author
+     */
+    public CompletableFuture<List<Note>> getNotesByAuthorId(int authorId) {
+        return executor.submit(() -> dao.getNotesByAuthorId(authorId));
+    }
+
+    /**
+     * Searches the title and content of notes for any of the words in a term.
+     *
+     * @param searchTerm The words to search for
+     * @param patientId Optional patient ID to limit the search (can be null)
+     * @return A future completed with the best matching notes, most relevant first
+     * @see NoteDAO#searchNotes
+     */
+    public CompletableFuture<List<Note>> searchNotes(String searchTerm, Integer patientId) {
+        return executor.submit(() -> dao.searchNotes(searchTerm, patientId));
+    }
+}
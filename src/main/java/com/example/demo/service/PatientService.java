@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import com.example.demo.database.DuplicateMatch;
+import com.example.demo.database.Page;
+import com.example.demo.database.PatientDAO;
+import com.example.demo.database.PatientQuery;
+import com.example.demo.database.PatientStats;
+import com.example.demo.model.Patient;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade over {@link PatientDAO} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database. Transaction-scoped overloads are not
+ * exposed; run those inside {@code DatabaseExecutor.getInstance().submit(...)}.
+ */
+public class PatientService {
+    private final PatientDAO dao;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by a new DAO.
+     */
+    public PatientService() {
+        this(PatientDAO.getInstance());
+    }
+
+    /**
+     * Create a service backed by an existing DAO.
+     *
+     * @param dao The DAO to delegate to
+     */
+    public PatientService(PatientDAO dao) {
+        this.dao = dao;
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Get a list of patients with pagination
+     *
+     * @param page The page number (1-based)
+     * @param pageSize The number of records per page
+     * @return A future completed with the list of patients for the requested page
+     */
+    public CompletableFuture<List<Patient>> getAllPatients(int page, int pageSize) {
+        return executor.submit(() -> dao.getAllPatients(page, pageSize));
+    }
+
+    /**
+     * Get all patients without pagination
+     *
+     * @return A future completed with the list of all patients
+     */
+    public CompletableFuture<List<Patient>> getAllPatients() {
+        return executor.submit(() -> dao.getAllPatients());
+    }
+
+    /**
+     * Get one page of a patient list, sorted, filtered and counted in the database
+     *
+     * @param query The sort order, filters and page size
+     * @param pageToken The token from the previous page, or null for the first page
+     * @return A future completed with the page and the number of matching patients
+     */
+    public CompletableFuture<Page<Patient>> queryPatients(PatientQuery query, String pageToken) {
+        return executor.submit(() -> dao.queryPatients(query, pageToken));
+    }
+
+    /**
+     * Count patients by dimension, for dashboards
+     *
+     * @return A future completed with the counts
+     */
+    public CompletableFuture<PatientStats> getPatientStats() {
+        return executor.submit(() -> dao.getPatientStats());
+    }
+
+    /**
+     * Get a specific patient by ID
+     *
+     * @param patientId The ID of the patient
+     * @return A future completed with an Optional containing the patient if found
+     */
+    public CompletableFuture<Optional<Patient>> getPatientById(int patientId) {
+        return executor.submit(() -> dao.getPatientById(patientId));
+    }
+
+    /**
+     * Search for patients by name, phone number or email, best matches first
+     *
+     * @param searchTerm The search term
+     * @return A future completed with the list of matching patients
+     */
+    public CompletableFuture<List<Patient>> searchPatients(String searchTerm) {
+        return executor.submit(() -> dao.searchPatients(searchTerm));
+    }
+
+    /**
+     * Search for the best matching patients by name, phone number or email
+     *
+     * @param searchTerm The search term
+     * @param limit The maximum number of patients to return
+     * @return A future completed with the matching patients, best matches first
+     */
+    public CompletableFuture<List<Patient>> searchPatients(String searchTerm, int limit) {
+        return executor.submit(() -> dao.searchPatients(searchTerm, limit));
+    }
+
+    /**
+     * Find existing patients who are probably the same person as a patient
+     *
+     * @param patient The patient to check, e.g. before registering them
+     * @return A future completed with the likely duplicates, best match first
+     */
+    public CompletableFuture<List<DuplicateMatch>> findPossibleDuplicates(Patient patient) {
+        return executor.submit(() -> dao.findPossibleDuplicates(patient));
+    }
+
+    /**
+     * Create a new patient
+     *
+     * @param patient The patient to create
+     * @return A future completed with true if creation was successful
+     */
+    public CompletableFuture<Boolean> createPatient(Patient patient) {
+        return executor.submit(() -> dao.createPatient(patient));
+    }
+
+    /**
+     * Update an existing patient
+     *
+     * @param patient The patient to update
+     * @return A future completed with true if update was successful
+     */
+    public CompletableFuture<Boolean> updatePatient(Patient patient) {
+        return executor.submit(() -> dao.updatePatient(patient));
+    }
+
+    /**
+     * Delete a patient (or mark as inactive)
+     *
+     * @param patientId The ID of the patient to delete
+     * @param hardDelete Whether to perform a hard delete or just mark as inactive
+     * @return A future completed with true if deletion was successful
+     */
+    public CompletableFuture<Boolean> deletePatient(int patientId, boolean hardDelete) {
+        return executor.submit(() -> dao.deletePatient(patientId, hardDelete));
+    }
+
+    /**
+     * Simplified delete method (soft delete by marking inactive)
+     *
+     * @param patientId The ID of the patient to delete
+     * @return A future completed with true if deletion was successful
+     */
+    public CompletableFuture<Boolean> deletePatient(int patientId) {
+        return executor.submit(() -> dao.deletePatient(patientId));
+    }
+
+    /**
+     * Get patients assigned to a specific doctor
+     *
+     * @param doctorId The ID of the doctor
+     * @return A future completed with the list of patients assigned to the doctor
+     */
+    public CompletableFuture<List<Patient>> getPatientsByDoctorId(int doctorId) {
+        return executor.submit(() -> dao.getPatientsByDoctorId(doctorId));
+    }
+
+    /**
+     * Get the count of patients in the database
+     *
+     * @return A future completed with the number of patients
+     */
+    public CompletableFuture<Integer> getPatientCount() {
+        return executor.submit(() -> dao.getPatientCount());
+    }
+}
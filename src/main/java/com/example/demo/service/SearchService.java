@@ -0,0 +1,35 @@
+package com.example.demo.service;
+
+import com.example.demo.database.FullTextSearch;
+import com.example.demo.database.Page;
+import com.example.demo.database.SearchHit;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade over {@link FullTextSearch} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database or on building the search index.
+ */
+public class SearchService {
+    private final FullTextSearch search;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by the shared full-text search.
+     */
+    public SearchService() {
+        this.search = FullTextSearch.getInstance();
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Search medical records and notes for any of the words in a query
+     *
+     * @see FullTextSearch#search
+     * @return A future completed with the page of hits, most relevant first
+     */
+    public CompletableFuture<Page<SearchHit>> search(String query, String pageToken, int limit) {
+        return executor.submit(() -> search.search(query, pageToken, limit));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import com.example.demo.database.UserDAO;
+import com.example.demo.model.User;
+import com.example.demo.model.UserProfile;
+import com.example.demo.model.UserRole;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade over {@link UserDAO} for use from controllers.
+ * Every call runs on the {@link DatabaseExecutor}, so the JavaFX Application
+ * Thread never waits on the database. Transaction-scoped overloads are not
+ * exposed; run those inside {@code DatabaseExecutor.getInstance().submit(...)}.
+ */
+public class UserService {
+    private final UserDAO dao;
+    private final DatabaseExecutor executor;
+
+    /**
+     * Create a service backed by a new DAO.
+     */
+    public UserService() {
+        this(new UserDAO());
+    }
+
+    /**
+     * Create a service backed by an existing DAO.
+     *
+     * @param dao The DAO to delegate to
+     */
+    public UserService(UserDAO dao) {
+        this.dao = dao;
+        this.executor = DatabaseExecutor.getInstance();
+    }
+
+    /**
+     * Retrieve a user by ID
+     *
+     * @param userId The ID of the user to retrieve
+     * @return A future completed with an Optional containing the user if found, or empty if not found
+     */
+    public CompletableFuture<Optional<User>> getUserById(int userId) {
+        return executor.submit(() -> dao.getUserById(userId));
+    }
+
+    /**
+     * Retrieve a user by username
+     *
+     * @param username The username to search for
+     * @return A future completed with an Optional containing the user if found, or empty if not found
+     */
+    public CompletableFuture<Optional<User>> getUserByUsername(String username) {
+        return executor.submit(() -> dao.getUserByUsername(username));
+    }
+
+    /**
+     * Retrieve a user by email
+     *
+     * @param email The email to search for
+     * @return A future completed with an Optional containing the user if found, or empty if not found
+     */
+    public CompletableFuture<Optional<User>> getUserByEmail(String email) {
+        return executor.submit(() -> dao.getUserByEmail(email));
+    }
+
+    /**
+     * Retrieve all users of a specific role
+     *
+     * @param role The role to filter by
+     * @return A future completed with a list of users with the specified role
+     */
+    public CompletableFuture<List<User>> getUsersByRole(UserRole role) {
+        return executor.submit(() -> dao.getUsersByRole(role));
+    }
+
+    /**
+     * Create a new user in the database
+     *
+     * @param user The user to create
+     * @return A future completed with the created user with the generated ID, or empty if creation failed
+     */
+    public CompletableFuture<Optional<User>> createUser(User user) {
+        return executor.submit(() -> dao.createUser(user));
+    }
+
+    /**
+     * Update an existing user in the database
+     *
+     * @param user The user to update
+     * @return A future completed with true if the update was successful, false otherwise
+     */
+    public CompletableFuture<Boolean> updateUser(User user) {
+        return executor.submit(() -> dao.updateUser(user));
+    }
+
+    /**
+     * Delete a user from the database
+     *
+     * @param userId The ID of the user to delete
+     * @return A future completed with true if the deletion was successful, false otherwise
+     */
+    public CompletableFuture<Boolean> deleteUser(int userId) {
+        return executor.submit(() -> dao.deleteUser(userId));
+    }
+
+    /**
+     * Get a user's profile
+     *
+     * @param userId The ID of the user whose profile to retrieve
+     * @return A future completed with an Optional containing the user profile if found, or empty if not found
+     */
+    public CompletableFuture<Optional<UserProfile>> getUserProfile(int userId) {
+        return executor.submit(() -> dao.getUserProfile(userId));
+    }
+
+    /**
+     * Count the total number of users in the system
+     *
+     * @return A future completed with the total number of users
+     */
+    public CompletableFuture<Integer> countTotalUsers() {
+        return executor.submit(() -> dao.countTotalUsers());
+    }
+
+    /**
+     * Count the number of users with a specific role
+     *
+     * @param role The role to count users for
+     * @return A future completed with the number of users with the specified role
+     */
+    public CompletableFuture<Integer> countUsersByRole(UserRole role) {
+        return executor.submit(() -> dao.countUsersByRole(role));
+    }
+}
@@ -38,6 +38,7 @@ module com.example.demo {
     exports com.example.demo.auth;
     exports com.example.demo.api;
     exports com.example.demo.util;
+    exports com.example.demo.service;
 
     opens com.example.demo to javafx.fxml;
 }
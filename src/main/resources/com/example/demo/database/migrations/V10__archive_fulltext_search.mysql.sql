@@ -0,0 +1,3 @@
+-- Full-text search over archived medical records. The column list must match
+-- the MATCH(...) list in FullTextSearch exactly, as for medical_records in V4.
+CREATE FULLTEXT INDEX ft_medical_records_archive_text ON medical_records_archive(symptoms, diagnosis, treatment, notes);
@@ -0,0 +1,4 @@
+-- Values such as "0,250" were read as 250 rather than 0.25. Parse every
+-- result or range with a comma again; LabValueBackfill picks these rows up
+-- on the next start.
+UPDATE lab_results SET values_parsed = FALSE WHERE result LIKE '%,%' OR normal_range LIKE '%,%';
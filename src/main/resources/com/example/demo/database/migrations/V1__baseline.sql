@@ -0,0 +1,130 @@
+-- Baseline schema, as previously created by DatabaseConnection.initializeDatabase()
+
+-- Users table
+CREATE TABLE IF NOT EXISTS users (
+    user_id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    email VARCHAR(100) NOT NULL UNIQUE,
+    password VARCHAR(100) NOT NULL,
+    salt VARCHAR(100) NOT NULL,
+    role VARCHAR(20) NOT NULL,
+    full_name VARCHAR(100),
+    phone VARCHAR(20),
+    address VARCHAR(255),
+    city VARCHAR(100),
+    active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP NULL DEFAULT NULL
+);
+
+-- Patients table
+CREATE TABLE IF NOT EXISTS patients (
+    patient_id INT AUTO_INCREMENT PRIMARY KEY,
+    full_name VARCHAR(100) NOT NULL,
+    date_of_birth DATE,
+    gender VARCHAR(20),
+    phone VARCHAR(20),
+    email VARCHAR(100),
+    address VARCHAR(255),
+    city VARCHAR(100),
+    blood_type VARCHAR(10),
+    insurance_provider VARCHAR(100),
+    insurance_number VARCHAR(50),
+    emergency_contact VARCHAR(100),
+    emergency_phone VARCHAR(20),
+    registration_date DATE DEFAULT CURRENT_DATE,
+    last_visit_date DATE,
+    status VARCHAR(20) DEFAULT 'Active'
+);
+
+-- Medical records table
+CREATE TABLE IF NOT EXISTS medical_records (
+    record_id INT AUTO_INCREMENT PRIMARY KEY,
+    patient_id INT NOT NULL,
+    doctor_id INT NOT NULL,
+    visit_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    diagnosis VARCHAR(255),
+    symptoms TEXT,
+    treatment TEXT,
+    notes TEXT,
+    follow_up_date DATE,
+    record_type VARCHAR(50),
+    FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES users(user_id)
+);
+
+-- Medications table
+CREATE TABLE IF NOT EXISTS medications (
+    medication_id INT AUTO_INCREMENT PRIMARY KEY,
+    patient_id INT NOT NULL,
+    doctor_id INT NOT NULL,
+    name VARCHAR(100) NOT NULL,
+    dosage VARCHAR(50),
+    frequency VARCHAR(50),
+    instructions TEXT,
+    purpose VARCHAR(255),
+    start_date DATE,
+    end_date DATE,
+    is_current BOOLEAN DEFAULT TRUE,
+    side_effects TEXT,
+    notes TEXT,
+    FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES users(user_id)
+);
+
+-- Lab results table
+CREATE TABLE IF NOT EXISTS lab_results (
+    result_id INT AUTO_INCREMENT PRIMARY KEY,
+    patient_id INT NOT NULL,
+    doctor_id INT,
+    lab_tech_id INT,
+    test_name VARCHAR(100) NOT NULL,
+    test_type VARCHAR(50),
+    result TEXT,
+    normal_range VARCHAR(100),
+    unit VARCHAR(20),
+    is_abnormal BOOLEAN DEFAULT FALSE,
+    test_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    result_date TIMESTAMP NULL DEFAULT NULL,
+    notes TEXT,
+    status VARCHAR(20) DEFAULT 'Pending',
+    is_urgent BOOLEAN DEFAULT FALSE,
+    FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES users(user_id),
+    FOREIGN KEY (lab_tech_id) REFERENCES users(user_id)
+);
+
+-- Notes table
+CREATE TABLE IF NOT EXISTS notes (
+    note_id INT AUTO_INCREMENT PRIMARY KEY,
+    patient_id INT NOT NULL,
+    author_id INT NOT NULL,
+    title VARCHAR(100),
+    content TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    note_type VARCHAR(50) DEFAULT 'General',
+    is_private BOOLEAN DEFAULT FALSE,
+    FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE,
+    FOREIGN KEY (author_id) REFERENCES users(user_id)
+);
+
+-- Sessions table
+CREATE TABLE IF NOT EXISTS sessions (
+    session_id VARCHAR(100) PRIMARY KEY,
+    user_id INT NOT NULL,
+    ip_address VARCHAR(50),
+    device_info VARCHAR(255),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+);
+
+-- Login attempts table for security auditing
+CREATE TABLE IF NOT EXISTS login_attempts (
+    attempt_id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    success BOOLEAN NOT NULL,
+    attempt_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    ip_address VARCHAR(50)
+);
@@ -0,0 +1,73 @@
+-- Bring the baseline tables in line with the columns the DAOs read and write.
+-- Statements that fail only because the column or index already exists are
+-- skipped by the migrator, so databases patched by hand with the old
+-- schema_update.sql migrate cleanly.
+
+-- Patients: PatientDAO uses split names, phone_number and is_active
+ALTER TABLE patients ADD COLUMN first_name VARCHAR(50);
+ALTER TABLE patients ADD COLUMN last_name VARCHAR(50);
+ALTER TABLE patients ADD COLUMN phone_number VARCHAR(20);
+ALTER TABLE patients ADD COLUMN medical_history TEXT;
+ALTER TABLE patients ADD COLUMN allergies TEXT;
+ALTER TABLE patients ADD COLUMN emergency_contact_name VARCHAR(100);
+ALTER TABLE patients ADD COLUMN emergency_contact_phone VARCHAR(20);
+ALTER TABLE patients ADD COLUMN primary_doctor_id INT;
+ALTER TABLE patients ADD COLUMN is_active BOOLEAN DEFAULT TRUE;
+
+UPDATE patients
+SET first_name = CASE WHEN LOCATE(' ', full_name) > 0
+                      THEN SUBSTRING(full_name, 1, LOCATE(' ', full_name) - 1)
+                      ELSE full_name END,
+    last_name = CASE WHEN LOCATE(' ', full_name) > 0
+                     THEN SUBSTRING(full_name, LOCATE(' ', full_name) + 1)
+                     ELSE '' END
+WHERE first_name IS NULL AND full_name IS NOT NULL;
+
+UPDATE patients SET phone_number = phone WHERE phone_number IS NULL;
+UPDATE patients SET emergency_contact_name = emergency_contact WHERE emergency_contact_name IS NULL;
+UPDATE patients SET emergency_contact_phone = emergency_phone WHERE emergency_contact_phone IS NULL;
+UPDATE patients SET is_active = FALSE WHERE status = 'Inactive';
+
+-- Notes: NoteDAO uses author_name, created_date and updated_date
+ALTER TABLE notes ADD COLUMN author_name VARCHAR(100);
+ALTER TABLE notes ADD COLUMN created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE notes ADD COLUMN updated_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+
+UPDATE notes SET created_date = created_at, updated_date = updated_at WHERE created_at IS NOT NULL;
+UPDATE notes
+SET author_name = (SELECT u.full_name FROM users u WHERE u.user_id = notes.author_id)
+WHERE author_name IS NULL;
+
+-- Medical records: columns previously added by schema_update.sql
+ALTER TABLE medical_records ADD COLUMN patient_name VARCHAR(100);
+ALTER TABLE medical_records ADD COLUMN doctor_name VARCHAR(100);
+ALTER TABLE medical_records ADD COLUMN visit_type VARCHAR(50);
+ALTER TABLE medical_records ADD COLUMN status VARCHAR(50) DEFAULT 'Pending';
+ALTER TABLE medical_records ADD COLUMN diagnosis_codes VARCHAR(255);
+ALTER TABLE medical_records ADD COLUMN attachments VARCHAR(255);
+
+UPDATE medical_records
+SET patient_name = (SELECT p.full_name FROM patients p WHERE p.patient_id = medical_records.patient_id)
+WHERE patient_name IS NULL;
+UPDATE medical_records
+SET doctor_name = (SELECT u.full_name FROM users u WHERE u.user_id = medical_records.doctor_id)
+WHERE doctor_name IS NULL;
+
+CREATE INDEX idx_medical_records_patient_id ON medical_records(patient_id);
+CREATE INDEX idx_medical_records_doctor_id ON medical_records(doctor_id);
+CREATE INDEX idx_medical_records_status ON medical_records(status);
+CREATE INDEX idx_medical_records_visit_date ON medical_records(visit_date);
+
+-- User profiles: read by UserDAO.getUserProfile but never created
+CREATE TABLE IF NOT EXISTS user_profiles (
+    profile_id INT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL UNIQUE,
+    gender VARCHAR(20),
+    date_of_birth DATE,
+    blood_type VARCHAR(10),
+    medical_history TEXT,
+    specialization VARCHAR(100),
+    license_number VARCHAR(50),
+    profile_image VARCHAR(255),
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+);
@@ -0,0 +1,8 @@
+-- Record filters match on record_type alone, so it must mirror visit_type,
+-- which is what the record screens display
+UPDATE medical_records SET record_type = visit_type
+WHERE visit_type IS NOT NULL AND (record_type IS NULL OR record_type <> visit_type);
+
+-- Type filter plus newest-first ordering, and patient name prefix search
+CREATE INDEX idx_medical_records_record_type ON medical_records(record_type, visit_date);
+CREATE INDEX idx_medical_records_patient_name ON medical_records(patient_name);
@@ -0,0 +1,4 @@
+-- Full-text search over clinical text. The column lists must match the
+-- MATCH(...) lists in FullTextSearch exactly.
+CREATE FULLTEXT INDEX ft_medical_records_text ON medical_records(symptoms, diagnosis, treatment, notes);
+CREATE FULLTEXT INDEX ft_notes_text ON notes(title, content);
@@ -0,0 +1,3 @@
+-- Databases without MySQL FULLTEXT indexes (such as the embedded H2 database)
+-- are searched through the in-memory index built by FullTextSearch, so there
+-- is nothing to create here.
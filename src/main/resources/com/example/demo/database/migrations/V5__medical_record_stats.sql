@@ -0,0 +1,32 @@
+-- Running counts of medical records, kept in step with medical_records by
+-- MedicalRecordDAO in the same transaction as each write. One row per
+-- (dimension, value): the grand total, and counts by status, record type,
+-- doctor and visit day (yyyy-MM-dd, so days sort and range as text).
+CREATE TABLE IF NOT EXISTS medical_record_stats (
+    dimension VARCHAR(20) NOT NULL,
+    dim_value VARCHAR(100) NOT NULL,
+    record_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (dimension, dim_value)
+);
+
+DELETE FROM medical_record_stats;
+
+INSERT INTO medical_record_stats (dimension, dim_value, record_count)
+SELECT 'total', '', COUNT(*) FROM medical_records;
+
+INSERT INTO medical_record_stats (dimension, dim_value, record_count)
+SELECT 'status', COALESCE(status, ''), COUNT(*) FROM medical_records
+GROUP BY COALESCE(status, '');
+
+INSERT INTO medical_record_stats (dimension, dim_value, record_count)
+SELECT 'record_type', COALESCE(record_type, ''), COUNT(*) FROM medical_records
+GROUP BY COALESCE(record_type, '');
+
+INSERT INTO medical_record_stats (dimension, dim_value, record_count)
+SELECT 'doctor', CONCAT(doctor_id, ''), COUNT(*) FROM medical_records
+GROUP BY doctor_id;
+
+INSERT INTO medical_record_stats (dimension, dim_value, record_count)
+SELECT 'day', CONCAT(CAST(visit_date AS DATE), ''), COUNT(*) FROM medical_records
+WHERE visit_date IS NOT NULL
+GROUP BY CAST(visit_date AS DATE);
@@ -0,0 +1,3 @@
+-- Optimistic locking for medical records: every UPDATE bumps the version, and
+-- an edit made from a copy loaded at an older version matches no row
+ALTER TABLE medical_records ADD COLUMN version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,42 @@
+-- Cold storage for medical records with old visits, filled in small batches by
+-- RecordArchiver. The columns match medical_records and rows keep their
+-- record_id, so a record that is edited again can be moved back unchanged.
+-- Only the lookups the DAO makes on archived rows are indexed.
+CREATE TABLE IF NOT EXISTS medical_records_archive (
+    record_id INT PRIMARY KEY,
+    patient_id INT NOT NULL,
+    patient_name VARCHAR(100),
+    doctor_id INT NOT NULL,
+    doctor_name VARCHAR(100),
+    visit_type VARCHAR(50),
+    visit_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    symptoms TEXT,
+    diagnosis VARCHAR(255),
+    treatment TEXT,
+    notes TEXT,
+    status VARCHAR(50) DEFAULT 'Pending',
+    diagnosis_codes VARCHAR(255),
+    attachments VARCHAR(255),
+    follow_up_date DATE,
+    record_type VARCHAR(50),
+    version INT NOT NULL DEFAULT 0,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES users(user_id)
+);
+
+CREATE INDEX idx_medical_records_archive_patient_id ON medical_records_archive(patient_id);
+CREATE INDEX idx_medical_records_archive_visit_date ON medical_records_archive(visit_date);
+
+-- Every archived record has a visit before archived_before; NULL while the
+-- archive is empty. Reads whose date range starts on or after it skip the archive.
+CREATE TABLE IF NOT EXISTS medical_records_archive_state (
+    id INT PRIMARY KEY,
+    archived_before TIMESTAMP NULL,
+    last_run_at TIMESTAMP NULL
+);
+
+-- Insert the state row only if it is missing, so the script can be re-run
+INSERT INTO medical_records_archive_state (id, archived_before, last_run_at)
+SELECT 1, NULL, NULL FROM (SELECT 1 AS seed) s
+WHERE NOT EXISTS (SELECT 1 FROM medical_records_archive_state WHERE id = 1);
@@ -0,0 +1,13 @@
+-- Patient lists sort and page by name in SQL, continuing after the last row
+-- of the previous page; names must not be NULL for that comparison to hold
+UPDATE patients SET first_name = '' WHERE first_name IS NULL;
+UPDATE patients SET last_name = '' WHERE last_name IS NULL;
+
+-- One index per list order, each ending in the patient_id tiebreak, plus the
+-- active filter and the phone and email prefix search
+CREATE INDEX idx_patients_name ON patients(last_name, first_name, patient_id);
+CREATE INDEX idx_patients_date_of_birth ON patients(date_of_birth, patient_id);
+CREATE INDEX idx_patients_registration_date ON patients(registration_date, patient_id);
+CREATE INDEX idx_patients_active_name ON patients(is_active, last_name, first_name, patient_id);
+CREATE INDEX idx_patients_phone_number ON patients(phone_number);
+CREATE INDEX idx_patients_email ON patients(email);
@@ -0,0 +1,18 @@
+-- Numbers parsed from the free-text result and normal_range by LabResultDAO
+-- on every write, so results can be compared and filtered in SQL. The second
+-- components hold the diastolic part of blood pressures. NULL where the text
+-- is not numeric. Existing rows have values_parsed = FALSE until
+-- LabValueBackfill has parsed them.
+ALTER TABLE lab_results ADD COLUMN result_value DECIMAL(14,4) NULL;
+ALTER TABLE lab_results ADD COLUMN result_value2 DECIMAL(14,4) NULL;
+ALTER TABLE lab_results ADD COLUMN range_low DECIMAL(14,4) NULL;
+ALTER TABLE lab_results ADD COLUMN range_high DECIMAL(14,4) NULL;
+ALTER TABLE lab_results ADD COLUMN range_low2 DECIMAL(14,4) NULL;
+ALTER TABLE lab_results ADD COLUMN range_high2 DECIMAL(14,4) NULL;
+ALTER TABLE lab_results ADD COLUMN values_parsed BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Results of one test in a date range, with the value checked in the index,
+-- e.g. glucose above 180 this month
+CREATE INDEX idx_lab_results_test_values ON lab_results(test_name, test_date, result_value);
+-- The backfill finds the rows it has not parsed yet without scanning the table
+CREATE INDEX idx_lab_results_values_parsed ON lab_results(values_parsed, result_id);
@@ -0,0 +1,124 @@
+package com.example.demo.database;
+
+import com.example.demo.model.LabResult;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+class LabValuesTest {
+
+    // result, normal range, then value, value2, range low, range high, range low2, range high2
+    private static final Object[][] PARSE_CASES = {
+            { "126 mg/dL", "70-99 mg/dL", 126.0, null, 70.0, 99.0, null, null },
+            { "7.2%", "4.0 to 5.6 %", 7.2, null, 4.0, 5.6, null, null },
+            { "-2", "-3-3", -2.0, null, -3.0, 3.0, null, null },
+            // Decimal commas
+            { "4,5", "3,5-5,0", 4.5, null, 3.5, 5.0, null, null },
+            { "12,75 mmol/L", "11,5 – 13,5", 12.75, null, 11.5, 13.5, null, null },
+            // Thousands separators
+            { "1,234", "1,000-2,000", 1234.0, null, 1000.0, 2000.0, null, null },
+            { "12,500,000 cells/mL", "10,000,000-15,000,000", 12_500_000.0, null, 10_000_000.0, 15_000_000.0, null, null },
+            { "1,234.5", "<2,000.0", 1234.5, null, null, 2000.0, null, null },
+            // A comma before three digits reads as thousands, before any other count as decimals
+            { "1,200", "1,2-1,5", 1200.0, null, 1.2, 1.5, null, null },
+            { "1,2345", "1,23", 1.2345, null, null, null, null, null },
+            // unless the digits before it are a leading zero
+            { "0,250", "0,1-0,5", 0.25, null, 0.1, 0.5, null, null },
+            { "0,025 mg/L", "0,010-0,040", 0.025, null, 0.01, 0.04, null, null },
+            { "-0,500", "<0,750", -0.5, null, null, 0.75, null, null },
+            { "00,250", "000,100-000,500", 0.25, null, 0.1, 0.5, null, null },
+            // Blood pressure pairs
+            { "120/80 mmHg", "90-120/60-80 mmHg", 120.0, 80.0, 90.0, 120.0, 60.0, 80.0 },
+            { "118 / 76", "120/80", 118.0, 76.0, null, 120.0, null, 80.0 },
+            { "135/85", "<120/<80", 135.0, 85.0, null, 120.0, null, 80.0 },
+            { "120/", "90-120/60-80", null, null, 90.0, 120.0, 60.0, 80.0 },
+            { "/80", "90-120/", null, null, null, null, null, null },
+            { "120/80/60", "1/2/3", null, null, null, null, null, null },
+            // Open ranges
+            { "150", "up to 200", 150.0, null, null, 200.0, null, null },
+            { "150", "< 200", 150.0, null, null, 200.0, null, null },
+            { "150", "≤200", 150.0, null, null, 200.0, null, null },
+            { "55", "> 40", 55.0, null, 40.0, null, null, null },
+            { "55", "greater than 40", 55.0, null, 40.0, null, null, null },
+            { "55", "≥ 40 mg/dL", 55.0, null, 40.0, null, null, null },
+            { "55", "below 60", 55.0, null, null, 60.0, null, null },
+            // A bare number is only a bound in a blood pressure range
+            { "55", "60", 55.0, null, null, null, null, null },
+            // Bounds in the wrong order are not a range
+            { "80", "99-70", 80.0, null, null, null, null, null },
+            // Not numeric
+            { "<5", "<10", null, null, null, 10.0, null, null },
+            { "Negative", "Negative", null, null, null, null, null, null },
+            { "Trace", "", null, null, null, null, null, null },
+            { "1.234,5", "1.000,0-2.000,0", null, null, null, null, null, null },
+            { "12 34", "1 - 2 - 3", null, null, null, null, null, null },
+            { "99999999999", "0-99999999999", null, null, null, null, null, null },
+            { null, null, null, null, null, null, null, null },
+    };
+
+    // flagged by hand, result, normal range, then whether the result is abnormal
+    private static final Object[][] ABNORMAL_CASES = {
+            { false, "85", "70-99", false },
+            { false, "126", "70-99", true },
+            { false, "65", "70-99", true },
+            { false, "70", "70-99", false },
+            { false, "99", "70-99", false },
+            { false, "4,5", "3,5-5,0", false },
+            { false, "5,1", "3,5-5,0", true },
+            { false, "1,234", "1,000-2,000", false },
+            { false, "2,500", "1,000-2,000", true },
+            { false, "0,250", "0,1-0,5", false },
+            { false, "0,750", "0,100-0,500", true },
+            { false, "110/70", "90-120/60-80", false },
+            { false, "150/70", "90-120/60-80", true },
+            { false, "110/95", "90-120/60-80", true },
+            { false, "110/55", "90-120/60-80", true },
+            { false, "125/85", "120/80", true },
+            { false, "115/75", "120/80", false },
+            { false, "250", "up to 200", true },
+            { false, "150", "up to 200", false },
+            { false, "30", "> 40", true },
+            // Without both a value and a bound there is nothing to compare
+            { false, "<5", "70-99", false },
+            { false, "126", "Negative", false },
+            { false, "Negative", "Negative", false },
+            { false, "120/", "90-120/60-80", false },
+            { false, null, null, false },
+            // Flagged by hand
+            { true, "Positive", "Negative", true },
+            { true, "85", "70-99", true },
+    };
+
+    @TestFactory
+    Stream<DynamicTest> parse() {
+        return Arrays.stream(PARSE_CASES).map(row -> dynamicTest(row[0] + " in " + row[1], () -> {
+            LabResult labResult = new LabResult();
+            LabValues.parse((String) row[0], (String) row[1]).applyTo(labResult);
+
+            Object[] parsed = {
+                    labResult.getResultValue(), labResult.getResultValue2(),
+                    labResult.getRangeLow(), labResult.getRangeHigh(),
+                    labResult.getRangeLow2(), labResult.getRangeHigh2()
+            };
+            assertArrayEquals(Arrays.copyOfRange(row, 2, 8), parsed);
+        }));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> isAbnormal() {
+        return Arrays.stream(ABNORMAL_CASES).map(row -> dynamicTest(
+                row[1] + " in " + row[2] + (Boolean.TRUE.equals(row[0]) ? ", flagged" : ""), () -> {
+                    LabResult labResult = new LabResult();
+                    labResult.setAbnormal((Boolean) row[0]);
+                    LabValues.parse((String) row[1], (String) row[2]).applyTo(labResult);
+
+                    assertEquals(row[3], LabValues.isAbnormal(labResult));
+                }));
+    }
+}